@@ -185,7 +185,11 @@ public abstract class AbstractCollQuery<Q extends AbstractCollQuery<Q>> extends
     public <RT> CloseableIterator<RT> iterate(Expression<RT> projection) {
         try {
             projection = queryMixin.addProjection(projection);
-            return new IteratorAdapter<RT>(queryEngine.list(getMetadata(), iterables, projection).iterator());
+            if (queryEngine instanceof StreamingQueryEngine) {
+                return ((StreamingQueryEngine)queryEngine).iterate(getMetadata(), iterables, projection);
+            } else {
+                return new IteratorAdapter<RT>(queryEngine.list(getMetadata(), iterables, projection).iterator());
+            }
         } finally {
             reset();
         }
@@ -14,15 +14,20 @@
 package com.mysema.query.collections;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.mysema.codegen.Evaluator;
+import com.mysema.commons.lang.CloseableIterator;
 import com.mysema.commons.lang.IteratorAdapter;
 import com.mysema.query.JoinExpression;
 import com.mysema.query.JoinType;
@@ -43,7 +48,7 @@ import com.mysema.query.types.OrderSpecifier;
  *
  */
 @SuppressWarnings("unchecked")
-public class DefaultQueryEngine implements QueryEngine {
+public class DefaultQueryEngine implements StreamingQueryEngine {
 
     private static volatile QueryEngine DEFAULT;
 
@@ -56,8 +61,11 @@ public class DefaultQueryEngine implements QueryEngine {
 
     private final DefaultEvaluatorFactory evaluatorFactory;
 
+    private final HashJoin hashJoin;
+
     public DefaultQueryEngine(DefaultEvaluatorFactory evaluatorFactory) {
         this.evaluatorFactory = evaluatorFactory;
+        this.hashJoin = new HashJoin(evaluatorFactory);
     }
 
     @Override
@@ -71,29 +79,201 @@ public class DefaultQueryEngine implements QueryEngine {
 
     @Override
     public boolean exists(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
-        QueryModifiers modifiers = metadata.getModifiers();
-        metadata.setLimit(1l);
-        try {
-            if (metadata.getJoins().size() == 1) {
-                return !evaluateSingleSource(metadata, iterables, true).isEmpty();
-            } else {
-                return !evaluateMultipleSources(metadata, iterables, true).isEmpty();
-            }
-        } finally {
-            metadata.setModifiers(modifiers);
+        Long offset = metadata.getModifiers().getOffset();
+        long skip = offset != null ? offset.longValue() : 0l;
+        if (metadata.getJoins().size() == 1 && (skip == 0 || !metadata.isDistinct())) {
+            // stops at the first match after the offset
+            Iterator<?> rows = filter(metadata, iterables);
+            Iterators.advance(rows, (int) Math.min(skip, Integer.MAX_VALUE));
+            return rows.hasNext();
+        } else if (metadata.getJoins().size() == 1) {
+            return evaluateSingleSource(metadata, iterables, true).size() > skip;
+        } else {
+            return evaluateMultipleSources(metadata, iterables, true).size() > skip;
         }
     }
 
     @Override
     public <T> List<T> list(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables,
             Expression<T> projection) {
-        if (metadata.getJoins().size() == 1) {
+        if (metadata.getModifiers().isRestricting() && isStreamable(metadata)) {
+            return IteratorAdapter.asList(stream(metadata, iterables));
+        } else if (metadata.getJoins().size() == 1) {
             return evaluateSingleSource(metadata, iterables, false);
         } else {
             return evaluateMultipleSources(metadata, iterables, false);
         }
     }
 
+    @Override
+    public <T> CloseableIterator<T> iterate(QueryMetadata metadata,
+            Map<Expression<?>, Iterable<?>> iterables, Expression<T> projection) {
+        if (isStreamable(metadata)) {
+            return new IteratorAdapter<T>(this.<T>stream(metadata, iterables));
+        } else {
+            return new IteratorAdapter<T>(list(metadata, iterables, projection).iterator());
+        }
+    }
+
+    /**
+     * Unordered queries can be evaluated lazily, ordered queries only with a limit
+     * and without distinct
+     */
+    private boolean isStreamable(QueryMetadata metadata) {
+        Expression<?> projection = metadata.getProjection().get(0);
+        if (projection instanceof Operation && Ops.aggOps.contains(((Operation)projection).getOperator())) {
+            return false;
+        } else if (metadata.getOrderBy().isEmpty()) {
+            return true;
+        } else {
+            return metadata.getModifiers().getLimit() != null && !metadata.isDistinct();
+        }
+    }
+
+    /**
+     * Evaluate the query lazily as filter, top-N selection for ordered queries, projection,
+     * distinct and offset / limit. The evaluators are created eagerly, since the metadata
+     * is reset after the iterator has been returned.
+     */
+    private <T> Iterator<T> stream(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        QueryModifiers modifiers = metadata.getModifiers();
+        long offset = modifiers.getOffset() != null ? modifiers.getOffset().longValue() : 0l;
+        List<Expression<?>> sources = getSources(metadata);
+
+        // from & where
+        Iterator<?> rows;
+        if (metadata.getJoins().size() == 1) {
+            rows = filter(metadata, iterables);
+        } else {
+            rows = evaluateJoins(metadata, iterables).iterator();
+        }
+
+        // ordered
+        if (!metadata.getOrderBy().isEmpty()) {
+            long size = offset + modifiers.getLimit().longValue();
+            rows = top(metadata, sources, rows, (int) Math.min(size, Integer.MAX_VALUE)).iterator();
+        }
+
+        // projection
+        Expression<?> projection = metadata.getProjection().get(0);
+        if (sources.size() > 1 || metadata.getProjection().size() > 1 || !projection.equals(sources.get(0))) {
+            Evaluator<?> projectionEvaluator = evaluatorFactory.create(metadata, sources, projection);
+            rows = Iterators.transform(rows, new EvaluatorFunction(projectionEvaluator));
+        }
+
+        // distinct
+        if (metadata.isDistinct()) {
+            final Set<Object> seen = new HashSet<Object>();
+            rows = Iterators.filter(rows, new com.google.common.base.Predicate<Object>() {
+                @Override
+                public boolean apply(Object input) {
+                    if (input != null && input.getClass().isArray()) {
+                        return seen.add(Arrays.asList((Object[])input));
+                    } else {
+                        return seen.add(input);
+                    }
+                }
+            });
+        }
+
+        // limit + offset
+        if (offset > 0) {
+            Iterators.advance(rows, (int) Math.min(offset, Integer.MAX_VALUE));
+        }
+        if (modifiers.getLimit() != null) {
+            rows = Iterators.limit(rows, (int) Math.min(modifiers.getLimit().longValue(), Integer.MAX_VALUE));
+        }
+        return (Iterator<T>)rows;
+    }
+
+    /**
+     * Filter the elements of the single source of the given query lazily
+     */
+    private Iterator<?> filter(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        Iterator<?> elements = iterables.values().iterator().next().iterator();
+        if (metadata.getWhere() == null) {
+            return elements;
+        }
+        final Evaluator<Boolean> filter = evaluatorFactory.create(metadata, getSources(metadata),
+                metadata.getWhere());
+        return Iterators.filter(elements, new com.google.common.base.Predicate<Object>() {
+            @Override
+            public boolean apply(Object input) {
+                try {
+                    return Boolean.TRUE.equals(filter.evaluate(input));
+                } catch (RuntimeException e) {
+                    // null values in the path fail the condition
+                    if (!isNullPointer(e)) {
+                        throw e;
+                    }
+                    return false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Select the first size rows in the order of the given query, without sorting all rows
+     */
+    private List<?> top(QueryMetadata metadata, List<Expression<?>> sources, Iterator<?> rows,
+            int size) {
+        final MultiComparator<?> comparator = getComparator(metadata, sources);
+        final Evaluator<Object[]> orderEvaluator = comparator.getEvaluator();
+        // the heap head is the last of the selected rows, the sequence keeps the sort stable
+        Comparator<Object[]> entryComparator = new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] e1, Object[] e2) {
+                int res = comparator.compareKeys((Object[])e1[0], (Object[])e2[0]);
+                return res != 0 ? res : ((Long)e1[2]).compareTo((Long)e2[2]);
+            }
+        };
+        PriorityQueue<Object[]> heap = new PriorityQueue<Object[]>(Math.max(1, Math.min(size, 1024)),
+                Collections.reverseOrder(entryComparator));
+        long sequence = 0l;
+        while (rows.hasNext() && size > 0) {
+            Object row = rows.next();
+            Object[] key = row.getClass().isArray() ? orderEvaluator.evaluate((Object[])row)
+                                                    : orderEvaluator.evaluate(row);
+            Object[] entry = new Object[]{key, row, Long.valueOf(sequence++)};
+            if (heap.size() < size) {
+                heap.add(entry);
+            } else if (entryComparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<Object[]> entries = new ArrayList<Object[]>(heap);
+        Collections.sort(entries, entryComparator);
+        List<Object> rv = new ArrayList<Object>(entries.size());
+        for (Object[] entry : entries) {
+            rv.add(entry[1]);
+        }
+        return rv;
+    }
+
+    private static boolean isNullPointer(Throwable e) {
+        while (e != null) {
+            if (e instanceof NullPointerException) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    private List<Expression<?>> getSources(QueryMetadata metadata) {
+        List<Expression<?>> sources = new ArrayList<Expression<?>>(metadata.getJoins().size());
+        for (JoinExpression join : metadata.getJoins()) {
+            if (join.getType() == JoinType.DEFAULT) {
+                sources.add(join.getTarget());
+            } else {
+                Operation target = (Operation) join.getTarget();
+                sources.add(target.getArg(1));
+            }
+        }
+        return sources;
+    }
+
     private <T> List<T> distinct(List<T> list) {
         List<T> rv = new ArrayList<T>(list.size());
         if (!list.isEmpty() && list.get(0) != null && list.get(0).getClass().isArray()) {
@@ -117,25 +297,10 @@ public class DefaultQueryEngine implements QueryEngine {
     private List evaluateMultipleSources(QueryMetadata metadata, Map<Expression<?>,
             Iterable<?>> iterables, boolean count) {
         // from where
-        Evaluator<List<Object[]>> ev = evaluatorFactory.createEvaluator(metadata, metadata.getJoins(), metadata.getWhere());
-        List<Iterable<?>> iterableList = new ArrayList<Iterable<?>>(metadata.getJoins().size());
-        for (JoinExpression join : metadata.getJoins()) {
-            if (join.getType() == JoinType.DEFAULT) {
-                iterableList.add(iterables.get(join.getTarget()));
-            }
-        }
-        List<?> list = ev.evaluate(iterableList.toArray());
+        List<?> list = evaluateJoins(metadata, iterables);
 
         if (!count && !list.isEmpty()) {
-            List<Expression<?>> sources = new ArrayList<Expression<?>>(metadata.getJoins().size());
-            for (JoinExpression join : metadata.getJoins()) {
-                if (join.getType() == JoinType.DEFAULT) {
-                    sources.add(join.getTarget());
-                } else {
-                    Operation target = (Operation) join.getTarget();
-                    sources.add(target.getArg(1));
-                }
-            }
+            List<Expression<?>> sources = getSources(metadata);
             // ordered
             if (!metadata.getOrderBy().isEmpty()) {
                 order(metadata, sources, list);
@@ -159,6 +324,21 @@ public class DefaultQueryEngine implements QueryEngine {
         return list;
     }
 
+    private List<?> evaluateJoins(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        List<?> list = hashJoin.evaluate(metadata, iterables);
+        if (list == null) {
+            Evaluator<List<Object[]>> ev = evaluatorFactory.createEvaluator(metadata, metadata.getJoins(), metadata.getWhere());
+            List<Iterable<?>> iterableList = new ArrayList<Iterable<?>>(metadata.getJoins().size());
+            for (JoinExpression join : metadata.getJoins()) {
+                if (join.getType() == JoinType.DEFAULT) {
+                    iterableList.add(iterables.get(join.getTarget()));
+                }
+            }
+            list = ev.evaluate(iterableList.toArray());
+        }
+        return list;
+    }
+
     private List evaluateSingleSource(QueryMetadata metadata, Map<Expression<?>,
             Iterable<?>> iterables, boolean count) {
         final Expression<?> source = metadata.getJoins().get(0).getTarget();
@@ -210,6 +390,10 @@ public class DefaultQueryEngine implements QueryEngine {
     }
 
     private void order(QueryMetadata metadata, List<Expression<?>> sources, List<?> list) {
+        Collections.sort(list, getComparator(metadata, sources));
+    }
+
+    private MultiComparator getComparator(QueryMetadata metadata, List<Expression<?>> sources) {
         // create a projection for the order
         List<OrderSpecifier<?>> orderBy = metadata.getOrderBy();
         Expression<Object>[] orderByExpr = new Expression[orderBy.size()];
@@ -220,7 +404,7 @@ public class DefaultQueryEngine implements QueryEngine {
         }
         Expression<?> expr = new ArrayConstructorExpression<Object>(Object[].class, orderByExpr);
         Evaluator orderEvaluator = evaluatorFactory.create(metadata, sources, expr);
-        Collections.sort(list, new MultiComparator(orderEvaluator, directions));
+        return new MultiComparator(orderEvaluator, directions);
     }
 
     private List<?> project(QueryMetadata metadata, List<Expression<?>> sources, List<?> list) {
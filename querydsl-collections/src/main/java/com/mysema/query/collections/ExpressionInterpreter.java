@@ -0,0 +1,993 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.collections;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Primitives;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.ParamNotSetException;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.PathType;
+import com.mysema.query.types.SubQueryExpression;
+import com.mysema.query.types.Template;
+import com.mysema.query.types.TemplateExpression;
+import com.mysema.query.types.Visitor;
+import com.mysema.util.MathUtils;
+import com.mysema.util.ReflectionUtils;
+
+/**
+ * ExpressionInterpreter converts expressions into trees of {@link Node} instances, which evaluate
+ * the expressions directly with the semantics of the Java code produced by {@link CollQuerySerializer}
+ *
+ * @author tiwe
+ *
+ */
+final class ExpressionInterpreter implements Visitor<ExpressionInterpreter.Node, Void> {
+
+    /**
+     * Node is the evaluation form of an expression
+     */
+    abstract static class Node {
+
+        /**
+         * Evaluate the expression for the given row of source values
+         *
+         * @param row
+         * @return
+         */
+        abstract Object eval(Object[] row);
+
+    }
+
+    /**
+     * Thrown when an expression can't be interpreted
+     */
+    static final class UnsupportedExpressionException extends RuntimeException {
+
+        private static final long serialVersionUID = 5024829326089361153L;
+
+        UnsupportedExpressionException(String message) {
+            super(message);
+        }
+
+    }
+
+    private static final Set<Class<?>> WRAPPER_TYPES = ImmutableSet.copyOf(Primitives.allWrapperTypes());
+
+    private static final Set<Operator<?>> PRIMITIVE_OPS = ImmutableSet.<Operator<?>>of(
+            Ops.EQ, Ops.NE, Ops.GT, Ops.LT, Ops.GOE, Ops.LOE, Ops.ADD, Ops.SUB, Ops.MULT, Ops.DIV);
+
+    private static final Set<Operator<?>> MATH_OPS = ImmutableSet.<Operator<?>>builder()
+            .add(Ops.MathOps.ABS, Ops.MathOps.ACOS, Ops.MathOps.ASIN, Ops.MathOps.ATAN, Ops.MathOps.CEIL)
+            .add(Ops.MathOps.COS, Ops.MathOps.COSH, Ops.MathOps.COT, Ops.MathOps.COTH, Ops.MathOps.DEG)
+            .add(Ops.MathOps.EXP, Ops.MathOps.FLOOR, Ops.MathOps.LN, Ops.MathOps.LOG, Ops.MathOps.MAX)
+            .add(Ops.MathOps.MIN, Ops.MathOps.POWER, Ops.MathOps.RAD, Ops.MathOps.RANDOM, Ops.MathOps.RANDOM2)
+            .add(Ops.MathOps.ROUND, Ops.MathOps.ROUND2, Ops.MathOps.SIGN, Ops.MathOps.SIN, Ops.MathOps.SINH)
+            .add(Ops.MathOps.SQRT, Ops.MathOps.TAN, Ops.MathOps.TANH)
+            .build();
+
+    private static final Set<Operator<?>> DATE_OPS = ImmutableSet.<Operator<?>>builder()
+            .add(Ops.DateTimeOps.YEAR, Ops.DateTimeOps.MONTH, Ops.DateTimeOps.WEEK)
+            .add(Ops.DateTimeOps.DAY_OF_WEEK, Ops.DateTimeOps.DAY_OF_MONTH, Ops.DateTimeOps.DAY_OF_YEAR)
+            .add(Ops.DateTimeOps.HOUR, Ops.DateTimeOps.MINUTE, Ops.DateTimeOps.SECOND)
+            .add(Ops.DateTimeOps.MILLISECOND, Ops.DateTimeOps.YEAR_MONTH, Ops.DateTimeOps.YEAR_WEEK)
+            .build();
+
+    private static final Set<Operator<?>> STRING_OPS = ImmutableSet.<Operator<?>>builder()
+            .add(Ops.CONCAT, Ops.LOWER, Ops.UPPER, Ops.TRIM, Ops.STRING_LENGTH, Ops.STRING_IS_EMPTY)
+            .add(Ops.CHAR_AT, Ops.SUBSTR_1ARG, Ops.SUBSTR_2ARGS, Ops.StringOps.LOCATE, Ops.StringOps.LOCATE2)
+            .add(Ops.EQ_IGNORE_CASE, Ops.LIKE, Ops.LIKE_ESCAPE, Ops.INDEX_OF, Ops.INDEX_OF_2ARGS)
+            .add(Ops.MATCHES, Ops.MATCHES_IC, Ops.STRING_CONTAINS, Ops.STRING_CONTAINS_IC)
+            .add(Ops.STARTS_WITH, Ops.STARTS_WITH_IC, Ops.ENDS_WITH, Ops.ENDS_WITH_IC)
+            .build();
+
+    private final CollQueryTemplates templates;
+
+    private final QueryMetadata metadata;
+
+    private final List<String> sources;
+
+    public ExpressionInterpreter(CollQueryTemplates templates, QueryMetadata metadata, List<String> sources) {
+        this.templates = templates;
+        this.metadata = metadata;
+        this.sources = sources;
+    }
+
+    /**
+     * Create a Node for the given expression
+     *
+     * @param expr
+     * @return
+     * @throws UnsupportedExpressionException if the expression can't be interpreted
+     */
+    public Node create(Expression<?> expr) {
+        return expr.accept(this, null);
+    }
+
+    @Override
+    public Node visit(Constant<?> expr, Void context) {
+        return constant(expr.getConstant());
+    }
+
+    @Override
+    public Node visit(FactoryExpression<?> expr, Void context) {
+        final FactoryExpression<?> factory = expr;
+        final Node[] args = create(expr.getArgs());
+        return new Node() {
+            @Override
+            Object eval(Object[] row) {
+                return factory.newInstance(evalAll(args, row));
+            }
+        };
+    }
+
+    @Override
+    public Node visit(ParamExpression<?> expr, Void context) {
+        Object value = metadata.getParams().get(expr);
+        if (value == null) {
+            throw new ParamNotSetException(expr);
+        }
+        return constant(value);
+    }
+
+    @Override
+    public Node visit(SubQueryExpression<?> expr, Void context) {
+        throw new UnsupportedExpressionException("Subqueries are not supported");
+    }
+
+    @Override
+    public Node visit(TemplateExpression<?> expr, Void context) {
+        throw new UnsupportedExpressionException("Unsupported template " + expr.getTemplate());
+    }
+
+    @Override
+    public Node visit(Path<?> path, Void context) {
+        PathType pathType = path.getMetadata().getPathType();
+        if (pathType == PathType.VARIABLE) {
+            final int index = sources.indexOf(path.getMetadata().getName());
+            if (index < 0) {
+                throw new UnsupportedExpressionException("Unknown variable " + path);
+            }
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return row[index];
+                }
+            };
+        } else if (pathType == PathType.DELEGATE) {
+            return create(path.getMetadata().getParent());
+        } else if (pathType == PathType.PROPERTY) {
+            return property(path);
+        }
+
+        checkTemplate(pathType);
+        final Node parent = create(path.getMetadata().getParent());
+        Object element = path.getMetadata().getElement();
+        final Node key = element instanceof Expression ? create((Expression<?>)element) : constant(element);
+        if (pathType == PathType.LISTVALUE || pathType == PathType.LISTVALUE_CONSTANT) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return ((List<?>)notNull(parent.eval(row))).get(intValue(key.eval(row)));
+                }
+            };
+        } else if (pathType == PathType.MAPVALUE || pathType == PathType.MAPVALUE_CONSTANT) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return ((Map<?,?>)notNull(parent.eval(row))).get(key.eval(row));
+                }
+            };
+        } else if (pathType == PathType.ARRAYVALUE || pathType == PathType.ARRAYVALUE_CONSTANT) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return Array.get(notNull(parent.eval(row)), intValue(key.eval(row)));
+                }
+            };
+        } else {
+            throw new UnsupportedExpressionException("Unsupported path type " + pathType);
+        }
+    }
+
+    private Node property(Path<?> path) {
+        final Node parent = create(path.getMetadata().getParent());
+        Class<?> parentType = path.getMetadata().getParent().getType();
+        String property = path.getMetadata().getName();
+        final Method getter = getAccessor(parentType, property);
+        if (getter != null && Modifier.isPublic(getter.getModifiers())) {
+            makeAccessible(getter);
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    try {
+                        return getter.invoke(notNull(parent.eval(row)));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    } catch (InvocationTargetException e) {
+                        throw propagate(e.getCause());
+                    }
+                }
+            };
+        }
+        final Field field = getField(parentType, property);
+        if (field != null) {
+            makeAccessible(field);
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    try {
+                        return field.get(notNull(parent.eval(row)));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+        }
+        throw new UnsupportedExpressionException("No accessor for " + path);
+    }
+
+    @Override
+    public Node visit(Operation<?> expr, Void context) {
+        final Operator<?> op = expr.getOperator();
+        final List<Expression<?>> argExprs = expr.getArgs();
+        if (argExprs.size() == 2 && PRIMITIVE_OPS.contains(op)
+            && isPrimitive(argExprs.get(0).getType()) && isPrimitive(argExprs.get(1).getType())) {
+            return primitiveOperation(op, create(argExprs));
+        } else if (op == Ops.STRING_CAST) {
+            final Node arg = create(argExprs.get(0));
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return String.valueOf(arg.eval(row));
+                }
+            };
+        } else if (op == Ops.NUMCAST) {
+            return numberCast(argExprs);
+        } else if (op == Ops.COALESCE) {
+            checkTemplate(op);
+            final Node[] args = create(flatten(argExprs.get(0), new ArrayList<Expression<?>>()));
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    for (Node arg : args) {
+                        Object value = arg.eval(row);
+                        if (value != null) {
+                            return value;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        checkTemplate(op);
+        final Node[] args = create(argExprs);
+        if (op == Ops.AND) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return booleanValue(args[0].eval(row)) && booleanValue(args[1].eval(row));
+                }
+            };
+        } else if (op == Ops.OR) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return booleanValue(args[0].eval(row)) || booleanValue(args[1].eval(row));
+                }
+            };
+        } else if (op == Ops.NOT) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return !booleanValue(args[0].eval(row));
+                }
+            };
+        } else if (op == Ops.WRAPPED || op == Ops.CASE || op == Ops.CASE_ELSE
+                || op == Ops.CASE_EQ || op == Ops.CASE_EQ_ELSE) {
+            return args[0];
+        } else if (op == Ops.CASE_WHEN) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return booleanValue(args[0].eval(row)) ? args[1].eval(row) : args[2].eval(row);
+                }
+            };
+        } else if (op == Ops.CASE_EQ_WHEN) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return same(args[0].eval(row), args[1].eval(row)) ? args[2].eval(row) : args[3].eval(row);
+                }
+            };
+        } else if (op == Ops.IS_NULL) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return args[0].eval(row) == null;
+                }
+            };
+        } else if (op == Ops.IS_NOT_NULL) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return args[0].eval(row) != null;
+                }
+            };
+        } else if (op == Ops.NULLIF) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return CollQueryFunctions.nullif(args[0].eval(row), args[1].eval(row));
+                }
+            };
+        } else if (op == Ops.INSTANCE_OF) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return ((Class<?>)notNull(args[1].eval(row))).isInstance(args[0].eval(row));
+                }
+            };
+        } else if (op == Ops.ORDINAL) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return ((Enum<?>)notNull(args[0].eval(row))).ordinal();
+                }
+            };
+        } else if (Ops.compareOps.contains(op) || op == Ops.BETWEEN) {
+            return comparison(op, args);
+        } else if (op == Ops.ADD || op == Ops.SUB || op == Ops.MULT || op == Ops.DIV) {
+            return bigNumberOperation(op, argExprs.get(0).getType(), args);
+        } else if (op == Ops.MOD || op == Ops.NEGATE) {
+            return primitiveOperation(op, args);
+        } else if (op == Ops.IN || op == Ops.NOT_IN) {
+            final boolean in = op == Ops.IN;
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return ((Collection<?>)notNull(args[1].eval(row))).contains(args[0].eval(row)) == in;
+                }
+            };
+        } else if (op == Ops.COL_IS_EMPTY || op == Ops.COL_SIZE) {
+            final boolean size = op == Ops.COL_SIZE;
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    Collection<?> coll = (Collection<?>)notNull(args[0].eval(row));
+                    return size ? Integer.valueOf(coll.size()) : Boolean.valueOf(coll.isEmpty());
+                }
+            };
+        } else if (op == Ops.ARRAY_SIZE) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return Array.getLength(notNull(args[0].eval(row)));
+                }
+            };
+        } else if (op == Ops.MAP_IS_EMPTY || op == Ops.MAP_SIZE) {
+            final boolean size = op == Ops.MAP_SIZE;
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    Map<?,?> map = (Map<?,?>)notNull(args[0].eval(row));
+                    return size ? Integer.valueOf(map.size()) : Boolean.valueOf(map.isEmpty());
+                }
+            };
+        } else if (op == Ops.CONTAINS_KEY || op == Ops.CONTAINS_VALUE) {
+            final boolean key = op == Ops.CONTAINS_KEY;
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    Map<?,?> map = (Map<?,?>)notNull(args[0].eval(row));
+                    Object value = args[1].eval(row);
+                    return key ? map.containsKey(value) : map.containsValue(value);
+                }
+            };
+        } else if (MATH_OPS.contains(op)) {
+            return mathOperation(op, args);
+        } else if (DATE_OPS.contains(op)) {
+            Class<?> type = argExprs.get(0).getType();
+            if (!Date.class.isAssignableFrom(type)) {
+                throw new UnsupportedExpressionException("Unsupported date type " + type.getName());
+            }
+            return dateOperation(op, args);
+        } else {
+            return stringOperation(op, args);
+        }
+    }
+
+    private Node comparison(final Operator<?> op, final Node[] args) {
+        if (op == Ops.EQ || op == Ops.NE) {
+            final boolean eq = op == Ops.EQ;
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return notNull(args[0].eval(row)).equals(args[1].eval(row)) == eq;
+                }
+            };
+        } else if (op == Ops.BETWEEN) {
+            return new Node() {
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                @Override
+                Object eval(Object[] row) {
+                    return CollQueryFunctions.between((Comparable)args[0].eval(row),
+                            (Comparable)args[1].eval(row), (Comparable)args[2].eval(row));
+                }
+            };
+        } else {
+            return new Node() {
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                @Override
+                Object eval(Object[] row) {
+                    int result = ((Comparable)notNull(args[0].eval(row))).compareTo(args[1].eval(row));
+                    return compare(op, result);
+                }
+            };
+        }
+    }
+
+    private Node primitiveOperation(final Operator<?> op, final Node[] args) {
+        if (op == Ops.NEGATE) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return negate(toNumber(args[0].eval(row)));
+                }
+            };
+        } else if (op == Ops.EQ || op == Ops.NE) {
+            final boolean eq = op == Ops.EQ;
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    Object left = notNull(args[0].eval(row)), right = notNull(args[1].eval(row));
+                    if (left instanceof Boolean || right instanceof Boolean) {
+                        return left.equals(right) == eq;
+                    } else {
+                        return (compare(toNumber(left), toNumber(right)) == 0) == eq;
+                    }
+                }
+            };
+        } else if (Ops.compareOps.contains(op)) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    Number left = toNumber(args[0].eval(row)), right = toNumber(args[1].eval(row));
+                    return compare(op, compare(left, right));
+                }
+            };
+        } else {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return arithmetic(op, toNumber(args[0].eval(row)), toNumber(args[1].eval(row)));
+                }
+            };
+        }
+    }
+
+    private Node bigNumberOperation(final Operator<?> op, Class<?> type, final Node[] args) {
+        if (BigDecimal.class.equals(type)) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    BigDecimal left = (BigDecimal)notNull(args[0].eval(row));
+                    BigDecimal right = (BigDecimal)args[1].eval(row);
+                    if (op == Ops.ADD) {
+                        return left.add(right);
+                    } else if (op == Ops.SUB) {
+                        return left.subtract(right);
+                    } else if (op == Ops.MULT) {
+                        return left.multiply(right);
+                    } else {
+                        return left.divide(right);
+                    }
+                }
+            };
+        } else if (BigInteger.class.equals(type)) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    BigInteger left = (BigInteger)notNull(args[0].eval(row));
+                    BigInteger right = (BigInteger)args[1].eval(row);
+                    if (op == Ops.ADD) {
+                        return left.add(right);
+                    } else if (op == Ops.SUB) {
+                        return left.subtract(right);
+                    } else if (op == Ops.MULT) {
+                        return left.multiply(right);
+                    } else {
+                        return left.divide(right);
+                    }
+                }
+            };
+        } else {
+            throw new UnsupportedExpressionException("Unsupported operand type " + type.getName());
+        }
+    }
+
+    private Node numberCast(List<Expression<?>> argExprs) {
+        final Node arg = create(argExprs.get(0));
+        @SuppressWarnings("unchecked")
+        final Class<Number> targetType = (Class<Number>) ((Constant<?>) argExprs.get(1)).getConstant();
+        if (!targetType.equals(Integer.class) && !targetType.equals(Long.class) && !targetType.equals(Short.class)) {
+            throw new UnsupportedExpressionException("Unsupported cast type " + targetType.getName());
+        }
+        return new Node() {
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            @Override
+            Object eval(Object[] row) {
+                return MathUtils.cast(toNumber(arg.eval(row)), (Class)targetType);
+            }
+        };
+    }
+
+    private Node mathOperation(final Operator<?> op, final Node[] args) {
+        if (op == Ops.MathOps.ROUND2 || op == Ops.MathOps.RANDOM2) {
+            throw new UnsupportedExpressionException("Unsupported operator " + op);
+        } else if (op == Ops.MathOps.RANDOM) {
+            return new Node() {
+                @Override
+                Object eval(Object[] row) {
+                    return Math.random();
+                }
+            };
+        }
+        return new Node() {
+            @Override
+            Object eval(Object[] row) {
+                Number arg = toNumber(args[0].eval(row));
+                if (args.length > 1) {
+                    return math(op, arg, toNumber(args[1].eval(row)));
+                } else {
+                    return math(op, arg);
+                }
+            }
+        };
+    }
+
+    private Node dateOperation(final Operator<?> op, final Node[] args) {
+        return new Node() {
+            @Override
+            Object eval(Object[] row) {
+                Date date = (Date)notNull(args[0].eval(row));
+                if (op == Ops.DateTimeOps.YEAR) {
+                    return CollQueryFunctions.getYear(date);
+                } else if (op == Ops.DateTimeOps.MONTH) {
+                    return CollQueryFunctions.getMonth(date);
+                } else if (op == Ops.DateTimeOps.WEEK) {
+                    return CollQueryFunctions.getWeek(date);
+                } else if (op == Ops.DateTimeOps.DAY_OF_WEEK) {
+                    return CollQueryFunctions.getDayOfWeek(date);
+                } else if (op == Ops.DateTimeOps.DAY_OF_MONTH) {
+                    return CollQueryFunctions.getDayOfMonth(date);
+                } else if (op == Ops.DateTimeOps.DAY_OF_YEAR) {
+                    return CollQueryFunctions.getDayOfYear(date);
+                } else if (op == Ops.DateTimeOps.HOUR) {
+                    return CollQueryFunctions.getHour(date);
+                } else if (op == Ops.DateTimeOps.MINUTE) {
+                    return CollQueryFunctions.getMinute(date);
+                } else if (op == Ops.DateTimeOps.SECOND) {
+                    return CollQueryFunctions.getSecond(date);
+                } else if (op == Ops.DateTimeOps.MILLISECOND) {
+                    return CollQueryFunctions.getMilliSecond(date);
+                } else if (op == Ops.DateTimeOps.YEAR_MONTH) {
+                    return CollQueryFunctions.getYearMonth(date);
+                } else {
+                    return CollQueryFunctions.getYearWeek(date);
+                }
+            }
+        };
+    }
+
+    private Node stringOperation(final Operator<?> op, final Node[] args) {
+        if (!STRING_OPS.contains(op)) {
+            throw new UnsupportedExpressionException("Unsupported operator " + op);
+        }
+        return new Node() {
+            @Override
+            Object eval(Object[] row) {
+                if (op == Ops.CONCAT) {
+                    return String.valueOf(args[0].eval(row)) + String.valueOf(args[1].eval(row));
+                }
+                String str = (String)notNull(args[0].eval(row));
+                if (op == Ops.LOWER) {
+                    return str.toLowerCase();
+                } else if (op == Ops.UPPER) {
+                    return str.toUpperCase();
+                } else if (op == Ops.TRIM) {
+                    return str.trim();
+                } else if (op == Ops.STRING_LENGTH) {
+                    return str.length();
+                } else if (op == Ops.STRING_IS_EMPTY) {
+                    return str.isEmpty();
+                } else if (op == Ops.CHAR_AT) {
+                    return str.charAt(intValue(args[1].eval(row)));
+                } else if (op == Ops.SUBSTR_1ARG) {
+                    return str.substring(intValue(args[1].eval(row)));
+                } else if (op == Ops.SUBSTR_2ARGS) {
+                    return str.substring(intValue(args[1].eval(row)), intValue(args[2].eval(row)));
+                } else if (op == Ops.StringOps.LOCATE) {
+                    // the searched string is the first argument
+                    return ((String)notNull(args[1].eval(row))).indexOf(str) + 1;
+                } else if (op == Ops.StringOps.LOCATE2) {
+                    return ((String)notNull(args[1].eval(row))).indexOf(str, intValue(args[2].eval(row)) - 1) + 1;
+                }
+                Object arg = args[1].eval(row);
+                if (op == Ops.EQ_IGNORE_CASE) {
+                    return str.equalsIgnoreCase((String)arg);
+                } else if (op == Ops.LIKE) {
+                    return CollQueryFunctions.like(str, (String)arg);
+                } else if (op == Ops.LIKE_ESCAPE) {
+                    return CollQueryFunctions.like(str, (String)arg, (Character)args[2].eval(row));
+                } else if (op == Ops.INDEX_OF) {
+                    return str.indexOf((String)arg);
+                } else if (op == Ops.INDEX_OF_2ARGS) {
+                    return str.indexOf((String)arg, intValue(args[2].eval(row)));
+                }
+                String other = (String)notNull(arg);
+                if (op == Ops.MATCHES || op == Ops.MATCHES_IC) {
+                    return str.matches(other);
+                } else if (op == Ops.STRING_CONTAINS) {
+                    return str.contains(other);
+                } else if (op == Ops.STRING_CONTAINS_IC) {
+                    return str.toLowerCase().contains(other.toLowerCase());
+                } else if (op == Ops.STARTS_WITH) {
+                    return str.startsWith(other);
+                } else if (op == Ops.STARTS_WITH_IC) {
+                    return str.toLowerCase().startsWith(other.toLowerCase());
+                } else if (op == Ops.ENDS_WITH) {
+                    return str.endsWith(other);
+                } else {
+                    return str.toLowerCase().endsWith(other.toLowerCase());
+                }
+            }
+        };
+    }
+
+    private Node[] create(List<Expression<?>> exprs) {
+        Node[] nodes = new Node[exprs.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = create(exprs.get(i));
+        }
+        return nodes;
+    }
+
+    private void checkTemplate(Operator<?> op) {
+        Template template = templates.getTemplate(op);
+        if (template == null || !template.equals(CollQueryTemplates.DEFAULT.getTemplate(op))) {
+            throw new UnsupportedExpressionException("Unsupported template for " + op);
+        }
+    }
+
+    private static Node constant(final Object value) {
+        return new Node() {
+            @Override
+            Object eval(Object[] row) {
+                return value;
+            }
+        };
+    }
+
+    private static Object[] evalAll(Node[] nodes, Object[] row) {
+        Object[] values = new Object[nodes.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nodes[i].eval(row);
+        }
+        return values;
+    }
+
+    private static List<Expression<?>> flatten(Expression<?> expr, List<Expression<?>> exprs) {
+        if (expr instanceof Operation && ((Operation<?>)expr).getOperator() == Ops.LIST) {
+            for (Expression<?> arg : ((Operation<?>)expr).getArgs()) {
+                flatten(arg, exprs);
+            }
+        } else {
+            exprs.add(expr);
+        }
+        return exprs;
+    }
+
+    private static boolean isPrimitive(Class<?> type) {
+        return type.isPrimitive() || WRAPPER_TYPES.contains(type);
+    }
+
+    private static Object notNull(Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        return value;
+    }
+
+    private static boolean booleanValue(Object value) {
+        return ((Boolean)notNull(value)).booleanValue();
+    }
+
+    private static int intValue(Object value) {
+        return toNumber(value).intValue();
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Character) {
+            return Integer.valueOf(((Character)value).charValue());
+        } else {
+            return (Number)notNull(value);
+        }
+    }
+
+    private static boolean isIntegral(Number num) {
+        return num instanceof Integer || num instanceof Long || num instanceof Short || num instanceof Byte;
+    }
+
+    private static boolean same(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return compare((Number)left, (Number)right) == 0;
+        } else {
+            return Objects.equal(left, right);
+        }
+    }
+
+    private static int compare(Number left, Number right) {
+        if (isIntegral(left) && isIntegral(right)) {
+            long l = left.longValue(), r = right.longValue();
+            return l < r ? -1 : (l == r ? 0 : 1);
+        } else {
+            double l = left.doubleValue(), r = right.doubleValue();
+            // mirrors the primitive comparison, which is false for NaN
+            return l < r ? -1 : (l == r ? 0 : (l > r ? 1 : 2));
+        }
+    }
+
+    private static boolean compare(Operator<?> op, int result) {
+        if (result == 2) {
+            return op == Ops.NE;
+        } else if (op == Ops.EQ) {
+            return result == 0;
+        } else if (op == Ops.NE) {
+            return result != 0;
+        } else if (op == Ops.GT) {
+            return result > 0;
+        } else if (op == Ops.LT) {
+            return result < 0;
+        } else if (op == Ops.GOE) {
+            return result >= 0;
+        } else {
+            return result <= 0;
+        }
+    }
+
+    private static Number negate(Number num) {
+        if (num instanceof Double) {
+            return -num.doubleValue();
+        } else if (num instanceof Float) {
+            return -num.floatValue();
+        } else if (num instanceof Long) {
+            return -num.longValue();
+        } else {
+            return -num.intValue();
+        }
+    }
+
+    private static Number arithmetic(Operator<?> op, Number left, Number right) {
+        if (left instanceof Double || right instanceof Double) {
+            double l = left.doubleValue(), r = right.doubleValue();
+            if (op == Ops.ADD) {
+                return l + r;
+            } else if (op == Ops.SUB) {
+                return l - r;
+            } else if (op == Ops.MULT) {
+                return l * r;
+            } else if (op == Ops.DIV) {
+                return l / r;
+            } else {
+                return l % r;
+            }
+        } else if (left instanceof Float || right instanceof Float) {
+            float l = left.floatValue(), r = right.floatValue();
+            if (op == Ops.ADD) {
+                return l + r;
+            } else if (op == Ops.SUB) {
+                return l - r;
+            } else if (op == Ops.MULT) {
+                return l * r;
+            } else if (op == Ops.DIV) {
+                return l / r;
+            } else {
+                return l % r;
+            }
+        } else if (left instanceof Long || right instanceof Long) {
+            long l = left.longValue(), r = right.longValue();
+            if (op == Ops.ADD) {
+                return l + r;
+            } else if (op == Ops.SUB) {
+                return l - r;
+            } else if (op == Ops.MULT) {
+                return l * r;
+            } else if (op == Ops.DIV) {
+                return l / r;
+            } else {
+                return l % r;
+            }
+        } else {
+            int l = left.intValue(), r = right.intValue();
+            if (op == Ops.ADD) {
+                return l + r;
+            } else if (op == Ops.SUB) {
+                return l - r;
+            } else if (op == Ops.MULT) {
+                return l * r;
+            } else if (op == Ops.DIV) {
+                return l / r;
+            } else {
+                return l % r;
+            }
+        }
+    }
+
+    private static Number math(Operator<?> op, Number arg) {
+        if (op == Ops.MathOps.ABS) {
+            if (arg instanceof Double) {
+                return Math.abs(arg.doubleValue());
+            } else if (arg instanceof Float) {
+                return Math.abs(arg.floatValue());
+            } else if (arg instanceof Long) {
+                return Math.abs(arg.longValue());
+            } else {
+                return Math.abs(arg.intValue());
+            }
+        } else if (op == Ops.MathOps.ROUND) {
+            if (arg instanceof Double) {
+                return Math.round(arg.doubleValue());
+            } else {
+                return Math.round(arg.floatValue());
+            }
+        } else if (op == Ops.MathOps.SIGN) {
+            return compare(arg, Integer.valueOf(0)) == 1 ? 1 : -1;
+        }
+        double value = arg.doubleValue();
+        if (op == Ops.MathOps.ACOS) {
+            return Math.acos(value);
+        } else if (op == Ops.MathOps.ASIN) {
+            return Math.asin(value);
+        } else if (op == Ops.MathOps.ATAN) {
+            return Math.atan(value);
+        } else if (op == Ops.MathOps.CEIL) {
+            return Math.ceil(value);
+        } else if (op == Ops.MathOps.COS) {
+            return Math.cos(value);
+        } else if (op == Ops.MathOps.COSH) {
+            return Math.cosh(value);
+        } else if (op == Ops.MathOps.COT) {
+            return CollQueryFunctions.cot(value);
+        } else if (op == Ops.MathOps.COTH) {
+            return CollQueryFunctions.coth(value);
+        } else if (op == Ops.MathOps.DEG) {
+            return CollQueryFunctions.degrees(value);
+        } else if (op == Ops.MathOps.RAD) {
+            return CollQueryFunctions.radians(value);
+        } else if (op == Ops.MathOps.TAN) {
+            return Math.tan(value);
+        } else if (op == Ops.MathOps.TANH) {
+            return Math.tanh(value);
+        } else if (op == Ops.MathOps.SQRT) {
+            return Math.sqrt(value);
+        } else if (op == Ops.MathOps.SIN) {
+            return Math.sin(value);
+        } else if (op == Ops.MathOps.SINH) {
+            return Math.sinh(value);
+        } else if (op == Ops.MathOps.LN) {
+            return Math.log(value);
+        } else if (op == Ops.MathOps.FLOOR) {
+            return Math.floor(value);
+        } else if (op == Ops.MathOps.EXP) {
+            return Math.exp(value);
+        } else {
+            throw new UnsupportedOperationException("Unsupported operator " + op);
+        }
+    }
+
+    private static Number math(Operator<?> op, Number left, Number right) {
+        if (op == Ops.MathOps.POWER) {
+            return Math.pow(left.doubleValue(), right.doubleValue());
+        } else if (op == Ops.MathOps.LOG) {
+            return CollQueryFunctions.log(left.doubleValue(), right.intValue());
+        } else if (op == Ops.MathOps.MIN || op == Ops.MathOps.MAX) {
+            boolean min = op == Ops.MathOps.MIN;
+            if (left instanceof Double || right instanceof Double) {
+                return min ? Math.min(left.doubleValue(), right.doubleValue())
+                           : Math.max(left.doubleValue(), right.doubleValue());
+            } else if (left instanceof Float || right instanceof Float) {
+                return min ? Math.min(left.floatValue(), right.floatValue())
+                           : Math.max(left.floatValue(), right.floatValue());
+            } else if (left instanceof Long || right instanceof Long) {
+                return min ? Math.min(left.longValue(), right.longValue())
+                           : Math.max(left.longValue(), right.longValue());
+            } else {
+                return min ? Math.min(left.intValue(), right.intValue())
+                           : Math.max(left.intValue(), right.intValue());
+            }
+        } else {
+            throw new UnsupportedOperationException("Unsupported operator " + op);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        } else if (e instanceof Error) {
+            throw (Error)e;
+        } else {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void makeAccessible(AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+        } catch (SecurityException e) {
+            // use public access
+        }
+    }
+
+    private static Method getAccessor(Class<?> owner, String property) {
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(owner);
+            for (PropertyDescriptor pd : beanInfo.getPropertyDescriptors()) {
+                if (pd.getName().equals(property)) {
+                    return pd.getReadMethod();
+                }
+            }
+            return null;
+        } catch (IntrospectionException e) {
+            return null;
+        }
+    }
+
+    private static Field getField(Class<?> owner, String property) {
+        try {
+            return owner.getField(property);
+        } catch (NoSuchFieldException e) {
+            return ReflectionUtils.getFieldOrNull(owner, property);
+        }
+    }
+
+}
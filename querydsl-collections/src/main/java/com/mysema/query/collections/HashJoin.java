@@ -0,0 +1,348 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.primitives.Primitives;
+import com.mysema.codegen.Evaluator;
+import com.mysema.commons.lang.IteratorAdapter;
+import com.mysema.query.JoinExpression;
+import com.mysema.query.JoinType;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.SubQueryExpression;
+import com.mysema.query.types.TemplateExpression;
+import com.mysema.query.types.Visitor;
+
+/**
+ * HashJoin evaluates queries over multiple sources by joining the sources via hash indexes
+ * on equality conditions between the sources.
+ *
+ * <p>The sources are joined from left to right. For each source the equality conditions
+ * between the source and the previous sources are used to build a hash index of the source,
+ * which is then probed with the rows of the previous sources. The other conditions are applied
+ * as a filter on the joined rows.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class HashJoin {
+
+    private static final class RootsVisitor implements Visitor<Void, Set<Expression<?>>> {
+
+        private static final RootsVisitor DEFAULT = new RootsVisitor();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+            // not supported in collection queries
+            roots.add(expr);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression<?>) {
+                    ((Expression<?>)arg).accept(this, roots);
+                }
+            }
+            return null;
+        }
+
+    }
+
+    private final DefaultEvaluatorFactory evaluatorFactory;
+
+    public HashJoin(DefaultEvaluatorFactory evaluatorFactory) {
+        this.evaluatorFactory = evaluatorFactory;
+    }
+
+    /**
+     * Evaluate the joins and the where condition of the given query
+     *
+     * @param metadata
+     * @param iterables
+     * @return joined rows or null, if the query has no equality conditions to join on
+     */
+    @Nullable
+    public List<Object[]> evaluate(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        if (metadata.getWhere() == null) {
+            return null;
+        }
+        List<Expression<?>> sources = new ArrayList<Expression<?>>(metadata.getJoins().size());
+        for (JoinExpression join : metadata.getJoins()) {
+            if (join.getType() != JoinType.DEFAULT) {
+                return null;
+            }
+            sources.add(join.getTarget());
+        }
+        List<Predicate> conditions = new ArrayList<Predicate>();
+        addConditions(metadata.getWhere(), conditions);
+
+        // assign equality conditions to the sources
+        List<List<Operation<?>>> joinConditions = new ArrayList<List<Operation<?>>>(sources.size());
+        boolean hasJoins = false;
+        for (int i = 0; i < sources.size(); i++) {
+            List<Operation<?>> sourceConditions = new ArrayList<Operation<?>>();
+            if (i > 0) {
+                Set<Expression<?>> previous = new HashSet<Expression<?>>(sources.subList(0, i));
+                Set<Expression<?>> current = Collections.<Expression<?>>singleton(sources.get(i));
+                for (int j = 0; j < conditions.size(); j++) {
+                    Operation<?> condition = getJoinCondition(conditions.get(j), previous, current);
+                    if (condition != null) {
+                        sourceConditions.add(condition);
+                        conditions.remove(j--);
+                    }
+                }
+            }
+            hasJoins |= !sourceConditions.isEmpty();
+            joinConditions.add(sourceConditions);
+        }
+        if (!hasJoins) {
+            return null;
+        }
+
+        // join
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (Object element : getList(iterables.get(sources.get(0)))) {
+            rows.add(new Object[]{element});
+        }
+        for (int i = 1; i < sources.size() && !rows.isEmpty(); i++) {
+            List<?> elements = getList(iterables.get(sources.get(i)));
+            if (joinConditions.get(i).isEmpty()) {
+                rows = crossJoin(rows, elements);
+            } else {
+                rows = hashJoin(metadata, sources.subList(0, i), sources.get(i), joinConditions.get(i),
+                        rows, elements);
+            }
+        }
+
+        // filter
+        Predicate filter = ExpressionUtils.allOf(conditions);
+        if (filter != null && !rows.isEmpty()) {
+            Evaluator<Boolean> evaluator = evaluatorFactory.create(metadata, sources, filter);
+            List<Object[]> filtered = new ArrayList<Object[]>();
+            for (Object[] row : rows) {
+                try {
+                    if (Boolean.TRUE.equals(evaluator.evaluate(row))) {
+                        filtered.add(row);
+                    }
+                } catch (RuntimeException e) {
+                    // null values in the path fail the condition
+                    if (!isNullPointer(e)) {
+                        throw e;
+                    }
+                }
+            }
+            rows = filtered;
+        }
+        return rows;
+    }
+
+    private List<Object[]> crossJoin(List<Object[]> rows, List<?> elements) {
+        List<Object[]> rv = new ArrayList<Object[]>(rows.size() * elements.size());
+        for (Object[] row : rows) {
+            for (Object element : elements) {
+                rv.add(append(row, element));
+            }
+        }
+        return rv;
+    }
+
+    private List<Object[]> hashJoin(QueryMetadata metadata, List<Expression<?>> previous,
+            Expression<?> source, List<Operation<?>> conditions, List<Object[]> rows, List<?> elements) {
+        // the first argument of the condition refers to the previous sources
+        List<Evaluator<?>> probeKeys = new ArrayList<Evaluator<?>>(conditions.size());
+        List<Evaluator<?>> buildKeys = new ArrayList<Evaluator<?>>(conditions.size());
+        List<Expression<?>> sources = Collections.<Expression<?>>singletonList(source);
+        for (Operation<?> condition : conditions) {
+            probeKeys.add(evaluatorFactory.create(metadata, previous, condition.getArg(0)));
+            buildKeys.add(evaluatorFactory.create(metadata, sources, condition.getArg(1)));
+        }
+
+        // build
+        Map<Object, List<Object>> index = new LinkedHashMap<Object, List<Object>>();
+        for (Object element : elements) {
+            Object key = getKey(buildKeys, new Object[]{element});
+            if (key != null) {
+                List<Object> matches = index.get(key);
+                if (matches == null) {
+                    matches = new ArrayList<Object>(1);
+                    index.put(key, matches);
+                }
+                matches.add(element);
+            }
+        }
+
+        // probe
+        List<Object[]> rv = new ArrayList<Object[]>();
+        for (Object[] row : rows) {
+            Object key = getKey(probeKeys, row);
+            List<Object> matches = key != null ? index.get(key) : null;
+            if (matches != null) {
+                for (Object element : matches) {
+                    rv.add(append(row, element));
+                }
+            }
+        }
+        return rv;
+    }
+
+    @Nullable
+    private Object getKey(List<Evaluator<?>> evaluators, Object[] row) {
+        try {
+            if (evaluators.size() == 1) {
+                return evaluators.get(0).evaluate(row);
+            } else {
+                Object[] key = new Object[evaluators.size()];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = evaluators.get(i).evaluate(row);
+                    if (key[i] == null) {
+                        return null;
+                    }
+                }
+                return Arrays.asList(key);
+            }
+        } catch (RuntimeException e) {
+            if (isNullPointer(e)) {
+                return null;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean isNullPointer(Throwable e) {
+        while (e != null) {
+            if (e instanceof NullPointerException) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    private static Object[] append(Object[] row, Object element) {
+        Object[] rv = new Object[row.length + 1];
+        System.arraycopy(row, 0, rv, 0, row.length);
+        rv[row.length] = element;
+        return rv;
+    }
+
+    private static List<?> getList(Iterable<?> iterable) {
+        if (iterable instanceof List) {
+            return (List<?>)iterable;
+        } else {
+            return IteratorAdapter.asList(iterable.iterator());
+        }
+    }
+
+    private static void addConditions(Predicate predicate, List<Predicate> conditions) {
+        if (predicate instanceof Operation && ((Operation<?>)predicate).getOperator() == Ops.AND) {
+            for (Expression<?> arg : ((Operation<?>)predicate).getArgs()) {
+                addConditions((Predicate)arg, conditions);
+            }
+        } else {
+            conditions.add(predicate);
+        }
+    }
+
+    /**
+     * Get the given condition as an equality with the previous sources on the left and the
+     * current source on the right or null, if the condition can't be used for joining
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Nullable
+    private static Operation<?> getJoinCondition(Predicate predicate, Set<Expression<?>> previous,
+            Set<Expression<?>> current) {
+        if (!(predicate instanceof Operation) || ((Operation<?>)predicate).getOperator() != Ops.EQ) {
+            return null;
+        }
+        Operation<?> operation = (Operation<?>)predicate;
+        Expression<?> left = operation.getArg(0), right = operation.getArg(1);
+        // only types, for which equals matches the Java equality used in the filter
+        Class<?> type = left.getType();
+        if (!type.equals(right.getType()) || Primitives.wrap(type).equals(Double.class)
+                || Primitives.wrap(type).equals(Float.class)) {
+            return null;
+        }
+        Set<Expression<?>> leftRoots = getRoots(left), rightRoots = getRoots(right);
+        if (leftRoots.isEmpty() || rightRoots.isEmpty()) {
+            return null;
+        } else if (previous.containsAll(leftRoots) && current.containsAll(rightRoots)) {
+            return operation;
+        } else if (previous.containsAll(rightRoots) && current.containsAll(leftRoots)) {
+            return (Operation) ExpressionUtils.eq((Expression)right, (Expression)left);
+        } else {
+            return null;
+        }
+    }
+
+    private static Set<Expression<?>> getRoots(Expression<?> expr) {
+        Set<Expression<?>> roots = new HashSet<Expression<?>>();
+        expr.accept(RootsVisitor.DEFAULT, roots);
+        return roots;
+    }
+
+}
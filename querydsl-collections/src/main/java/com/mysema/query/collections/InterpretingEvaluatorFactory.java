@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mysema.codegen.Evaluator;
+import com.mysema.codegen.EvaluatorFactory;
+import com.mysema.query.JoinExpression;
+import com.mysema.query.JoinType;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.collections.ExpressionInterpreter.Node;
+import com.mysema.query.collections.ExpressionInterpreter.UnsupportedExpressionException;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Predicate;
+
+/**
+ * InterpretingEvaluatorFactory evaluates ColQuery queries by interpreting pre-built expression
+ * trees instead of compiling Java sources. Expressions which can't be interpreted are evaluated
+ * via the compiled evaluators of {@link DefaultEvaluatorFactory}.
+ *
+ * <p>Usage</p>
+ * <pre>
+ * QueryEngine engine = new DefaultQueryEngine(
+ *     new InterpretingEvaluatorFactory(CollQueryTemplates.DEFAULT));
+ * List&lt;Cat&gt; cats = new CollQuery(engine).from(cat, cats).where(cat.name.eq("Bob")).list(cat);
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class InterpretingEvaluatorFactory extends DefaultEvaluatorFactory {
+
+    private static final class InterpretedEvaluator<T> implements Evaluator<T> {
+
+        private final Node node;
+
+        private final Class<? extends T> type;
+
+        InterpretedEvaluator(Node node, Class<? extends T> type) {
+            this.node = node;
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T evaluate(Object... args) {
+            return (T) node.eval(args);
+        }
+
+        @Override
+        public Class<? extends T> getType() {
+            return type;
+        }
+
+    }
+
+    private final CollQueryTemplates templates;
+
+    public InterpretingEvaluatorFactory(CollQueryTemplates templates) {
+        super(templates);
+        this.templates = templates;
+    }
+
+    public InterpretingEvaluatorFactory(CollQueryTemplates templates, EvaluatorFactory factory) {
+        super(templates, factory);
+        this.templates = templates;
+    }
+
+    @Override
+    public <T> Evaluator<T> create(QueryMetadata metadata, List<? extends Expression<?>> sources,
+            Expression<T> projection) {
+        try {
+            Node node = createInterpreter(metadata, sources).create(projection);
+            return new InterpretedEvaluator<T>(node, projection.getType());
+        } catch (UnsupportedExpressionException e) {
+            return super.create(metadata, sources, projection);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    public <T> Evaluator<List<T>> createEvaluator(QueryMetadata metadata,
+            Expression<? extends T> source, Predicate filter) {
+        final Node node;
+        try {
+            node = createInterpreter(metadata, Collections.singletonList(source)).create(filter);
+        } catch (UnsupportedExpressionException e) {
+            return super.createEvaluator(metadata, source, filter);
+        }
+        return new Evaluator<List<T>>() {
+            @Override
+            public List<T> evaluate(Object... args) {
+                List<T> rv = new ArrayList<T>();
+                Object[] row = new Object[1];
+                for (Object element : (Iterable<?>)args[0]) {
+                    row[0] = element;
+                    if (matches(node, row)) {
+                        rv.add((T)element);
+                    }
+                }
+                return rv;
+            }
+
+            @Override
+            public Class getType() {
+                return List.class;
+            }
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    public Evaluator<List<Object[]>> createEvaluator(QueryMetadata metadata,
+            List<JoinExpression> joins, Predicate filter) {
+        List<Expression<?>> sources = new ArrayList<Expression<?>>(joins.size());
+        for (JoinExpression join : joins) {
+            if (join.getType() != JoinType.DEFAULT) {
+                return super.createEvaluator(metadata, joins, filter);
+            }
+            sources.add(join.getTarget());
+        }
+        final Node node;
+        try {
+            node = filter != null ? createInterpreter(metadata, sources).create(filter) : null;
+        } catch (UnsupportedExpressionException e) {
+            return super.createEvaluator(metadata, joins, filter);
+        }
+        return new Evaluator<List<Object[]>>() {
+            @Override
+            public List<Object[]> evaluate(Object... args) {
+                List<Object[]> rv = new ArrayList<Object[]>();
+                join(args, 0, new Object[args.length], node, rv);
+                return rv;
+            }
+
+            @Override
+            public Class getType() {
+                return List.class;
+            }
+        };
+    }
+
+    private ExpressionInterpreter createInterpreter(QueryMetadata metadata,
+            List<? extends Expression<?>> sources) {
+        List<String> names = new ArrayList<String>(sources.size());
+        for (Expression<?> source : sources) {
+            names.add(source.toString());
+        }
+        return new ExpressionInterpreter(templates, metadata, names);
+    }
+
+    private static void join(Object[] iterables, int index, Object[] row, Node filter,
+            List<Object[]> rv) {
+        for (Object element : (Iterable<?>)iterables[index]) {
+            row[index] = element;
+            if (index < row.length - 1) {
+                join(iterables, index + 1, row, filter, rv);
+            } else if (filter == null || matches(filter, row)) {
+                rv.add(row.clone());
+            }
+        }
+    }
+
+    private static boolean matches(Node filter, Object[] row) {
+        try {
+            return Boolean.TRUE.equals(filter.eval(row));
+        } catch (NullPointerException e) {
+            // null values in the path fail the condition
+            return false;
+        }
+    }
+
+}
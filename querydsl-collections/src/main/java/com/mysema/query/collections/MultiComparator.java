@@ -44,13 +44,24 @@ public class MultiComparator<T> implements Comparator<T>, Serializable {
     @Override
     public int compare(T o1, T o2) {
         if (o1.getClass().isArray()) {
-            return innerCompare(ev.evaluate((Object[])o1), ev.evaluate((Object[])o2));
+            return compareKeys(ev.evaluate((Object[])o1), ev.evaluate((Object[])o2));
         } else {
-            return innerCompare(ev.evaluate(o1), ev.evaluate(o2));
+            return compareKeys(ev.evaluate(o1), ev.evaluate(o2));
         }
     }
 
-    private int innerCompare(Object[] o1, Object[] o2) {
+    Evaluator<Object[]> getEvaluator() {
+        return ev;
+    }
+
+    /**
+     * Compare the given evaluated order keys
+     *
+     * @param o1
+     * @param o2
+     * @return
+     */
+    int compareKeys(Object[] o1, Object[] o2) {
         for (int i = 0; i < o1.length; i++) {
             int res;
             if (o1[i] == null) {
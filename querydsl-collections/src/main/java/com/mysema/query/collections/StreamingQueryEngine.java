@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.collections;
+
+import java.util.Map;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.types.Expression;
+
+/**
+ * StreamingQueryEngine is a {@link QueryEngine} which evaluates query results lazily
+ *
+ * @author tiwe
+ *
+ */
+public interface StreamingQueryEngine extends QueryEngine {
+
+    /**
+     * Evaluate the given query and return the projection as an iterator
+     *
+     * @param metadata
+     * @param iterables
+     * @param projection
+     * @return
+     */
+    <T> CloseableIterator<T> iterate(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables,
+            Expression<T> projection);
+
+}
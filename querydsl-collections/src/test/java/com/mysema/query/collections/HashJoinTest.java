@@ -0,0 +1,85 @@
+package com.mysema.query.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.Tuple;
+
+public class HashJoinTest {
+
+    private final QCat cat = new QCat("cat");
+
+    private final QCat otherCat = new QCat("otherCat");
+
+    private final QCat mate = new QCat("mate");
+
+    private final List<Cat> cats = Arrays.asList(
+            new Cat("Bob", 1), new Cat("Kate", 2), new Cat("Bob", 3), new Cat("Alex", 4));
+
+    @Test
+    public void Equals() {
+        List<Tuple> rows = new CollQuery().from(cat, cats).from(otherCat, cats)
+            .where(cat.id.eq(otherCat.id))
+            .list(cat.id, otherCat.id);
+        assertEquals(4, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), rows.get(i).get(cat.id));
+            assertEquals(Integer.valueOf(i + 1), rows.get(i).get(otherCat.id));
+        }
+    }
+
+    @Test
+    public void Equals_Reversed() {
+        assertEquals(4, new CollQuery().from(cat, cats).from(otherCat, cats)
+            .where(otherCat.id.eq(cat.id))
+            .count());
+    }
+
+    @Test
+    public void Equals_With_Filter() {
+        List<Tuple> rows = new CollQuery().from(cat, cats).from(otherCat, cats)
+            .where(cat.name.eq(otherCat.name), cat.id.ne(otherCat.id))
+            .list(cat.id, otherCat.id);
+        assertEquals(2, rows.size());
+        assertEquals(Integer.valueOf(1), rows.get(0).get(cat.id));
+        assertEquals(Integer.valueOf(3), rows.get(0).get(otherCat.id));
+        assertEquals(Integer.valueOf(3), rows.get(1).get(cat.id));
+        assertEquals(Integer.valueOf(1), rows.get(1).get(otherCat.id));
+    }
+
+    @Test
+    public void Expression_Keys() {
+        assertEquals(3, new CollQuery().from(cat, cats).from(otherCat, cats)
+            .where(otherCat.id.eq(cat.id.add(1)))
+            .count());
+    }
+
+    @Test
+    public void Three_Sources() {
+        List<Integer> ids = new CollQuery().from(cat, cats).from(otherCat, cats).from(mate, cats)
+            .where(cat.name.eq(otherCat.name), otherCat.id.eq(mate.id), mate.id.gt(cat.id))
+            .list(mate.id);
+        assertEquals(Arrays.asList(3), ids);
+    }
+
+    @Test
+    public void Cross_Join_Then_Equals() {
+        assertEquals(4 * 4, new CollQuery().from(cat, cats).from(otherCat, cats).from(mate, cats)
+            .where(mate.id.eq(cat.id))
+            .count());
+    }
+
+    @Test
+    public void Ordered() {
+        List<Integer> ids = new CollQuery().from(cat, cats).from(otherCat, cats)
+            .where(cat.name.eq(otherCat.name))
+            .orderBy(cat.id.desc(), otherCat.id.asc())
+            .list(otherCat.id);
+        assertEquals(Arrays.asList(4, 1, 3, 2, 1, 3), ids);
+    }
+
+}
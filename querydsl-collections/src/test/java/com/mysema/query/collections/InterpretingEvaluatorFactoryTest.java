@@ -0,0 +1,83 @@
+package com.mysema.query.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.expr.CaseBuilder;
+import com.mysema.query.types.expr.Param;
+
+public class InterpretingEvaluatorFactoryTest {
+
+    private final QueryEngine engine = new DefaultQueryEngine(
+            new InterpretingEvaluatorFactory(CollQueryTemplates.DEFAULT));
+
+    private final QCat cat = new QCat("cat");
+
+    private final QCat otherCat = new QCat("otherCat");
+
+    private final List<Cat> cats = Arrays.asList(
+            new Cat("Bob", 1), new Cat("Kate", 2), new Cat(null, 3), new Cat("alex", 4));
+
+    private void assertSame(Predicate filter, Expression<?> projection) {
+        assertEquals(new CollQuery().from(cat, cats).where(filter).list(projection),
+                     new CollQuery(engine).from(cat, cats).where(filter).list(projection));
+    }
+
+    @Test
+    public void Filters() {
+        assertSame(cat.id.eq(2), cat.id);
+        assertSame(cat.id.ne(2), cat.id);
+        assertSame(cat.id.gt(1).and(cat.id.loe(3)), cat.id);
+        assertSame(cat.id.between(2, 3).or(cat.id.eq(4)), cat.id);
+        assertSame(cat.id.in(1, 4), cat.id);
+        assertSame(cat.name.eq("Bob").not(), cat.id);
+        assertSame(cat.name.isNull(), cat.id);
+        assertSame(cat.name.startsWithIgnoreCase("a"), cat.id);
+        assertSame(cat.name.like("K%"), cat.id);
+        assertSame(cat.name.length().goe(4), cat.id);
+        assertSame(cat.name.lower().contains("o"), cat.id);
+        assertSame(cat.id.mod(2).eq(0), cat.id);
+    }
+
+    @Test
+    public void Projections() {
+        assertSame(cat.id.gt(0), cat.id.add(1));
+        assertSame(cat.id.gt(0), cat.id.multiply(2).subtract(1));
+        assertSame(cat.id.gt(0), cat.name.coalesce("unknown").asString());
+        assertSame(cat.id.gt(0), cat.name.stringValue());
+        assertSame(cat.id.gt(0), new CaseBuilder().when(cat.id.eq(1)).then("one").otherwise("many"));
+        assertSame(cat.name.isNotNull(), cat.name.concat("!"));
+        assertSame(cat.name.isNotNull(), cat.name.upper().substring(1));
+    }
+
+    @Test
+    public void Order() {
+        assertEquals(Arrays.asList(4, 3, 2, 1),
+                new CollQuery(engine).from(cat, cats).orderBy(cat.id.desc()).list(cat.id));
+    }
+
+    @Test
+    public void Params() {
+        Param<Integer> id = new Param<Integer>(Integer.class, "id");
+        assertEquals(Arrays.asList("Kate"),
+                new CollQuery(engine).from(cat, cats).where(cat.id.eq(id)).set(id, 2).list(cat.name));
+    }
+
+    @Test
+    public void Multiple_Sources() {
+        List<Tuple> rows = new CollQuery(engine).from(cat, cats).from(otherCat, cats)
+            .where(cat.id.lt(otherCat.id), otherCat.name.startsWith("K"))
+            .list(cat.id, otherCat.id);
+        assertEquals(1, rows.size());
+        assertEquals(Integer.valueOf(1), rows.get(0).get(cat.id));
+        assertEquals(Integer.valueOf(2), rows.get(0).get(otherCat.id));
+    }
+
+}
@@ -14,12 +14,18 @@
 package com.mysema.query.collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Test;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.mysema.commons.lang.CloseableIterator;
 import com.mysema.commons.lang.IteratorAdapter;
 import com.mysema.query.QueryModifiers;
 import com.mysema.query.SearchResults;
@@ -59,6 +65,86 @@ public class PagingTest extends AbstractQueryTest {
         assertEquals(size, IteratorAdapter.asList(createQuery(modifiers).iterate(var)).size());
     }
 
+    @Test
+    public void Ordered_Limit() {
+        List<Integer> values = Arrays.asList(5, 3, 9, 1, 7, 3, 8);
+        assertEquals(Arrays.asList(1, 3, 3), new CollQuery().from(var, values)
+                .orderBy(var.asc()).limit(3).list(var));
+        assertEquals(Arrays.asList(8, 7), new CollQuery().from(var, values)
+                .orderBy(var.desc()).offset(1).limit(2).list(var));
+        assertEquals(Arrays.asList(4, 6), new CollQuery().from(var, values)
+                .where(var.lt(9)).orderBy(var.asc()).offset(2).limit(2).list(var.add(1)));
+    }
+
+    @Test
+    public void Distinct_Limit() {
+        List<Integer> values = Arrays.asList(1, 1, 2, 2, 3, 3);
+        assertEquals(Arrays.asList(2, 3), new CollQuery().from(var, values)
+                .distinct().offset(1).limit(2).list(var));
+    }
+
+    @Test
+    public void Limit_Is_Lazy() {
+        CountingIterable values = new CountingIterable(ints);
+        assertEquals(Arrays.asList(3, 4), new CollQuery().from(var, values)
+                .where(var.gt(2)).limit(2).list(var));
+        assertEquals(4, values.consumed);
+    }
+
+    @Test
+    public void Iterate_Is_Lazy() {
+        CountingIterable values = new CountingIterable(ints);
+        CloseableIterator<Integer> iterator = new CollQuery().from(var, values).iterate(var.multiply(2));
+        assertEquals(Integer.valueOf(2), iterator.next());
+        assertEquals(1, values.consumed);
+    }
+
+    @Test
+    public void Exists_Is_Lazy() {
+        CountingIterable values = new CountingIterable(ints);
+        assertTrue(new CollQuery().from(var, values).where(var.eq(3)).exists());
+        assertEquals(3, values.consumed);
+    }
+
+    @Test
+    public void Exists_With_Offset() {
+        assertTrue(new CollQuery().from(var, ints).where(var.gt(7)).offset(1).exists());
+        assertFalse(new CollQuery().from(var, ints).where(var.gt(7)).offset(2).exists());
+        assertTrue(new CollQuery().from(var, Arrays.asList(1, 1, 2)).distinct().offset(1).exists());
+        assertFalse(new CollQuery().from(var, Arrays.asList(1, 1, 1)).distinct().offset(1).exists());
+    }
+
+    @Test
+    public void UniqueResult_Is_Lazy() {
+        CountingIterable values = new CountingIterable(ints);
+        assertEquals(Integer.valueOf(3), new CollQuery().from(var, values).where(var.gt(2))
+                .limit(1).uniqueResult(var));
+        assertEquals(3, values.consumed);
+    }
+
+    private static class CountingIterable implements Iterable<Integer> {
+
+        private final List<Integer> values;
+
+        private int consumed;
+
+        public CountingIterable(List<Integer> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return Iterators.transform(values.iterator(), new Function<Integer, Integer>() {
+                @Override
+                public Integer apply(Integer input) {
+                    consumed++;
+                    return input;
+                }
+            });
+        }
+
+    }
+
     private CollQuery createQuery(QueryModifiers modifiers) {
         CollQuery query = new CollQuery().from(var, ints);
         if (modifiers != null) {
@@ -218,7 +218,7 @@ public class DefaultQueryMetadata implements QueryMetadata, Cloneable {
 
     @Override
     public void clearWhere() {
-        where = new BooleanBuilder();
+        where = null;
     }
 
     @Override
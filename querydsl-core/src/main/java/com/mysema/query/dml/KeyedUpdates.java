@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.dml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Iterables;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.NullExpression;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.expr.SimpleOperation;
+
+/**
+ * KeyedUpdates collects the values of update columns per key value for bulk updates. The
+ * values of a chunk of keys are applied in a single statement of the form
+ *
+ * <pre>
+ * update ... set column = case key when ? then ? ... else column end where key in (...)
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public final class KeyedUpdates {
+
+    /**
+     * Default maximum amount of bind parameters per statement, conservative since the database
+     * is not known
+     */
+    public static final int DEFAULT_MAX_PARAMETERS = 2000;
+
+    /**
+     * Default maximum amount of key values per statement
+     */
+    public static final int DEFAULT_MAX_KEYS = 1000;
+
+    private final Path<?> key;
+
+    private final Map<Path<?>, Map<?, ?>> columns = new LinkedHashMap<Path<?>, Map<?, ?>>();
+
+    private final Set<Object> keys = new LinkedHashSet<Object>();
+
+    public KeyedUpdates(Path<?> key) {
+        this.key = key;
+    }
+
+    /**
+     * Add the values per key for the given column
+     *
+     * @param key key column
+     * @param path column to be updated
+     * @param values values per key value
+     */
+    public void add(Path<?> key, Path<?> path, Map<?, ?> values) {
+        if (!this.key.equals(key)) {
+            throw new IllegalArgumentException("Keyed updates need to use the same key " +
+                    this.key + ", got " + key);
+        }
+        if (values.containsKey(null)) {
+            throw new IllegalArgumentException("Null key for " + path);
+        }
+        columns.put(path, values);
+        keys.addAll(values.keySet());
+    }
+
+    /**
+     * Get the key column
+     *
+     * @return
+     */
+    public Path<?> getKey() {
+        return key;
+    }
+
+    /**
+     * Get whether no key values have been given
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    /**
+     * Split the key values into chunks using the default limits
+     *
+     * @return
+     */
+    public Iterable<List<Object>> getChunks() {
+        return getChunks(DEFAULT_MAX_PARAMETERS, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * Split the key values into chunks
+     *
+     * @param maxParameters maximum amount of bind parameters per statement
+     * @param maxKeys maximum amount of key values per statement
+     * @return
+     */
+    public Iterable<List<Object>> getChunks(int maxParameters, int maxKeys) {
+        // one parameter for the in list and two for each case
+        int size = Math.min(keys.size(), Math.min(maxKeys, maxParameters / (1 + 2 * columns.size())));
+        return Iterables.partition(keys, Math.max(size, 1));
+    }
+
+    /**
+     * Get the case expressions of the updated columns for the given key values
+     *
+     * @param chunk key values
+     * @return
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Map<Path<?>, Expression<?>> getUpdates(Collection<?> chunk) {
+        Map<Path<?>, Expression<?>> updates = new LinkedHashMap<Path<?>, Expression<?>>();
+        for (Map.Entry<Path<?>, Map<?, ?>> column : columns.entrySet()) {
+            Path<?> path = column.getKey();
+            Class type = path.getType();
+            List<Object> values = new ArrayList<Object>(chunk.size());
+            for (Object value : chunk) {
+                if (column.getValue().containsKey(value)) {
+                    values.add(value);
+                }
+            }
+            if (values.isEmpty()) {
+                continue;
+            }
+            // the cases are nested from the last to the first
+            Expression<?> last = SimpleOperation.create(type, Ops.CASE_EQ_ELSE, path);
+            for (int i = values.size() - 1; i >= 0; i--) {
+                Object value = column.getValue().get(values.get(i));
+                Expression<?> then = value != null ? new ConstantImpl(value) : new NullExpression(type);
+                last = SimpleOperation.create(type, Ops.CASE_EQ_WHEN, key,
+                        new ConstantImpl(values.get(i)), then, last);
+            }
+            updates.put(path, SimpleOperation.create(type, Ops.CASE_EQ, key, last));
+        }
+        return updates;
+    }
+
+    /**
+     * Get the condition which restricts the update to the given key values
+     *
+     * @param chunk key values
+     * @return
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Predicate getCondition(Collection<?> chunk) {
+        return ExpressionUtils.in((Expression)key, (Collection)chunk);
+    }
+
+}
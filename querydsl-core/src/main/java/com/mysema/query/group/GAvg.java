@@ -13,8 +13,6 @@
  */
 package com.mysema.query.group;
 
-import java.math.BigDecimal;
-
 import com.mysema.query.types.Expression;
 import com.mysema.util.MathUtils;
 
@@ -36,21 +34,19 @@ public class GAvg<T extends Number & Comparable<T>> extends AbstractGroupExpress
     public GroupCollector<T, T> createGroupCollector() {
         return new GroupCollector<T, T>() {
             private int count = 0;
-            private BigDecimal sum = BigDecimal.ZERO;
+            private final NumberAccumulator sum = NumberAccumulator.create(getType());
 
             @Override
-            public void add(T t) {                
+            public void add(T t) {
                 count++;
                 if (t != null) {
-                    sum = sum.add(new BigDecimal(t.toString()));    
+                    sum.add(t);
                 }
-                
             }
 
             @Override
             public T get() {
-                BigDecimal avg = sum.divide(BigDecimal.valueOf(count));
-                return (T) MathUtils.cast(avg, (Class<T>) getType());
+                return (T) MathUtils.cast(sum.getAverage(count), (Class<T>) getType());
             }
 
         };
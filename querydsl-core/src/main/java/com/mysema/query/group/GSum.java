@@ -13,8 +13,6 @@
  */
 package com.mysema.query.group;
 
-import java.math.BigDecimal;
-
 import com.mysema.query.types.Expression;
 import com.mysema.util.MathUtils;
 
@@ -35,18 +33,18 @@ public class GSum<T extends Number & Comparable<T>> extends AbstractGroupExpress
     @Override
     public GroupCollector<T, T> createGroupCollector() {
         return new GroupCollector<T, T>() {
-            private BigDecimal sum = BigDecimal.ZERO;
+            private final NumberAccumulator sum = NumberAccumulator.create(getType());
 
             @Override
             public void add(T t) {
                 if (t != null) {
-                    sum = sum.add(new BigDecimal(t.toString()));    
-                }                
+                    sum.add(t);
+                }
             }
 
             @Override
             public T get() {
-                return (T) MathUtils.cast(sum, (Class<T>) getType());
+                return (T) MathUtils.cast(sum.getSum(), (Class<T>) getType());
             }
 
         };
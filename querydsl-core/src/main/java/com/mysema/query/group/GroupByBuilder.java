@@ -18,6 +18,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.mysema.query.ResultTransformer;
 import com.mysema.query.types.Expression;
 import com.mysema.query.types.FactoryExpression;
@@ -92,6 +93,59 @@ public class GroupByBuilder<K> {
             
         };
     }
-    
-    
+
+    /**
+     * Get the results as a closeable iterator of groups, the results need to be ordered by the key
+     *
+     * @param expressions
+     * @return
+     */
+    public ResultTransformer<CloseableIterator<Group>> iterate(Expression<?>... expressions) {
+        return new GroupByIterate<K, Group>(key, expressions);
+    }
+
+    /**
+     * Get the results as a closeable iterator, the results need to be ordered by the key
+     *
+     * @param expression
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <V> ResultTransformer<CloseableIterator<V>> iterate(Expression<V> expression) {
+        final Expression<V> lookup = (Expression<V>)
+                (expression instanceof GroupExpression ? ((GroupExpression<?,?> )expression).getExpression() : expression);
+        return new GroupByIterate<K, V>(key, expression) {
+
+            @Override
+            protected V transform(Group group) {
+                return group.getOne(lookup);
+            }
+
+        };
+    }
+
+    /**
+     * Get the results as a closeable iterator, the results need to be ordered by the key
+     *
+     * @param expression
+     * @return
+     */
+    public <V> ResultTransformer<CloseableIterator<V>> iterate(FactoryExpression<V> expression) {
+        final FactoryExpression<?> transformation = FactoryExpressionUtils.wrap(expression);
+        List<Expression<?>> args = transformation.getArgs();
+        return new GroupByIterate<K, V>(key, args.toArray(new Expression<?>[args.size()])) {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            protected V transform(Group group) {
+                List<Object> args = new ArrayList<Object>(groupExpressions.size() - 1);
+                for (int i = 1; i < groupExpressions.size(); i++) {
+                    args.add(group.getGroup(groupExpressions.get(i)));
+                }
+                return (V)transformation.newInstance(args.toArray());
+            }
+
+        };
+    }
+
 }
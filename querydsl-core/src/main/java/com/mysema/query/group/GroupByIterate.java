@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.group;
+
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.query.Projectable;
+import com.mysema.query.Tuple;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.FactoryExpression;
+
+/**
+ * GroupByIterate groups results by the first expression and provides the groups as an iterator.
+ *
+ * <p>The results need to be ordered by the group key, since a group is completed as soon as
+ * the key of the next row differs from the key of the current group. Only the current group
+ * is kept in memory.</p>
+ *
+ * @author tiwe
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class GroupByIterate<K, V> extends AbstractGroupByTransformer<K, CloseableIterator<V>> {
+
+    GroupByIterate(Expression<K> key, Expression<?>... expressions) {
+        super(key, expressions);
+    }
+
+    @Override
+    public CloseableIterator<V> transform(Projectable projectable) {
+        FactoryExpression<Tuple> expr = getProjection();
+        final CloseableIterator<Tuple> iter = projectable.iterate(expr);
+
+        return new CloseableIterator<V>() {
+
+            @Nullable
+            private GroupImpl group;
+
+            @Nullable
+            private Object groupId;
+
+            @Override
+            public boolean hasNext() {
+                return group != null || iter.hasNext();
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (iter.hasNext()) {
+                    Object[] row = iter.next().toArray();
+                    if (group == null) {
+                        group = new GroupImpl(groupExpressions, maps);
+                        groupId = row[0];
+                    } else if (!Objects.equal(groupId, row[0])) {
+                        GroupImpl current = group;
+                        group = new GroupImpl(groupExpressions, maps);
+                        groupId = row[0];
+                        group.add(row);
+                        return transform(current);
+                    }
+                    group.add(row);
+                }
+                GroupImpl current = group;
+                group = null;
+                groupId = null;
+                return transform(current);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+                iter.close();
+            }
+
+        };
+    }
+
+    /**
+     * Creates a result object from the given group
+     *
+     * @param group
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected V transform(Group group) {
+        return (V)group;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.group;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nullable;
+
+/**
+ * NumberAccumulator sums up numbers using an accumulator specialized for the numeric type
+ *
+ * @author tiwe
+ *
+ */
+abstract class NumberAccumulator {
+
+    /**
+     * Sums up integral values as long, the sum is promoted to BigDecimal on overflow
+     */
+    static final class LongAccumulator extends NumberAccumulator {
+
+        private long sum;
+
+        @Nullable
+        private BigDecimal bigSum;
+
+        @Override
+        public void add(Number num) {
+            if (bigSum != null) {
+                bigSum = bigSum.add(toBigDecimal(num));
+            } else if (isIntegral(num)) {
+                long value = num.longValue();
+                long result = sum + value;
+                // overflow, if both operands have a different sign than the result
+                if (((sum ^ result) & (value ^ result)) < 0) {
+                    bigSum = BigDecimal.valueOf(sum).add(BigDecimal.valueOf(value));
+                } else {
+                    sum = result;
+                }
+            } else {
+                bigSum = BigDecimal.valueOf(sum).add(toBigDecimal(num));
+            }
+        }
+
+        @Override
+        public Number getSum() {
+            return bigSum != null ? bigSum : Long.valueOf(sum);
+        }
+
+        @Override
+        public Number getAverage(int count) {
+            BigDecimal total = bigSum != null ? bigSum : BigDecimal.valueOf(sum);
+            return total.divide(BigDecimal.valueOf(count));
+        }
+
+    }
+
+    /**
+     * Sums up floating point values as double
+     */
+    static final class DoubleAccumulator extends NumberAccumulator {
+
+        private double sum;
+
+        @Override
+        public void add(Number num) {
+            sum += num.doubleValue();
+        }
+
+        @Override
+        public Number getSum() {
+            return Double.valueOf(sum);
+        }
+
+        @Override
+        public Number getAverage(int count) {
+            return Double.valueOf(sum / count);
+        }
+
+    }
+
+    /**
+     * Sums up values as BigDecimal
+     */
+    static final class BigDecimalAccumulator extends NumberAccumulator {
+
+        private BigDecimal sum = BigDecimal.ZERO;
+
+        @Override
+        public void add(Number num) {
+            sum = sum.add(toBigDecimal(num));
+        }
+
+        @Override
+        public Number getSum() {
+            return sum;
+        }
+
+        @Override
+        public Number getAverage(int count) {
+            return sum.divide(BigDecimal.valueOf(count));
+        }
+
+    }
+
+    /**
+     * Create an accumulator for values of the given type
+     *
+     * @param type
+     * @return
+     */
+    public static NumberAccumulator create(Class<?> type) {
+        if (type.equals(Long.class) || type.equals(Integer.class)
+         || type.equals(Short.class) || type.equals(Byte.class)) {
+            return new LongAccumulator();
+        } else if (type.equals(Double.class) || type.equals(Float.class)) {
+            return new DoubleAccumulator();
+        } else {
+            return new BigDecimalAccumulator();
+        }
+    }
+
+    private static boolean isIntegral(Number num) {
+        return num instanceof Long || num instanceof Integer
+            || num instanceof Short || num instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number num) {
+        if (num instanceof BigDecimal) {
+            return (BigDecimal)num;
+        } else if (isIntegral(num)) {
+            return BigDecimal.valueOf(num.longValue());
+        } else {
+            return new BigDecimal(num.toString());
+        }
+    }
+
+    /**
+     * Add the given value to the sum
+     *
+     * @param num
+     */
+    public abstract void add(Number num);
+
+    /**
+     * Get the sum of the added values
+     *
+     * @return
+     */
+    public abstract Number getSum();
+
+    /**
+     * Get the average of the sum for the given count
+     *
+     * @param count
+     * @return
+     */
+    public abstract Number getAverage(int count);
+
+}
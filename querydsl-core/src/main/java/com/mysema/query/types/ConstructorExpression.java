@@ -22,6 +22,8 @@ import java.util.List;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import net.sf.cglib.reflect.FastConstructor;
+
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Primitives;
 
@@ -97,6 +99,9 @@ public class ConstructorExpression<T> extends ExpressionBase<T> implements Facto
     @Nullable
     private transient Constructor<?> constructor;
 
+    @Nullable
+    private transient FastConstructor fastConstructor;
+
     public ConstructorExpression(Class<T> type, Class<?>[] paramTypes, Expression<?>... args) {
         this(type, paramTypes, ImmutableList.copyOf(args));
     }
@@ -156,6 +161,7 @@ public class ConstructorExpression<T> extends ExpressionBase<T> implements Facto
         try {
             if (constructor == null) {
                 constructor = getType().getConstructor(parameterTypes);
+                fastConstructor = GeneratedAccessors.getConstructor(constructor);
             }
             if (constructor.isVarArgs()) {
                 Class<?>[] paramTypes = constructor.getParameterTypes();
@@ -168,9 +174,9 @@ public class ConstructorExpression<T> extends ExpressionBase<T> implements Facto
                         paramTypes[paramTypes.length - 1].getComponentType(), size);
                 cargs[cargs.length - 1] = array;
                 System.arraycopy(args, cargs.length - 1, array, 0, size);
-                return (T) constructor.newInstance(cargs);
+                return (T) invokeConstructor(cargs);
             } else {
-                return (T) constructor.newInstance(args);
+                return (T) invokeConstructor(args);
             }
 
         } catch (SecurityException e) {
@@ -186,4 +192,13 @@ public class ConstructorExpression<T> extends ExpressionBase<T> implements Facto
         }
     }
 
+    private Object invokeConstructor(Object[] args) throws InstantiationException,
+            IllegalAccessException, InvocationTargetException {
+        if (fastConstructor != null) {
+            return fastConstructor.newInstance(args);
+        } else {
+            return constructor.newInstance(args);
+        }
+    }
+
 }
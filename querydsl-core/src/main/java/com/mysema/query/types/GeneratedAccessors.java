@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.types;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import javax.annotation.Nullable;
+
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastConstructor;
+import net.sf.cglib.reflect.FastMethod;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * GeneratedAccessors provides constructor and method invokers backed by generated classes,
+ * which are used by {@link FactoryExpression} implementations instead of reflection where available
+ *
+ * <p>The generated invokers can be disabled by setting the system property
+ * {@code querydsl.generatedAccessors} to false, in which case reflection is used.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class GeneratedAccessors {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            System.getProperty("querydsl.generatedAccessors", "true"));
+
+    // the generated classes reference their type, so the values are held softly to not
+    // keep the class loaders of the types reachable via the static cache
+    private static final LoadingCache<Class<?>, Optional<FastClass>> fastClasses =
+        CacheBuilder.newBuilder().weakKeys().softValues().build(new CacheLoader<Class<?>, Optional<FastClass>>() {
+            @Override
+            public Optional<FastClass> load(Class<?> type) {
+                if (!isPublic(type)) {
+                    return Optional.absent();
+                }
+                try {
+                    return Optional.of(FastClass.create(type));
+                } catch (RuntimeException e) {
+                    return Optional.absent();
+                } catch (LinkageError e) {
+                    return Optional.absent();
+                }
+            }
+        });
+
+    private static boolean isPublic(Class<?> type) {
+        while (type != null) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+            type = type.getEnclosingClass();
+        }
+        return true;
+    }
+
+    /**
+     * Get a generated invoker for the given constructor
+     *
+     * @param constructor
+     * @return invoker or null, if not available
+     */
+    @Nullable
+    public static FastConstructor getConstructor(Constructor<?> constructor) {
+        if (!ENABLED) {
+            return null;
+        }
+        Optional<FastClass> fastClass = fastClasses.getUnchecked(constructor.getDeclaringClass());
+        if (fastClass.isPresent() && Modifier.isPublic(constructor.getModifiers())) {
+            try {
+                FastConstructor rv = fastClass.get().getConstructor(constructor);
+                return rv.getIndex() > -1 ? rv : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Get a generated invoker for the given method of the given type
+     *
+     * @param type
+     * @param method
+     * @return invoker or null, if not available
+     */
+    @Nullable
+    public static FastMethod getMethod(Class<?> type, Method method) {
+        if (!ENABLED) {
+            return null;
+        }
+        Optional<FastClass> fastClass = fastClasses.getUnchecked(type);
+        if (fastClass.isPresent() && Modifier.isPublic(method.getModifiers())) {
+            try {
+                FastMethod rv = fastClass.get().getMethod(method);
+                return rv.getIndex() > -1 ? rv : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private GeneratedAccessors() {}
+
+}
@@ -106,7 +106,7 @@ public class JavaTemplates extends Templates {
         } catch (IllegalAccessException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
-        add(Ops.MOD, "{0} % {0}");
+        add(Ops.MOD, "{0} % {1}");
 
     }
 
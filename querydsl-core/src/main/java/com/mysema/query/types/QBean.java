@@ -13,13 +13,25 @@
  */
 package com.mysema.query.types;
 
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import net.sf.cglib.reflect.FastConstructor;
+import net.sf.cglib.reflect.FastMethod;
+
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.primitives.Primitives;
 import com.mysema.util.BeanMap;
 
 /**
@@ -44,6 +56,85 @@ public class QBean<T> extends ExpressionBase<T> implements FactoryExpression<T>
 
     private static final long serialVersionUID = -8210214512730989778L;
 
+    /**
+     * Generated constructor and setter invokers for the bound properties
+     */
+    private static final class Setters {
+
+        @Nullable
+        static Setters create(Class<?> type, List<String> properties) {
+            try {
+                FastConstructor constructor = GeneratedAccessors.getConstructor(type.getConstructor());
+                if (constructor == null) {
+                    return null;
+                }
+                Map<String, Method> writeMethods = new HashMap<String, Method>();
+                for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                    if (descriptor.getWriteMethod() != null) {
+                        writeMethods.put(descriptor.getName(), descriptor.getWriteMethod());
+                    }
+                }
+                FastMethod[] methods = new FastMethod[properties.size()];
+                Class<?>[] types = new Class<?>[properties.size()];
+                for (int i = 0; i < methods.length; i++) {
+                    Method method = writeMethods.get(properties.get(i));
+                    methods[i] = method != null ? GeneratedAccessors.getMethod(type, method) : null;
+                    if (methods[i] == null) {
+                        return null;
+                    }
+                    types[i] = Primitives.wrap(method.getParameterTypes()[0]);
+                }
+                return new Setters(constructor, methods, types);
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (IntrospectionException e) {
+                return null;
+            }
+        }
+
+        private final FastConstructor constructor;
+
+        private final FastMethod[] methods;
+
+        private final Class<?>[] types;
+
+        private Setters(FastConstructor constructor, FastMethod[] methods, Class<?>[] types) {
+            this.constructor = constructor;
+            this.methods = methods;
+            this.types = types;
+        }
+
+        public Object newInstance(List<String> properties, Object[] args) {
+            Object rv;
+            try {
+                rv = constructor.newInstance();
+            } catch (InvocationTargetException e) {
+                throw new ExpressionException(e.getMessage(), e);
+            }
+            Map<String, Object> beanMap = null;
+            for (int i = 0; i < methods.length; i++) {
+                Object value = args[i];
+                if (value == null) {
+                    continue;
+                } else if (types[i].isInstance(value)) {
+                    try {
+                        methods[i].invoke(rv, new Object[]{value});
+                    } catch (InvocationTargetException e) {
+                        throw new ExpressionException(e.getMessage(), e);
+                    }
+                } else {
+                    // values which need conversion
+                    if (beanMap == null) {
+                        beanMap = new BeanMap(rv);
+                    }
+                    beanMap.put(properties.get(i), value);
+                }
+            }
+            return rv;
+        }
+
+    }
+
     private static ImmutableMap<String,Expression<?>> createBindings(Expression<?>... args) {
         Builder<String, Expression<?>> rv = ImmutableMap.builder();
         for (Expression<?> expr : args) {
@@ -72,6 +163,9 @@ public class QBean<T> extends ExpressionBase<T> implements FactoryExpression<T>
 
     private final boolean fieldAccess;
 
+    @Nullable
+    private transient volatile Optional<Setters> setters;
+
     /**
      * Create a new QBean instance
      *
@@ -184,8 +278,20 @@ public class QBean<T> extends ExpressionBase<T> implements FactoryExpression<T>
     }
 
 
+    @SuppressWarnings("unchecked")
     @Override
     public T newInstance(Object... a) {
+        if (!fieldAccess) {
+            Optional<Setters> accessors = setters;
+            if (accessors == null) {
+                // concurrent first calls may create the invokers more than once
+                accessors = Optional.fromNullable(Setters.create(getType(), bindings.keySet().asList()));
+                setters = accessors;
+            }
+            if (accessors.isPresent()) {
+                return (T) accessors.get().newInstance(bindings.keySet().asList(), a);
+            }
+        }
         try {
             T rv = getType().newInstance();
             if (fieldAccess) {
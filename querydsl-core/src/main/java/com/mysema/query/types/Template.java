@@ -62,6 +62,10 @@ public final class Template implements Serializable {
             return arg instanceof Constant ? arg.toString() : arg;
         }
 
+        public int getIndex() {
+            return index;
+        }
+
         @Override
         public boolean isString() {
             return true;
@@ -125,6 +129,10 @@ public final class Template implements Serializable {
             return transformer.apply(args.get(index));
         }
 
+        public int getIndex() {
+            return index;
+        }
+
         @Override
         public boolean isString() {
             return false;
@@ -19,6 +19,7 @@ import static com.mysema.query.group.GroupBy.list;
 import static com.mysema.query.group.GroupBy.map;
 import static com.mysema.query.group.GroupBy.set;
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -82,6 +83,25 @@ public class GroupByTest {
             row(1, "post 1", 3, "comment 3")
         );
     
+    private static final Projectable SORTED_RESULTS = projectable(
+            row(1, "post 1", 1, "comment 1"),
+            row(1, "post 1", 2, "comment 2"),
+            row(1, "post 1", 3, "comment 3"),
+            row(2, "post 2", 4, "comment 4"),
+            row(2, "post 2", 5, "comment 5"),
+            row(3, "post 3", 6, "comment 6"),
+            row(null, "null post", 7, "comment 7"),
+            row(null, "null post", 8, "comment 8")
+        );
+
+    private static final Projectable SORTED_POST_W_COMMENTS = projectable(
+            row(1, 1, "post 1", comment(1)),
+            row(1, 1, "post 1", comment(2)),
+            row(1, 1, "post 1", comment(3)),
+            row(2, 2, "post 2", comment(5)),
+            row(3, 3, "post 3", comment(6))
+    );
+
     private static final Projectable MAP_RESULTS = projectable(
             row(1, "post 1", pair(1, "comment 1")),
             row(1, "post 1", pair(2, "comment 2")),
@@ -315,6 +335,48 @@ public class GroupByTest {
         assertEquals(toSet(comment(4), comment(5)), post.getComments());
     }
     
+    @Test
+    public void Iterate() {
+        CloseableIterator<Group> results = SORTED_RESULTS.transform(
+            groupBy(postId).iterate(postName, set(commentId), list(commentText)));
+        List<Group> groups = Lists.newArrayList(results);
+        results.close();
+
+        assertEquals(4, groups.size());
+        Group group = groups.get(0);
+        assertEquals(toInt(1), group.getOne(postId));
+        assertEquals("post 1", group.getOne(postName));
+        assertEquals(toSet(1, 2, 3), group.getSet(commentId));
+        assertEquals(Arrays.asList("comment 1", "comment 2", "comment 3"), group.getList(commentText));
+
+        group = groups.get(3);
+        assertNull(group.getOne(postId));
+        assertEquals(toSet(7, 8), group.getSet(commentId));
+    }
+
+    @Test
+    public void Iterate_Empty() {
+        CloseableIterator<Group> results = projectable().transform(
+            groupBy(postId).iterate(postName, set(commentId)));
+        assertFalse(results.hasNext());
+    }
+
+    @Test
+    public void Iterate_Transform_Results() {
+        CloseableIterator<Post> results = SORTED_POST_W_COMMENTS.transform(
+            groupBy(postId).iterate(Projections.constructor(Post.class, postId, postName, set(qComment))));
+
+        Post post = results.next();
+        assertEquals(toInt(1), post.getId());
+        assertEquals(toSet(comment(1), comment(2), comment(3)), post.getComments());
+        post = results.next();
+        assertEquals(toInt(2), post.getId());
+        assertEquals(toSet(comment(5)), post.getComments());
+        post = results.next();
+        assertEquals(toInt(3), post.getId());
+        assertFalse(results.hasNext());
+    }
+
     private Integer toInt(int i) {
         return Integer.valueOf(i);
     }
@@ -0,0 +1,69 @@
+package com.mysema.query.group;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import com.mysema.query.types.path.NumberPath;
+
+public class NumberAccumulatorTest {
+
+    @Test
+    public void Create() {
+        assertTrue(NumberAccumulator.create(Integer.class) instanceof NumberAccumulator.LongAccumulator);
+        assertTrue(NumberAccumulator.create(Long.class) instanceof NumberAccumulator.LongAccumulator);
+        assertTrue(NumberAccumulator.create(Double.class) instanceof NumberAccumulator.DoubleAccumulator);
+        assertTrue(NumberAccumulator.create(BigDecimal.class) instanceof NumberAccumulator.BigDecimalAccumulator);
+    }
+
+    @Test
+    public void Long_Sum() {
+        NumberAccumulator sum = NumberAccumulator.create(Long.class);
+        sum.add(1l);
+        sum.add(2);
+        assertEquals(Long.valueOf(3l), sum.getSum());
+    }
+
+    @Test
+    public void Long_Overflow() {
+        NumberAccumulator sum = NumberAccumulator.create(Long.class);
+        sum.add(Long.MAX_VALUE);
+        sum.add(Long.MAX_VALUE);
+        sum.add(-1l);
+        assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2)).subtract(BigDecimal.ONE),
+                sum.getSum());
+    }
+
+    @Test
+    public void Long_Mixed_Values() {
+        NumberAccumulator sum = NumberAccumulator.create(Integer.class);
+        sum.add(1);
+        sum.add(new BigDecimal("1.5"));
+        assertEquals(new BigDecimal("2.5"), sum.getSum());
+    }
+
+    @Test
+    public void Double_Average() {
+        NumberAccumulator sum = NumberAccumulator.create(Double.class);
+        sum.add(1.0);
+        sum.add(2.0);
+        assertEquals(Double.valueOf(1.5), sum.getAverage(2));
+    }
+
+    @Test
+    public void Sum_And_Avg_Collectors() {
+        NumberPath<Integer> path = new NumberPath<Integer>(Integer.class, "path");
+        GroupCollector<Integer, Integer> sum = new GSum<Integer>(path).createGroupCollector();
+        GroupCollector<Integer, Integer> avg = new GAvg<Integer>(path).createGroupCollector();
+        for (int i = 1; i < 5; i++) {
+            sum.add(i);
+            avg.add(i);
+        }
+        assertEquals(Integer.valueOf(10), sum.get());
+        assertEquals(Integer.valueOf(2), avg.get());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.mysema.query.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.mysema.query.types.path.PathBuilder;
+
+public class GeneratedAccessorsTest {
+
+    public static class Entity {
+
+        private long id;
+
+        private String name;
+
+        public Entity() {}
+
+        public Entity(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+    }
+
+    static class HiddenEntity extends Entity {
+
+        public HiddenEntity() {}
+
+    }
+
+    private PathBuilder<Entity> entity = new PathBuilder<Entity>(Entity.class, "entity");
+
+    @Test
+    public void Public_Type() throws Exception {
+        assertNotNull(GeneratedAccessors.getConstructor(Entity.class.getConstructor()));
+        assertNotNull(GeneratedAccessors.getMethod(Entity.class,
+                Entity.class.getMethod("setName", String.class)));
+    }
+
+    @Test
+    public void Non_Public_Type() throws Exception {
+        assertNull(GeneratedAccessors.getConstructor(HiddenEntity.class.getConstructor()));
+    }
+
+    @Test
+    public void Bean() {
+        QBean<Entity> projection = new QBean<Entity>(Entity.class,
+                entity.getNumber("id", Long.class), entity.getString("name"));
+        Entity bean = projection.newInstance(1l, "Bob");
+        assertEquals(1l, bean.getId());
+        assertEquals("Bob", bean.getName());
+    }
+
+    @Test
+    public void Bean_Nulls() {
+        QBean<Entity> projection = new QBean<Entity>(Entity.class,
+                entity.getNumber("id", Long.class), entity.getString("name"));
+        Entity bean = projection.newInstance(null, null);
+        assertEquals(0l, bean.getId());
+        assertNull(bean.getName());
+    }
+
+    @Test
+    public void Bean_Non_Public_Type() {
+        QBean<HiddenEntity> projection = new QBean<HiddenEntity>(HiddenEntity.class,
+                entity.getNumber("id", Long.class), entity.getString("name"));
+        Entity bean = projection.newInstance(2l, "Ann");
+        assertEquals(2l, bean.getId());
+        assertEquals("Ann", bean.getName());
+    }
+
+    @Test
+    public void Constructor() {
+        ConstructorExpression<Entity> projection = ConstructorExpression.create(Entity.class,
+                entity.getNumber("id", Long.class), entity.getString("name"));
+        Entity bean = projection.newInstance(3l, "Joe");
+        assertEquals(3l, bean.getId());
+        assertEquals("Joe", bean.getName());
+    }
+
+}
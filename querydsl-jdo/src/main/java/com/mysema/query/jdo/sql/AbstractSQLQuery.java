@@ -21,6 +21,7 @@ import com.mysema.query.QueryFlag.Position;
 import com.mysema.query.QueryMetadata;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.ForeignKey;
+import com.mysema.query.sql.Keyset;
 import com.mysema.query.sql.RelationalFunctionCall;
 import com.mysema.query.sql.RelationalPath;
 import com.mysema.query.sql.SQLCommonQuery;
@@ -184,6 +185,18 @@ public abstract class AbstractSQLQuery<T extends AbstractSQLQuery<T> & com.mysem
         return queryMixin.on(conditions);
     }
 
+    @Override
+    public T seek(Keyset keyset) {
+        Predicate predicate = keyset.getPredicate();
+        if (predicate != null) {
+            queryMixin.where(predicate);
+        }
+        for (OrderSpecifier<?> order : keyset.getOrder()) {
+            queryMixin.orderBy(order);
+        }
+        return queryMixin.getSelf();
+    }
+
     @Override
     public T rightJoin(EntityPath<?> o) {
         return queryMixin.rightJoin(o);
@@ -25,7 +25,11 @@ public class BatooTemplates extends JPQLTemplates {
     }
 
     public BatooTemplates(char escape) {
-        super(escape);
+        this(escape, DefaultQueryHandler.DEFAULT);
+    }
+
+    public BatooTemplates(char escape, QueryHandler queryHandler) {
+        super(escape, queryHandler);
         add(JPQLOps.CAST, "cast({0} as {1s})");
         add(Ops.STRING_CAST, "cast({0} as varchar)");
         add(Ops.NUMCAST, "cast({0} as {1s})");
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.persistence.Query;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.commons.lang.IteratorAdapter;
+import com.mysema.query.types.FactoryExpression;
+
+/**
+ * DataNucleusHandler is the QueryHandler implementation for DataNucleus
+ *
+ * <p>The results are read via a forward only result set and loaded lazily without caching
+ * the consumed results in the result list. Closing the iterator closes the query result.</p>
+ *
+ * @author tiwe
+ *
+ */
+public final class DataNucleusHandler implements QueryHandler {
+
+    public static final QueryHandler DEFAULT = new DataNucleusHandler();
+
+    @Override
+    public <T> CloseableIterator<T> iterate(Query query, @Nullable FactoryExpression<?> projection) {
+        query.setHint("datanucleus.rdbms.query.resultSetType", "forward-only");
+        query.setHint("datanucleus.query.resultCacheType", "none");
+        query.setHint("datanucleus.query.loadResultsAtCommit", "false");
+        final List<T> results = query.getResultList();
+        Closeable closeable = new Closeable() {
+            @Override
+            public void close() throws IOException {
+                closeResults(results);
+            }
+        };
+        if (projection != null) {
+            return new TransformingIterator<T>(results.iterator(), closeable, projection);
+        } else {
+            return new IteratorAdapter<T>(results.iterator(), closeable);
+        }
+    }
+
+    private static void closeResults(List<?> results) throws IOException {
+        // lazy results are org.datanucleus.store.query.QueryResult instances
+        Method close;
+        try {
+            close = results.getClass().getMethod("close");
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        try {
+            close.invoke(results);
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean transform(Query query, FactoryExpression<?> projection) {
+        return false;
+    }
+
+    private DataNucleusHandler() {}
+
+}
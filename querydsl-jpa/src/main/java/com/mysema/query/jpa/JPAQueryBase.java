@@ -13,18 +13,39 @@
  */
 package com.mysema.query.jpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.JoinExpression;
+import com.mysema.query.JoinFlag;
+import com.mysema.query.QueryFlag;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.QueryModifiers;
 import com.mysema.query.support.ProjectableQuery;
 import com.mysema.query.types.CollectionExpression;
 import com.mysema.query.types.EntityPath;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
 import com.mysema.query.types.MapExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.OrderSpecifier;
 import com.mysema.query.types.Path;
+import com.mysema.query.types.PathImpl;
 import com.mysema.query.types.Predicate;
+import com.mysema.query.types.TemplateExpression;
 import com.mysema.query.types.template.NumberTemplate;
 
 /**
@@ -43,6 +64,11 @@ public abstract class JPAQueryBase<Q extends JPAQueryBase<Q>> extends Projectabl
     @Nullable
     protected final EntityManager entityManager;
 
+    private boolean twoPhasePaging;
+
+    @Nullable
+    private JPQLQueryCache queryCache;
+
     @SuppressWarnings("unchecked")
     public JPAQueryBase(QueryMetadata md, JPQLTemplates templates, @Nullable EntityManager entityManager) {
         super(new JPAQueryMixin<Q>(md));
@@ -57,11 +83,31 @@ public abstract class JPAQueryBase<Q extends JPAQueryBase<Q>> extends Projectabl
     }
     
     protected String buildQueryString(boolean forCountRow) {
-        if (queryMixin.getMetadata().getJoins().isEmpty()) {
+        return buildQueryString(queryMixin.getMetadata(), forCountRow);
+    }
+
+    protected String buildQueryString(QueryMetadata metadata, boolean forCountRow) {
+        if (metadata.getJoins().isEmpty()) {
             throw new IllegalArgumentException("No joins given");
         }
+        if (queryCache != null) {
+            JPQLQueryShape shape = new JPQLQueryShape(templates, entityManager != null);
+            shape.handle(metadata, forCountRow);
+            JPQLQueryCache.Entry entry = queryCache.get(shape);
+            if (entry != null) {
+                constants = entry.getConstants(shape.getConstants());
+                return entry.getJPQL();
+            }
+            TrackingJPQLSerializer serializer = new TrackingJPQLSerializer(templates, entityManager,
+                    shape.getConstants());
+            serializer.serialize(metadata, forCountRow, null);
+            constants = serializer.getConstantToLabel();
+            String queryString = serializer.toString();
+            queryCache.put(shape, queryString, serializer.getLayout());
+            return queryString;
+        }
         JPQLSerializer serializer = new JPQLSerializer(templates, entityManager);
-        serializer.serialize(queryMixin.getMetadata(), forCountRow, null);
+        serializer.serialize(metadata, forCountRow, null);
         constants = serializer.getConstantToLabel();
         return serializer.toString();
     }
@@ -70,6 +116,239 @@ public abstract class JPAQueryBase<Q extends JPAQueryBase<Q>> extends Projectabl
         queryMixin.getMetadata().reset();
     }
 
+    /**
+     * Set whether paged queries with collection fetch joins are executed in two phases
+     *
+     * <p>Limit and offset can't be applied in the database to queries which fetch join
+     * collections, since the rows of the collection elements would be paged instead of the
+     * entities. When two phase paging is enabled, list and listResults invocations with
+     * modifiers, which project the root entity and fetch join collections, first select the
+     * identifiers of the page with the modifiers applied and then fetch the entities of the page
+     * via an <code>id in (...)</code> restriction in the order of the first query. Queries
+     * ordered by the elements of a collection join are executed in a single phase.</p>
+     *
+     * @param twoPhasePaging
+     * @return
+     */
+    public Q setTwoPhasePaging(boolean twoPhasePaging) {
+        this.twoPhasePaging = twoPhasePaging;
+        return queryMixin.getSelf();
+    }
+
+    /**
+     * Set the cache for serialized query strings. Queries are serialized on each execution by
+     * default.
+     *
+     * @param queryCache
+     * @return
+     */
+    public Q setQueryCache(@Nullable JPQLQueryCache queryCache) {
+        this.queryCache = queryCache;
+        return queryMixin.getSelf();
+    }
+
+    /**
+     * Get the identifier path of the root entity, if the query with the given projection is
+     * to be executed in two phases
+     *
+     * @param projection
+     * @return identifier path or null, if the query is to be executed in a single phase
+     */
+    @Nullable
+    protected Path<?> getTwoPhaseIdentifier(Expression<?> projection) {
+        QueryMetadata metadata = queryMixin.getMetadata();
+        if (!twoPhasePaging || !metadata.getModifiers().isRestricting()
+         || metadata.getJoins().isEmpty() || !metadata.getGroupBy().isEmpty()) {
+            return null;
+        }
+        Expression<?> root = metadata.getJoins().get(0).getTarget();
+        if (!(root instanceof EntityPath) || !root.equals(projection)) {
+            return null;
+        }
+        boolean collectionFetch = false;
+        // aliases of joins which yield multiple rows per root entity
+        Set<Expression<?>> multiValued = new HashSet<Expression<?>>();
+        for (JoinExpression join : metadata.getJoins()) {
+            Expression<?> target = join.getTarget();
+            if (isCollection(target)) {
+                collectionFetch |= join.hasFlag(JPAQueryMixin.FETCH);
+            }
+            if (target instanceof Operation && ((Operation<?>)target).getOperator() == Ops.ALIAS) {
+                Expression<?> source = ((Operation<?>)target).getArg(0);
+                if (isCollection(source) || isRootedIn(source, multiValued)) {
+                    multiValued.add(((Operation<?>)target).getArg(1));
+                }
+            }
+        }
+        if (!collectionFetch) {
+            return null;
+        }
+        // ordering by the elements of a collection join yields an id row per element, so the
+        // pages of the first phase would be short
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            if (isRootedIn(order.getTarget(), multiValued)) {
+                return null;
+            }
+        }
+        return getIdentifier((EntityPath<?>) root);
+    }
+
+    private static boolean isCollection(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>)target).getOperator() == Ops.ALIAS) {
+            target = ((Operation<?>)target).getArg(0);
+        }
+        return target instanceof CollectionExpression || target instanceof MapExpression;
+    }
+
+    private static boolean isRootedIn(Expression<?> expr, Set<Expression<?>> roots) {
+        if (roots.isEmpty()) {
+            return false;
+        } else if (expr instanceof Path) {
+            return roots.contains(((Path<?>)expr).getRoot());
+        } else if (expr instanceof Operation) {
+            for (Expression<?> arg : ((Operation<?>)expr).getArgs()) {
+                if (isRootedIn(arg, roots)) {
+                    return true;
+                }
+            }
+        } else if (expr instanceof TemplateExpression) {
+            for (Object arg : ((TemplateExpression<?>)expr).getArgs()) {
+                if (arg instanceof Expression && isRootedIn((Expression<?>)arg, roots)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the identifier path of the given entity
+     *
+     * @param entity
+     * @return identifier path or null, if the entity has no single identifier attribute
+     */
+    @Nullable
+    protected Path<?> getIdentifier(EntityPath<?> entity) {
+        if (entityManager != null) {
+            EntityType<?> type;
+            try {
+                type = entityManager.getMetamodel().entity(entity.getType());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (type.hasSingleIdAttribute()) {
+                for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+                    if (attribute.isId()) {
+                        return new PathImpl<Object>(attribute.getJavaType(), entity, attribute.getName());
+                    }
+                }
+            }
+            return null;
+        } else {
+            // HQL supports id as a reference to the identifier property
+            return new PathImpl<Object>(Object.class, entity, "id");
+        }
+    }
+
+    /**
+     * Create the metadata of the first phase, which selects the identifiers of the page
+     *
+     * <p>The fetch flags are removed from the joins and the order expressions are projected
+     * next to the identifier to keep the distinct projection valid.</p>
+     *
+     * @param id identifier path
+     * @return
+     */
+    protected QueryMetadata createIdQueryMetadata(Path<?> id) {
+        QueryMetadata metadata = queryMixin.getMetadata();
+        QueryMetadata rv = new DefaultQueryMetadata().noValidate();
+        for (QueryFlag flag : metadata.getFlags()) {
+            rv.addFlag(flag);
+        }
+        for (JoinExpression join : metadata.getJoins()) {
+            rv.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                rv.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPAQueryMixin.FETCH)) {
+                    rv.addJoinFlag(flag);
+                }
+            }
+        }
+        if (metadata.getWhere() != null) {
+            rv.addWhere(metadata.getWhere());
+        }
+        rv.setDistinct(true);
+        rv.addProjection(id);
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            rv.addOrderBy(order);
+            if (!order.getTarget().equals(id)) {
+                rv.addProjection(order.getTarget());
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Create the metadata of the second phase, which fetches the entities of the given
+     * identifiers together with their identifiers
+     *
+     * @param id identifier path
+     * @param ids identifiers of the page
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected QueryMetadata createFetchQueryMetadata(Path<?> id, Collection<?> ids) {
+        QueryMetadata rv = queryMixin.getMetadata().clone();
+        rv.setModifiers(QueryModifiers.EMPTY);
+        rv.clearOrderBy();
+        rv.clearProjection();
+        rv.addProjection(id);
+        rv.addProjection(id.getMetadata().getParent());
+        rv.addWhere(ExpressionUtils.in((Path<Object>)id, (Collection<Object>)ids));
+        return rv;
+    }
+
+    /**
+     * Get the distinct identifiers of the first phase results in result order
+     *
+     * @param rows
+     * @return
+     */
+    protected static Set<Object> getIdentifiers(List<?> rows) {
+        Set<Object> ids = new LinkedHashSet<Object>(rows.size());
+        for (Object row : rows) {
+            ids.add(row instanceof Object[] ? ((Object[])row)[0] : row);
+        }
+        return ids;
+    }
+
+    /**
+     * Get the entities of the second phase results in the order of the given identifiers
+     *
+     * @param ids
+     * @param rows identifier and entity pairs
+     * @return
+     */
+    protected static List<Object> getEntities(Collection<?> ids, List<?> rows) {
+        Map<Object, Object> entities = new HashMap<Object, Object>(rows.size());
+        for (Object row : rows) {
+            Object[] pair = (Object[]) row;
+            if (!entities.containsKey(pair[0])) {
+                entities.put(pair[0], pair[1]);
+            }
+        }
+        List<Object> rv = new ArrayList<Object>(ids.size());
+        for (Object id : ids) {
+            Object entity = entities.get(id);
+            if (entity != null) {
+                rv.add(entity);
+            }
+        }
+        return rv;
+    }
+
     @Override
     public boolean exists() {
         if (templates.isSelect1Supported()) {
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mysema.query.types.Constant;
+
+/**
+ * JPQLQueryCache caches serialized JPQL queries by the structure of the query.
+ * Repeated executions of the same query shape reuse the query string and only bind the new
+ * constant values to the positional parameters.
+ *
+ * <p>Query shapes with constants which are transformed or inlined during serialization, such
+ * as like patterns with escaped characters or entities which are replaced by their identifiers,
+ * are not cached.</p>
+ *
+ * <p>A cache instance is meant to be shared by the queries of a single persistence unit.</p>
+ *
+ * @author tiwe
+ *
+ */
+public final class JPQLQueryCache {
+
+    /**
+     * Serialized query with the layout of its positional parameters
+     */
+    static final class Entry {
+
+        private final String jpql;
+
+        // constant index or param expression per positional parameter
+        private final List<Object> layout;
+
+        Entry(String jpql, List<Object> layout) {
+            this.jpql = jpql;
+            this.layout = layout;
+        }
+
+        public String getJPQL() {
+            return jpql;
+        }
+
+        public Map<Object, String> getConstants(List<Constant<?>> constants) {
+            Map<Object, String> rv = new HashMap<Object, String>();
+            for (int i = 0; i < layout.size(); i++) {
+                Object source = layout.get(i);
+                if (source instanceof Integer) {
+                    source = constants.get(((Integer)source).intValue()).getConstant();
+                }
+                rv.put(source, String.valueOf(i + 1));
+            }
+            return rv;
+        }
+
+    }
+
+    private final Cache<String, Optional<Entry>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public JPQLQueryCache() {
+        this(1000);
+    }
+
+    /**
+     * Create a new JPQLQueryCache instance
+     *
+     * @param maximumSize maximum amount of cached query shapes
+     */
+    public JPQLQueryCache(int maximumSize) {
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Get the cached entry for the given shape
+     *
+     * @param shape
+     * @return cached entry or null, if the shape is not cached or can't be cached
+     */
+    @Nullable
+    Entry get(JPQLQueryShape shape) {
+        Optional<Entry> entry = entries.getIfPresent(shape.getKey());
+        if (entry != null && entry.isPresent()) {
+            hits.incrementAndGet();
+            return entry.get();
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Cache the serialized query of the given shape
+     *
+     * @param shape
+     * @param jpql
+     * @param layout layout of the positional parameters or null, if the shape can't be cached
+     */
+    void put(JPQLQueryShape shape, String jpql, @Nullable List<Object> layout) {
+        if (layout != null) {
+            entries.put(shape.getKey(), Optional.of(new Entry(jpql,
+                    Collections.unmodifiableList(new ArrayList<Object>(layout)))));
+        } else {
+            entries.put(shape.getKey(), Optional.<Entry>absent());
+        }
+    }
+
+    /**
+     * Remove all cached queries
+     */
+    public void clear() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * Get the amount of executions which reused a cached query
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the amount of executions which required serialization
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Get the amount of cached query shapes
+     *
+     * @return
+     */
+    public long size() {
+        return entries.size();
+    }
+
+}
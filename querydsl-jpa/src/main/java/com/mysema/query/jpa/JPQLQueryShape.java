@@ -0,0 +1,229 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.mysema.query.JoinExpression;
+import com.mysema.query.JoinFlag;
+import com.mysema.query.QueryFlag;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.PathMetadata;
+import com.mysema.query.types.SubQueryExpression;
+import com.mysema.query.types.TemplateExpression;
+import com.mysema.query.types.Visitor;
+
+/**
+ * JPQLQueryShape builds a structural fingerprint of query metadata. Constant expressions are
+ * left out of the fingerprint and collected in encounter order, only their types and the
+ * equality of their values are part of the fingerprint, since equal values share a
+ * positional parameter in the serialized query.
+ *
+ * @author tiwe
+ *
+ */
+final class JPQLQueryShape implements Visitor<Void, Void> {
+
+    private final StringBuilder key = new StringBuilder(128);
+
+    private final List<Constant<?>> constants = new ArrayList<Constant<?>>();
+
+    public JPQLQueryShape(JPQLTemplates templates, boolean entityManager) {
+        key.append(templates.getClass().getName());
+        if (entityManager) {
+            key.append(" em");
+        }
+    }
+
+    /**
+     * Get the fingerprint
+     *
+     * @return
+     */
+    public String getKey() {
+        return key.toString();
+    }
+
+    /**
+     * Get the constant expressions in encounter order
+     *
+     * @return
+     */
+    public List<Constant<?>> getConstants() {
+        return constants;
+    }
+
+    public JPQLQueryShape handle(QueryMetadata metadata, boolean forCountRow) {
+        if (forCountRow) {
+            key.append(" count");
+        }
+        handle(metadata);
+        return this;
+    }
+
+    private void handle(QueryMetadata metadata) {
+        key.append('{');
+        if (metadata.isDistinct()) {
+            key.append("distinct ");
+        }
+        for (QueryFlag flag : metadata.getFlags()) {
+            key.append(flag.getPosition()).append(' ');
+            handle(flag.getFlag());
+            key.append(' ');
+        }
+        key.append("select ");
+        handle(metadata.getProjection());
+        key.append(" from ");
+        for (JoinExpression join : metadata.getJoins()) {
+            key.append(join.getType()).append(' ');
+            for (JoinFlag flag : join.getFlags()) {
+                key.append(flag.getPosition()).append(' ');
+                handle(flag.getFlag());
+                key.append(' ');
+            }
+            handle(join.getTarget());
+            if (join.getCondition() != null) {
+                key.append(" on ");
+                handle(join.getCondition());
+            }
+            key.append(", ");
+        }
+        if (metadata.getWhere() != null) {
+            key.append(" where ");
+            handle(metadata.getWhere());
+        }
+        if (!metadata.getGroupBy().isEmpty()) {
+            key.append(" group by ");
+            handle(metadata.getGroupBy());
+        }
+        if (metadata.getHaving() != null) {
+            key.append(" having ");
+            handle(metadata.getHaving());
+        }
+        if (!metadata.getOrderBy().isEmpty()) {
+            key.append(" order by ");
+            for (OrderSpecifier<?> os : metadata.getOrderBy()) {
+                handle(os.getTarget());
+                key.append(' ').append(os.getOrder()).append(' ').append(os.getNullHandling()).append(", ");
+            }
+        }
+        key.append('}');
+    }
+
+    private void handle(Expression<?> expr) {
+        expr.accept(this, null);
+    }
+
+    private void handle(List<? extends Expression<?>> exprs) {
+        for (Expression<?> expr : exprs) {
+            handle(expr);
+            key.append(", ");
+        }
+    }
+
+    @Override
+    public Void visit(Constant<?> expr, Void context) {
+        Object value = expr.getConstant();
+        key.append('?').append(value.getClass().getName());
+        for (int i = 0; i < constants.size(); i++) {
+            if (constants.get(i).getConstant().equals(value)) {
+                key.append('=').append(i);
+                break;
+            }
+        }
+        constants.add(expr);
+        return null;
+    }
+
+    @Override
+    public Void visit(FactoryExpression<?> expr, Void context) {
+        key.append("new(");
+        handle(expr.getArgs());
+        key.append(')');
+        return null;
+    }
+
+    @Override
+    public Void visit(Operation<?> expr, Void context) {
+        key.append(expr.getOperator().getId()).append(' ').append(expr.getType().getName()).append('(');
+        handle(expr.getArgs());
+        key.append(')');
+        return null;
+    }
+
+    @Override
+    public Void visit(ParamExpression<?> expr, Void context) {
+        key.append(':').append(expr.getName()).append(' ').append(expr.getType().getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Path<?> expr, Void context) {
+        PathMetadata<?> metadata = expr.getMetadata();
+        if (metadata.getParent() != null) {
+            handle(metadata.getParent());
+            key.append('.');
+        }
+        key.append(metadata.getPathType()).append(' ').append(expr.getType().getName()).append(' ');
+        Object element = metadata.getElement();
+        if (element instanceof Expression<?>) {
+            key.append('(');
+            handle((Expression<?>)element);
+            key.append(')');
+        } else {
+            visitLiteral(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(SubQueryExpression<?> expr, Void context) {
+        handle(expr.getMetadata());
+        return null;
+    }
+
+    @Override
+    public Void visit(TemplateExpression<?> expr, Void context) {
+        key.append('[').append(expr.getTemplate()).append("] ").append(expr.getType().getName()).append('(');
+        for (Object arg : expr.getArgs()) {
+            if (arg instanceof Expression<?>) {
+                handle((Expression<?>)arg);
+            } else {
+                visitLiteral(arg);
+            }
+            key.append(", ");
+        }
+        key.append(')');
+        return null;
+    }
+
+    private void visitLiteral(@Nullable Object constant) {
+        if (constant != null) {
+            key.append('\'').append(constant.getClass().getName()).append(' ').append(constant).append('\'');
+        } else {
+            key.append("null");
+        }
+    }
+
+}
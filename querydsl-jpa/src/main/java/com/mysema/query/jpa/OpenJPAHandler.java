@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.persistence.Query;
+
+import org.apache.openjpa.persistence.FetchPlan;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.apache.openjpa.persistence.jdbc.FetchDirection;
+import org.apache.openjpa.persistence.jdbc.JDBCFetchPlan;
+import org.apache.openjpa.persistence.jdbc.LRSSizeAlgorithm;
+import org.apache.openjpa.persistence.jdbc.ResultSetType;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.commons.lang.IteratorAdapter;
+import com.mysema.query.types.FactoryExpression;
+
+/**
+ * OpenJPAHandler is the QueryHandler implementation for OpenJPA
+ *
+ * <p>The results are read as an OpenJPA large result set, which loads the rows in batches
+ * from a forward only result set.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class OpenJPAHandler implements QueryHandler {
+
+    private static final int FETCH_BATCH_SIZE = 100;
+
+    @Override
+    public <T> CloseableIterator<T> iterate(Query query, FactoryExpression<?> projection) {
+        Iterator<T> iterator = null;
+        Closeable closeable = null;
+        if (query instanceof OpenJPAQuery) {
+            final OpenJPAQuery<T> ojQuery = (OpenJPAQuery<T>) query;
+            FetchPlan fetchPlan = ojQuery.getFetchPlan();
+            fetchPlan.setFetchBatchSize(FETCH_BATCH_SIZE);
+            if (fetchPlan instanceof JDBCFetchPlan) {
+                JDBCFetchPlan jdbcFetchPlan = (JDBCFetchPlan) fetchPlan;
+                jdbcFetchPlan.setResultSetType(ResultSetType.FORWARD_ONLY);
+                jdbcFetchPlan.setFetchDirection(FetchDirection.FORWARD);
+                jdbcFetchPlan.setLRSSizeAlgorithm(LRSSizeAlgorithm.UNKNOWN);
+            }
+            iterator = ojQuery.getResultList().iterator();
+            closeable = new Closeable() {
+                @Override
+                public void close() throws IOException {
+                    ojQuery.closeAll();
+                }
+            };
+        } else {
+            iterator = query.getResultList().iterator();
+        }
+        if (projection != null) {
+            return new TransformingIterator<T>(iterator, closeable, projection);
+        } else {
+            return new IteratorAdapter<T>(iterator, closeable);
+        }
+    }
+
+    @Override
+    public boolean transform(Query query, FactoryExpression<?> projection) {
+        return false;
+    }
+
+}
@@ -23,6 +23,20 @@ import com.mysema.query.types.Ops;
  */
 public class OpenJPATemplates extends JPQLTemplates{
 
+    private static final QueryHandler QUERY_HANDLER;
+
+    static {
+        QueryHandler instance;
+        try {
+            instance = (QueryHandler) Class.forName("com.mysema.query.jpa.OpenJPAHandler").newInstance();
+        } catch (NoClassDefFoundError e) {
+            instance = DefaultQueryHandler.DEFAULT;
+        } catch (Exception e) {
+            instance = DefaultQueryHandler.DEFAULT;
+        }
+        QUERY_HANDLER = instance;
+    }
+
     public static final JPQLTemplates DEFAULT = new OpenJPATemplates();
     
     public OpenJPATemplates() {
@@ -32,7 +46,7 @@ public class OpenJPATemplates extends JPQLTemplates{
     }
     
     public OpenJPATemplates(char escape) {
-        super(escape);
+        super(escape, QUERY_HANDLER);
     }
 
 }
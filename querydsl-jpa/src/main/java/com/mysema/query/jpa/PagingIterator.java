@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * PagingIterator iterates over the results of a query in windows of a fixed size
+ *
+ * <p>If an EntityManager is given, the entities of consumed windows are detached from it.</p>
+ *
+ * @author tiwe
+ *
+ * @param <T>
+ */
+final class PagingIterator<T> implements Iterator<T> {
+
+    @Nullable
+    private final EntityManager entityManager;
+
+    private final Query query;
+
+    private final int pageSize, firstResult, maxResults;
+
+    private final Set<Class<?>> nonEntityTypes = new HashSet<Class<?>>();
+
+    private List<?> page = Collections.emptyList();
+
+    private int index, fetched;
+
+    private boolean last;
+
+    public PagingIterator(@Nullable EntityManager entityManager, Query query, int pageSize) {
+        this.entityManager = entityManager;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.firstResult = query.getFirstResult();
+        this.maxResults = query.getMaxResults();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < page.size()) {
+            return true;
+        } else if (last) {
+            return false;
+        }
+        if (entityManager != null) {
+            detach(page);
+        }
+        int size = Math.min(pageSize, maxResults - fetched);
+        if (size > 0) {
+            query.setFirstResult(firstResult + fetched);
+            query.setMaxResults(size);
+            page = query.getResultList();
+        } else {
+            page = Collections.emptyList();
+        }
+        index = 0;
+        fetched += page.size();
+        last = page.size() < size;
+        return !page.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+        if (hasNext()) {
+            return (T) page.get(index++);
+        } else {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void detach(List<?> rows) {
+        for (Object row : rows) {
+            if (row instanceof Object[]) {
+                for (Object value : (Object[]) row) {
+                    detach(value);
+                }
+            } else {
+                detach(row);
+            }
+        }
+    }
+
+    private void detach(@Nullable Object value) {
+        if (value != null && !nonEntityTypes.contains(value.getClass())) {
+            try {
+                if (entityManager.contains(value)) {
+                    entityManager.detach(value);
+                }
+            } catch (IllegalArgumentException e) {
+                // not an entity
+                nonEntityTypes.add(value.getClass());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.commons.lang.IteratorAdapter;
+import com.mysema.query.types.FactoryExpression;
+
+/**
+ * PagingQueryHandler is a QueryHandler for JPA providers without a streaming facility
+ *
+ * <p>The results are fetched in windows of a fixed size by applying firstResult and maxResults
+ * to the query within the bounds of its original modifiers.</p>
+ *
+ * <p>Optionally the entities of consumed windows can be detached from the persistence context to
+ * keep its size bounded. Since JPA doesn't tell apart entities loaded by a window from entities
+ * which were already managed before the iteration, detaching applies to all entities returned by
+ * the query and is only safe when they are not otherwise in use. Changes to detached entities
+ * are not flushed.</p>
+ *
+ * <p>The handler is not used by default, since the windows are only consistent for queries
+ * ordered by a unique key, and queries with collection fetch joins are paged over the joined
+ * rows. It can be enabled via {@link BatooTemplates#BatooTemplates(char, QueryHandler)}.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class PagingQueryHandler implements EntityManagerQueryHandler {
+
+    public static final QueryHandler DEFAULT = new PagingQueryHandler(1000);
+
+    private final int pageSize;
+
+    private final boolean detach;
+
+    /**
+     * Create a new PagingQueryHandler instance
+     *
+     * @param pageSize amount of rows fetched per window
+     */
+    public PagingQueryHandler(int pageSize) {
+        this(pageSize, false);
+    }
+
+    /**
+     * Create a new PagingQueryHandler instance
+     *
+     * @param pageSize amount of rows fetched per window
+     * @param detach true, to detach the entities of consumed windows
+     */
+    public PagingQueryHandler(int pageSize, boolean detach) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.detach = detach;
+    }
+
+    @Override
+    public <T> CloseableIterator<T> iterate(Query query, @Nullable FactoryExpression<?> projection) {
+        return iterate(null, query, projection);
+    }
+
+    @Override
+    public <T> CloseableIterator<T> iterate(@Nullable EntityManager entityManager, Query query,
+            @Nullable FactoryExpression<?> projection) {
+        Iterator<T> iterator = new PagingIterator<T>(detach ? entityManager : null, query, pageSize);
+        if (projection != null) {
+            return new TransformingIterator<T>(iterator, projection);
+        } else {
+            return new IteratorAdapter<T>(iterator);
+        }
+    }
+
+    @Override
+    public boolean transform(Query query, FactoryExpression<?> projection) {
+        return false;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.ParamExpression;
+
+/**
+ * TrackingJPQLSerializer records for each positional parameter of the serialized query
+ * the constant expression of the query it has been created from
+ *
+ * @author tiwe
+ *
+ */
+final class TrackingJPQLSerializer extends JPQLSerializer {
+
+    private final Map<Constant<?>, Integer> indexes = new IdentityHashMap<Constant<?>, Integer>();
+
+    private final boolean[] visited;
+
+    private final List<Object> layout = new ArrayList<Object>();
+
+    @Nullable
+    private Constant<?> current;
+
+    private boolean trackable = true;
+
+    public TrackingJPQLSerializer(JPQLTemplates templates, @Nullable EntityManager em,
+            List<Constant<?>> constants) {
+        super(templates, em);
+        for (int i = 0; i < constants.size(); i++) {
+            indexes.put(constants.get(i), i);
+        }
+        visited = new boolean[constants.size()];
+    }
+
+    /**
+     * Get the source of each positional parameter, either the index of the constant expression
+     * or the param expression, or null if the parameters can't be derived from the constant
+     * expressions of the query
+     *
+     * @return
+     */
+    @Nullable
+    public List<Object> getLayout() {
+        if (!trackable) {
+            return null;
+        }
+        for (boolean b : visited) {
+            if (!b) {
+                // the constant has been inlined or dropped
+                return null;
+            }
+        }
+        return layout;
+    }
+
+    @Override
+    public Void visit(Constant<?> expr, Void context) {
+        Constant<?> old = current;
+        current = expr;
+        try {
+            return super.visit(expr, context);
+        } finally {
+            current = old;
+        }
+    }
+
+    @Override
+    public void visitConstant(Object constant) {
+        Integer index = current != null && current.getConstant() == constant ? indexes.get(current) : null;
+        if (index == null) {
+            // constant has been derived during serialization
+            trackable = false;
+        } else {
+            visited[index.intValue()] = true;
+        }
+        if (!getConstantToLabel().containsKey(constant)) {
+            layout.add(index);
+        }
+        super.visitConstant(constant);
+    }
+
+    @Override
+    public Void visit(ParamExpression<?> param, Void context) {
+        if (!getConstantToLabel().containsKey(param)) {
+            layout.add(param);
+        }
+        return super.visit(param, context);
+    }
+
+}
@@ -13,9 +13,11 @@
  */
 package com.mysema.query.jpa.hibernate;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -229,10 +231,38 @@ public abstract class AbstractHibernateQuery<Q extends AbstractHibernateQuery<Q>
 
     @SuppressWarnings("unchecked")
     public <RT> List<RT> list(Expression<RT> expr) {
+        Path<?> id = getTwoPhaseIdentifier(expr);
+        if (id != null) {
+            try {
+                return (List<RT>) getTwoPhaseList(id, getMetadata().getModifiers());
+            } finally {
+                reset();
+            }
+        }
         Query query = createQuery(expr);
         reset();
         return query.list();
     }
+
+    /**
+     * Selects the identifiers of the page with the given modifiers applied and fetches
+     * the entities of the identifiers in a second query
+     *
+     * @param id
+     * @param modifiers
+     * @return
+     */
+    private List<?> getTwoPhaseList(Path<?> id, QueryModifiers modifiers) {
+        String queryString = buildQueryString(createIdQueryMetadata(id), false);
+        logQuery(queryString);
+        Set<Object> ids = getIdentifiers(createQuery(queryString, modifiers, true).list());
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        queryString = buildQueryString(createFetchQueryMetadata(id, ids), false);
+        logQuery(queryString);
+        return getEntities(ids, createQuery(queryString, null, true).list());
+    }
     
     public SearchResults<Tuple> listResults(Expression<?>... args) {
         return listResults(new QTuple(args));
@@ -245,6 +275,12 @@ public abstract class AbstractHibernateQuery<Q extends AbstractHibernateQuery<Q>
         try{
             if (total > 0) {
                 QueryModifiers modifiers = getMetadata().getModifiers();
+                Path<?> id = getTwoPhaseIdentifier(expr);
+                if (id != null) {
+                    @SuppressWarnings("unchecked")
+                    List<RT> list = (List<RT>) getTwoPhaseList(id, modifiers);
+                    return new SearchResults<RT>(list, modifiers, total);
+                }
                 String queryString = toQueryString();
                 logQuery(queryString);
                 Query query = createQuery(queryString, modifiers, false);
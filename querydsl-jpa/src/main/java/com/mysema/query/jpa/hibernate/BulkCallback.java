@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa.hibernate;
+
+import java.util.List;
+
+/**
+ * BulkCallback processes the chunks of a bulk processing run of {@link HibernateBulkProcessor}
+ *
+ * @author tiwe
+ *
+ * @param <T> entity type
+ */
+public interface BulkCallback<T> {
+
+    /**
+     * Process the given chunk of entities
+     *
+     * @param entities detached entities of the chunk
+     * @param writer writer for changed and new entities
+     */
+    void process(List<T> entities, BulkWriter writer);
+
+}
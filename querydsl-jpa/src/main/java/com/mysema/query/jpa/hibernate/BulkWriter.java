@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa.hibernate;
+
+/**
+ * BulkWriter collects the changes of a chunk, which are written to the database after the
+ * chunk has been processed
+ *
+ * @author tiwe
+ *
+ */
+public interface BulkWriter {
+
+    /**
+     * Insert the given new entity
+     *
+     * @param entity
+     */
+    void insert(Object entity);
+
+    /**
+     * Update the given changed entity
+     *
+     * @param entity
+     */
+    void update(Object entity);
+
+}
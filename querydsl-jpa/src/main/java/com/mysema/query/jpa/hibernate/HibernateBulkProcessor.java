@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+
+import com.mysema.query.jpa.JPQLTemplates;
+import com.mysema.query.types.EntityPath;
+
+/**
+ * HibernateBulkProcessor processes large result sets over a {@link StatelessSession}
+ *
+ * <p>The query results are scrolled forward only and handed to a {@link BulkCallback} in chunks.
+ * The changes of each chunk are written back after the chunk via the insert and update methods
+ * of the StatelessSession. Since a StatelessSession has no first-level cache, the memory usage
+ * doesn't grow with the amount of processed entities.</p>
+ *
+ * <p>The writes are not batched by this processor, each insert and update of a chunk is
+ * issued as a separate statement by the StatelessSession. The chunks bound the memory usage,
+ * not the amount of statements.</p>
+ *
+ * <p>The lifecycle and transactions of the StatelessSession are managed by the caller.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class HibernateBulkProcessor {
+
+    private static final class ChunkWriter implements BulkWriter {
+
+        private final List<Object> entities = new ArrayList<Object>();
+
+        // true for inserts, false for updates
+        private final List<Boolean> inserts = new ArrayList<Boolean>();
+
+        @Override
+        public void insert(Object entity) {
+            entities.add(entity);
+            inserts.add(Boolean.TRUE);
+        }
+
+        @Override
+        public void update(Object entity) {
+            entities.add(entity);
+            inserts.add(Boolean.FALSE);
+        }
+
+        public void flush(StatelessSession session) {
+            for (int i = 0; i < entities.size(); i++) {
+                if (inserts.get(i).booleanValue()) {
+                    session.insert(entities.get(i));
+                } else {
+                    session.update(entities.get(i));
+                }
+            }
+            entities.clear();
+            inserts.clear();
+        }
+
+    }
+
+    private final StatelessSession session;
+
+    private final JPQLTemplates templates;
+
+    private int chunkSize = 1000;
+
+    private int fetchSize = 1000;
+
+    public HibernateBulkProcessor(StatelessSession session, JPQLTemplates templates) {
+        this.session = session;
+        this.templates = templates;
+    }
+
+    /**
+     * Create a new query bound to the StatelessSession of this processor
+     *
+     * @return
+     */
+    public HibernateQuery query() {
+        return new HibernateQuery(new StatelessSessionHolder(session), templates).setFetchSize(fetchSize);
+    }
+
+    /**
+     * Create a new query bound to the StatelessSession of this processor
+     *
+     * @param from
+     * @return
+     */
+    public HibernateQuery from(EntityPath<?> from) {
+        return query().from(from);
+    }
+
+    /**
+     * Process the entities of the given query in chunks
+     *
+     * @param query query bound to the StatelessSession of this processor
+     * @param entity entity to be processed
+     * @param callback
+     * @return amount of processed entities
+     */
+    @SuppressWarnings("unchecked")
+    public <T> long process(AbstractHibernateQuery<?> query, EntityPath<T> entity,
+            BulkCallback<T> callback) {
+        List<T> chunk = new ArrayList<T>(chunkSize);
+        ChunkWriter writer = new ChunkWriter();
+        long count = 0;
+        ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY, entity);
+        try {
+            while (results.next()) {
+                chunk.add((T) results.get(0));
+                if (chunk.size() == chunkSize) {
+                    count += process(chunk, writer, callback);
+                    chunk = new ArrayList<T>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                count += process(chunk, writer, callback);
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    private <T> int process(List<T> chunk, ChunkWriter writer, BulkCallback<T> callback) {
+        int size = chunk.size();
+        callback.process(chunk, writer);
+        writer.flush(session);
+        return size;
+    }
+
+    /**
+     * Set the amount of entities per chunk, defaults to 1000
+     *
+     * @param chunkSize
+     * @return
+     */
+    public HibernateBulkProcessor setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Set the JDBC fetch size of the queries created by this processor, defaults to 1000
+     *
+     * @param fetchSize
+     * @return
+     */
+    public HibernateBulkProcessor setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+}
@@ -16,6 +16,7 @@ package com.mysema.query.jpa.hibernate;
 import javax.inject.Provider;
 
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 
 import com.mysema.query.jpa.HQLTemplates;
 import com.mysema.query.jpa.JPQLQueryFactory;
@@ -43,6 +44,16 @@ public class HibernateQueryFactory implements JPQLQueryFactory {
         this.templates = templates;
     }
 
+    /**
+     * Create a new bulk processor for the given StatelessSession
+     *
+     * @param session
+     * @return
+     */
+    public HibernateBulkProcessor bulk(StatelessSession session) {
+        return new HibernateBulkProcessor(session, templates);
+    }
+
     public HibernateDeleteClause delete(EntityPath<?> path) {
         return new HibernateDeleteClause(session.get(), path, templates);
     }
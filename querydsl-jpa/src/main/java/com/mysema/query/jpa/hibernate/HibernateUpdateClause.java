@@ -16,6 +16,8 @@ package com.mysema.query.jpa.hibernate;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.StatelessSession;
@@ -23,6 +25,7 @@ import org.hibernate.StatelessSession;
 import com.mysema.query.DefaultQueryMetadata;
 import com.mysema.query.JoinType;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.dml.KeyedUpdates;
 import com.mysema.query.dml.UpdateClause;
 import com.mysema.query.jpa.HQLTemplates;
 import com.mysema.query.jpa.JPQLSerializer;
@@ -49,6 +52,9 @@ public class HibernateUpdateClause implements
 
     private final JPQLTemplates templates;
 
+    @Nullable
+    private KeyedUpdates keyedUpdates;
+
     public HibernateUpdateClause(Session session, EntityPath<?> entity) {
         this(new DefaultSessionHolder(session), entity, HQLTemplates.DEFAULT);
     }
@@ -70,6 +76,17 @@ public class HibernateUpdateClause implements
 
     @Override
     public long execute() {
+        if (keyedUpdates != null) {
+            long rv = 0;
+            for (List<Object> chunk : keyedUpdates.getChunks()) {
+                rv += execute(getMetadata(chunk));
+            }
+            return rv;
+        }
+        return execute(metadata);
+    }
+
+    private long execute(QueryMetadata metadata) {
         JPQLSerializer serializer = new JPQLSerializer(templates, null);
         serializer.serializeForUpdate(metadata);
         Map<Object, String> constants = serializer.getConstantToLabel();
@@ -120,6 +137,34 @@ public class HibernateUpdateClause implements
         return this;
     }
 
+    /**
+     * Set the values of the given path per value of the key path. The values are applied via a
+     * case expression on the key path in a single statement per chunk of key values. Rows whose
+     * key has no value for the path keep their current value.
+     *
+     * @param key key path
+     * @param path path to be updated
+     * @param values values per key value
+     * @return
+     */
+    public <K, V> HibernateUpdateClause setByKey(Path<K> key, Path<V> path, Map<K, ? extends V> values) {
+        if (keyedUpdates == null) {
+            keyedUpdates = new KeyedUpdates(key);
+        }
+        keyedUpdates.add(key, path, values);
+        return this;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private QueryMetadata getMetadata(List<Object> chunk) {
+        QueryMetadata md = metadata.clone();
+        for (Map.Entry<Path<?>, Expression<?>> entry : keyedUpdates.getUpdates(chunk).entrySet()) {
+            md.addProjection(ExpressionUtils.eq((Expression)entry.getKey(), entry.getValue()));
+        }
+        md.addWhere(keyedUpdates.getCondition(chunk));
+        return md;
+    }
+
     @Override
     public HibernateUpdateClause where(Predicate... o) {
         for (Predicate p : o) {
@@ -130,14 +175,19 @@ public class HibernateUpdateClause implements
     
     @Override
     public String toString() {
+        QueryMetadata md = metadata;
+        if (keyedUpdates != null && !keyedUpdates.isEmpty()) {
+            // show the statement of the first chunk
+            md = getMetadata(keyedUpdates.getChunks().iterator().next());
+        }
         JPQLSerializer serializer = new JPQLSerializer(templates, null);
-        serializer.serializeForUpdate(metadata);
+        serializer.serializeForUpdate(md);
         return serializer.toString();
     }
 
     @Override
     public boolean isEmpty() {
-        return metadata.getProjection().isEmpty();
+        return metadata.getProjection().isEmpty() && (keyedUpdates == null || keyedUpdates.isEmpty());
     }
 
 
@@ -14,8 +14,10 @@
 package com.mysema.query.jpa.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
@@ -35,12 +37,14 @@ import com.mysema.query.QueryMetadata;
 import com.mysema.query.QueryModifiers;
 import com.mysema.query.SearchResults;
 import com.mysema.query.Tuple;
+import com.mysema.query.jpa.EntityManagerQueryHandler;
 import com.mysema.query.jpa.JPAQueryBase;
 import com.mysema.query.jpa.JPQLTemplates;
 import com.mysema.query.jpa.QueryHandler;
 import com.mysema.query.types.Expression;
 import com.mysema.query.types.FactoryExpression;
 import com.mysema.query.types.FactoryExpressionUtils;
+import com.mysema.query.types.Path;
 import com.mysema.query.types.QTuple;
 
 /**
@@ -226,7 +230,11 @@ public abstract class AbstractJPAQuery<Q extends AbstractJPAQuery<Q>> extends JP
 
     public <RT> CloseableIterator<RT> iterate(Expression<RT> expr) {
         Query query = createQuery(expr);
-        return queryHandler.<RT>iterate(query, projection);
+        if (queryHandler instanceof EntityManagerQueryHandler) {
+            return ((EntityManagerQueryHandler)queryHandler).<RT>iterate(entityManager, query, projection);
+        } else {
+            return queryHandler.<RT>iterate(query, projection);
+        }
     }
 
     @Override
@@ -237,6 +245,14 @@ public abstract class AbstractJPAQuery<Q extends AbstractJPAQuery<Q>> extends JP
     @Override
     @SuppressWarnings("unchecked")
     public <RT> List<RT> list(Expression<RT> expr) {
+        Path<?> id = getTwoPhaseIdentifier(expr);
+        if (id != null) {
+            try {
+                return (List<RT>) getTwoPhaseResultList(id, getMetadata().getModifiers());
+            } finally {
+                reset();
+            }
+        }
         Query query = createQuery(expr);
         try {
             return (List<RT>) getResultList(query);    
@@ -245,6 +261,26 @@ public abstract class AbstractJPAQuery<Q extends AbstractJPAQuery<Q>> extends JP
         }
     }
 
+    /**
+     * Selects the identifiers of the page with the given modifiers applied and fetches
+     * the entities of the identifiers in a second query
+     *
+     * @param id
+     * @param modifiers
+     * @return
+     */
+    private List<?> getTwoPhaseResultList(Path<?> id, QueryModifiers modifiers) {
+        String queryString = buildQueryString(createIdQueryMetadata(id), false);
+        logQuery(queryString);
+        Set<Object> ids = getIdentifiers(createQuery(queryString, modifiers, true).getResultList());
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        queryString = buildQueryString(createFetchQueryMetadata(id, ids), false);
+        logQuery(queryString);
+        return getEntities(ids, createQuery(queryString, null, true).getResultList());
+    }
+
     public SearchResults<Tuple> listResults(Expression<?>... args) {
         return listResults(new QTuple(args));
     }
@@ -255,6 +291,13 @@ public abstract class AbstractJPAQuery<Q extends AbstractJPAQuery<Q>> extends JP
         long total = (Long) countQuery.getSingleResult();
         if (total > 0) {
             QueryModifiers modifiers = getMetadata().getModifiers();
+            Path<?> id = getTwoPhaseIdentifier(expr);
+            if (id != null) {
+                @SuppressWarnings("unchecked")
+                List<RT> list = (List<RT>) getTwoPhaseResultList(id, modifiers);
+                reset();
+                return new SearchResults<RT>(list, modifiers, total);
+            }
             String queryString = toString();
             logQuery(queryString);
             Query query = createQuery(queryString, modifiers, false);
@@ -18,6 +18,7 @@ import javax.inject.Provider;
 import javax.persistence.EntityManager;
 
 import com.mysema.query.jpa.JPASubQuery;
+import com.mysema.query.jpa.JPQLQueryCache;
 import com.mysema.query.jpa.JPQLQueryFactory;
 import com.mysema.query.jpa.JPQLTemplates;
 import com.mysema.query.types.EntityPath;
@@ -35,14 +36,30 @@ public class JPAQueryFactory implements JPQLQueryFactory  {
 
     private final Provider<EntityManager> entityManager;
 
+    @Nullable
+    private final JPQLQueryCache queryCache;
+
     public JPAQueryFactory(Provider<EntityManager> entityManager) {
-        this.entityManager = entityManager;
-        this.templates = null;
+        this(null, entityManager, null);
     }
 
     public JPAQueryFactory(JPQLTemplates templates, Provider<EntityManager> entityManager) {
+        this(templates, entityManager, null);
+    }
+
+    /**
+     * Create a new JPAQueryFactory instance whose queries reuse the serialized query strings
+     * of the given cache
+     *
+     * @param templates templates or null, if the templates are derived from the EntityManager
+     * @param entityManager
+     * @param queryCache
+     */
+    public JPAQueryFactory(@Nullable JPQLTemplates templates, Provider<EntityManager> entityManager,
+            @Nullable JPQLQueryCache queryCache) {
         this.entityManager = entityManager;
         this.templates = templates;
+        this.queryCache = queryCache;
     }
 
     @Override
@@ -71,9 +88,9 @@ public class JPAQueryFactory implements JPQLQueryFactory  {
     @Override
     public JPAQuery query() {
         if (templates != null) {
-            return new JPAQuery(entityManager.get(), templates);    
+            return new JPAQuery(entityManager.get(), templates).setQueryCache(queryCache);
         } else {
-            return new JPAQuery(entityManager.get());
+            return new JPAQuery(entityManager.get()).setQueryCache(queryCache);
         }        
     }
 
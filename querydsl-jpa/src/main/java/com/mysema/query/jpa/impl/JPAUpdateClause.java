@@ -16,12 +16,14 @@ package com.mysema.query.jpa.impl;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
 import com.mysema.query.DefaultQueryMetadata;
 import com.mysema.query.JoinType;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.dml.KeyedUpdates;
 import com.mysema.query.dml.UpdateClause;
 import com.mysema.query.jpa.JPQLSerializer;
 import com.mysema.query.jpa.JPQLTemplates;
@@ -46,6 +48,9 @@ public class JPAUpdateClause implements UpdateClause<JPAUpdateClause> {
 
     private final JPQLTemplates templates;
 
+    @Nullable
+    private KeyedUpdates keyedUpdates;
+
     public JPAUpdateClause(EntityManager em, EntityPath<?> entity) {
         this(em, entity, JPAProvider.getTemplates(em));
     }
@@ -58,6 +63,17 @@ public class JPAUpdateClause implements UpdateClause<JPAUpdateClause> {
 
     @Override
     public long execute() {
+        if (keyedUpdates != null) {
+            long rv = 0;
+            for (List<Object> chunk : keyedUpdates.getChunks()) {
+                rv += execute(getMetadata(chunk));
+            }
+            return rv;
+        }
+        return execute(metadata);
+    }
+
+    private long execute(QueryMetadata metadata) {
         JPQLSerializer serializer = new JPQLSerializer(templates, entityManager);
         serializer.serializeForUpdate(metadata);
         Map<Object,String> constants = serializer.getConstantToLabel();
@@ -107,6 +123,34 @@ public class JPAUpdateClause implements UpdateClause<JPAUpdateClause> {
         return this;
     }
 
+    /**
+     * Set the values of the given path per value of the key path. The values are applied via a
+     * case expression on the key path in a single statement per chunk of key values. Rows whose
+     * key has no value for the path keep their current value.
+     *
+     * @param key key path
+     * @param path path to be updated
+     * @param values values per key value
+     * @return
+     */
+    public <K, V> JPAUpdateClause setByKey(Path<K> key, Path<V> path, Map<K, ? extends V> values) {
+        if (keyedUpdates == null) {
+            keyedUpdates = new KeyedUpdates(key);
+        }
+        keyedUpdates.add(key, path, values);
+        return this;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private QueryMetadata getMetadata(List<Object> chunk) {
+        QueryMetadata md = metadata.clone();
+        for (Map.Entry<Path<?>, Expression<?>> entry : keyedUpdates.getUpdates(chunk).entrySet()) {
+            md.addProjection(ExpressionUtils.eq((Expression)entry.getKey(), entry.getValue()));
+        }
+        md.addWhere(keyedUpdates.getCondition(chunk));
+        return md;
+    }
+
     @Override
     public JPAUpdateClause where(Predicate... o) {
         for (Predicate p : o) {
@@ -117,14 +161,19 @@ public class JPAUpdateClause implements UpdateClause<JPAUpdateClause> {
     
     @Override
     public String toString() {
+        QueryMetadata md = metadata;
+        if (keyedUpdates != null && !keyedUpdates.isEmpty()) {
+            // show the statement of the first chunk
+            md = getMetadata(keyedUpdates.getChunks().iterator().next());
+        }
         JPQLSerializer serializer = new JPQLSerializer(templates, entityManager);
-        serializer.serializeForUpdate(metadata);
+        serializer.serializeForUpdate(md);
         return serializer.toString();
     }
 
     @Override
     public boolean isEmpty() {
-        return metadata.getProjection().isEmpty();
+        return metadata.getProjection().isEmpty() && (keyedUpdates == null || keyedUpdates.isEmpty());
     }
 
 }
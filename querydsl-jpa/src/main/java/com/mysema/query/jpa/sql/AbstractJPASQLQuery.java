@@ -37,6 +37,7 @@ import com.mysema.query.QueryModifiers;
 import com.mysema.query.SearchResults;
 import com.mysema.query.Tuple;
 import com.mysema.query.jpa.AbstractSQLQuery;
+import com.mysema.query.jpa.EntityManagerQueryHandler;
 import com.mysema.query.jpa.NativeSQLSerializer;
 import com.mysema.query.jpa.QueryHandler;
 import com.mysema.query.jpa.impl.JPAProvider;
@@ -232,7 +233,11 @@ public abstract class AbstractJPASQLQuery<Q extends AbstractJPASQLQuery<Q> & com
     @Override
     public <RT> CloseableIterator<RT> iterate(Expression<RT> expr) {
         Query query = createQuery(expr);
-        return queryHandler.<RT>iterate(query, null);
+        if (queryHandler instanceof EntityManagerQueryHandler) {
+            return ((EntityManagerQueryHandler)queryHandler).<RT>iterate(entityManager, query, null);
+        } else {
+            return queryHandler.<RT>iterate(query, null);
+        }
     }
 
     @Override
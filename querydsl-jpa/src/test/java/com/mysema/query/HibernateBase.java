@@ -19,10 +19,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 
 import org.hibernate.LockMode;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.jdbc.Work;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.MethodRule;
@@ -34,7 +38,10 @@ import com.mysema.query.jpa.JPQLTemplates;
 import com.mysema.query.jpa.ScrollableResultsIterator;
 import com.mysema.query.jpa.domain.Cat;
 import com.mysema.query.jpa.domain.QCat;
+import com.mysema.query.jpa.hibernate.BulkCallback;
+import com.mysema.query.jpa.hibernate.BulkWriter;
 import com.mysema.query.jpa.hibernate.DefaultSessionHolder;
+import com.mysema.query.jpa.hibernate.HibernateBulkProcessor;
 import com.mysema.query.jpa.hibernate.HibernateQuery;
 import com.mysema.testutil.HibernateTestRunner;
 
@@ -125,6 +132,80 @@ public class HibernateBase extends AbstractJPATest {
         }
         rows.close();
     }
-    
+
+    @Test
+    public void TwoPhasePaging() {
+        QCat kitten = new QCat("kitten");
+        List<Cat> expected = query().from(cat).orderBy(cat.name.asc()).limit(2).offset(1).list(cat);
+        List<Cat> cats = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .orderBy(cat.name.asc()).limit(2).offset(1)
+                .setTwoPhasePaging(true).list(cat);
+        assertEquals(expected, cats);
+    }
+
+    @Test
+    public void BulkProcessing() {
+        final long total = query().from(cat).count();
+        session.flush();
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                StatelessSession stateless = session.getSessionFactory().openStatelessSession(connection);
+                try {
+                    HibernateBulkProcessor processor = new HibernateBulkProcessor(stateless, getTemplates())
+                        .setChunkSize(2);
+                    long count = processor.process(processor.from(cat), cat, new BulkCallback<Cat>() {
+                        @Override
+                        public void process(List<Cat> cats, BulkWriter writer) {
+                            assertTrue(cats.size() <= 2);
+                            for (Cat c : cats) {
+                                c.setName(c.getName() + "_bulk");
+                                writer.update(c);
+                            }
+                        }
+                    });
+                    assertEquals(total, count);
+                } finally {
+                    stateless.close();
+                }
+            }
+        });
+        session.clear();
+        assertEquals(total, query().from(cat).where(cat.name.endsWith("_bulk")).count());
+    }
+
+    @Test
+    public void BulkProcessing_Inserts() {
+        final long total = query().from(cat).count();
+        final int maxId = query().from(cat).uniqueResult(cat.id.max());
+        session.flush();
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                final StatelessSession stateless = session.getSessionFactory().openStatelessSession(connection);
+                try {
+                    final HibernateBulkProcessor processor = new HibernateBulkProcessor(stateless, getTemplates())
+                        .setChunkSize(2);
+                    long count = processor.process(processor.from(cat).where(cat.id.loe(maxId)), cat,
+                            new BulkCallback<Cat>() {
+                        @Override
+                        public void process(List<Cat> cats, BulkWriter writer) {
+                            long before = processor.from(cat).count();
+                            for (Cat c : cats) {
+                                writer.insert(new Cat(c.getName() + "_copy", c.getId() + maxId));
+                            }
+                            // the writes of a chunk are issued after the callback
+                            assertEquals(before, processor.from(cat).count());
+                        }
+                    });
+                    assertEquals(total, count);
+                } finally {
+                    stateless.close();
+                }
+            }
+        });
+        session.clear();
+        assertEquals(total, query().from(cat).where(cat.name.endsWith("_copy")).count());
+    }
 
 }
@@ -232,4 +232,14 @@ public class JPABase extends AbstractJPATest {
                 .singleResult(new QCatSummary(cat.breed.count(), exists)));
     }
 
+    @Test
+    public void TwoPhasePaging() {
+        QCat kitten = new QCat("kitten");
+        List<Cat> expected = query().from(cat).orderBy(cat.name.asc()).limit(2).offset(1).list(cat);
+        List<Cat> cats = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .orderBy(cat.name.asc()).limit(2).offset(1)
+                .setTwoPhasePaging(true).list(cat);
+        assertEquals(expected, cats);
+    }
+
 }
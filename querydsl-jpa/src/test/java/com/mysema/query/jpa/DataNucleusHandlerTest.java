@@ -0,0 +1,50 @@
+package com.mysema.query.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import javax.persistence.Query;
+
+import org.junit.Test;
+
+import com.mysema.commons.lang.CloseableIterator;
+
+public class DataNucleusHandlerTest {
+
+    public static class QueryResult extends ArrayList<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean closed;
+
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+    @Test
+    public void Close() {
+        QueryResult results = new QueryResult();
+        results.add("a");
+        Query query = createMock(Query.class);
+        expect(query.setHint("datanucleus.rdbms.query.resultSetType", "forward-only")).andReturn(query);
+        expect(query.setHint("datanucleus.query.resultCacheType", "none")).andReturn(query);
+        expect(query.setHint("datanucleus.query.loadResultsAtCommit", "false")).andReturn(query);
+        expect(query.getResultList()).andReturn(results);
+        replay(query);
+
+        CloseableIterator<Object> iterator = DataNucleusHandler.DEFAULT.iterate(query, null);
+        assertEquals("a", iterator.next());
+        assertFalse(results.closed);
+        iterator.close();
+        assertTrue(results.closed);
+    }
+
+}
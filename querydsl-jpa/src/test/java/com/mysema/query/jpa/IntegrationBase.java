@@ -16,7 +16,9 @@ package com.mysema.query.jpa;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
 import org.hibernate.ScrollMode;
@@ -123,6 +125,23 @@ public class IntegrationBase extends ParsingTest {
         assertEquals(0l, query().from(cat).where(cat.name.eq("Bob")).count());
     }
 
+    @Test
+    public void Update_by_key() {
+        session.save(new Cat("Bob",10));
+        session.save(new Cat("Steve",11));
+        session.save(new Cat("Tom",12));
+
+        QCat cat = QCat.cat;
+        Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+        names.put(10, "Bobby");
+        names.put(11, "Stevie");
+        long amount = update(cat).setByKey(cat.id, cat.name, names).execute();
+        assertEquals(2, amount);
+
+        assertEquals(Arrays.asList("Bobby", "Stevie", "Tom"), query().from(cat)
+                .where(cat.id.in(10, 11, 12)).orderBy(cat.id.asc()).list(cat.name));
+    }
+
     @Test
     public void Update_with_null() {
         session.save(new Cat("Bob",10));
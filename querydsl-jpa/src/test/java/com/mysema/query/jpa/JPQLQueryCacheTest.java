@@ -0,0 +1,92 @@
+package com.mysema.query.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.query.types.expr.Param;
+
+public class JPQLQueryCacheTest extends AbstractQueryTest {
+
+    private JPQLQueryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new JPQLQueryCache();
+    }
+
+    @Override
+    protected QueryHelper query() {
+        return super.query().setQueryCache(cache);
+    }
+
+    @Test
+    public void Same_Shape() {
+        QueryHelper first = query().from(cat).where(cat.name.eq("Bob"), cat.id.gt(1));
+        QueryHelper second = query().from(cat).where(cat.name.eq("Ann"), cat.id.gt(2));
+        assertEquals(first.toString(), second.toString());
+        Map<Object, String> constants = second.getConstants();
+        assertEquals("1", constants.get("Ann"));
+        assertEquals("2", constants.get(2));
+        assertEquals(2, constants.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void Count() {
+        query().from(cat).where(cat.name.eq("Bob")).toString();
+        QueryHelper query = query().from(cat).where(cat.name.eq("Ann"));
+        assertEquals("select count(cat)\nfrom Cat cat\nwhere cat.name = ?1", query.buildQueryString(true));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void Equal_Constants() {
+        query().from(cat).where(cat.name.eq("Bob"), cat.mate.name.ne("Bob")).toString();
+        QueryHelper query = query().from(cat).where(cat.name.eq("Ann"), cat.mate.name.ne("Ann"));
+        assertEquals("select cat\nfrom Cat cat\nwhere cat.name = ?1 and cat.mate.name <> ?1", query.toString());
+        assertEquals(1, cache.getHitCount());
+
+        query = query().from(cat).where(cat.name.eq("Ann"), cat.mate.name.ne("Bob"));
+        assertEquals("select cat\nfrom Cat cat\nwhere cat.name = ?1 and cat.mate.name <> ?2", query.toString());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Collections() {
+        query().from(cat).where(cat.id.in(1, 2)).toString();
+        QueryHelper query = query().from(cat).where(cat.id.in(3, 4, 5));
+        assertEquals("select cat\nfrom Cat cat\nwhere cat.id in (?1)", query.toString());
+        assertEquals(Arrays.asList(3, 4, 5), query.getConstants().keySet().iterator().next());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Params() {
+        Param<String> name = new Param<String>(String.class, "name");
+        query().from(cat).where(cat.name.eq(name), cat.id.gt(1)).toString();
+        QueryHelper query = query().from(cat).where(cat.name.eq(name), cat.id.gt(2));
+        assertEquals("select cat\nfrom Cat cat\nwhere cat.name = ?1 and cat.id > ?2", query.toString());
+        assertEquals("1", query.getConstants().get(name));
+        assertEquals("2", query.getConstants().get(2));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Transformed_Constants() {
+        query().from(cat).where(cat.name.like("A!%")).toString();
+        QueryHelper query = query().from(cat).where(cat.name.like("B%"));
+        assertEquals("select cat\nfrom Cat cat\nwhere cat.name like ?1 escape '!'", query.toString());
+        assertTrue(query.getConstants().containsKey("B%"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.mysema.query.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.junit.Test;
+
+import com.mysema.commons.lang.CloseableIterator;
+
+public class PagingQueryHandlerTest {
+
+    private static List<Object> toList(CloseableIterator<Object> iterator) {
+        List<Object> rv = new ArrayList<Object>();
+        while (iterator.hasNext()) {
+            rv.add(iterator.next());
+        }
+        iterator.close();
+        return rv;
+    }
+
+    @Test
+    public void Iterate() {
+        Query query = createMock(Query.class);
+        expect(query.getFirstResult()).andReturn(0);
+        expect(query.getMaxResults()).andReturn(Integer.MAX_VALUE);
+        expect(query.setFirstResult(0)).andReturn(query);
+        expect(query.setMaxResults(2)).andReturn(query);
+        expect(query.getResultList()).andReturn(Arrays.asList("a", "b"));
+        expect(query.setFirstResult(2)).andReturn(query);
+        expect(query.setMaxResults(2)).andReturn(query);
+        expect(query.getResultList()).andReturn(Arrays.asList("c"));
+        EntityManager entityManager = createMock(EntityManager.class);
+        replay(query, entityManager);
+
+        PagingQueryHandler handler = new PagingQueryHandler(2);
+        assertEquals(Arrays.asList("a", "b", "c"), toList(handler.iterate(entityManager, query, null)));
+        verify(query, entityManager);
+    }
+
+    @Test
+    public void Iterate_Detached() {
+        Query query = createMock(Query.class);
+        expect(query.getFirstResult()).andReturn(0);
+        expect(query.getMaxResults()).andReturn(Integer.MAX_VALUE);
+        expect(query.setFirstResult(0)).andReturn(query);
+        expect(query.setMaxResults(2)).andReturn(query);
+        expect(query.getResultList()).andReturn(Arrays.asList("a", "b"));
+        expect(query.setFirstResult(2)).andReturn(query);
+        expect(query.setMaxResults(2)).andReturn(query);
+        expect(query.getResultList()).andReturn(Arrays.asList("c"));
+        EntityManager entityManager = createMock(EntityManager.class);
+        expect(entityManager.contains("a")).andReturn(true);
+        entityManager.detach("a");
+        expect(entityManager.contains("b")).andReturn(true);
+        entityManager.detach("b");
+        replay(query, entityManager);
+
+        PagingQueryHandler handler = new PagingQueryHandler(2, true);
+        assertEquals(Arrays.asList("a", "b", "c"), toList(handler.iterate(entityManager, query, null)));
+        verify(query, entityManager);
+    }
+
+    @Test
+    public void Iterate_With_Modifiers() {
+        Query query = createMock(Query.class);
+        expect(query.getFirstResult()).andReturn(1);
+        expect(query.getMaxResults()).andReturn(3);
+        expect(query.setFirstResult(1)).andReturn(query);
+        expect(query.setMaxResults(2)).andReturn(query);
+        expect(query.getResultList()).andReturn(Arrays.asList(1, 2));
+        expect(query.setFirstResult(3)).andReturn(query);
+        expect(query.setMaxResults(1)).andReturn(query);
+        expect(query.getResultList()).andReturn(Arrays.asList(3));
+        EntityManager entityManager = createMock(EntityManager.class);
+        expect(entityManager.contains(1)).andThrow(new IllegalArgumentException());
+        replay(query, entityManager);
+
+        PagingQueryHandler handler = new PagingQueryHandler(2, true);
+        assertEquals(Arrays.<Object>asList(1, 2, 3), toList(handler.iterate(entityManager, query, null)));
+        verify(query, entityManager);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Invalid_Page_Size() {
+        new PagingQueryHandler(0);
+    }
+
+}
@@ -10,6 +10,11 @@ public class QueryHandlerTest {
     public void Types() {
         assertEquals(EclipseLinkHandler.class, EclipseLinkTemplates.DEFAULT.getQueryHandler().getClass());
         assertEquals(HibernateHandler.class, HQLTemplates.DEFAULT.getQueryHandler().getClass());
+        assertEquals(OpenJPAHandler.class, OpenJPATemplates.DEFAULT.getQueryHandler().getClass());
+        assertEquals(DataNucleusHandler.class, DataNucleusTemplates.DEFAULT.getQueryHandler().getClass());
+        assertEquals(DefaultQueryHandler.class, BatooTemplates.DEFAULT.getQueryHandler().getClass());
+        assertEquals(PagingQueryHandler.class, new BatooTemplates(JPQLTemplates.DEFAULT_ESCAPE,
+                PagingQueryHandler.DEFAULT).getQueryHandler().getClass());
         assertEquals(DefaultQueryHandler.class, JPQLTemplates.DEFAULT.getQueryHandler().getClass());
     }
 
@@ -0,0 +1,107 @@
+package com.mysema.query.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.types.Path;
+
+public class TwoPhasePagingTest extends AbstractQueryTest {
+
+    @Test
+    public void Disabled() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch().limit(2);
+        assertNull(query.getTwoPhaseIdentifier(cat));
+    }
+
+    @Test
+    public void Without_Modifiers() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .setTwoPhasePaging(true);
+        assertNull(query.getTwoPhaseIdentifier(cat));
+    }
+
+    @Test
+    public void Without_Collection_Fetch() {
+        QueryHelper query = query().from(cat).innerJoin(cat.mate, cat1).fetch()
+                .leftJoin(cat.kittens, kitten).limit(2).setTwoPhasePaging(true);
+        assertNull(query.getTwoPhaseIdentifier(cat));
+    }
+
+    @Test
+    public void Other_Projection() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .limit(2).setTwoPhasePaging(true);
+        assertNull(query.getTwoPhaseIdentifier(cat.name));
+    }
+
+    @Test
+    public void Order_By_Collection_Element() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .orderBy(cat.name.asc(), kitten.name.asc()).limit(2).setTwoPhasePaging(true);
+        assertNull(query.getTwoPhaseIdentifier(cat));
+    }
+
+    @Test
+    public void Order_By_Collection_Element_Reference() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .leftJoin(kitten.mate, cat1)
+                .orderBy(cat1.name.lower().asc()).limit(2).setTwoPhasePaging(true);
+        assertNull(query.getTwoPhaseIdentifier(cat));
+    }
+
+    @Test
+    public void Order_By_Reference() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .leftJoin(cat.mate, cat1)
+                .orderBy(cat1.name.asc()).limit(2).setTwoPhasePaging(true);
+        assertEquals("cat.id", query.getTwoPhaseIdentifier(cat).toString());
+    }
+
+    @Test
+    public void Id_Query() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .where(cat.name.isNotNull()).orderBy(cat.name.asc()).limit(2)
+                .setTwoPhasePaging(true);
+        Path<?> id = query.getTwoPhaseIdentifier(cat);
+        assertEquals("cat.id", id.toString());
+        assertEquals("select distinct cat.id, cat.name\n" +
+                "from Cat cat\n" +
+                "  left join cat.kittens as kitten\n" +
+                "where cat.name is not null\n" +
+                "order by cat.name asc",
+                query.buildQueryString(query.createIdQueryMetadata(id), false));
+    }
+
+    @Test
+    public void Fetch_Query() {
+        QueryHelper query = query().from(cat).leftJoin(cat.kittens, kitten).fetch()
+                .where(cat.name.isNotNull()).orderBy(cat.name.asc()).limit(2)
+                .setTwoPhasePaging(true);
+        Path<?> id = query.getTwoPhaseIdentifier(cat);
+        assertEquals("select cat.id, cat\n" +
+                "from Cat cat\n" +
+                "  left join fetch cat.kittens as kitten\n" +
+                "where cat.name is not null and cat.id in (?1)",
+                query.buildQueryString(query.createFetchQueryMetadata(id, Arrays.asList(1, 2)), false));
+    }
+
+    @Test
+    public void Identifiers() {
+        List<Object[]> rows = Arrays.asList(
+                new Object[]{2, "Bob"}, new Object[]{1, "Felix"}, new Object[]{2, "Bob"});
+        assertEquals(Arrays.<Object>asList(2, 1), Arrays.asList(JPAQueryBase.getIdentifiers(rows).toArray()));
+    }
+
+    @Test
+    public void Entities() {
+        List<Object[]> rows = Arrays.asList(
+                new Object[]{1, "Felix"}, new Object[]{2, "Bob"}, new Object[]{1, "Felix"});
+        assertEquals(Arrays.<Object>asList("Bob", "Felix"), JPAQueryBase.getEntities(Arrays.asList(2, 3, 1), rows));
+    }
+
+}
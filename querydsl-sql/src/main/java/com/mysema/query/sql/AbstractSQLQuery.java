@@ -13,23 +13,33 @@
  */
 package com.mysema.query.sql;
 
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
+import javax.inject.Provider;
 
 import com.mysema.query.types.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.commons.lang.IteratorAdapter;
 import com.mysema.query.DefaultQueryMetadata;
 import com.mysema.query.JoinFlag;
 import com.mysema.query.Query;
@@ -78,6 +88,23 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
 
     private final SQLListeners listeners;
 
+    private StatementOptions statementOptions;
+
+    @Nullable
+    private ExecutorService executor;
+
+    @Nullable
+    private Provider<Connection> connections;
+
+    @Nullable
+    private Executor asyncExecutor;
+
+    @Nullable
+    private Provider<Connection> asyncConnections;
+
+    @Nullable
+    private QueryTask<?> task;
+
     protected final QueryMixin<Q> queryMixin;
 
     protected boolean unionAll;
@@ -94,6 +121,7 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
         this.conn = conn;
         this.configuration = configuration;
         this.listeners = new SQLListeners(configuration.getListeners());
+        this.statementOptions = configuration.getStatementOptions();
     }
 
     /**
@@ -178,17 +206,46 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
     }
 
     protected String buildQueryString(boolean forCountRow) {
-        SQLSerializer serializer = createSerializer();
-        if (union != null) {
-            serializer.serializeUnion(union, queryMixin.getMetadata(), unionAll);
-        } else {
-            serializer.serialize(queryMixin.getMetadata(), forCountRow);
+        SQLStatementCache cache = configuration.getStatementCache();
+        QueryShape shape = null;
+        if (cache != null) {
+            shape = new QueryShape(configuration);
+            shape.handle(getClass(), queryMixin.getMetadata(), union, unionAll, forCountRow);
+            SQLStatementCache.Entry entry = cache.get(shape);
+            if (entry != null) {
+                constants = entry.getConstants(shape.getSlots());
+                constantPaths = entry.getConstantPaths();
+                return entry.getSQL();
+            }
         }
+
+        SQLSerializer serializer = createSerializer();
+        serialize(serializer, queryMixin.getMetadata(), union, forCountRow);
         constants = serializer.getConstants();
         constantPaths = serializer.getConstantPaths();
-        return serializer.toString();
+        String queryString = serializer.toString();
+        if (cache != null && !cache.contains(shape)) {
+            // serialize the query once more with placeholders to map the bindings to the slots
+            QueryShape substituted = new QueryShape(configuration, true);
+            substituted.handle(getClass(), queryMixin.getMetadata(), union, unionAll, forCountRow);
+            SQLSerializer placeholders = null;
+            if (substituted.getMetadata() != null) {
+                placeholders = createSerializer();
+                serialize(placeholders, substituted.getMetadata(), substituted.getUnion(), forCountRow);
+            }
+            cache.put(substituted, queryString, placeholders);
+        }
+        return queryString;
     }
 
+    private void serialize(SQLSerializer serializer, QueryMetadata metadata,
+            @Nullable Expression<?> union, boolean forCountRow) {
+        if (union != null) {
+            serializer.serializeUnion(union, metadata, unionAll);
+        } else {
+            serializer.serialize(metadata, forCountRow);
+        }
+    }
 
     @Override
     public long count() {
@@ -337,11 +394,6 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
         return queryMixin.rightJoin(entity).on(key.on(entity));
     }
 
-    @Nullable
-    private <T> T get(ResultSet rs, Expression<?> expr, int i, Class<T> type) throws SQLException {
-        return configuration.get(rs, expr instanceof Path ? (Path)expr : null, i, type);
-    }
-
     private void set(PreparedStatement stmt, Path<?> path, int i, Object value) throws SQLException{
         configuration.set(stmt, path, i, value);
     }
@@ -386,26 +438,44 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
             logger.debug("query : {}", queryString);
         }
         listeners.notifyQuery(queryMixin.getMetadata());
-
+        final SQLListenerContextImpl context = startContext(conn, queryMixin.getMetadata(), queryString);
+        boolean success = false;
         try {
-            final PreparedStatement stmt = conn.prepareStatement(queryString);
+            final PreparedStatement stmt = prepareStatement(queryString);
             setParameters(stmt, constants, constantPaths, getMetadata().getParams());
             final ResultSet rs = stmt.executeQuery();
-
+            success = true;
             return new ResultSetAdapter(rs) {
+                private long rows;
+                @Override
+                public boolean next() throws SQLException {
+                    boolean next = super.next();
+                    if (next) {
+                        rows++;
+                    }
+                    return next;
+                }
                 @Override
                 public void close() throws SQLException {
                     try {
                         super.close();
                     } finally {
+                        context.setRowCount(rows);
+                        endContext(context);
                         stmt.close();
                     }
                 }
             };
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException(e);
-
+        } catch (RuntimeException e) {
+            onException(context, e);
+            throw e;
         } finally {
+            if (!success) {
+                endContext(context);
+            }
             reset();
         }
     }
@@ -423,6 +493,253 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
         return configuration;
     }
 
+    /**
+     * Set the JDBC statement options to be used for this query, the default options are taken
+     * from the {@link Configuration}
+     *
+     * @param statementOptions
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Q setStatementOptions(StatementOptions statementOptions) {
+        this.statementOptions = statementOptions;
+        return (Q)this;
+    }
+
+    /**
+     * Execute the chunk queries of IN lists exceeding {@link SQLTemplates#getMaxInListSize()}
+     * in parallel with the given executor and connections of the given provider. The connection
+     * of each chunk query is taken from the provider on the executing thread and closed after the
+     * execution.
+     *
+     * @param executor
+     * @param connections
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Q parallel(ExecutorService executor, Provider<Connection> connections) {
+        this.executor = executor;
+        this.connections = connections;
+        return (Q)this;
+    }
+
+    /**
+     * Execute the asynchronous variants of the execution methods with the given executor and
+     * connections of the given provider. The connection of each execution is taken from the
+     * provider on the executing thread and closed after the execution. The execution runs on a
+     * clone of this query bound to that connection, so the connection of this query isn't used
+     * and detached queries can be executed asynchronously as well.
+     *
+     * @param executor
+     * @param connections
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Q async(Executor executor, Provider<Connection> connections) {
+        this.asyncExecutor = executor;
+        this.asyncConnections = connections;
+        return (Q)this;
+    }
+
+    /**
+     * Clone the state of this query to a new instance with the given Connection
+     *
+     * <p>Used to bind asynchronous executions to their own connection. Subclasses supporting
+     * the asynchronous execution methods need to override this method.</p>
+     *
+     * @param conn
+     * @return
+     */
+    protected Q clone(Connection conn) {
+        throw new UnsupportedOperationException(getClass().getName() + " can't be cloned");
+    }
+
+    private <T> ListenableFuture<T> submit(final Function<AbstractSQLQuery<?>, T> function) {
+        if (asyncExecutor == null) {
+            throw new IllegalStateException("No executor for asynchronous execution set");
+        }
+        QueryTask<T> rv = new QueryTask<T>(asyncConnections) {
+            @Override
+            protected T execute(Connection connection) throws Exception {
+                AbstractSQLQuery<?> original = AbstractSQLQuery.this;
+                AbstractSQLQuery<?> query = original.clone(connection);
+                for (SQLListener listener : original.listeners.getListeners()) {
+                    query.listeners.add(listener);
+                }
+                query.statementOptions = original.statementOptions;
+                query.executor = original.executor;
+                query.connections = original.connections;
+                query.task = this;
+                return function.apply(query);
+            }
+        };
+        asyncExecutor.execute(rv);
+        return rv;
+    }
+
+    private PreparedStatement prepareStatement(String queryString) throws SQLException {
+        return prepareStatement(conn, queryString);
+    }
+
+    private PreparedStatement prepareStatement(Connection connection, String queryString) throws SQLException {
+        PreparedStatement stmt = statementOptions.prepareStatement(connection,
+                configuration.getTemplates(), queryString);
+        QueryTask<?> current = task;
+        if (current != null) {
+            try {
+                current.register(stmt);
+            } catch (RuntimeException e) {
+                stmt.close();
+                throw e;
+            }
+        }
+        return stmt;
+    }
+
+    private SQLListenerContextImpl startContext(Connection connection, QueryMetadata metadata,
+            String queryString) {
+        SQLListenerContextImpl context = new SQLListenerContextImpl(metadata, connection, queryString);
+        listeners.start(context);
+        return context;
+    }
+
+    private void onException(SQLListenerContextImpl context, Exception e) {
+        context.setException(e);
+        listeners.exception(context);
+    }
+
+    private void endContext(SQLListenerContextImpl context) {
+        if (context.end()) {
+            listeners.end(context);
+        }
+    }
+
+    @Nullable
+    private List<Predicate> splitInLists() {
+        QueryMetadata metadata = queryMixin.getMetadata();
+        // ordered chunks project the order expressions, which would change the distinct rows
+        if (union != null || !metadata.getGroupBy().isEmpty() || metadata.getHaving() != null
+         || configuration.isUseArrayParameters()
+         || !InListSplitter.isMergeable(metadata.getProjection())
+         || !InListSplitter.isOrderable(metadata.getOrderBy())
+         || (metadata.isDistinct() && !metadata.getOrderBy().isEmpty())) {
+            return null;
+        }
+        return InListSplitter.split(metadata.getWhere(), configuration.getTemplates().getMaxInListSize());
+    }
+
+    private <RT> List<RT> listSplit(QueryMetadata metadata, List<Predicate> conditions,
+            Expression<RT> expr) {
+        InListSplitter<RT> splitter = new InListSplitter<RT>(metadata, expr,
+                configuration.getTemplates().isNullsSortedLow());
+        List<QueryMetadata> chunks = new ArrayList<QueryMetadata>(conditions.size());
+        for (Predicate condition : conditions) {
+            chunks.add(splitter.createChunk(metadata, condition));
+        }
+        listeners.notifyQuery(metadata);
+        return splitter.merge(executeChunks(chunks, splitter.getProjection(), false));
+    }
+
+    private long countSplit(List<Predicate> conditions) {
+        QueryMetadata metadata = queryMixin.getMetadata();
+        List<QueryMetadata> chunks = new ArrayList<QueryMetadata>(conditions.size());
+        for (Predicate condition : conditions) {
+            QueryMetadata chunk = metadata.clone();
+            chunk.clearWhere();
+            chunk.addWhere(condition);
+            chunks.add(chunk);
+        }
+        // the chunks are disjoint, since the IN lists are split into distinct values
+        long total = 0;
+        for (List<Object> result : executeChunks(chunks, null, true)) {
+            total += ((Number)result.get(0)).longValue();
+        }
+        return total;
+    }
+
+    private <RT> List<List<RT>> executeChunks(List<QueryMetadata> chunks,
+            @Nullable final Expression<RT> expr, final boolean forCountRow) {
+        List<List<RT>> rv = new ArrayList<List<RT>>(chunks.size());
+        if (executor != null) {
+            List<Callable<List<RT>>> tasks = new ArrayList<Callable<List<RT>>>(chunks.size());
+            for (final QueryMetadata chunk : chunks) {
+                tasks.add(new Callable<List<RT>>() {
+                    @Override
+                    public List<RT> call() throws Exception {
+                        Connection connection = connections.get();
+                        try {
+                            return executeChunk(connection, chunk, expr, forCountRow);
+                        } finally {
+                            try {
+                                connection.close();
+                            } catch (SQLException e) {
+                                logger.error(e.getMessage(), e);
+                            }
+                        }
+                    }
+                });
+            }
+            try {
+                for (Future<List<RT>> future : executor.invokeAll(tasks)) {
+                    rv.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueryException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof QueryException) {
+                    throw (QueryException)e.getCause();
+                }
+                throw new QueryException("Caught " + e.getCause().getClass().getSimpleName(), e.getCause());
+            }
+        } else {
+            for (QueryMetadata chunk : chunks) {
+                rv.add(executeChunk(conn, chunk, expr, forCountRow));
+            }
+        }
+        return rv;
+    }
+
+    private <RT> List<RT> executeChunk(Connection connection, QueryMetadata metadata,
+            @Nullable Expression<RT> expr, boolean forCountRow) {
+        SQLSerializer serializer = createSerializer();
+        serializer.serialize(metadata, forCountRow);
+        String queryString = serializer.toString();
+        if (logger.isDebugEnabled()) {
+            logger.debug("query : {}", queryString);
+        }
+        SQLListenerContextImpl context = startContext(connection, metadata, queryString);
+        try {
+            PreparedStatement stmt = prepareStatement(connection, queryString);
+            try {
+                setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(),
+                        metadata.getParams());
+                ResultSet rs = stmt.executeQuery();
+                try {
+                    List<RT> rv = new ArrayList<RT>();
+                    RowReader<RT> reader = new RowReader<RT>(configuration, expr);
+                    while (rs.next()) {
+                        rv.add(reader.read(rs));
+                    }
+                    context.setRowCount(rv.size());
+                    return rv;
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            onException(context, e);
+            throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
+        } catch (RuntimeException e) {
+            onException(context, e);
+            throw e;
+        } finally {
+            endContext(context);
+        }
+    }
+
     @Override
     public CloseableIterator<Tuple> iterate(Expression<?>... args) {
         return iterate(new QTuple(args));
@@ -431,6 +748,14 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
     @Override
     public <RT> CloseableIterator<RT> iterate(Expression<RT> expr) {
         expr = queryMixin.addProjection(expr);
+        List<Predicate> conditions = splitInLists();
+        if (conditions != null) {
+            try {
+                return new IteratorAdapter<RT>(listSplit(queryMixin.getMetadata(), conditions, expr).iterator());
+            } finally {
+                reset();
+            }
+        }
         return iterateSingle(queryMixin.getMetadata(), expr);
     }
 
@@ -441,49 +766,44 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
             logger.debug("query : {}", queryString);
         }
         listeners.notifyQuery(queryMixin.getMetadata());
+        final SQLListenerContextImpl context = startContext(conn, metadata, queryString);
+        boolean success = false;
         try {
-            final PreparedStatement stmt = conn.prepareStatement(queryString);
+            final PreparedStatement stmt = prepareStatement(queryString);
             setParameters(stmt, constants, constantPaths, metadata.getParams());
             final ResultSet rs = stmt.executeQuery();
-
-            if (expr == null) {
-                return new SQLResultIterator<RT>(stmt, rs) {
-                    @Override
-                    public RT produceNext(ResultSet rs) throws Exception {
-                        return (RT) rs.getObject(1);
-                    }
-                };
-            } else if (expr instanceof FactoryExpression) {
-                return new SQLResultIterator<RT>(stmt, rs) {
-                    @Override
-                    public RT produceNext(ResultSet rs) throws Exception {
-                        return newInstance((FactoryExpression<RT>) expr, rs, 0);
-                    }
-                };
-            } else if (expr.getType().isArray()) {
-                return new SQLResultIterator<RT>(stmt, rs) {
-                    @Override
-                    public RT produceNext(ResultSet rs) throws Exception {
-                        Object[] rv = new Object[rs.getMetaData().getColumnCount()];
-                        for (int i = 0; i < rv.length; i++) {
-                            rv[i] = rs.getObject(i+1);
-                        }
-                        return (RT) rv;
-                    }
-                };
-            } else {
-                return new SQLResultIterator<RT>(stmt, rs) {
-                    @Override
-                    public RT produceNext(ResultSet rs) throws Exception {
-                        return get(rs, expr, 1, expr.getType());
+            final RowReader<RT> reader = new RowReader<RT>(configuration, expr);
+            success = true;
+            return new SQLResultIterator<RT>(stmt, rs) {
+                private long rows;
+                @Override
+                public RT produceNext(ResultSet rs) throws Exception {
+                    rows++;
+                    return reader.read(rs);
+                }
+                @Override
+                public void close() {
+                    try {
+                        super.close();
+                    } finally {
+                        context.setRowCount(rows);
+                        endContext(context);
                     }
-                };
-            }
+                }
+            };
 
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
 
+        } catch (RuntimeException e) {
+            onException(context, e);
+            throw e;
+
         } finally {
+            if (!success) {
+                endContext(context);
+            }
             reset();
         }
     }
@@ -496,43 +816,33 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
     @Override
     public <RT> List<RT> list(Expression<RT> expr) {
         expr = queryMixin.addProjection(expr);
+        List<Predicate> conditions = splitInLists();
+        if (conditions != null) {
+            try {
+                return listSplit(queryMixin.getMetadata(), conditions, expr);
+            } finally {
+                reset();
+            }
+        }
         final String queryString = buildQueryString(false);
         if (logger.isDebugEnabled()) {
             logger.debug("query : {}", queryString);
         }
         listeners.notifyQuery(queryMixin.getMetadata());
+        SQLListenerContextImpl context = startContext(conn, queryMixin.getMetadata(), queryString);
         try {
-            final PreparedStatement stmt = conn.prepareStatement(queryString);
+            final PreparedStatement stmt = prepareStatement(queryString);
             try {
                 setParameters(stmt, constants, constantPaths, queryMixin.getMetadata().getParams());
                 final ResultSet rs = stmt.executeQuery();
                 try {
                     final List<RT> rv = new ArrayList<RT>();
-                    if (expr instanceof FactoryExpression) {
-                        FactoryExpression<RT> fe = (FactoryExpression<RT>)expr;
-                        while (rs.next()) {
-                            rv.add(newInstance(fe, rs, 0));
-                        }
-                    }  else if (expr.getType().isArray()) {
-                        while (rs.next()) {
-                            Object[] row = new Object[rs.getMetaData().getColumnCount()];
-                            for (int i = 0; i < row.length; i++) {
-                                row[i] = rs.getObject(i+1);
-                            }
-                            rv.add((RT)row);
-                        }
-                    } else {
-                        while (rs.next()) {
-                            rv.add(get(rs, expr, 1, expr.getType()));
-                        }
+                    final RowReader<RT> reader = new RowReader<RT>(configuration, expr);
+                    while (rs.next()) {
+                        rv.add(reader.read(rs));
                     }
+                    context.setRowCount(rv.size());
                     return rv;
-                } catch (IllegalAccessException e) {
-                    throw new QueryException(e);
-                } catch (InvocationTargetException e) {
-                    throw new QueryException(e);
-                } catch (InstantiationException e) {
-                    throw new QueryException(e);
                 } catch (SQLException e) {
                     throw new QueryException(e);
                 } finally {
@@ -543,13 +853,67 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
                 stmt.close();
             }
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
 
+        } catch (RuntimeException e) {
+            onException(context, e);
+            throw e;
+
         } finally {
+            endContext(context);
             reset();
         }
     }
 
+    /**
+     * Get the page of results following the last row of the given keyset
+     *
+     * @param keyset
+     * @param pageSize
+     * @param args
+     * @return
+     */
+    public KeysetPage<Tuple> listPage(Keyset keyset, int pageSize, Expression<?>... args) {
+        return listPage(keyset, pageSize, new QTuple(args));
+    }
+
+    /**
+     * Get the page of results following the last row of the given keyset
+     *
+     * @param keyset
+     * @param pageSize
+     * @param expr
+     * @return
+     */
+    public <RT> KeysetPage<RT> listPage(Keyset keyset, int pageSize, Expression<RT> expr) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize);
+        }
+        // the order expressions are projected as well to get the keyset of the next page
+        Expression<RT> projection = convertProjection(expr);
+        List<Expression<?>> args = getProjectionArgs(projection);
+        int keyOffset = args.size();
+        for (OrderSpecifier<?> order : keyset.getOrder()) {
+            args.add(order.getTarget());
+        }
+        seek(keyset);
+        // one more row is fetched to know whether there is a next page
+        limit(pageSize + 1);
+        List<Tuple> rows = list(new QTuple(ImmutableList.copyOf(args)));
+
+        List<RT> results = new ArrayList<RT>(Math.min(rows.size(), pageSize));
+        for (int i = 0; i < rows.size() && i < pageSize; i++) {
+            results.add(newInstance(projection, rows.get(i).toArray(), keyOffset));
+        }
+        Keyset next = null;
+        if (rows.size() > pageSize) {
+            Object[] last = rows.get(pageSize - 1).toArray();
+            next = keyset.after(Arrays.copyOfRange(last, keyOffset, last.length));
+        }
+        return new KeysetPage<RT>(results, next);
+    }
+
     @Override
     public SearchResults<Tuple> listResults(Expression<?>... args) {
         return listResults(new QTuple(args));
@@ -557,6 +921,10 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
 
     @Override
     public <RT> SearchResults<RT> listResults(Expression<RT> expr) {
+        if (configuration.isUseWindowedCount() && union == null
+         && !queryMixin.getMetadata().isDistinct() && splitInLists() == null) {
+            return listResultsWindowed(expr);
+        }
         queryMixin.addProjection(expr);
         long total = count();
         try {
@@ -573,13 +941,76 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
         }
     }
 
-    private <RT> RT newInstance(FactoryExpression<RT> c, ResultSet rs, int offset)
-        throws InstantiationException, IllegalAccessException, InvocationTargetException, SQLException{
-        Object[] args = new Object[c.getArgs().size()];
-        for (int i = 0; i < args.length; i++) {
-            args[i] = get(rs, c.getArgs().get(i), offset + i + 1, c.getArgs().get(i).getType());
+    @SuppressWarnings("unchecked")
+    private <RT> SearchResults<RT> listResultsWindowed(Expression<RT> expr) {
+        QueryMetadata metadata = queryMixin.getMetadata();
+        QueryModifiers modifiers = metadata.getModifiers();
+        Map<ParamExpression<?>, Object> params = metadata.getParams();
+        Expression<RT> projection = convertProjection(expr);
+        List<Expression<?>> args = getProjectionArgs(projection);
+        int totalIndex = args.size();
+        args.add(new WindowOver<Long>(Long.class, Ops.AggOps.COUNT_ALL_AGG).over());
+        List<Tuple> rows = list(new QTuple(ImmutableList.copyOf(args)));
+
+        if (!rows.isEmpty()) {
+            List<RT> results = new ArrayList<RT>(rows.size());
+            for (Tuple row : rows) {
+                results.add(newInstance(projection, row.toArray(), totalIndex));
+            }
+            long total = ((Number)rows.get(0).toArray()[totalIndex]).longValue();
+            return new SearchResults<RT>(results, modifiers, total);
+
+        } else if (modifiers.getOffset() != null && modifiers.getOffset().longValue() > 0) {
+            // the offset may be beyond the last row
+            for (Map.Entry<ParamExpression<?>, Object> entry : params.entrySet()) {
+                metadata.setParam((ParamExpression<Object>)entry.getKey(), entry.getValue());
+            }
+            try {
+                long total = count();
+                if (total > 0) {
+                    return new SearchResults<RT>(Collections.<RT>emptyList(), modifiers, total);
+                } else {
+                    return SearchResults.emptyResults();
+                }
+            } finally {
+                reset();
+            }
+
+        } else {
+            return SearchResults.emptyResults();
+        }
+    }
+
+    /**
+     * Convert the given projection into a flat form, so that further columns can be appended
+     * to its arguments
+     */
+    @SuppressWarnings("unchecked")
+    private <RT> Expression<RT> convertProjection(Expression<RT> expr) {
+        Expression<RT> projection = queryMixin.convert(expr);
+        if (projection instanceof FactoryExpression) {
+            projection = FactoryExpressionUtils.wrap((FactoryExpression<RT>)projection);
+        }
+        return projection;
+    }
+
+    private static List<Expression<?>> getProjectionArgs(Expression<?> projection) {
+        List<Expression<?>> args = new ArrayList<Expression<?>>();
+        if (projection instanceof FactoryExpression) {
+            args.addAll(((FactoryExpression<?>)projection).getArgs());
+        } else {
+            args.add(projection);
+        }
+        return args;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <RT> RT newInstance(Expression<RT> projection, Object[] row, int length) {
+        if (projection instanceof FactoryExpression) {
+            return ((FactoryExpression<RT>)projection).newInstance(Arrays.copyOf(row, length));
+        } else {
+            return (RT)row[0];
         }
-        return c.newInstance(args);
     }
 
     public Q on(Predicate condition) {
@@ -591,6 +1022,11 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
         return queryMixin.on(conditions);
     }
 
+    @Override
+    public Q seek(Keyset keyset) {
+        return keyset.seek(queryMixin);
+    }
+
     private void reset() {
         queryMixin.getMetadata().reset();
         constants = null;
@@ -728,6 +1164,133 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
         return uniqueResult(iterator);
     }
 
+    /**
+     * Get the projection as a typed List asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @param args
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public ListenableFuture<List<Tuple>> listAsync(Expression<?>... args) {
+        return listAsync(new QTuple(args));
+    }
+
+    /**
+     * Get the projection as a typed List asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @param expr
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public <RT> ListenableFuture<List<RT>> listAsync(final Expression<RT> expr) {
+        return submit(new Function<AbstractSQLQuery<?>, List<RT>>() {
+            @Override
+            public List<RT> apply(AbstractSQLQuery<?> query) {
+                return query.list(expr);
+            }
+        });
+    }
+
+    /**
+     * Get the projection in {@link SearchResults} form asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @param args
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public ListenableFuture<SearchResults<Tuple>> listResultsAsync(Expression<?>... args) {
+        return listResultsAsync(new QTuple(args));
+    }
+
+    /**
+     * Get the projection in {@link SearchResults} form asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @param expr
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public <RT> ListenableFuture<SearchResults<RT>> listResultsAsync(final Expression<RT> expr) {
+        return submit(new Function<AbstractSQLQuery<?>, SearchResults<RT>>() {
+            @Override
+            public SearchResults<RT> apply(AbstractSQLQuery<?> query) {
+                return query.listResults(expr);
+            }
+        });
+    }
+
+    /**
+     * Get the projection as a unique result asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @param args
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public ListenableFuture<Tuple> uniqueResultAsync(Expression<?>... args) {
+        return uniqueResultAsync(new QTuple(args));
+    }
+
+    /**
+     * Get the projection as a unique result asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @param expr
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public <RT> ListenableFuture<RT> uniqueResultAsync(final Expression<RT> expr) {
+        return submit(new Function<AbstractSQLQuery<?>, RT>() {
+            @Override
+            public RT apply(AbstractSQLQuery<?> query) {
+                return query.uniqueResult(expr);
+            }
+        });
+    }
+
+    /**
+     * Get the count of matched elements asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public ListenableFuture<Long> countAsync() {
+        return submit(new Function<AbstractSQLQuery<?>, Long>() {
+            @Override
+            public Long apply(AbstractSQLQuery<?> query) {
+                return query.count();
+            }
+        });
+    }
+
+    /**
+     * Get whether there are matched elements asynchronously
+     *
+     * <p>The query must not be modified or executed until the returned future is done.</p>
+     *
+     * @return
+     * @see #async(Executor, Provider)
+     */
+    public ListenableFuture<Boolean> existsAsync() {
+        return submit(new Function<AbstractSQLQuery<?>, Boolean>() {
+            @Override
+            public Boolean apply(AbstractSQLQuery<?> query) {
+                return query.exists();
+            }
+        });
+    }
+
     @Override
     public Q withRecursive(Path<?> alias, SubQueryExpression<?> query) {
         queryMixin.addFlag(new QueryFlag(QueryFlag.Position.WITH, SQLTemplates.RECURSIVE));
@@ -766,23 +1329,47 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q> & Query<Q>>
     }
 
     private long unsafeCount() throws SQLException {
+        List<Predicate> conditions = splitInLists();
+        if (conditions != null) {
+            QueryMetadata metadata = queryMixin.getMetadata();
+            if (!metadata.isDistinct()) {
+                return countSplit(conditions);
+            } else if (!metadata.getProjection().isEmpty()) {
+                // distinct rows of different chunks may be equal
+                QueryMetadata unrestricted = metadata.clone();
+                unrestricted.setModifiers(QueryModifiers.EMPTY);
+                unrestricted.clearOrderBy();
+                List<Expression<?>> projection = metadata.getProjection();
+                Expression<?> expr = projection.size() == 1 ? projection.get(0)
+                        : new QTuple(ImmutableList.copyOf(projection));
+                return listSplit(unrestricted, conditions, expr).size();
+            }
+        }
         final String queryString = buildQueryString(true);
         if (logger.isDebugEnabled()) {
             logger.debug("query : {}", queryString);
         }
+        SQLListenerContextImpl context = startContext(conn, queryMixin.getMetadata(), queryString);
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
-            stmt = conn.prepareStatement(queryString);
+            stmt = prepareStatement(queryString);
             setParameters(stmt, constants, constantPaths, getMetadata().getParams());
             rs = stmt.executeQuery();
             rs.next();
+            context.setRowCount(1);
             return rs.getLong(1);
 
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException(e.getMessage(), e);
 
+        } catch (RuntimeException e) {
+            onException(context, e);
+            throw e;
+
         } finally {
+            endContext(context);
             try {
                 if (rs != null) {
                     rs.close();
@@ -14,7 +14,9 @@
 package com.mysema.query.sql;
 
 import java.sql.Connection;
+import java.util.concurrent.Executor;
 
+import javax.annotation.Nullable;
 import javax.inject.Provider;
 
 import com.mysema.query.sql.dml.SQLDeleteClause;
@@ -38,6 +40,9 @@ public abstract class AbstractSQLQueryFactory<Q extends SQLCommonQuery<?>> imple
 
     protected final Provider<Connection> connection;
 
+    @Nullable
+    private Executor executor;
+
     public AbstractSQLQueryFactory(Configuration configuration, Provider<Connection> connection) {
         this.configuration = configuration;
         this.connection = connection;
@@ -94,4 +99,58 @@ public abstract class AbstractSQLQueryFactory<Q extends SQLCommonQuery<?>> imple
         return connection.get();
     }
 
+    /**
+     * Get the executor of asynchronous query executions
+     *
+     * @return executor or null
+     */
+    @Nullable
+    public final Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor for the asynchronous execution methods of the created queries such as
+     * {@link AbstractSQLQuery#listAsync(Expression)}. The connection of each execution is taken
+     * from the connection provider of this factory on the executing thread and closed after
+     * the execution.
+     *
+     * <p>Independent queries can be fanned out and joined via the Guava future utilities:</p>
+     *
+     * <pre>
+     * ListenableFuture&lt;List&lt;String&gt;&gt; names = factory.from(survey).listAsync(survey.name);
+     * ListenableFuture&lt;Long&gt; count = factory.from(employee).countAsync();
+     * Futures.allAsList(names, count).get();
+     * </pre>
+     *
+     * @param executor
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Create a partitioned parallel scan of the given table. The partitions are scanned via
+     * the executor and the connection provider of this factory.
+     *
+     * @param entity
+     * @return
+     */
+    public final PartitionedScan scan(RelationalPath<?> entity) {
+        return new PartitionedScan(configuration, connection, entity, executor);
+    }
+
+    /**
+     * Attach the asynchronous execution settings of this factory to the given query
+     *
+     * @param query
+     * @return
+     */
+    protected final <T extends AbstractSQLQuery<?>> T async(T query) {
+        if (executor != null) {
+            query.async(executor, connection);
+        }
+        return query;
+    }
+
 }
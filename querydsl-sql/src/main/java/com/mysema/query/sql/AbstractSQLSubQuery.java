@@ -212,6 +212,11 @@ public class AbstractSQLSubQuery<Q extends AbstractSQLSubQuery<Q>> extends Detac
         return queryMixin.on(conditions);
     }
 
+    @Override
+    public Q seek(Keyset keyset) {
+        return keyset.seek(queryMixin);
+    }
+
     @Override
     public Q rightJoin(EntityPath<?> target) {
         return queryMixin.rightJoin(target);
@@ -48,6 +48,7 @@ public class CUBRIDTemplates extends SQLTemplates {
 
     public CUBRIDTemplates(char escape, boolean quote) {
         super("\"", escape, quote);
+        setNullsSortedLow(true);
         setDummyTable(null);
         setParameterMetadataAvailable(false);
         setNullsFirst(null);
@@ -17,15 +17,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.mysema.commons.lang.Pair;
 import com.mysema.query.sql.types.BigDecimalAsDoubleType;
 import com.mysema.query.sql.types.Null;
 import com.mysema.query.sql.types.Type;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
 import com.mysema.query.types.Path;
 
 /**
@@ -41,6 +49,9 @@ public final class Configuration {
      */
     public static final Configuration DEFAULT = new Configuration(SQLTemplates.DEFAULT);
 
+    private static final Set<Class<?>> ARRAY_ELEMENT_TYPES = ImmutableSet.<Class<?>>of(
+            Integer.class, Long.class, Short.class, String.class);
+
     private final JDBCTypeMapping jdbcTypeMapping = new JDBCTypeMapping();
 
     private final JavaTypeMapping javaTypeMapping = new JavaTypeMapping();
@@ -57,6 +68,19 @@ public final class Configuration {
 
     private boolean hasTableColumnTypes = false;
 
+    @Nullable
+    private SQLStatementCache statementCache;
+
+    private StatementOptions statementOptions = StatementOptions.DEFAULT;
+
+    private boolean inListPadding = false;
+
+    private boolean useArrayParameters = false;
+
+    private boolean useWindowedCount = false;
+
+    private boolean useMultiRowInserts = false;
+
     /**
      * Create a new Configuration instance
      *
@@ -159,13 +183,27 @@ public final class Configuration {
             } else {
                 stmt.setNull(i, Types.NULL);
             }
+        } else if (value instanceof Collection) {
+            // collection bound as a single array parameter
+            Collection<?> values = (Collection<?>)value;
+            Class<?> elementType = path != null ? path.getType() : values.iterator().next().getClass();
+            String typeName = templates.getTypeForClass(elementType);
+            stmt.setArray(i, stmt.getConnection().createArrayOf(typeName, values.toArray()));
         } else {
             getType(path, (Class)value.getClass()).setValue(stmt, i, value);
         }
     }
 
+    /**
+     * Get the type used for the de/serialization of the given path and class
+     *
+     * @param <T>
+     * @param path
+     * @param clazz
+     * @return
+     */
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    private <T> Type<T> getType(@Nullable Path<?> path, Class<T> clazz) {
+    public <T> Type<T> getType(@Nullable Path<?> path, Class<T> clazz) {
         if (hasTableColumnTypes && path != null && !clazz.equals(Null.class)
                 && path.getMetadata().getParent() instanceof RelationalPath) {
             String table = ((RelationalPath)path.getMetadata().getParent()).getTableName();
@@ -186,6 +224,7 @@ public final class Configuration {
      * @return
      */
     public String registerSchemaOverride(String oldSchema, String newSchema) {
+        clearStatementCache();
         return schemas.put(oldSchema, newSchema);
     }
 
@@ -197,6 +236,7 @@ public final class Configuration {
      * @return
      */
     public String registerTableOverride(String oldTable, String newTable) {
+        clearStatementCache();
         return tables.put(oldTable, newTable);
     }
 
@@ -209,6 +249,7 @@ public final class Configuration {
      * @return
      */
     public String registerTableOverride(String schema, String oldTable, String newTable) {
+        clearStatementCache();
         return schemaTables.put(Pair.of(schema, oldTable), newTable);
     }
 
@@ -259,4 +300,154 @@ public final class Configuration {
         return listeners;
     }
 
+    /**
+     * Get the statement cache or null, if statements are not cached
+     *
+     * @return
+     */
+    @Nullable
+    public SQLStatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Set the statement cache to be used for queries. Statements are not cached by default.
+     *
+     * @param statementCache
+     */
+    public void setStatementCache(@Nullable SQLStatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Get the default statement options for queries
+     *
+     * @return
+     */
+    public StatementOptions getStatementOptions() {
+        return statementOptions;
+    }
+
+    /**
+     * Set the default statement options for queries
+     *
+     * @param statementOptions
+     */
+    public void setStatementOptions(StatementOptions statementOptions) {
+        this.statementOptions = statementOptions;
+    }
+
+    /**
+     * Get whether IN lists are padded to power-of-two sizes
+     *
+     * @return
+     */
+    public boolean isInListPadding() {
+        return inListPadding;
+    }
+
+    /**
+     * Set whether IN lists are padded to power-of-two sizes by repeating the last value. This
+     * limits the amount of distinct statements for lists of varying size.
+     *
+     * @param inListPadding
+     */
+    public void setInListPadding(boolean inListPadding) {
+        clearStatementCache();
+        this.inListPadding = inListPadding;
+    }
+
+    /**
+     * Get whether IN lists are bound as single array parameters
+     *
+     * @return
+     */
+    public boolean isUseArrayParameters() {
+        return useArrayParameters;
+    }
+
+    /**
+     * Set whether IN lists of numbers and strings are bound as single array parameters, which
+     * gives a single statement for all list sizes. Requires templates which support array
+     * parameters.
+     *
+     * @param useArrayParameters
+     */
+    public void setUseArrayParameters(boolean useArrayParameters) {
+        if (useArrayParameters && !templates.isArrayParametersSupported()) {
+            throw new IllegalArgumentException(templates.getClass().getSimpleName()
+                    + " doesn't support array parameters");
+        }
+        clearStatementCache();
+        this.useArrayParameters = useArrayParameters;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isUseWindowedCount() {
+        return useWindowedCount;
+    }
+
+    /**
+     * Set whether listResults fetches the total count via count(*) over () in the same query
+     * as the results instead of a separate count query. Requires templates which support
+     * window functions.
+     *
+     * @param useWindowedCount
+     */
+    public void setUseWindowedCount(boolean useWindowedCount) {
+        if (useWindowedCount && !templates.isWindowFunctionsSupported()) {
+            throw new IllegalArgumentException(templates.getClass().getSimpleName()
+                    + " doesn't support window functions");
+        }
+        this.useWindowedCount = useWindowedCount;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isUseMultiRowInserts() {
+        return useMultiRowInserts;
+    }
+
+    /**
+     * Set whether the batch rows of inserts are combined into statements with several rows in
+     * the VALUES clause, limited by {@link SQLTemplates#getMaxParameters()}. Requires templates
+     * which support multi row inserts.
+     *
+     * @param useMultiRowInserts
+     */
+    public void setUseMultiRowInserts(boolean useMultiRowInserts) {
+        if (useMultiRowInserts && !templates.isMultiRowInsertsSupported()) {
+            throw new IllegalArgumentException(templates.getClass().getSimpleName()
+                    + " doesn't support multi row inserts");
+        }
+        this.useMultiRowInserts = useMultiRowInserts;
+    }
+
+    /**
+     * Get whether the collection argument of the given operation is bound as a single
+     * array parameter
+     *
+     * @param operator
+     * @param args
+     * @return
+     */
+    boolean isArrayParameter(Operator<?> operator, List<? extends Expression<?>> args) {
+        if (!useArrayParameters || (operator != Ops.IN && operator != Ops.NOT_IN)
+                || !(args.get(1) instanceof Constant<?>)) {
+            return false;
+        }
+        Object constant = ((Constant<?>)args.get(1)).getConstant();
+        return constant instanceof Collection<?> && !((Collection<?>)constant).isEmpty()
+                && ARRAY_ELEMENT_TYPES.contains(args.get(0).getType());
+    }
+
+    private void clearStatementCache() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+    }
+
 }
@@ -42,7 +42,13 @@ public class H2Templates extends SQLTemplates {
 
     public H2Templates(char escape, boolean quote) {
         super("\"", escape, quote);
+        setNullsSortedLow(true);
         setNativeMerge(true);
+        setArrayParametersSupported(true);
+        setRowValueComparisonSupported(true);
+        setMultiRowInsertsSupported(true);
+        // no hard limit, keeps the multi row inserts at a reasonable size
+        setMaxParameters(32767);
         add(Ops.MathOps.ROUND, "round({0},0)");
         add(Ops.TRIM, "trim(both from {0})");
 
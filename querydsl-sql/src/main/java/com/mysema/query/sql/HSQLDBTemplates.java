@@ -42,7 +42,10 @@ public class HSQLDBTemplates extends SQLTemplates {
 
     public HSQLDBTemplates(char escape, boolean quote) {
         super("\"", escape, quote);
+        setNullsSortedLow(true);
         setAutoIncrement(" identity");
+        setMultiRowInsertsSupported(true);
+        setMaxParameters(32767);
         add(Ops.TRIM, "trim(both from {0})");
         add(Ops.NEGATE, "{0} * -1", 7);
 
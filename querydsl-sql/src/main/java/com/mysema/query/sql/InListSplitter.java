@@ -0,0 +1,342 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.mysema.query.BooleanBuilder;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.QueryModifiers;
+import com.mysema.query.Tuple;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Order;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.OrderSpecifier.NullHandling;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.QTuple;
+import com.mysema.query.types.TemplateExpression;
+
+/**
+ * InListSplitter splits queries with IN lists exceeding {@link SQLTemplates#getMaxInListSize()}
+ * into several queries and merges their results.
+ *
+ * <p>Only IN conditions of the top level conjunction of the where clause of queries without
+ * grouping and aggregate projections are split. The chunk
+ * queries are ordered and limited like the original query, ordering is applied to the merged
+ * results in memory with the natural ordering of the order expressions and the null ordering of
+ * the templates. Queries ordered by expressions whose ordering depends on the database, such as
+ * the collation of strings, and ordered distinct queries are not split.</p>
+ *
+ * @author tiwe
+ *
+ * @param <RT> projection type
+ */
+final class InListSplitter<RT> {
+
+    private static final Set<Operator<?>> AGGREGATES = ImmutableSet.<Operator<?>>of(
+            Ops.AggOps.BOOLEAN_ALL, Ops.AggOps.BOOLEAN_ANY,
+            Ops.AggOps.MAX_AGG, Ops.AggOps.MIN_AGG, Ops.AggOps.AVG_AGG, Ops.AggOps.SUM_AGG,
+            Ops.AggOps.COUNT_AGG, Ops.AggOps.COUNT_DISTINCT_AGG,
+            Ops.AggOps.COUNT_DISTINCT_ALL_AGG, Ops.AggOps.COUNT_ALL_AGG);
+
+    /**
+     * Get whether the results of the given projection can be merged from chunk queries
+     *
+     * @param projection
+     * @return
+     */
+    static boolean isMergeable(List<? extends Expression<?>> projection) {
+        for (Expression<?> expr : projection) {
+            if (expr instanceof WindowFunction) {
+                return false;
+            } else if (expr instanceof FactoryExpression) {
+                if (!isMergeable(((FactoryExpression<?>)expr).getArgs())) {
+                    return false;
+                }
+            } else if (expr instanceof Operation) {
+                if (AGGREGATES.contains(((Operation<?>)expr).getOperator())
+                 || !isMergeable(((Operation<?>)expr).getArgs())) {
+                    return false;
+                }
+            } else if (expr instanceof TemplateExpression) {
+                String template = ((TemplateExpression<?>)expr).getTemplate().toString();
+                // aggregate and window function templates
+                if (template.contains("count(") || template.contains(" over (")) {
+                    return false;
+                }
+                for (Object arg : ((TemplateExpression<?>)expr).getArgs()) {
+                    if (arg instanceof Expression
+                     && !isMergeable(Collections.singletonList((Expression<?>)arg))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get whether the given ordering can be reproduced in memory
+     *
+     * @param orderBy
+     * @return
+     */
+    static boolean isOrderable(List<OrderSpecifier<?>> orderBy) {
+        for (OrderSpecifier<?> order : orderBy) {
+            Class<?> type = order.getTarget().getType();
+            if (!Number.class.isAssignableFrom(type)
+             && !java.util.Date.class.isAssignableFrom(type)
+             && !Boolean.class.equals(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split the given condition into conditions with IN lists not larger than maxSize
+     *
+     * @param where
+     * @param maxSize
+     * @return split conditions or null, if no splitting is needed
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static List<Predicate> split(@Nullable Predicate where, int maxSize) {
+        if (where == null || maxSize == Integer.MAX_VALUE) {
+            return null;
+        }
+        List<Predicate> conditions = new ArrayList<Predicate>();
+        flatten(where, conditions);
+        int index = -1, largest = maxSize;
+        for (int i = 0; i < conditions.size(); i++) {
+            Collection<?> values = getInList(conditions.get(i));
+            if (values != null && values.size() > largest) {
+                index = i;
+                largest = values.size();
+            }
+        }
+        if (index < 0) {
+            return null;
+        }
+
+        Expression<Object> left = (Expression<Object>) ((Operation<?>)conditions.get(index)).getArg(0);
+        List<Object> values = new ArrayList<Object>(
+                new LinkedHashSet<Object>(getInList(conditions.get(index))));
+        List<Predicate> rv = new ArrayList<Predicate>();
+        for (List<Object> chunk : Lists.partition(values, maxSize)) {
+            conditions.set(index, ExpressionUtils.in(left, new ArrayList<Object>(chunk)));
+            Predicate condition = ExpressionUtils.allOf(conditions);
+            // other oversized IN lists are split further
+            List<Predicate> split = split(condition, maxSize);
+            if (split != null) {
+                rv.addAll(split);
+            } else {
+                rv.add(condition);
+            }
+        }
+        return rv;
+    }
+
+    private static void flatten(Predicate predicate, List<Predicate> conditions) {
+        if (predicate instanceof BooleanBuilder) {
+            Predicate value = ((BooleanBuilder)predicate).getValue();
+            if (value != null) {
+                flatten(value, conditions);
+            }
+        } else if (predicate instanceof Operation && ((Operation<?>)predicate).getOperator() == Ops.AND) {
+            for (Expression<?> arg : ((Operation<?>)predicate).getArgs()) {
+                flatten((Predicate)arg, conditions);
+            }
+        } else {
+            conditions.add(predicate);
+        }
+    }
+
+    @Nullable
+    private static Collection<?> getInList(Predicate predicate) {
+        if (predicate instanceof Operation && ((Operation<?>)predicate).getOperator() == Ops.IN) {
+            Expression<?> right = ((Operation<?>)predicate).getArg(1);
+            if (right instanceof Constant && ((Constant<?>)right).getConstant() instanceof Collection) {
+                return (Collection<?>) ((Constant<?>)right).getConstant();
+            }
+        }
+        return null;
+    }
+
+    private final Expression<RT> expr;
+
+    private final List<OrderSpecifier<?>> orderBy;
+
+    private final QueryModifiers modifiers;
+
+    private final boolean distinct;
+
+    private final Expression<?> projection;
+
+    private final int keyOffset;
+
+    private final boolean nullsSortedLow;
+
+    public InListSplitter(QueryMetadata metadata, Expression<RT> expr, boolean nullsSortedLow) {
+        this.expr = expr;
+        this.nullsSortedLow = nullsSortedLow;
+        this.orderBy = metadata.getOrderBy();
+        this.modifiers = metadata.getModifiers();
+        this.distinct = metadata.isDistinct();
+        if (orderBy.isEmpty()) {
+            projection = expr;
+            keyOffset = 0;
+        } else {
+            // the order expressions are projected as well to merge the ordered chunk results
+            List<Expression<?>> args = new ArrayList<Expression<?>>();
+            if (expr instanceof FactoryExpression) {
+                args.addAll(((FactoryExpression<?>)expr).getArgs());
+            } else {
+                args.add(expr);
+            }
+            keyOffset = args.size();
+            for (OrderSpecifier<?> order : orderBy) {
+                args.add(order.getTarget());
+            }
+            projection = new QTuple(ImmutableList.copyOf(args));
+        }
+    }
+
+    /**
+     * Create the metadata of the chunk query for the given condition
+     *
+     * @param metadata
+     * @param condition
+     * @return
+     */
+    public QueryMetadata createChunk(QueryMetadata metadata, Predicate condition) {
+        QueryMetadata chunk = metadata.clone();
+        chunk.clearWhere();
+        chunk.addWhere(condition);
+        chunk.clearProjection();
+        chunk.addProjection(projection);
+        if (modifiers.getLimit() != null) {
+            long offset = modifiers.getOffset() != null ? modifiers.getOffset().longValue() : 0l;
+            chunk.setModifiers(QueryModifiers.limit(modifiers.getLimit().longValue() + offset));
+        } else {
+            chunk.setModifiers(QueryModifiers.EMPTY);
+        }
+        return chunk;
+    }
+
+    /**
+     * Get the projection of the chunk queries
+     *
+     * @return
+     */
+    public Expression<?> getProjection() {
+        return projection;
+    }
+
+    /**
+     * Merge the results of the chunk queries
+     *
+     * @param results
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public List<RT> merge(List<? extends List<?>> results) {
+        List<Object> rows = new ArrayList<Object>();
+        for (List<?> result : results) {
+            rows.addAll(result);
+        }
+        Collection<RT> values;
+        if (keyOffset > 0) {
+            List<Object[]> keyed = new ArrayList<Object[]>(rows.size());
+            for (Object row : rows) {
+                keyed.add(((Tuple)row).toArray());
+            }
+            Collections.sort(keyed, new KeyComparator());
+            values = distinct ? new LinkedHashSet<RT>() : new ArrayList<RT>(keyed.size());
+            for (Object[] row : keyed) {
+                if (expr instanceof FactoryExpression) {
+                    values.add(((FactoryExpression<RT>)expr).newInstance(Arrays.copyOf(row, keyOffset)));
+                } else {
+                    values.add((RT)row[0]);
+                }
+            }
+        } else {
+            values = distinct ? new LinkedHashSet<RT>() : new ArrayList<RT>(rows.size());
+            for (Object row : rows) {
+                values.add((RT)row);
+            }
+        }
+
+        List<RT> rv = values instanceof List ? (List<RT>)values : new ArrayList<RT>(values);
+        int from = modifiers.getOffset() != null
+                ? (int)Math.min(modifiers.getOffset().longValue(), rv.size()) : 0;
+        int to = modifiers.getLimit() != null
+                ? (int)Math.min(from + modifiers.getLimit().longValue(), rv.size()) : rv.size();
+        return from > 0 || to < rv.size() ? new ArrayList<RT>(rv.subList(from, to)) : rv;
+    }
+
+    private final class KeyComparator implements Comparator<Object[]> {
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @Override
+        public int compare(Object[] o1, Object[] o2) {
+            for (int i = 0; i < orderBy.size(); i++) {
+                OrderSpecifier<?> order = orderBy.get(i);
+                Comparable c1 = (Comparable) o1[keyOffset + i];
+                Comparable c2 = (Comparable) o2[keyOffset + i];
+                int rv;
+                if (c1 == null || c2 == null) {
+                    if (c1 == c2) {
+                        continue;
+                    }
+                    rv = c1 == null ? 1 : -1;
+                    if (order.getNullHandling() == NullHandling.NullsFirst) {
+                        return -rv;
+                    } else if (order.getNullHandling() == NullHandling.NullsLast) {
+                        return rv;
+                    } else if (nullsSortedLow) {
+                        rv = -rv;
+                    }
+                } else {
+                    rv = c1.compareTo(c2);
+                }
+                if (rv != 0) {
+                    return order.getOrder() == Order.ASC ? rv : -rv;
+                }
+            }
+            return 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.collect.ImmutableList;
+import com.mysema.query.support.QueryMixin;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Order;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.PredicateOperation;
+
+/**
+ * Keyset is a cursor for keyset (seek) pagination
+ *
+ * <p>Instead of skipping the rows of the previous pages via an offset, the rows following the
+ * last row of the previous page are selected via a condition on the order expressions. With an
+ * index on the order expressions each page is as cheap to fetch as the first one. The order
+ * expressions need to define a unique non-null key for the rows, e.g. by ending with the primary
+ * key.</p>
+ *
+ * <pre>
+ * Keyset keyset = Keyset.of(survey.name.asc(), survey.id.asc());
+ * KeysetPage&lt;Tuple&gt; page = query.from(survey).listPage(keyset, 20, survey.id, survey.name);
+ * if (page.hasNext()) {
+ *     page = factory.from(survey).listPage(page.getNext(), 20, survey.id, survey.name);
+ * }
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+@Immutable
+public final class Keyset {
+
+    /**
+     * Create a Keyset for the first page in the given order
+     *
+     * @param order
+     * @return
+     */
+    public static Keyset of(OrderSpecifier<?>... order) {
+        return new Keyset(ImmutableList.copyOf(order), null);
+    }
+
+    /**
+     * Create a Keyset for the first page in the given order
+     *
+     * @param order
+     * @return
+     */
+    public static Keyset of(List<OrderSpecifier<?>> order) {
+        return new Keyset(ImmutableList.copyOf(order), null);
+    }
+
+    private final ImmutableList<OrderSpecifier<?>> order;
+
+    @Nullable
+    private final List<Object> values;
+
+    private Keyset(ImmutableList<OrderSpecifier<?>> order, @Nullable List<Object> values) {
+        if (order.isEmpty()) {
+            throw new IllegalArgumentException("No order given");
+        }
+        this.order = order;
+        this.values = values;
+    }
+
+    /**
+     * Create a Keyset for the rows following the row with the given values of the order
+     * expressions
+     *
+     * @param values
+     * @return
+     */
+    public Keyset after(Object... values) {
+        if (values.length != order.size()) {
+            throw new IllegalArgumentException("Expected " + order.size() +
+                    " values, but got " + values.length);
+        }
+        return new Keyset(order, Collections.unmodifiableList(Arrays.asList(values.clone())));
+    }
+
+    public List<OrderSpecifier<?>> getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the values of the last row of the previous page
+     *
+     * @return values or null for the first page
+     */
+    @Nullable
+    public List<Object> getValues() {
+        return values;
+    }
+
+    /**
+     * Get the condition for the rows following the last row of the previous page
+     *
+     * <p>For a uniform order direction a row value comparison is used, which is expanded into
+     * nested comparisons for databases without row value support.</p>
+     *
+     * @return condition or null for the first page
+     */
+    @Nullable
+    public Predicate getPredicate() {
+        if (values == null) {
+            return null;
+        }
+        List<Expression<?>> targets = new ArrayList<Expression<?>>(order.size());
+        List<Expression<?>> constants = new ArrayList<Expression<?>>(order.size());
+        List<Order> directions = new ArrayList<Order>(order.size());
+        for (int i = 0; i < order.size(); i++) {
+            targets.add(order.get(i).getTarget());
+            constants.add(new ConstantImpl<Object>(values.get(i)));
+            directions.add(order.get(i).getOrder());
+        }
+        if (targets.size() > 1 && !directions.contains(Order.ASC)) {
+            return PredicateOperation.create(SQLOps.ROW_LT,
+                    ExpressionUtils.list(Object.class, targets),
+                    ExpressionUtils.list(Object.class, constants));
+        } else if (targets.size() > 1 && !directions.contains(Order.DESC)) {
+            return PredicateOperation.create(SQLOps.ROW_GT,
+                    ExpressionUtils.list(Object.class, targets),
+                    ExpressionUtils.list(Object.class, constants));
+        } else {
+            return expand(targets, constants, directions);
+        }
+    }
+
+    /**
+     * Restrict the query of the given mixin to the rows following the last row of the previous
+     * page and order it by the order of this keyset
+     *
+     * @param queryMixin
+     * @return
+     */
+    <T> T seek(QueryMixin<T> queryMixin) {
+        Predicate predicate = getPredicate();
+        if (predicate != null) {
+            queryMixin.where(predicate);
+        }
+        for (OrderSpecifier<?> o : order) {
+            queryMixin.orderBy(o);
+        }
+        return queryMixin.getSelf();
+    }
+
+    /**
+     * Expand the row value comparison of the given targets and values into nested comparisons
+     *
+     * <p>The expansion of (a, b) &gt; (?, ?) is a &gt;= ? and (a &gt; ? or a = ? and b &gt; ?),
+     * the leading range condition allows index range scans for databases which don't use
+     * the disjunction for index access.</p>
+     *
+     * @param targets
+     * @param values
+     * @param directions
+     * @return
+     */
+    static Predicate expand(List<? extends Expression<?>> targets, List<? extends Expression<?>> values,
+            List<Order> directions) {
+        int last = targets.size() - 1;
+        Predicate rv = compare(directions.get(last), targets.get(last), values.get(last));
+        for (int i = last - 1; i >= 0; i--) {
+            rv = ExpressionUtils.or(
+                    compare(directions.get(i), targets.get(i), values.get(i)),
+                    ExpressionUtils.and(
+                        PredicateOperation.create(Ops.EQ, targets.get(i), values.get(i)), rv));
+        }
+        if (last > 0) {
+            Operator<Boolean> range = directions.get(0) == Order.ASC ? Ops.GOE : Ops.LOE;
+            rv = ExpressionUtils.and(
+                    PredicateOperation.create(range, targets.get(0), values.get(0)), rv);
+        }
+        return rv;
+    }
+
+    private static Predicate compare(Order direction, Expression<?> target, Expression<?> value) {
+        return PredicateOperation.create(direction == Order.ASC ? Ops.GT : Ops.LT, target, value);
+    }
+
+    /**
+     * Get the elements of the given list expression
+     *
+     * @param list
+     * @return
+     */
+    static List<Expression<?>> getElements(Expression<?> list) {
+        List<Expression<?>> rv = new ArrayList<Expression<?>>();
+        addElements(list, rv);
+        return rv;
+    }
+
+    private static void addElements(Expression<?> expr, List<Expression<?>> elements) {
+        if (expr instanceof Operation && ((Operation<?>)expr).getOperator() == Ops.LIST) {
+            for (Expression<?> arg : ((Operation<?>)expr).getArgs()) {
+                addElements(arg, elements);
+            }
+        } else {
+            elements.add(expr);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (o instanceof Keyset) {
+            Keyset other = (Keyset)o;
+            return order.equals(other.order)
+                && (values == null ? other.values == null : values.equals(other.values));
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return order.hashCode();
+    }
+
+}
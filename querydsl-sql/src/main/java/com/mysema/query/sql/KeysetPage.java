@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * KeysetPage bundles the results of a keyset paged query with the cursor of the next page
+ *
+ * @author tiwe
+ *
+ * @param <T> result type
+ */
+public final class KeysetPage<T> {
+
+    private final List<T> results;
+
+    @Nullable
+    private final Keyset next;
+
+    /**
+     * Create a new KeysetPage instance
+     *
+     * @param results paged results
+     * @param next cursor of the next page or null for the last page
+     */
+    public KeysetPage(List<T> results, @Nullable Keyset next) {
+        this.results = results;
+        this.next = next;
+    }
+
+    /**
+     * Get the results in List form
+     *
+     * @return
+     */
+    public List<T> getResults() {
+        return results;
+    }
+
+    /**
+     * Get the cursor of the next page
+     *
+     * @return cursor or null for the last page
+     */
+    @Nullable
+    public Keyset getNext() {
+        return next;
+    }
+
+    /**
+     * @return
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+}
@@ -46,9 +46,15 @@ public class MySQLTemplates extends SQLTemplates {
 
     public MySQLTemplates(char escape, boolean quote) {
         super("`", escape, quote);
+        setNullsSortedLow(true);
         setParameterMetadataAvailable(false);
         setNullsFirst(null);
         setNullsLast(null);
+        // Connector/J streams results row by row only for this fetch size
+        setStreamingFetchSize(Integer.MIN_VALUE);
+        setRowValueComparisonSupported(true);
+        setMultiRowInsertsSupported(true);
+        setMaxParameters(65535);
 
         addClass2TypeMappings("bool", Boolean.class);
         addClass2TypeMappings("int", Integer.class);
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import com.mysema.commons.lang.CloseableIterator;
+
+/**
+ * PartitionHandler consumes the rows of a single partition of a {@link PartitionedScan}
+ *
+ * <p>The handler is invoked concurrently for the partitions of the scan, implementations need
+ * to be thread safe.</p>
+ *
+ * @author tiwe
+ *
+ * @param <T> row type
+ */
+public interface PartitionHandler<T> {
+
+    /**
+     * Handle the rows of the given partition. The iterator is closed after the invocation.
+     *
+     * @param partition index of the partition, counting from 0
+     * @param rows rows of the partition
+     * @throws Exception
+     */
+    void handle(int partition, CloseableIterator<T> rows) throws Exception;
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.query.QueryException;
+
+/**
+ * PartitionedIterator merges the rows of concurrently scanned partitions into a single iterator
+ *
+ * <p>The partitions are written into a bounded queue, so the producers are blocked when the
+ * consumer falls behind. Closing the iterator stops the producers and releases their
+ * connections.</p>
+ *
+ * @author tiwe
+ *
+ * @param <T> row type
+ */
+final class PartitionedIterator<T> implements CloseableIterator<T> {
+
+    private static final Object NULL = new Object();
+
+    private static final Object END = new Object();
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final class Failure {
+
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+
+    }
+
+    private final BlockingQueue<Object> queue;
+
+    private final List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+    private volatile boolean closed;
+
+    private int remaining;
+
+    private Object next;
+
+    public PartitionedIterator(int bufferSize) {
+        this.queue = new ArrayBlockingQueue<Object>(bufferSize);
+    }
+
+    /**
+     * Register the task producing a partition, the end or failure of the partition is signalled
+     * on completion of the task
+     *
+     * @param task
+     */
+    void addTask(final ListenableFuture<?> task) {
+        tasks.add(task);
+        remaining++;
+        task.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    try {
+                        task.get();
+                        offer(END);
+                    } catch (ExecutionException e) {
+                        offer(new Failure(e.getCause()));
+                    }
+                } catch (CancellationException e) {
+                    // closed
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, SAME_THREAD);
+    }
+
+    /**
+     * Add a row to the queue, blocks while the queue is full
+     *
+     * @param row
+     * @return false, if the iterator has been closed
+     * @throws InterruptedException
+     */
+    boolean put(T row) throws InterruptedException {
+        return offer(row != null ? row : NULL);
+    }
+
+    private boolean offer(Object element) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && remaining > 0 && !closed) {
+            Object element;
+            try {
+                element = queue.take();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new QueryException(e);
+            }
+            if (element == END) {
+                remaining--;
+            } else if (element instanceof Failure) {
+                close();
+                Throwable cause = ((Failure)element).cause;
+                throw cause instanceof QueryException ? (QueryException)cause : new QueryException(cause);
+            } else {
+                next = element;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (hasNext()) {
+            Object rv = next;
+            next = null;
+            return rv != NULL ? (T)rv : null;
+        } else {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            for (Future<?> task : tasks) {
+                task.cancel(false);
+            }
+            queue.clear();
+        }
+    }
+
+}
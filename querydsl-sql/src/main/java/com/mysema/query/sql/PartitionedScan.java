@@ -0,0 +1,476 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.query.QueryException;
+import com.mysema.query.Tuple;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.OperationImpl;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Order;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.PredicateOperation;
+import com.mysema.query.types.QTuple;
+import com.mysema.query.types.path.PathBuilder;
+
+/**
+ * PartitionedScan reads a table as concurrently scanned key ranges
+ *
+ * <p>The value range of the key column is split into partitions, which are scanned in parallel
+ * on separate connections taken from the connection provider. By default the key range is split
+ * evenly between the minimum and the maximum value of the key, which works for numeric and date
+ * keys. For skewed key distributions {@link #quantiles()} splits the rows evenly via the ntile
+ * window function instead.</p>
+ *
+ * <p>The default key is the single column primary key of the scanned table. The executor needs
+ * to run the partitions on threads other than the consuming thread.</p>
+ *
+ * <pre>
+ * CloseableIterator&lt;Tuple&gt; rows = factory.scan(survey).partitions(8)
+ *     .iterate(survey.id, survey.name);
+ * try {
+ *     while (rows.hasNext()) {
+ *         export(rows.next());
+ *     }
+ * } finally {
+ *     rows.close();
+ * }
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class PartitionedScan {
+
+    private final Configuration configuration;
+
+    private final Provider<Connection> connections;
+
+    private final RelationalPath<?> entity;
+
+    @Nullable
+    private Executor executor;
+
+    @Nullable
+    private Path<?> key;
+
+    private int partitions = Runtime.getRuntime().availableProcessors();
+
+    private boolean quantiles;
+
+    private int bufferSize = 1000;
+
+    private final List<Predicate> conditions = new ArrayList<Predicate>();
+
+    public PartitionedScan(Configuration configuration, Provider<Connection> connections,
+            RelationalPath<?> entity, @Nullable Executor executor) {
+        this.configuration = configuration;
+        this.connections = connections;
+        this.entity = entity;
+        this.executor = executor;
+    }
+
+    /**
+     * Set the executor of the partition scans
+     *
+     * @param executor
+     * @return
+     */
+    public PartitionedScan executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Set the key column used to split the table into partitions
+     *
+     * @param key
+     * @return
+     */
+    public PartitionedScan key(Path<? extends Comparable<?>> key) {
+        this.key = key;
+        return this;
+    }
+
+    /**
+     * Set the amount of partitions, defaults to the amount of available processors
+     *
+     * @param partitions
+     * @return
+     */
+    public PartitionedScan partitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Invalid amount of partitions " + partitions);
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Split the rows into partitions of equal size instead of splitting the key range evenly
+     *
+     * <p>The partition boundaries are computed via the ntile window function, which requires
+     * window function support from the database. Any comparable key type is supported.</p>
+     *
+     * @return
+     */
+    public PartitionedScan quantiles() {
+        if (!configuration.getTemplates().isWindowFunctionsSupported()) {
+            throw new IllegalStateException("Window functions are not supported");
+        }
+        this.quantiles = true;
+        return this;
+    }
+
+    /**
+     * Set the amount of rows buffered by the merged iterator, defaults to 1000
+     *
+     * @param bufferSize
+     * @return
+     */
+    public PartitionedScan bufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Add the given filter conditions
+     *
+     * @param o
+     * @return
+     */
+    public PartitionedScan where(Predicate... o) {
+        for (Predicate p : o) {
+            if (p != null) {
+                conditions.add(p);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Scan the partitions concurrently and merge the rows into a single iterator. The rows are
+     * returned in no particular order.
+     *
+     * @param args projection
+     * @return
+     */
+    public CloseableIterator<Tuple> iterate(Expression<?>... args) {
+        return iterate(new QTuple(args));
+    }
+
+    /**
+     * Scan the partitions concurrently and merge the rows into a single iterator. The rows are
+     * returned in no particular order.
+     *
+     * @param projection
+     * @return
+     */
+    public <RT> CloseableIterator<RT> iterate(final Expression<RT> projection) {
+        Executor executor = getExecutor();
+        List<Predicate> partitions = getPartitions();
+        final PartitionedIterator<RT> iterator = new PartitionedIterator<RT>(bufferSize);
+        List<QueryTask<?>> tasks = new ArrayList<QueryTask<?>>(partitions.size());
+        for (final Predicate partition : partitions) {
+            QueryTask<Void> task = new QueryTask<Void>(connections) {
+                @Override
+                protected Void execute(Connection connection) throws Exception {
+                    CloseableIterator<RT> rows = query(connection, partition).iterate(projection);
+                    try {
+                        while (rows.hasNext() && iterator.put(rows.next())) {
+                            // continue
+                        }
+                    } finally {
+                        rows.close();
+                    }
+                    return null;
+                }
+            };
+            iterator.addTask(task);
+            tasks.add(task);
+        }
+        for (QueryTask<?> task : tasks) {
+            executor.execute(task);
+        }
+        return iterator;
+    }
+
+    /**
+     * Scan the partitions concurrently and pass the rows of each partition to the given handler.
+     * The invocation returns after all partitions have been handled.
+     *
+     * @param projection
+     * @param handler
+     * @throws QueryException if the scan of a partition failed
+     */
+    public <RT> void forEachPartition(final Expression<RT> projection, final PartitionHandler<RT> handler) {
+        Executor executor = getExecutor();
+        List<Predicate> partitions = getPartitions();
+        List<Future<?>> tasks = new ArrayList<Future<?>>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            final int index = i;
+            final Predicate partition = partitions.get(i);
+            QueryTask<Void> task = new QueryTask<Void>(connections) {
+                @Override
+                protected Void execute(Connection connection) throws Exception {
+                    CloseableIterator<RT> rows = query(connection, partition).iterate(projection);
+                    try {
+                        handler.handle(index, rows);
+                    } finally {
+                        rows.close();
+                    }
+                    return null;
+                }
+            };
+            tasks.add(task);
+            executor.execute(task);
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new QueryException(e);
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            throw cause instanceof QueryException ? (QueryException)cause : new QueryException(cause);
+        }
+    }
+
+    private static void cancel(List<Future<?>> tasks) {
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+    }
+
+    private Executor getExecutor() {
+        if (executor == null) {
+            throw new IllegalStateException("No executor given");
+        }
+        return executor;
+    }
+
+    private SQLQuery query(Connection connection, @Nullable Predicate partition) {
+        SQLQuery query = new SQLQuery(connection, configuration).from(entity);
+        query.where(conditions.toArray(new Predicate[conditions.size()]));
+        if (partition != null) {
+            query.where(partition);
+        }
+        return query;
+    }
+
+    private Path<?> getKey() {
+        if (key != null) {
+            return key;
+        }
+        PrimaryKey<?> primaryKey = entity.getPrimaryKey();
+        if (primaryKey == null || primaryKey.getLocalColumns().size() != 1) {
+            throw new IllegalStateException("No single column primary key for " + entity +
+                    ", the key needs to be given explicitly");
+        }
+        return primaryKey.getLocalColumns().get(0);
+    }
+
+    /**
+     * Get the conditions of the partitions
+     *
+     * @return
+     */
+    List<Predicate> getPartitions() {
+        Path<?> key = getKey();
+        Connection connection = connections.get();
+        List<?> boundaries;
+        try {
+            boundaries = quantiles ? getQuantiles(connection, key) : getRange(connection, key);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new QueryException(e);
+            }
+        }
+        PrimaryKey<?> primaryKey = entity.getPrimaryKey();
+        boolean nullable = primaryKey == null || !primaryKey.getLocalColumns().contains(key);
+        return getConditions(key, boundaries, nullable);
+    }
+
+    private List<?> getRange(Connection connection, Path<?> key) {
+        Class<?> type = key.getType();
+        Expression<?> min = OperationImpl.create(type, (Operator)Ops.AggOps.MIN_AGG, key);
+        Expression<?> max = OperationImpl.create(type, (Operator)Ops.AggOps.MAX_AGG, key);
+        Tuple range = query(connection, null).uniqueResult(min, max);
+        if (range == null || range.get(min) == null) {
+            return Collections.emptyList();
+        }
+        return split(range.get(min), range.get(max), partitions);
+    }
+
+    private List<?> getQuantiles(Connection connection, Path<?> key) {
+        Class<?> type = key.getType();
+        PathBuilder<Object> alias = new PathBuilder<Object>(Object.class, "q");
+        Path<?> value = alias.get("k", type);
+        Path<?> bucket = alias.get("b", Long.class);
+        SQLSubQuery subQuery = new SQLSubQuery().from(entity);
+        subQuery.where(conditions.toArray(new Predicate[conditions.size()]));
+        List values = new SQLQuery(connection, configuration)
+            .from(subQuery.list(
+                    ExpressionUtils.as((Expression)key, "k"),
+                    ExpressionUtils.as(SQLExpressions.ntile(partitions).over()
+                        .orderBy(new OrderSpecifier(Order.ASC, key)), "b")),
+                  alias)
+            .groupBy(bucket)
+            .list(OperationImpl.create(type, (Operator)Ops.AggOps.MIN_AGG, value));
+        values.removeAll(Collections.singleton(null));
+        Collections.sort(values);
+        List<Object> rv = new ArrayList<Object>(values.size());
+        for (int i = 1; i < values.size(); i++) {
+            Object boundary = values.get(i);
+            if (!boundary.equals(values.get(i - 1))) {
+                rv.add(boundary);
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Split the given key range evenly into the given amount of partitions
+     *
+     * @param min minimum key value
+     * @param max maximum key value
+     * @param partitions
+     * @return lower bounds of the partitions following the first one
+     */
+    static List<Object> split(Object min, Object max, int partitions) {
+        Class<?> type = min.getClass();
+        BigDecimal lower = toDecimal(min);
+        BigDecimal range = toDecimal(max).subtract(lower);
+        BigDecimal count = BigDecimal.valueOf(partitions);
+        List<Object> rv = new ArrayList<Object>(partitions - 1);
+        BigDecimal previous = lower;
+        for (int i = 1; i < partitions; i++) {
+            BigDecimal boundary = range.multiply(BigDecimal.valueOf(i))
+                .divide(count, 10, RoundingMode.FLOOR).add(lower);
+            Object value = fromDecimal(boundary, type);
+            BigDecimal normalized = toDecimal(value);
+            if (normalized.compareTo(previous) > 0) {
+                rv.add(value);
+                previous = normalized;
+            }
+        }
+        return rv;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal)value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger)value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number)value).doubleValue());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number)value).longValue());
+        } else if (value instanceof Date) {
+            return BigDecimal.valueOf(((Date)value).getTime());
+        } else {
+            throw new IllegalArgumentException("Unsupported key type " + value.getClass().getName() +
+                    ", use quantiles() for non-numeric keys");
+        }
+    }
+
+    private static Object fromDecimal(BigDecimal value, Class<?> type) {
+        if (type.equals(BigDecimal.class)) {
+            return value;
+        } else if (type.equals(Double.class)) {
+            return value.doubleValue();
+        } else if (type.equals(Float.class)) {
+            return value.floatValue();
+        }
+        BigInteger integer = value.setScale(0, RoundingMode.FLOOR).toBigInteger();
+        if (type.equals(BigInteger.class)) {
+            return integer;
+        } else if (type.equals(Long.class)) {
+            return integer.longValue();
+        } else if (type.equals(Integer.class)) {
+            return integer.intValue();
+        } else if (type.equals(Short.class)) {
+            return integer.shortValue();
+        } else if (type.equals(Byte.class)) {
+            return integer.byteValue();
+        } else if (type.equals(Timestamp.class)) {
+            return new Timestamp(integer.longValue());
+        } else if (type.equals(java.sql.Date.class)) {
+            return new java.sql.Date(integer.longValue());
+        } else if (type.equals(Time.class)) {
+            return new Time(integer.longValue());
+        } else if (type.equals(Date.class)) {
+            return new Date(integer.longValue());
+        } else {
+            throw new IllegalArgumentException("Unsupported key type " + type.getName() +
+                    ", use quantiles() for non-numeric keys");
+        }
+    }
+
+    /**
+     * Get the conditions of the partitions for the given boundaries
+     *
+     * @param key key column
+     * @param boundaries lower bounds of the partitions following the first one
+     * @param nullable whether rows with a null key need to be included in the first partition
+     * @return
+     */
+    static List<Predicate> getConditions(Expression<?> key, List<?> boundaries, boolean nullable) {
+        if (boundaries.isEmpty()) {
+            return Collections.singletonList(null);
+        }
+        List<Predicate> rv = new ArrayList<Predicate>(boundaries.size() + 1);
+        Predicate first = PredicateOperation.create(Ops.LT, key, new ConstantImpl<Object>(boundaries.get(0)));
+        rv.add(nullable ? ExpressionUtils.or(first, ExpressionUtils.isNull(key)) : first);
+        for (int i = 1; i < boundaries.size(); i++) {
+            rv.add(ExpressionUtils.and(
+                    PredicateOperation.create(Ops.GOE, key, new ConstantImpl<Object>(boundaries.get(i - 1))),
+                    PredicateOperation.create(Ops.LT, key, new ConstantImpl<Object>(boundaries.get(i)))));
+        }
+        rv.add(PredicateOperation.create(Ops.GOE, key,
+                new ConstantImpl<Object>(boundaries.get(boundaries.size() - 1))));
+        return rv;
+    }
+
+}
@@ -45,6 +45,11 @@ public class PostgresTemplates extends SQLTemplates {
     public PostgresTemplates(char escape, boolean quote) {
         super("\"", escape, quote);
         setDummyTable(null);
+        setArrayParametersSupported(true);
+        setRowValueComparisonSupported(true);
+        setWindowFunctionsSupported(true);
+        setMultiRowInsertsSupported(true);
+        setMaxParameters(32767);
         // type mappings
         addClass2TypeMappings("numeric(3,0)", Byte.class);
         addClass2TypeMappings("double precision", Double.class);
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.JoinExpression;
+import com.mysema.query.JoinFlag;
+import com.mysema.query.QueryFlag;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.QueryModifiers;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.PathMetadata;
+import com.mysema.query.types.PathType;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.SubQueryExpression;
+import com.mysema.query.types.SubQueryExpressionImpl;
+import com.mysema.query.types.TemplateExpression;
+import com.mysema.query.types.Visitor;
+
+/**
+ * QueryShape builds a structural fingerprint of query metadata. Constants which are bound
+ * as JDBC parameters are left out of the fingerprint and collected as slots in encounter order,
+ * all other constants are part of the fingerprint.
+ *
+ * <p>In substitution mode a copy of the query is built in the same pass, in which the slots are
+ * replaced with placeholders. The bindings of the serialized copy are mapped to the slots via
+ * {@link #getSlotIndex(Object)}.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class QueryShape implements Visitor<Expression<?>, Void> {
+
+    private final Configuration configuration;
+
+    private final SQLTemplates templates;
+
+    private final boolean substitute;
+
+    private final StringBuilder key = new StringBuilder(128);
+
+    private final List<Object> slots = new ArrayList<Object>();
+
+    // placeholders which can't be Slot instances, these are created here and unique by identity
+    private final Map<Object, Integer> placeholders = new IdentityHashMap<Object, Integer>();
+
+    @Nullable
+    private QueryMetadata metadata;
+
+    @Nullable
+    private Expression<?> union;
+
+    private boolean substituted = true;
+
+    public QueryShape(Configuration configuration) {
+        this(configuration, false);
+    }
+
+    /**
+     * Create a new QueryShape instance
+     *
+     * @param configuration
+     * @param substitute whether a copy of the query with placeholders for the slots is built
+     */
+    public QueryShape(Configuration configuration, boolean substitute) {
+        this.configuration = configuration;
+        this.templates = configuration.getTemplates();
+        this.substitute = substitute;
+    }
+
+    /**
+     * Get the fingerprint
+     *
+     * @return
+     */
+    public String getKey() {
+        return key.toString();
+    }
+
+    /**
+     * Get the values of the bindable constants in encounter order
+     *
+     * @return
+     */
+    public List<Object> getSlots() {
+        return slots;
+    }
+
+    /**
+     * Get the query metadata with placeholders for the slots
+     *
+     * @return metadata or null, if not in substitution mode or the query couldn't be copied
+     */
+    @Nullable
+    public QueryMetadata getMetadata() {
+        return substituted ? metadata : null;
+    }
+
+    /**
+     * Get the union with placeholders for the slots
+     *
+     * @return
+     */
+    @Nullable
+    public Expression<?> getUnion() {
+        return union;
+    }
+
+    /**
+     * Get the slot index of the given binding of the query with placeholders
+     *
+     * @param binding
+     * @return slot index or -1, if the binding is not a placeholder
+     */
+    public int getSlotIndex(Object binding) {
+        if (binding instanceof SlotVisitor.Slot) {
+            return ((SlotVisitor.Slot)binding).getIndex();
+        }
+        Integer index = placeholders.get(binding);
+        return index != null ? index.intValue() : -1;
+    }
+
+    public QueryShape handle(Class<?> queryType, QueryMetadata metadata,
+            @Nullable Expression<?> union, boolean unionAll, boolean forCountRow) {
+        key.append(queryType.getName());
+        if (forCountRow) {
+            key.append(" count");
+        }
+        if (union != null) {
+            key.append(unionAll ? " union all " : " union ");
+            this.union = handle(union);
+        }
+        this.metadata = handle(metadata);
+        return this;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Nullable
+    private QueryMetadata handle(QueryMetadata metadata) {
+        QueryMetadata rv = substitute ? new DefaultQueryMetadata().noValidate() : null;
+        key.append('{');
+        if (metadata.isDistinct()) {
+            key.append("distinct ");
+        }
+        for (QueryFlag flag : metadata.getFlags()) {
+            key.append(flag.getPosition()).append(' ');
+            Expression<?> e = handle(flag.getFlag());
+            key.append(' ');
+            if (rv != null) {
+                rv.addFlag(e == flag.getFlag() ? flag : new QueryFlag(flag.getPosition(), e));
+            }
+        }
+        key.append("select ");
+        List<Expression<?>> projection = handle(metadata.getProjection());
+        key.append(" from ");
+        for (JoinExpression join : metadata.getJoins()) {
+            key.append(join.getType()).append(' ');
+            List<JoinFlag> flags = new ArrayList<JoinFlag>();
+            for (JoinFlag flag : join.getFlags()) {
+                key.append(flag.getPosition()).append(' ');
+                Expression<?> e = handle(flag.getFlag());
+                key.append(' ');
+                flags.add(e == flag.getFlag() ? flag : new JoinFlag(e, flag.getPosition()));
+            }
+            Expression<?> target = handle(join.getTarget());
+            Predicate condition = null;
+            if (join.getCondition() != null) {
+                key.append(" on ");
+                condition = predicate(handle(join.getCondition()));
+            }
+            key.append(", ");
+            if (rv != null) {
+                rv.addJoin(join.getType(), target);
+                for (JoinFlag flag : flags) {
+                    rv.addJoinFlag(flag);
+                }
+                if (condition != null) {
+                    rv.addJoinCondition(condition);
+                }
+            }
+        }
+        if (metadata.getWhere() != null) {
+            key.append(" where ");
+            Predicate where = predicate(handle(metadata.getWhere()));
+            if (rv != null) {
+                rv.addWhere(where);
+            }
+        }
+        if (!metadata.getGroupBy().isEmpty()) {
+            key.append(" group by ");
+            List<Expression<?>> groupBy = handle(metadata.getGroupBy());
+            if (rv != null) {
+                for (Expression<?> e : groupBy) {
+                    rv.addGroupBy(e);
+                }
+            }
+        }
+        if (metadata.getHaving() != null) {
+            key.append(" having ");
+            Predicate having = predicate(handle(metadata.getHaving()));
+            if (rv != null) {
+                rv.addHaving(having);
+            }
+        }
+        if (!metadata.getOrderBy().isEmpty()) {
+            key.append(" order by ");
+            for (OrderSpecifier<?> os : metadata.getOrderBy()) {
+                Expression<?> target = handle(os.getTarget());
+                key.append(' ').append(os.getOrder()).append(' ').append(os.getNullHandling()).append(", ");
+                if (rv != null) {
+                    rv.addOrderBy(target == os.getTarget() ? os
+                            : new OrderSpecifier(os.getOrder(), target, os.getNullHandling()));
+                }
+            }
+        }
+        QueryModifiers modifiers = metadata.getModifiers();
+        Long limit = modifiers.getLimit();
+        Long offset = modifiers.getOffset();
+        if (limit != null) {
+            key.append(" limit ");
+            limit = visitModifier(limit);
+        }
+        if (offset != null) {
+            key.append(" offset ");
+            offset = visitModifier(offset);
+        }
+        key.append('}');
+
+        if (rv != null) {
+            rv.setDistinct(metadata.isDistinct());
+            rv.setUnique(metadata.isUnique());
+            for (Expression<?> e : projection) {
+                rv.addProjection(e);
+            }
+            rv.setModifiers(new QueryModifiers(limit, offset));
+            for (Map.Entry<ParamExpression<?>, Object> entry : metadata.getParams().entrySet()) {
+                rv.setParam((ParamExpression)entry.getKey(), entry.getValue());
+            }
+        }
+        return rv;
+    }
+
+    private Expression<?> handle(Expression<?> expr) {
+        return expr.accept(this, null);
+    }
+
+    @Nullable
+    private List<Expression<?>> handle(List<? extends Expression<?>> exprs) {
+        List<Expression<?>> rv = substitute ? new ArrayList<Expression<?>>(exprs.size()) : null;
+        for (Expression<?> expr : exprs) {
+            Expression<?> e = handle(expr);
+            key.append(", ");
+            if (rv != null) {
+                rv.add(e);
+            }
+        }
+        return rv;
+    }
+
+    @Nullable
+    private Predicate predicate(Expression<?> expr) {
+        if (expr instanceof Predicate) {
+            return (Predicate)expr;
+        } else {
+            // the copy of the condition is not a predicate
+            substituted = false;
+            return null;
+        }
+    }
+
+    @Override
+    public Expression<?> visit(Constant<?> expr, Void context) {
+        Object placeholder = visitSlot(expr.getConstant());
+        return substitute ? new ConstantImpl<Object>(placeholder) : expr;
+    }
+
+    @Override
+    public Expression<?> visit(FactoryExpression<?> expr, Void context) {
+        // factory expressions are not copied, their bound constants remain unmapped
+        key.append("new(");
+        handle(expr.getArgs());
+        key.append(')');
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(Operation<?> expr, Void context) {
+        Operator<?> operator = expr.getOperator();
+        List<Expression<?>> args = expr.getArgs();
+        if (configuration.isArrayParameter(operator, args)) {
+            // the collection is bound as a single parameter
+            key.append(operator.getId()).append("[](");
+            Expression<?> target = handle(args.get(0));
+            key.append(", ?)");
+            Object placeholder = null;
+            if (substitute) {
+                placeholder = Collections.singletonList(new SlotVisitor.Slot(slots.size()));
+                placeholders.put(placeholder, slots.size());
+            }
+            slots.add(((Constant<?>)args.get(1)).getConstant());
+            return substitute ? SlotVisitor.copy(expr,
+                    new Expression<?>[]{target, new ConstantImpl<Object>(placeholder)}) : expr;
+        }
+        boolean[] bindable = SlotVisitor.getBindable(templates, operator, args.size());
+        Expression<?>[] rv = substitute ? new Expression<?>[args.size()] : null;
+        boolean changed = false;
+        key.append(operator.getId()).append('(');
+        for (int i = 0; i < args.size(); i++) {
+            Expression<?> arg = args.get(i);
+            Expression<?> e = arg;
+            if (arg instanceof Constant<?> && !bindable[i]) {
+                visitLiteral(((Constant<?>)arg).getConstant());
+            } else {
+                e = handle(arg);
+            }
+            key.append(", ");
+            if (rv != null) {
+                rv[i] = e;
+                changed |= e != arg;
+            }
+        }
+        key.append(')');
+        return changed ? SlotVisitor.copy(expr, rv) : expr;
+    }
+
+    @Override
+    public Expression<?> visit(ParamExpression<?> expr, Void context) {
+        key.append(':').append(expr.getName()).append(' ').append(expr.getType().getName());
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(Path<?> expr, Void context) {
+        PathMetadata<?> metadata = expr.getMetadata();
+        if (metadata.getParent() != null) {
+            handle(metadata.getParent());
+            key.append('.');
+        } else if (expr instanceof RelationalPath<?>) {
+            RelationalPath<?> entity = (RelationalPath<?>)expr;
+            key.append(entity.getSchemaName()).append('.').append(entity.getTableName()).append(' ');
+        }
+        if (metadata.getPathType() == PathType.VARIABLE || metadata.getPathType() == PathType.PROPERTY) {
+            key.append(ColumnMetadata.getName(expr));
+        } else {
+            key.append(metadata.getPathType()).append(' ').append(metadata.getElement());
+        }
+        return expr;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    public Expression<?> visit(SubQueryExpression<?> expr, Void context) {
+        QueryMetadata md = handle(expr.getMetadata());
+        return substitute ? new SubQueryExpressionImpl(expr.getType(), md) : expr;
+    }
+
+    @Override
+    public Expression<?> visit(TemplateExpression<?> expr, Void context) {
+        List<?> args = expr.getArgs();
+        boolean[] bindable = SlotVisitor.getBindable(expr.getTemplate(), args.size());
+        Object[] rv = substitute ? new Object[args.size()] : null;
+        boolean changed = false;
+        key.append('[').append(expr.getTemplate()).append("](");
+        for (int i = 0; i < args.size(); i++) {
+            Object arg = args.get(i);
+            Object e = arg;
+            if (arg instanceof Constant<?> && !bindable[i]) {
+                visitLiteral(((Constant<?>)arg).getConstant());
+            } else if (arg instanceof Expression<?>) {
+                e = handle((Expression<?>)arg);
+            } else if (bindable[i]) {
+                e = visitSlot(arg);
+            } else {
+                visitLiteral(arg);
+            }
+            key.append(", ");
+            if (rv != null) {
+                rv[i] = e;
+                changed |= e != arg;
+            }
+        }
+        key.append(')');
+        return changed ? SlotVisitor.copy(expr, rv) : expr;
+    }
+
+    private Long visitModifier(Long value) {
+        key.append('?');
+        slots.add(value);
+        if (substitute) {
+            // modifiers can't hold Slot instances
+            Long placeholder = new Long(value.longValue());
+            placeholders.put(placeholder, slots.size() - 1);
+            return placeholder;
+        } else {
+            return value;
+        }
+    }
+
+    @Nullable
+    private Object visitSlot(Object constant) {
+        if (constant instanceof Collection<?>) {
+            Collection<?> values = (Collection<?>)constant;
+            key.append("?[").append(values.size()).append(']');
+            List<Object> rv = substitute ? new ArrayList<Object>(values.size()) : null;
+            for (Object value : values) {
+                if (rv != null) {
+                    rv.add(new SlotVisitor.Slot(slots.size()));
+                }
+                slots.add(value);
+            }
+            return rv;
+        } else {
+            key.append('?');
+            Object rv = substitute ? new SlotVisitor.Slot(slots.size()) : null;
+            slots.add(constant);
+            return rv;
+        }
+    }
+
+    private void visitLiteral(@Nullable Object constant) {
+        if (constant != null) {
+            key.append('\'').append(constant.getClass().getName()).append(' ').append(constant).append('\'');
+        } else {
+            key.append("null");
+        }
+    }
+
+}
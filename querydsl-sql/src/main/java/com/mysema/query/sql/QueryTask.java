@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractFuture;
+
+/**
+ * QueryTask is the future of an asynchronous query execution
+ *
+ * <p>The connection of the execution is taken from the given provider on the executing thread
+ * and closed after the execution. Cancelling the future cancels the statements of the
+ * execution via {@link Statement#cancel()}.</p>
+ *
+ * @author tiwe
+ *
+ * @param <T> result type
+ */
+abstract class QueryTask<T> extends AbstractFuture<T> implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryTask.class);
+
+    private final Provider<Connection> connections;
+
+    private final List<Statement> statements = new ArrayList<Statement>();
+
+    public QueryTask(Provider<Connection> connections) {
+        this.connections = connections;
+    }
+
+    @Override
+    public void run() {
+        if (isDone()) {
+            return;
+        }
+        Connection connection = null;
+        try {
+            connection = connections.get();
+            set(execute(connection));
+        } catch (Throwable e) {
+            setException(e);
+        } finally {
+            synchronized (statements) {
+                statements.clear();
+            }
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute the query with the given connection
+     *
+     * @param connection
+     * @return
+     * @throws Exception
+     */
+    protected abstract T execute(Connection connection) throws Exception;
+
+    /**
+     * Register a statement of the execution for cancellation
+     *
+     * @param stmt
+     * @throws CancellationException if the execution has already been cancelled
+     */
+    public void register(Statement stmt) {
+        synchronized (statements) {
+            if (isCancelled()) {
+                throw new CancellationException("Query was cancelled");
+            }
+            statements.add(stmt);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (super.cancel(mayInterruptIfRunning)) {
+            synchronized (statements) {
+                for (Statement stmt : statements) {
+                    try {
+                        stmt.cancel();
+                    } catch (SQLException e) {
+                        // the statement may already be closed
+                        logger.debug(e.getMessage(), e);
+                    }
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.mysema.query.sql.types.DoubleType;
+import com.mysema.query.sql.types.IntegerType;
+import com.mysema.query.sql.types.LongType;
+import com.mysema.query.sql.types.Type;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Path;
+
+/**
+ * RowReader maps the rows of a ResultSet to instances of the projection of a query.
+ *
+ * <p>The column readers are resolved once on the first row and reused for the
+ * following rows, so that the row loop doesn't need to do type lookups.</p>
+ *
+ * @author tiwe
+ *
+ * @param <RT> projection type
+ */
+final class RowReader<RT> {
+
+    /**
+     * Reads a single column value
+     */
+    abstract static class Column {
+
+        @Nullable
+        abstract Object read(ResultSet rs, int index) throws SQLException;
+
+    }
+
+    private static final Column OBJECT = new Column() {
+        @Override
+        Object read(ResultSet rs, int index) throws SQLException {
+            return rs.getObject(index);
+        }
+    };
+
+    private static final Column INT = new Column() {
+        @Override
+        Object read(ResultSet rs, int index) throws SQLException {
+            int value = rs.getInt(index);
+            return rs.wasNull() ? null : Integer.valueOf(value);
+        }
+    };
+
+    private static final Column LONG = new Column() {
+        @Override
+        Object read(ResultSet rs, int index) throws SQLException {
+            long value = rs.getLong(index);
+            return rs.wasNull() ? null : Long.valueOf(value);
+        }
+    };
+
+    private static final Column DOUBLE = new Column() {
+        @Override
+        Object read(ResultSet rs, int index) throws SQLException {
+            double value = rs.getDouble(index);
+            return rs.wasNull() ? null : Double.valueOf(value);
+        }
+    };
+
+    private static final class TypedColumn extends Column {
+
+        private final Type<?> type;
+
+        TypedColumn(Type<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        Object read(ResultSet rs, int index) throws SQLException {
+            return type.getValue(rs, index);
+        }
+
+    }
+
+    /**
+     * Get the column reader for the given Type
+     *
+     * @param type
+     * @return
+     */
+    static Column getColumn(Type<?> type) {
+        // only the default implementations have known getValue semantics
+        Class<?> typeClass = type.getClass();
+        if (typeClass.equals(IntegerType.class)) {
+            return INT;
+        } else if (typeClass.equals(LongType.class)) {
+            return LONG;
+        } else if (typeClass.equals(DoubleType.class)) {
+            return DOUBLE;
+        } else {
+            return new TypedColumn(type);
+        }
+    }
+
+    private final Configuration configuration;
+
+    @Nullable
+    private final Expression<RT> expr;
+
+    @Nullable
+    private Column[] columns;
+
+    public RowReader(Configuration configuration, @Nullable Expression<RT> expr) {
+        this.configuration = configuration;
+        this.expr = expr;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public RT read(ResultSet rs) throws SQLException {
+        if (columns == null) {
+            columns = createColumns(rs);
+        }
+        if (expr instanceof FactoryExpression) {
+            Object[] args = new Object[columns.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = columns[i].read(rs, i + 1);
+            }
+            return ((FactoryExpression<RT>)expr).newInstance(args);
+        } else if (columns.length == 1 && (expr == null || !expr.getType().isArray())) {
+            return (RT) columns[0].read(rs, 1);
+        } else {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = columns[i].read(rs, i + 1);
+            }
+            return (RT) row;
+        }
+    }
+
+    private Column[] createColumns(ResultSet rs) throws SQLException {
+        if (expr == null) {
+            return new Column[]{OBJECT};
+        } else if (expr instanceof FactoryExpression) {
+            List<Expression<?>> args = ((FactoryExpression<RT>)expr).getArgs();
+            Column[] rv = new Column[args.size()];
+            for (int i = 0; i < rv.length; i++) {
+                rv[i] = createColumn(args.get(i));
+            }
+            return rv;
+        } else if (expr.getType().isArray()) {
+            Column[] rv = new Column[rs.getMetaData().getColumnCount()];
+            for (int i = 0; i < rv.length; i++) {
+                rv[i] = OBJECT;
+            }
+            return rv;
+        } else {
+            return new Column[]{createColumn(expr)};
+        }
+    }
+
+    private Column createColumn(Expression<?> expr) {
+        Path<?> path = expr instanceof Path ? (Path<?>)expr : null;
+        Type<?> type = configuration.getType(path, expr.getType());
+        if (type == null) {
+            throw new IllegalArgumentException("No type mapping for " + expr.getType().getName());
+        }
+        return getColumn(type);
+    }
+
+}
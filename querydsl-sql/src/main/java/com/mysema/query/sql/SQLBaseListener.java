@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.List;
+
+import com.mysema.commons.lang.Pair;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.dml.SQLInsertBatch;
+import com.mysema.query.sql.dml.SQLMergeBatch;
+import com.mysema.query.sql.dml.SQLUpdateBatch;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
+
+/**
+ * SQLBaseListener is a base class for {@link SQLDetailedListener} implementations with empty
+ * callback implementations
+ *
+ * @author tiwe
+ *
+ */
+public class SQLBaseListener implements SQLDetailedListener {
+
+    @Override
+    public void notifyQuery(QueryMetadata md) {
+    }
+
+    @Override
+    public void notifyDelete(RelationalPath<?> entity, QueryMetadata md) {
+    }
+
+    @Override
+    public void notifyDeletes(RelationalPath<?> entity, List<QueryMetadata> batches) {
+    }
+
+    @Override
+    public void notifyMerge(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> keys,
+            List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+    }
+
+    @Override
+    public void notifyMerges(RelationalPath<?> entity, QueryMetadata md, List<SQLMergeBatch> batches) {
+    }
+
+    @Override
+    public void notifyInsert(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> columns,
+            List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+    }
+
+    @Override
+    public void notifyInserts(RelationalPath<?> entity, QueryMetadata md,
+            List<SQLInsertBatch> batches) {
+    }
+
+    @Override
+    public void notifyUpdate(RelationalPath<?> entity, QueryMetadata md,
+            List<Pair<Path<?>, Expression<?>>> updates) {
+    }
+
+    @Override
+    public void notifyUpdates(RelationalPath<?> entity, List<SQLUpdateBatch> batches) {
+    }
+
+    @Override
+    public void start(SQLListenerContext context) {
+    }
+
+    @Override
+    public void exception(SQLListenerContext context) {
+    }
+
+    @Override
+    public void end(SQLListenerContext context) {
+    }
+
+}
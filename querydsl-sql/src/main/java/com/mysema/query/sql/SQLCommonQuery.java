@@ -258,6 +258,15 @@ public interface SQLCommonQuery<Q extends SQLCommonQuery<Q>> extends Query<Q> {
      */
     Q rightJoin(SubQueryExpression<?> o, Path<?> alias);
 
+    /**
+     * Restrict the query to the rows following the last row of the given keyset and order it
+     * by the order of the keyset
+     *
+     * @param keyset
+     * @return
+     */
+    Q seek(Keyset keyset);
+
     /**
      * Adds a common table expression
      *
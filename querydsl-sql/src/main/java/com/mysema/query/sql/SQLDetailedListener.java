@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+/**
+ * SQLDetailedListener extends the {@link SQLListener} interface with callbacks for the
+ * execution of the single statements of queries and clauses
+ *
+ * <p>Each statement execution is started with {@link #start(SQLListenerContext)} and finished
+ * with {@link #end(SQLListenerContext)}, failed executions are reported via
+ * {@link #exception(SQLListenerContext)} before the end callback. The executions of lazy query
+ * results end when the iterator or result set is closed.</p>
+ *
+ * @author tiwe
+ *
+ */
+public interface SQLDetailedListener extends SQLListener {
+
+    /**
+     * Called before the statement is executed, the statement may already be prepared at this
+     * point
+     *
+     * @param context
+     */
+    void start(SQLListenerContext context);
+
+    /**
+     * Called when the execution failed
+     *
+     * @param context
+     */
+    void exception(SQLListenerContext context);
+
+    /**
+     * Called after the execution and the consumption of the results
+     *
+     * @param context
+     */
+    void end(SQLListenerContext context);
+
+}
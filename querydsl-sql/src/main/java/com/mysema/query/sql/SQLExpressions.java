@@ -490,6 +490,17 @@ public final class SQLExpressions {
         return rowNumber;
     }
 
+    /**
+     * number of the bucket the current row falls into, when the rows of the partition are
+     * divided into the given amount of buckets as equally as possible, counting from 1
+     *
+     * @param buckets
+     * @return
+     */
+    public static WindowOver<Long> ntile(int buckets) {
+        return new WindowOver<Long>(Long.class, SQLOps.NTILE, ConstantImpl.create(buckets));
+    }
+
     /**
      * returns value evaluated at the row that is the first row of the window frame
      *
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.mysema.query.QueryMetadata;
+
+/**
+ * SQLListenerContext describes a single statement execution for {@link SQLDetailedListener}
+ * callbacks
+ *
+ * @author tiwe
+ *
+ */
+public interface SQLListenerContext {
+
+    /**
+     * Get the metadata of the query or clause
+     *
+     * @return
+     */
+    QueryMetadata getMetadata();
+
+    /**
+     * Get the target table of a clause
+     *
+     * @return table or null for queries
+     */
+    @Nullable
+    RelationalPath<?> getEntity();
+
+    /**
+     * Get the connection the statement is executed on
+     *
+     * @return
+     */
+    Connection getConnection();
+
+    /**
+     * Get the rendered SQL string
+     *
+     * @return
+     */
+    String getSQL();
+
+    /**
+     * Get the amount of batch rows executed with the statement
+     *
+     * @return batch rows or 0 for statements executed without batching
+     */
+    int getBatchSize();
+
+    /**
+     * Get the amount of rows fetched by a query or affected by a clause
+     *
+     * @return rows or -1 if not known
+     */
+    long getRowCount();
+
+    /**
+     * Get the time elapsed since the start of the execution, after the end of the execution
+     * the execution time
+     *
+     * @param unit
+     * @return
+     */
+    long getElapsedTime(TimeUnit unit);
+
+    /**
+     * Get the exception of a failed execution
+     *
+     * @return exception or null
+     */
+    @Nullable
+    Exception getException();
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.mysema.query.QueryMetadata;
+
+/**
+ * SQLListenerContextImpl is the default implementation of the {@link SQLListenerContext}
+ * interface
+ *
+ * @author tiwe
+ *
+ */
+public final class SQLListenerContextImpl implements SQLListenerContext {
+
+    private final QueryMetadata metadata;
+
+    private final Connection connection;
+
+    @Nullable
+    private final RelationalPath<?> entity;
+
+    private final String sql;
+
+    private final int batchSize;
+
+    private final long startTime = System.nanoTime();
+
+    private long endTime;
+
+    private boolean ended;
+
+    private long rowCount = -1;
+
+    @Nullable
+    private Exception exception;
+
+    public SQLListenerContextImpl(QueryMetadata metadata, Connection connection,
+            @Nullable RelationalPath<?> entity, String sql, int batchSize) {
+        this.metadata = metadata;
+        this.connection = connection;
+        this.entity = entity;
+        this.sql = sql;
+        this.batchSize = batchSize;
+    }
+
+    public SQLListenerContextImpl(QueryMetadata metadata, Connection connection, String sql) {
+        this(metadata, connection, null, sql, 0);
+    }
+
+    @Override
+    public QueryMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RelationalPath<?> getEntity() {
+        return entity;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public String getSQL() {
+        return sql;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    @Override
+    public long getElapsedTime(TimeUnit unit) {
+        long end = ended ? endTime : System.nanoTime();
+        return unit.convert(end - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Exception getException() {
+        return exception;
+    }
+
+    public void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    /**
+     * Mark the end of the execution
+     *
+     * @return false, if the end was already marked
+     */
+    public boolean end() {
+        if (!ended) {
+            endTime = System.nanoTime();
+            ended = true;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+
+}
@@ -29,12 +29,13 @@ import com.mysema.query.types.SubQueryExpression;
 
 /**
  * SQLListeners is an SQLListener implementation which dispatches the
- * notifications to a list of SQLListener instances
+ * notifications to a list of SQLListener instances, the execution callbacks are
+ * dispatched to the {@link SQLDetailedListener} instances
  *
  * @author tiwe
  *
  */
-public class SQLListeners implements SQLListener {
+public class SQLListeners implements SQLDetailedListener {
 
     @Nullable
     private final SQLListener parent;
@@ -53,6 +54,15 @@ public class SQLListeners implements SQLListener {
         listeners.add(listener);
     }
 
+    /**
+     * Get the listeners added to this instance, excluding the parent listener
+     *
+     * @return
+     */
+    public List<SQLListener> getListeners() {
+        return listeners;
+    }
+
     @Override
     public void notifyQuery(QueryMetadata md) {
         if (parent != null) {
@@ -147,4 +157,40 @@ public class SQLListeners implements SQLListener {
         }
     }
 
+    @Override
+    public void start(SQLListenerContext context) {
+        if (parent instanceof SQLDetailedListener) {
+            ((SQLDetailedListener)parent).start(context);
+        }
+        for (SQLListener listener : listeners) {
+            if (listener instanceof SQLDetailedListener) {
+                ((SQLDetailedListener)listener).start(context);
+            }
+        }
+    }
+
+    @Override
+    public void exception(SQLListenerContext context) {
+        if (parent instanceof SQLDetailedListener) {
+            ((SQLDetailedListener)parent).exception(context);
+        }
+        for (SQLListener listener : listeners) {
+            if (listener instanceof SQLDetailedListener) {
+                ((SQLDetailedListener)listener).exception(context);
+            }
+        }
+    }
+
+    @Override
+    public void end(SQLListenerContext context) {
+        if (parent instanceof SQLDetailedListener) {
+            ((SQLDetailedListener)parent).end(context);
+        }
+        for (SQLListener listener : listeners) {
+            if (listener instanceof SQLDetailedListener) {
+                ((SQLDetailedListener)listener).end(context);
+            }
+        }
+    }
+
 }
@@ -45,6 +45,8 @@ public final class SQLOps {
 
     public static final Operator<Long> DENSERANK = new OperatorImpl<Long>(NS, "DENSERANK");
 
+    public static final Operator<Long> NTILE = new OperatorImpl<Long>(NS, "NTILE");
+
     public static final Operator<Object> FIRSTVALUE = new OperatorImpl<Object>(NS, "FIRSTVALUE");
 
     public static final Operator<Object> LASTVALUE = new OperatorImpl<Object>(NS, "LASTVALUE");
@@ -63,6 +65,14 @@ public final class SQLOps {
 
     public static final Operator<Object> FOR_SHARE = new OperatorImpl<Object>(NS, "FOR_SHARE");
 
+    public static final Operator<Boolean> IN_ARRAY = new OperatorImpl<Boolean>(NS, "IN_ARRAY");
+
+    public static final Operator<Boolean> NOT_IN_ARRAY = new OperatorImpl<Boolean>(NS, "NOT_IN_ARRAY");
+
+    public static final Operator<Boolean> ROW_GT = new OperatorImpl<Boolean>(NS, "ROW_GT");
+
+    public static final Operator<Boolean> ROW_LT = new OperatorImpl<Boolean>(NS, "ROW_LT");
+
     public static final QueryFlag NO_WAIT_FLAG = new QueryFlag(Position.END, new OperationImpl<Object>(
             Object.class, NO_WAIT, ImmutableList.<Expression<?>>of()));
 
@@ -60,7 +60,7 @@ public class SQLQueryFactoryImpl extends AbstractSQLQueryFactory<SQLQuery> {
 
     @Override
     public SQLQuery query() {
-        return new SQLQuery(connection.get(), configuration);
+        return async(new SQLQuery(connection.get(), configuration));
     }
 
 }
@@ -16,6 +16,7 @@ package com.mysema.query.sql;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -79,6 +80,8 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
 
     private boolean inUnion = false;
 
+    private boolean arrayParameter = false;
+
     private boolean inJoin = false;
 
     public SQLSerializer(Configuration conf) {
@@ -421,6 +424,24 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
 
     public void serializeForInsert(QueryMetadata metadata, RelationalPath<?> entity, List<Path<?>> columns,
             List<Expression<?>> values, @Nullable SubQueryExpression<?> subQuery) {
+        serializeInsert(metadata, entity, columns, Collections.singletonList(values), subQuery);
+    }
+
+    /**
+     * Serialize an insert of several rows via a single VALUES clause
+     *
+     * @param metadata
+     * @param entity
+     * @param columns
+     * @param rows values per row
+     */
+    public void serializeForInsert(QueryMetadata metadata, RelationalPath<?> entity, List<Path<?>> columns,
+            List<List<Expression<?>>> rows) {
+        serializeInsert(metadata, entity, columns, rows, null);
+    }
+
+    private void serializeInsert(QueryMetadata metadata, RelationalPath<?> entity, List<Path<?>> columns,
+            List<List<Expression<?>>> rows, @Nullable SubQueryExpression<?> subQuery) {
         this.entity = entity;
 
         serialize(Position.START, metadata.getFlags());
@@ -445,17 +466,22 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
             serialize(subQuery.getMetadata(), false);
 
         } else {
-            for (int i = 0; i < columns.size(); i++) {
-                if (values.get(i) instanceof Constant<?>) {
-                    constantPaths.add(columns.get(i));
-                }
-            }
-
             // values
             append(templates.getValues());
-            append("(");
-            handle(COMMA, values);
-            append(")");
+            for (int r = 0; r < rows.size(); r++) {
+                List<Expression<?>> values = rows.get(r);
+                for (int i = 0; i < columns.size(); i++) {
+                    if (values.get(i) instanceof Constant<?>) {
+                        constantPaths.add(columns.get(i));
+                    }
+                }
+                if (r > 0) {
+                    append(COMMA);
+                }
+                append("(");
+                handle(COMMA, values);
+                append(")");
+            }
         }
 
         serialize(Position.END, metadata.getFlags());
@@ -604,9 +630,10 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
 
     @Override
     public void visitConstant(Object constant) {
-        if (constant instanceof Collection) {
+        if (constant instanceof Collection && !arrayParameter) {
             append("(");
             boolean first = true;
+            Object last = null;
             for (Object o : ((Collection)constant)) {
                 if (!first) {
                     append(COMMA);
@@ -617,12 +644,24 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
                     constantPaths.add(null);
                 }
                 first = false;
+                last = o;
+            }
+            int size = ((Collection)constant).size();
+            if (configuration.isInListPadding() && size > 2
+                    && size < templates.getMaxInListSize()) {
+                // pad to the next power of two with the last value
+                int paddedSize = Math.min(Integer.highestOneBit(size - 1) << 1,
+                        templates.getMaxInListSize());
+                for (int i = size; i < paddedSize; i++) {
+                    append(COMMA).append("?");
+                    constants.add(last);
+                }
+                size = paddedSize;
             }
             append(")");
 
-            int size = ((Collection)constant).size() - 1;
             Path<?> lastPath = constantPaths.get(constantPaths.size()-1);
-            for (int i = 0; i < size; i++) {
+            for (int i = 1; i < size; i++) {
                 constantPaths.add(lastPath);
             }
         } else {
@@ -737,6 +776,21 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
                 handle(args.get(1));
             }
 
+        } else if (configuration.isArrayParameter(operator, args)) {
+            boolean oldArrayParameter = arrayParameter;
+            arrayParameter = true;
+            super.visitOperation(type, operator == Ops.IN ? SQLOps.IN_ARRAY : SQLOps.NOT_IN_ARRAY, args);
+            arrayParameter = oldArrayParameter;
+
+        } else if ((operator == SQLOps.ROW_GT || operator == SQLOps.ROW_LT)
+                && !templates.isRowValueComparisonSupported()) {
+            List<Expression<?>> targets = Keyset.getElements(args.get(0));
+            Order direction = operator == SQLOps.ROW_GT ? Order.ASC : Order.DESC;
+            append("(");
+            handle(Keyset.expand(targets, Keyset.getElements(args.get(1)),
+                    Collections.nCopies(targets.size(), direction)));
+            append(")");
+
         } else if (operator == SQLOps.WITH_COLUMNS) {
             boolean oldSkipParent = skipParent;
             skipParent = true;
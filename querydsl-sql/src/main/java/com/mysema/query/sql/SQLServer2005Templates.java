@@ -61,6 +61,7 @@ public class SQLServer2005Templates extends SQLServerTemplates {
 
     public SQLServer2005Templates(char escape, boolean quote) {
         super(escape, quote);
+        setWindowFunctionsSupported(true);
     }
 
     @Override
@@ -49,8 +49,11 @@ public class SQLServerTemplates extends SQLTemplates {
 
     public SQLServerTemplates(char escape, boolean quote) {
         super("\"", escape, quote);
+        setNullsSortedLow(true);
         addClass2TypeMappings("decimal", Double.class);
         setDummyTable("");
+        // 2100 parameters at most per statement
+        setMaxInListSize(2000);
         setNullsFirst(null);
         setNullsLast(null);
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.Path;
+
+/**
+ * SQLStatementCache caches serialized SQL statements by the structure of the query.
+ * Repeated executions of the same query shape reuse the SQL string and only bind the new
+ * constant values.
+ *
+ * <p>The bindings are mapped to the constants by serializing the query once more with
+ * placeholders for the constants. Query shapes whose statement changes with the placeholders or
+ * which bind values derived from the constants, e.g. the sum of limit and offset, are not
+ * cached.</p>
+ *
+ * @author tiwe
+ *
+ */
+public final class SQLStatementCache {
+
+    /**
+     * Serialized statement with the layout of its bindings
+     */
+    static final class Entry {
+
+        private final String sql;
+
+        private final List<Object> constants;
+
+        private final List<Path<?>> constantPaths;
+
+        // slot index per binding or -1 for a parameter binding
+        private final int[] layout;
+
+        Entry(String sql, List<Object> constants, List<Path<?>> constantPaths, int[] layout) {
+            this.sql = sql;
+            this.constants = constants;
+            this.constantPaths = constantPaths;
+            this.layout = layout;
+        }
+
+        public String getSQL() {
+            return sql;
+        }
+
+        public List<Path<?>> getConstantPaths() {
+            return constantPaths;
+        }
+
+        public List<Object> getConstants(List<Object> slots) {
+            List<Object> rv = new ArrayList<Object>(constants);
+            for (int i = 0; i < layout.length; i++) {
+                if (layout[i] > -1) {
+                    rv.set(i, slots.get(layout[i]));
+                }
+            }
+            return rv;
+        }
+
+    }
+
+    private final Cache<String, Optional<Entry>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public SQLStatementCache() {
+        this(1000);
+    }
+
+    /**
+     * Create a new SQLStatementCache instance
+     *
+     * @param maximumSize maximum amount of cached query shapes
+     */
+    public SQLStatementCache(int maximumSize) {
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    @Nullable
+    Entry get(QueryShape shape) {
+        Optional<Entry> entry = entries.getIfPresent(shape.getKey());
+        if (entry != null && entry.isPresent()) {
+            hits.incrementAndGet();
+            return entry.get();
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    boolean contains(QueryShape shape) {
+        return entries.getIfPresent(shape.getKey()) != null;
+    }
+
+    /**
+     * Cache the statement of the given query shape
+     *
+     * @param shape shape in substitution mode
+     * @param sql statement of the query
+     * @param serializer serializer of the query with placeholders or null, if the query
+     *        couldn't be serialized with placeholders
+     */
+    void put(QueryShape shape, String sql, @Nullable SQLSerializer serializer) {
+        String key = shape.getKey();
+        if (serializer == null || !sql.equals(serializer.toString())) {
+            entries.put(key, Optional.<Entry>absent());
+            return;
+        }
+        List<Object> constants = serializer.getConstants();
+        int[] layout = new int[constants.size()];
+        for (int i = 0; i < layout.length; i++) {
+            Object constant = constants.get(i);
+            if (constant instanceof ParamExpression) {
+                layout[i] = -1;
+            } else {
+                layout[i] = shape.getSlotIndex(constant);
+                if (layout[i] < 0) {
+                    // the binding is not a constant of the query
+                    entries.put(key, Optional.<Entry>absent());
+                    return;
+                }
+            }
+        }
+        entries.put(key, Optional.of(new Entry(sql,
+                Collections.unmodifiableList(new ArrayList<Object>(constants)),
+                Collections.unmodifiableList(new ArrayList<Path<?>>(serializer.getConstantPaths())),
+                layout)));
+    }
+
+    /**
+     * Remove all cached statements
+     */
+    public void clear() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * Get the amount of executions which reused a cached statement
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the amount of executions which required serialization
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Get the amount of cached query shapes
+     *
+     * @return
+     */
+    public long size() {
+        return entries.size();
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * SQLStatsListener collects execution statistics per statement shape
+ *
+ * <p>The shape of a statement is its rendered SQL string, which contains the parameters of
+ * the statement as placeholders. For each shape the amount of executions and failures,
+ * a latency histogram and the amount of fetched or affected rows are kept. At most
+ * maxStatements shapes are tracked, executions of further shapes are only counted via
+ * {@link #getUntrackedCount()}.</p>
+ *
+ * <pre>
+ * SQLStatsListener stats = new SQLStatsListener();
+ * configuration.addListener(stats);
+ * ...
+ * for (SQLStatsListener.StatementStats s : stats.getSlowest(10)) {
+ *     logger.info(s.getSQL() + " : " + s.getPercentile(0.99, TimeUnit.MILLISECONDS) + "ms");
+ * }
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+@ThreadSafe
+public class SQLStatsListener extends SQLBaseListener {
+
+    private static final int BUCKETS = 40;
+
+    /**
+     * StatementStats holds the execution statistics of a single statement shape
+     *
+     * <p>The latency histogram uses buckets of exponentially growing size, bucket 0 holds the
+     * executions below one microsecond and bucket i &gt; 0 the executions from 2^(i-1) up to
+     * 2^i microseconds.</p>
+     */
+    @ThreadSafe
+    public static final class StatementStats {
+
+        private final String sql;
+
+        private final AtomicLong executions = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLong totalTime = new AtomicLong();
+
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private final AtomicLong totalRows = new AtomicLong();
+
+        private final AtomicLong maxRows = new AtomicLong();
+
+        private final AtomicLong batchRows = new AtomicLong();
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        void add(SQLListenerContext context) {
+            long time = context.getElapsedTime(TimeUnit.NANOSECONDS);
+            executions.incrementAndGet();
+            if (context.getException() != null) {
+                errors.incrementAndGet();
+            }
+            totalTime.addAndGet(time);
+            updateMax(maxTime, time);
+            long micros = TimeUnit.NANOSECONDS.toMicros(time);
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+            histogram.incrementAndGet(bucket);
+            if (context.getRowCount() > 0) {
+                totalRows.addAndGet(context.getRowCount());
+                updateMax(maxRows, context.getRowCount());
+            }
+            batchRows.addAndGet(context.getBatchSize());
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        public String getSQL() {
+            return sql;
+        }
+
+        /**
+         * @return amount of executions including failed ones
+         */
+        public long getExecutionCount() {
+            return executions.get();
+        }
+
+        /**
+         * @return amount of failed executions
+         */
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        public long getTotalTime(TimeUnit unit) {
+            return unit.convert(totalTime.get(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxTime(TimeUnit unit) {
+            return unit.convert(maxTime.get(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getMeanTime(TimeUnit unit) {
+            long count = executions.get();
+            return count > 0 ? unit.convert(totalTime.get() / count, TimeUnit.NANOSECONDS) : 0;
+        }
+
+        /**
+         * Get the upper bound of the latency histogram bucket holding the given percentile
+         *
+         * @param percentile percentile between 0.0 and 1.0
+         * @param unit
+         * @return
+         */
+        public long getPercentile(double percentile, TimeUnit unit) {
+            if (percentile < 0.0 || percentile > 1.0) {
+                throw new IllegalArgumentException("Invalid percentile " + percentile);
+            }
+            long[] counts = getHistogram();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (sum >= rank && sum > 0) {
+                    return unit.convert(1l << i, TimeUnit.MICROSECONDS);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Get the execution counts of the latency histogram buckets
+         *
+         * @return
+         */
+        public long[] getHistogram() {
+            long[] rv = new long[BUCKETS];
+            for (int i = 0; i < rv.length; i++) {
+                rv[i] = histogram.get(i);
+            }
+            return rv;
+        }
+
+        /**
+         * @return amount of rows fetched or affected by all executions
+         */
+        public long getTotalRows() {
+            return totalRows.get();
+        }
+
+        /**
+         * @return maximum amount of rows fetched or affected by a single execution
+         */
+        public long getMaxRows() {
+            return maxRows.get();
+        }
+
+        public long getMeanRows() {
+            long count = executions.get();
+            return count > 0 ? totalRows.get() / count : 0;
+        }
+
+        /**
+         * @return amount of batch rows of all executions
+         */
+        public long getBatchRows() {
+            return batchRows.get();
+        }
+
+        @Override
+        public String toString() {
+            return sql + " : " + executions.get() + " executions, "
+                + getMeanTime(TimeUnit.MICROSECONDS) + "us mean, "
+                + getMaxTime(TimeUnit.MICROSECONDS) + "us max, "
+                + totalRows.get() + " rows";
+        }
+
+    }
+
+    private final ConcurrentMap<String, StatementStats> statistics = new ConcurrentHashMap<String, StatementStats>();
+
+    private final AtomicLong untracked = new AtomicLong();
+
+    private final int maxStatements;
+
+    public SQLStatsListener() {
+        this(1000);
+    }
+
+    /**
+     * Create a new SQLStatsListener instance
+     *
+     * @param maxStatements maximum amount of tracked statement shapes
+     */
+    public SQLStatsListener(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void end(SQLListenerContext context) {
+        StatementStats stats = statistics.get(context.getSQL());
+        if (stats == null) {
+            if (statistics.size() >= maxStatements) {
+                untracked.incrementAndGet();
+                return;
+            }
+            stats = new StatementStats(context.getSQL());
+            StatementStats existing = statistics.putIfAbsent(context.getSQL(), stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.add(context);
+    }
+
+    /**
+     * Get the statistics of the given statement shape
+     *
+     * @param sql
+     * @return statistics or null, if the statement has not been executed
+     */
+    @Nullable
+    public StatementStats getStatistics(String sql) {
+        return statistics.get(sql);
+    }
+
+    /**
+     * Get the statistics of all tracked statement shapes
+     *
+     * @return
+     */
+    public Map<String, StatementStats> getStatistics() {
+        return ImmutableMap.copyOf(statistics);
+    }
+
+    /**
+     * Get the statistics of the statement shapes with the highest total execution time
+     *
+     * @param max maximum amount of statistics to be returned
+     * @return
+     */
+    public List<StatementStats> getSlowest(int max) {
+        List<StatementStats> rv = new ArrayList<StatementStats>(statistics.values());
+        // the totals are updated concurrently, so the sort uses a snapshot of them
+        final Map<StatementStats, Long> totals = new IdentityHashMap<StatementStats, Long>(rv.size());
+        for (StatementStats stats : rv) {
+            totals.put(stats, stats.totalTime.get());
+        }
+        Collections.sort(rv, new Comparator<StatementStats>() {
+            @Override
+            public int compare(StatementStats o1, StatementStats o2) {
+                long t1 = totals.get(o1), t2 = totals.get(o2);
+                return t1 < t2 ? 1 : (t1 > t2 ? -1 : 0);
+            }
+        });
+        return rv.size() > max ? new ArrayList<StatementStats>(rv.subList(0, max)) : rv;
+    }
+
+    /**
+     * Get the amount of executions which were not tracked, since maxStatements shapes
+     * were already tracked
+     *
+     * @return
+     */
+    public long getUntrackedCount() {
+        return untracked.get();
+    }
+
+    /**
+     * Clear the collected statistics
+     */
+    public void reset() {
+        statistics.clear();
+        untracked.set(0);
+    }
+
+}
@@ -181,6 +181,22 @@ public class SQLTemplates extends Templates {
 
     private boolean functionJoinsWrapped = false;
 
+    private int streamingFetchSize = 1000;
+
+    private boolean arrayParametersSupported = false;
+
+    private int maxInListSize = Integer.MAX_VALUE;
+
+    private boolean rowValueComparisonSupported = false;
+
+    private boolean windowFunctionsSupported = false;
+
+    private boolean multiRowInsertsSupported = false;
+
+    private boolean nullsSortedLow = false;
+
+    private int maxParameters = Integer.MAX_VALUE;
+
     protected SQLTemplates(String quoteStr, char escape, boolean useQuotes) {
         super(escape);
         this.quoteStr = quoteStr;
@@ -193,6 +209,12 @@ public class SQLTemplates extends Templates {
         add(SQLOps.FOR_SHARE, "\nfor share");
         add(SQLOps.NO_WAIT, " nowait");
 
+        // array parameters
+        add(SQLOps.IN_ARRAY, "{0} = any({1})");
+        add(SQLOps.NOT_IN_ARRAY, "{0} <> all({1})");
+        add(SQLOps.ROW_GT, "({0}) > ({1})");
+        add(SQLOps.ROW_LT, "({0}) < ({1})");
+
         // boolean
         add(Ops.AND, "{0} and {1}", 36);
         add(Ops.NOT, "not {0}", 35);
@@ -270,6 +292,7 @@ public class SQLTemplates extends Templates {
         add(SQLOps.ROWNUMBER, "row_number()");
         add(SQLOps.RANK, "rank()");
         add(SQLOps.DENSERANK, "dense_rank()");
+        add(SQLOps.NTILE, "ntile({0})");
         add(SQLOps.FIRSTVALUE, "first_value({0})");
         add(SQLOps.LASTVALUE, "last_value({0})");
         add(SQLOps.LEAD, "lead({0})");
@@ -513,6 +536,79 @@ public class SQLTemplates extends Templates {
         return functionJoinsWrapped;
     }
 
+    /**
+     * Get the fetch size to be used for streaming queries
+     *
+     * @return
+     */
+    public final int getStreamingFetchSize() {
+        return streamingFetchSize;
+    }
+
+    /**
+     * Get whether collections can be bound as single array parameters
+     *
+     * @return
+     */
+    public final boolean isArrayParametersSupported() {
+        return arrayParametersSupported;
+    }
+
+    /**
+     * Get the maximum amount of elements in IN lists, larger lists are split into several queries
+     *
+     * @return
+     */
+    public final int getMaxInListSize() {
+        return maxInListSize;
+    }
+
+    /**
+     * Get whether row values can be compared with less than and greater than
+     *
+     * @return
+     */
+    public final boolean isRowValueComparisonSupported() {
+        return rowValueComparisonSupported;
+    }
+
+    /**
+     * Get whether window functions such as count(*) over () are supported
+     *
+     * @return
+     */
+    public final boolean isWindowFunctionsSupported() {
+        return windowFunctionsSupported;
+    }
+
+    /**
+     * Get whether inserts with several rows in the VALUES clause are supported
+     *
+     * @return
+     */
+    public final boolean isMultiRowInsertsSupported() {
+        return multiRowInsertsSupported;
+    }
+
+    /**
+     * Get whether null values are ordered before other values in ascending order, if no null
+     * handling is given
+     *
+     * @return
+     */
+    public final boolean isNullsSortedLow() {
+        return nullsSortedLow;
+    }
+
+    /**
+     * Get the maximum amount of bind parameters per statement
+     *
+     * @return
+     */
+    public final int getMaxParameters() {
+        return maxParameters;
+    }
+
     public final String getNullsFirst() {
         return nullsFirst;
     }
@@ -753,6 +849,38 @@ public class SQLTemplates extends Templates {
         this.functionJoinsWrapped = functionJoinsWrapped;
     }
 
+    protected void setStreamingFetchSize(int streamingFetchSize) {
+        this.streamingFetchSize = streamingFetchSize;
+    }
+
+    protected void setArrayParametersSupported(boolean arrayParametersSupported) {
+        this.arrayParametersSupported = arrayParametersSupported;
+    }
+
+    protected void setMaxInListSize(int maxInListSize) {
+        this.maxInListSize = maxInListSize;
+    }
+
+    protected void setRowValueComparisonSupported(boolean rowValueComparisonSupported) {
+        this.rowValueComparisonSupported = rowValueComparisonSupported;
+    }
+
+    protected void setWindowFunctionsSupported(boolean windowFunctionsSupported) {
+        this.windowFunctionsSupported = windowFunctionsSupported;
+    }
+
+    protected void setMultiRowInsertsSupported(boolean multiRowInsertsSupported) {
+        this.multiRowInsertsSupported = multiRowInsertsSupported;
+    }
+
+    protected void setNullsSortedLow(boolean nullsSortedLow) {
+        this.nullsSortedLow = nullsSortedLow;
+    }
+
+    protected void setMaxParameters(int maxParameters) {
+        this.maxParameters = maxParameters;
+    }
+
     protected void setNullsFirst(String nullsFirst) {
         this.nullsFirst = nullsFirst;
     }
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.FactoryExpression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.OperationImpl;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.PredicateOperation;
+import com.mysema.query.types.PredicateTemplate;
+import com.mysema.query.types.SubQueryExpression;
+import com.mysema.query.types.Template;
+import com.mysema.query.types.TemplateExpression;
+import com.mysema.query.types.TemplateExpressionImpl;
+import com.mysema.query.types.Visitor;
+
+/**
+ * SlotVisitor replaces the constants of expressions which are bound as JDBC parameters with
+ * indexed {@link Slot} placeholders. Expressions which differ only in the values of their bound
+ * constants are equal after the replacement and serialize to the same SQL string.
+ *
+ * @author tiwe
+ *
+ */
+public final class SlotVisitor implements Visitor<Expression<?>, SlotVisitor.Context> {
+
+    /**
+     * Placeholder for the constant at the given index of {@link Context#getSlots()}
+     */
+    public static final class Slot {
+
+        private final int index;
+
+        public Slot(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Slot && ((Slot)o).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "?" + index;
+        }
+
+    }
+
+    /**
+     * Replacement state of a set of expressions
+     */
+    public static final class Context {
+
+        private final List<Object> slots = new ArrayList<Object>();
+
+        private final List<Object> templateArgs = new ArrayList<Object>();
+
+        private boolean replaced = true;
+
+        /**
+         * Get the values of the replaced constants
+         *
+         * @return
+         */
+        public List<Object> getSlots() {
+            return slots;
+        }
+
+        /**
+         * Get the arguments of the visited template expressions, since these are not part of
+         * the equality of template expressions
+         *
+         * @return
+         */
+        public List<Object> getTemplateArgs() {
+            return templateArgs;
+        }
+
+        /**
+         * Get whether all bound constants could be replaced
+         *
+         * @return
+         */
+        public boolean isReplaced() {
+            return replaced;
+        }
+
+    }
+
+    private final SQLTemplates templates;
+
+    public SlotVisitor(SQLTemplates templates) {
+        this.templates = templates;
+    }
+
+    /**
+     * Replace the bound constants of the given expressions
+     *
+     * @param exprs
+     * @param context
+     * @return
+     */
+    public List<Expression<?>> replace(List<? extends Expression<?>> exprs, Context context) {
+        List<Expression<?>> rv = new ArrayList<Expression<?>>(exprs.size());
+        for (Expression<?> expr : exprs) {
+            rv.add(replace(expr, context));
+        }
+        return rv;
+    }
+
+    /**
+     * Replace the bound constants of the given expression
+     *
+     * @param expr
+     * @param context
+     * @return
+     */
+    public Expression<?> replace(Expression<?> expr, Context context) {
+        if (expr instanceof Constant<?>) {
+            return new ConstantImpl<Object>(slot(((Constant<?>)expr).getConstant(), context));
+        } else {
+            return expr.accept(this, context);
+        }
+    }
+
+    @Override
+    public Expression<?> visit(Constant<?> expr, Context context) {
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(FactoryExpression<?> expr, Context context) {
+        context.replaced = false;
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(Operation<?> expr, Context context) {
+        Operator<?> operator = expr.getOperator();
+        boolean[] bindable = getBindable(templates, operator, expr.getArgs().size());
+        Expression<?>[] args = new Expression<?>[bindable.length];
+        boolean changed = false;
+        for (int i = 0; i < args.length; i++) {
+            Expression<?> arg = expr.getArg(i);
+            if (!(arg instanceof Constant<?>)) {
+                args[i] = arg.accept(this, context);
+            } else if (bindable[i]) {
+                args[i] = new ConstantImpl<Object>(slot(((Constant<?>)arg).getConstant(), context));
+            } else {
+                args[i] = arg;
+            }
+            changed |= args[i] != arg;
+        }
+        return changed ? copy(expr, args) : expr;
+    }
+
+    @Override
+    public Expression<?> visit(ParamExpression<?> expr, Context context) {
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(Path<?> expr, Context context) {
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(SubQueryExpression<?> expr, Context context) {
+        context.replaced = false;
+        return expr;
+    }
+
+    @Override
+    public Expression<?> visit(TemplateExpression<?> expr, Context context) {
+        Template template = expr.getTemplate();
+        boolean[] bindable = getBindable(template, expr.getArgs().size());
+        Object[] args = new Object[bindable.length];
+        boolean changed = false;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = expr.getArg(i);
+            if (arg instanceof Constant<?>) {
+                args[i] = bindable[i]
+                        ? new ConstantImpl<Object>(slot(((Constant<?>)arg).getConstant(), context))
+                        : arg;
+            } else if (arg instanceof Expression<?>) {
+                args[i] = ((Expression<?>)arg).accept(this, context);
+            } else {
+                args[i] = bindable[i] ? slot(arg, context) : arg;
+            }
+            changed |= args[i] != arg;
+        }
+        context.templateArgs.add(Arrays.asList(args));
+        return changed ? copy(expr, args) : expr;
+    }
+
+    private Object slot(Object constant, Context context) {
+        if (constant instanceof Collection<?>) {
+            List<Slot> rv = new ArrayList<Slot>();
+            for (Object value : (Collection<?>)constant) {
+                rv.add(new Slot(context.slots.size()));
+                context.slots.add(value);
+            }
+            return rv;
+        } else {
+            Slot slot = new Slot(context.slots.size());
+            context.slots.add(constant);
+            return slot;
+        }
+    }
+
+    /**
+     * Create a copy of the given operation with the given arguments
+     *
+     * @param expr
+     * @param args
+     * @return
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static Expression<?> copy(Operation<?> expr, Expression<?>[] args) {
+        if (expr.getType().equals(Boolean.class)) {
+            return new PredicateOperation((Operator<Boolean>)expr.getOperator(), ImmutableList.copyOf(args));
+        } else {
+            return new OperationImpl(expr.getType(), expr.getOperator(), ImmutableList.copyOf(args));
+        }
+    }
+
+    /**
+     * Create a copy of the given template expression with the given arguments
+     *
+     * @param expr
+     * @param args
+     * @return
+     */
+    static Expression<?> copy(TemplateExpression<?> expr, Object[] args) {
+        if (expr.getType().equals(Boolean.class)) {
+            return new PredicateTemplate(expr.getTemplate(), args);
+        } else {
+            return TemplateExpressionImpl.create(expr.getType(), expr.getTemplate(), args);
+        }
+    }
+
+    /**
+     * Arguments of operations are bindable, if they are referenced only as such in the template
+     * and not rewritten by {@link SQLSerializer}
+     *
+     * @param templates
+     * @param operator
+     * @param size
+     * @return
+     */
+    static boolean[] getBindable(SQLTemplates templates, Operator<?> operator, int size) {
+        boolean[] bindable = getBindable(templates.getTemplate(operator), size);
+        if ((operator == Ops.LIKE || operator == Ops.NUMCAST) && size > 1) {
+            bindable[1] = false;
+        }
+        return bindable;
+    }
+
+    /**
+     * Arguments are bindable, if they are referenced only as such in the template
+     *
+     * @param template
+     * @param size
+     * @return
+     */
+    static boolean[] getBindable(@Nullable Template template, int size) {
+        boolean[] bindable = new boolean[size];
+        if (template == null) {
+            return bindable;
+        }
+        boolean[] other = new boolean[size];
+        for (Template.Element element : template.getElements()) {
+            if (element instanceof Template.ByIndex) {
+                markIndex(bindable, ((Template.ByIndex)element).getIndex());
+            } else if (element instanceof Template.AsString) {
+                markIndex(other, ((Template.AsString)element).getIndex());
+            } else if (element instanceof Template.Transformed) {
+                markIndex(other, ((Template.Transformed)element).getIndex());
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            bindable[i] = bindable[i] && !other[i];
+        }
+        return bindable;
+    }
+
+    private static void markIndex(boolean[] flags, int index) {
+        if (index < flags.length) {
+            flags[index] = true;
+        }
+    }
+
+}
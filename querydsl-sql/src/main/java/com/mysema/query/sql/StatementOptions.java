@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * StatementOptions holds the JDBC statement settings used for the execution of queries
+ *
+ * <p>In streaming mode statements are prepared as forward-only and read-only and the fetch size
+ * defaults to {@link SQLTemplates#getStreamingFetchSize()}, so that drivers don't buffer the full
+ * result on the client. Some drivers have additional requirements, PostgreSQL for example uses
+ * cursors only when auto-commit is disabled on the connection.</p>
+ *
+ * <pre>
+ * StatementOptions options = StatementOptions.builder().setStreaming(true).build();
+ * CloseableIterator&lt;Tuple&gt; rows = query.from(survey)
+ *     .setStatementOptions(options)
+ *     .iterate(survey.id, survey.name);
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+@Immutable
+public final class StatementOptions {
+
+    /**
+     * Options with the driver defaults
+     */
+    public static final StatementOptions DEFAULT = new StatementOptions(null, null, null, false);
+
+    /**
+     * Builder for StatementOptions instances
+     */
+    public static final class Builder {
+
+        @Nullable
+        private Integer fetchSize;
+
+        @Nullable
+        private Integer maxRows;
+
+        @Nullable
+        private Integer queryTimeout;
+
+        private boolean streaming;
+
+        private Builder() {}
+
+        public Builder setFetchSize(@Nullable Integer fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder setMaxRows(@Nullable Integer maxRows) {
+            this.maxRows = maxRows;
+            return this;
+        }
+
+        public Builder setQueryTimeout(@Nullable Integer queryTimeout) {
+            this.queryTimeout = queryTimeout;
+            return this;
+        }
+
+        public Builder setStreaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        public StatementOptions build() {
+            return new StatementOptions(fetchSize, maxRows, queryTimeout, streaming);
+        }
+
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nullable
+    private final Integer fetchSize;
+
+    @Nullable
+    private final Integer maxRows;
+
+    @Nullable
+    private final Integer queryTimeout;
+
+    private final boolean streaming;
+
+    private StatementOptions(@Nullable Integer fetchSize, @Nullable Integer maxRows,
+            @Nullable Integer queryTimeout, boolean streaming) {
+        this.fetchSize = fetchSize;
+        this.maxRows = maxRows;
+        this.queryTimeout = queryTimeout;
+        this.streaming = streaming;
+    }
+
+    @Nullable
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    @Nullable
+    public Integer getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Get the query timeout in seconds
+     *
+     * @return
+     */
+    @Nullable
+    public Integer getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Prepare a statement for the given query string with these options
+     *
+     * @param conn
+     * @param templates
+     * @param queryString
+     * @return
+     * @throws SQLException
+     */
+    PreparedStatement prepareStatement(Connection conn, SQLTemplates templates, String queryString)
+            throws SQLException {
+        PreparedStatement stmt;
+        if (streaming) {
+            stmt = conn.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        } else {
+            stmt = conn.prepareStatement(queryString);
+        }
+        try {
+            if (fetchSize != null) {
+                stmt.setFetchSize(fetchSize.intValue());
+            } else if (streaming) {
+                stmt.setFetchSize(templates.getStreamingFetchSize());
+            }
+            if (maxRows != null) {
+                stmt.setMaxRows(maxRows.intValue());
+            }
+            if (queryTimeout != null) {
+                stmt.setQueryTimeout(queryTimeout.intValue());
+            }
+            return stmt;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+}
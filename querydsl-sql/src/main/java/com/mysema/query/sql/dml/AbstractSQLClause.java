@@ -13,19 +13,26 @@
  */
 package com.mysema.query.sql.dml;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import com.google.common.collect.ImmutableList;
 import com.mysema.query.QueryException;
 import com.mysema.query.QueryMetadata;
 import com.mysema.query.dml.DMLClause;
 import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.RelationalPath;
 import com.mysema.query.sql.SQLBindings;
 import com.mysema.query.sql.SQLListener;
+import com.mysema.query.sql.SQLListenerContextImpl;
 import com.mysema.query.sql.SQLListeners;
 import com.mysema.query.sql.SQLSerializer;
 import com.mysema.query.types.ParamExpression;
@@ -44,6 +51,8 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
 
     protected final SQLListeners listeners;
 
+    private int batchSize;
+
     /**
      * @param configuration
      */
@@ -75,6 +84,42 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
         return new SQLBindings(queryString, args.build());
     }
 
+    /**
+     * Get the amount of batch rows after which the buffered rows are executed
+     *
+     * @return
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the amount of batch rows after which the buffered rows are executed on the prepared
+     * statements of the clause. The executed rows are released and the update counts are
+     * accumulated into the result of {@link #execute()}. A batch size of 0 (the default)
+     * executes all batch rows in {@link #execute()}.
+     *
+     * <p>The statements stay open between the executions, so {@link #execute()} needs to be
+     * called after the last batch row, or {@link #close()} to discard the remaining rows.</p>
+     *
+     * @param batchSize
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public C setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return (C)this;
+    }
+
+    /**
+     * Discard the buffered batch rows and close the statements of batch rows which have
+     * already been executed because of the batch size. {@link #execute()} closes the
+     * statements itself.
+     */
+    public void close() {
+        // no statements are held by default
+    }
+
     /**
      * Get the SQL string and bindings
      *
@@ -125,6 +170,86 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
         }
     }
 
+    protected long executeBatch(Collection<PreparedStatement> stmts) throws SQLException {
+        long rv = 0;
+        for (PreparedStatement stmt : stmts) {
+            rv += executeBatch(stmt);
+        }
+        return rv;
+    }
+
+    /**
+     * Execute the pending batch rows of the given statements
+     *
+     * @param statements
+     * @param connection
+     * @param metadata
+     * @param entity
+     * @return
+     * @throws SQLException
+     */
+    long executeBatch(BatchStatements statements, Connection connection, QueryMetadata metadata,
+            RelationalPath<?> entity) throws SQLException {
+        long rv = 0;
+        for (BatchStatements.Batch batch : statements.removePending()) {
+            SQLListenerContextImpl context = startContext(connection, metadata, entity,
+                    batch.getSQL(), batch.getRows());
+            try {
+                long count = executeBatch(batch.getStatement());
+                context.setRowCount(count);
+                rv += count;
+            } catch (SQLException e) {
+                onException(context, e);
+                throw e;
+            } finally {
+                endContext(context);
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Notify the listeners about the start of a statement execution
+     *
+     * @param connection
+     * @param metadata
+     * @param entity
+     * @param sql
+     * @param batchSize
+     * @return
+     */
+    protected SQLListenerContextImpl startContext(Connection connection, QueryMetadata metadata,
+            RelationalPath<?> entity, String sql, int batchSize) {
+        SQLListenerContextImpl context = new SQLListenerContextImpl(metadata, connection, entity,
+                sql, batchSize);
+        listeners.start(context);
+        return context;
+    }
+
+    /**
+     * Notify the listeners about the failure of a statement execution
+     *
+     * @param context
+     * @param e
+     */
+    protected void onException(@Nullable SQLListenerContextImpl context, Exception e) {
+        if (context != null) {
+            context.setException(e);
+            listeners.exception(context);
+        }
+    }
+
+    /**
+     * Notify the listeners about the end of a statement execution
+     *
+     * @param context
+     */
+    protected void endContext(@Nullable SQLListenerContextImpl context) {
+        if (context != null && context.end()) {
+            listeners.end(context);
+        }
+    }
+
     protected void close(PreparedStatement stmt) {
         try {
             stmt.close();
@@ -133,6 +258,18 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
         }
     }
 
+    protected void close(Collection<PreparedStatement> stmts) {
+        for (PreparedStatement stmt : stmts) {
+            close(stmt);
+        }
+    }
+
+    void close(BatchStatements statements) {
+        List<PreparedStatement> stmts = new ArrayList<PreparedStatement>(statements.getStatements());
+        statements.clear();
+        close(stmts);
+    }
+
     protected void close(ResultSet rs) {
         try {
             rs.close();
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Maps;
+
+/**
+ * BatchStatements holds the statement templates and prepared statements of a batch clause
+ * between executions of the buffered batch rows
+ *
+ * @author tiwe
+ *
+ */
+final class BatchStatements {
+
+    /**
+     * Batch rows of a single statement
+     */
+    static final class Batch {
+
+        private final String sql;
+
+        private final PreparedStatement statement;
+
+        private int rows;
+
+        Batch(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        public String getSQL() {
+            return sql;
+        }
+
+        public PreparedStatement getStatement() {
+            return statement;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+    }
+
+    private final Map<List<?>, BatchTemplate> templates = Maps.newHashMap();
+
+    private final Map<String, PreparedStatement> statements = Maps.newLinkedHashMap();
+
+    private final List<Batch> pending = new ArrayList<Batch>();
+
+    private long updateCount;
+
+    @Nullable
+    public BatchTemplate getTemplate(List<?> shape) {
+        return templates.get(shape);
+    }
+
+    public void addTemplate(List<?> shape, BatchTemplate template) {
+        templates.put(shape, template);
+    }
+
+    @Nullable
+    public PreparedStatement getStatement(String sql) {
+        return statements.get(sql);
+    }
+
+    public void addStatement(String sql, PreparedStatement stmt) {
+        statements.put(sql, stmt);
+    }
+
+    /**
+     * Get whether the statement of the given SQL string has pending batch rows which are
+     * followed by rows of other statements
+     *
+     * @param sql
+     * @return
+     */
+    public boolean isInterleaved(String sql) {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null || pending.isEmpty() || pending.get(pending.size() - 1).statement == stmt) {
+            return false;
+        }
+        for (Batch batch : pending) {
+            if (batch.statement == stmt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the current parameters of the statement of the given SQL string as a batch row
+     *
+     * @param sql
+     * @throws SQLException
+     */
+    public void addBatch(String sql) throws SQLException {
+        addBatch(sql, 1);
+    }
+
+    /**
+     * Add the current parameters of the statement of the given SQL string as a batch entry
+     * which covers the given amount of rows
+     *
+     * @param sql
+     * @param rows
+     * @throws SQLException
+     */
+    public void addBatch(String sql, int rows) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        stmt.addBatch();
+        for (Batch batch : pending) {
+            if (batch.statement == stmt) {
+                batch.rows += rows;
+                return;
+            }
+        }
+        Batch batch = new Batch(sql, stmt);
+        batch.rows += rows;
+        pending.add(batch);
+    }
+
+    /**
+     * Get the batch rows per statement and reset them as executed
+     *
+     * @return
+     */
+    public List<Batch> removePending() {
+        List<Batch> rv = new ArrayList<Batch>(pending);
+        pending.clear();
+        return rv;
+    }
+
+    public Collection<PreparedStatement> getStatements() {
+        return statements.values();
+    }
+
+    public void addUpdateCount(long count) {
+        updateCount += count;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    public boolean isEmpty() {
+        return statements.isEmpty();
+    }
+
+    /**
+     * Reset the state, the statements need to be closed separately
+     */
+    public void clear() {
+        templates.clear();
+        statements.clear();
+        pending.clear();
+        updateCount = 0;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mysema.query.sql.SQLSerializer;
+import com.mysema.query.sql.SlotVisitor;
+import com.mysema.query.types.Path;
+
+/**
+ * BatchTemplate is a statement serialized once for all batch rows of the same shape. Bindings
+ * serialized from {@link SlotVisitor.Slot} placeholders are taken from the slots of each row,
+ * all other bindings are shared.
+ *
+ * @author tiwe
+ *
+ */
+final class BatchTemplate {
+
+    private final String sql;
+
+    private final List<Object> constants;
+
+    private final List<Path<?>> constantPaths;
+
+    // slot index per binding or -1 for a shared binding
+    private final int[] layout;
+
+    public BatchTemplate(SQLSerializer serializer) {
+        this.sql = serializer.toString();
+        this.constants = serializer.getConstants();
+        this.constantPaths = serializer.getConstantPaths();
+        this.layout = new int[constants.size()];
+        for (int i = 0; i < layout.length; i++) {
+            Object constant = constants.get(i);
+            layout[i] = constant instanceof SlotVisitor.Slot ? ((SlotVisitor.Slot)constant).getIndex() : -1;
+        }
+    }
+
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * @return amount of bind parameters of the statement
+     */
+    public int getBindingCount() {
+        return constants.size();
+    }
+
+    public List<Path<?>> getConstantPaths() {
+        return constantPaths;
+    }
+
+    public List<Object> getConstants(List<Object> slots) {
+        List<Object> rv = new ArrayList<Object>(constants);
+        for (int i = 0; i < layout.length; i++) {
+            if (layout[i] > -1) {
+                rv.set(i, slots.get(layout[i]));
+            }
+        }
+        return rv;
+    }
+
+}
@@ -33,6 +33,7 @@ import com.mysema.query.dml.DeleteClause;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.RelationalPath;
 import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.sql.SQLListenerContextImpl;
 import com.mysema.query.sql.SQLSerializer;
 import com.mysema.query.sql.SQLTemplates;
 import com.mysema.query.types.Expression;
@@ -57,7 +58,11 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
 
     private final RelationalPath<?> entity;
 
-    private final List<QueryMetadata> batches = new ArrayList<QueryMetadata>();
+    private List<QueryMetadata> batches = new ArrayList<QueryMetadata>();
+
+    private boolean flushed;
+
+    private long flushedCount;
 
     private DefaultQueryMetadata metadata = new DefaultQueryMetadata();
 
@@ -102,6 +107,9 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
     /**
      * Add current state of bindings as a batch item
      *
+     * <p>If a batch size is set, the buffered batch rows are executed once the batch size is
+     * reached.</p>
+     *
      * @return
      */
     public SQLDeleteClause addBatch() {
@@ -109,9 +117,21 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
         metadata = new DefaultQueryMetadata();
         metadata.addJoin(JoinType.DEFAULT, entity);
         metadata.setValidatingVisitor(validatingVisitor);
+        if (getBatchSize() > 0 && batches.size() >= getBatchSize()) {
+            flushedCount += executeStatement();
+            flushed = true;
+            batches = new ArrayList<QueryMetadata>();
+        }
         return this;
     }
 
+    @Override
+    public void close() {
+        batches = new ArrayList<QueryMetadata>();
+        flushed = false;
+        flushedCount = 0;
+    }
+
     private PreparedStatement createStatement() throws SQLException{
         PreparedStatement stmt;
         if (batches.isEmpty()) {
@@ -145,19 +165,40 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
 
     @Override
     public long execute() {
+        if (flushed) {
+            long rv = flushedCount;
+            if (!batches.isEmpty()) {
+                rv += executeStatement();
+            }
+            close();
+            return rv;
+        } else {
+            return executeStatement();
+        }
+    }
+
+    private long executeStatement() {
         PreparedStatement stmt = null;
+        SQLListenerContextImpl context = null;
         try {
             stmt = createStatement();
+            long rv;
             if (batches.isEmpty()) {
                 listeners.notifyDelete(entity, metadata);
-                return stmt.executeUpdate();
+                context = startContext(connection, metadata, entity, queryString, 0);
+                rv = stmt.executeUpdate();
             } else {
                 listeners.notifyDeletes(entity, batches);
-                return executeBatch(stmt);
+                context = startContext(connection, metadata, entity, queryString, batches.size());
+                rv = executeBatch(stmt);
             }
+            context.setRowCount(rv);
+            return rv;
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
         } finally {
+            endContext(context);
             if (stmt != null) {
                 close(stmt);
             }
@@ -41,8 +41,10 @@ import com.mysema.query.sql.ColumnMetadata;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.RelationalPath;
 import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.sql.SQLListenerContextImpl;
 import com.mysema.query.sql.SQLSerializer;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.SlotVisitor;
 import com.mysema.query.sql.types.Null;
 import com.mysema.query.types.ConstantImpl;
 import com.mysema.query.types.Expression;
@@ -74,7 +76,9 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
     @Nullable
     private AbstractSQLSubQuery<?> subQueryBuilder;
 
-    private final List<SQLInsertBatch> batches = new ArrayList<SQLInsertBatch>();
+    private List<SQLInsertBatch> batches = new ArrayList<SQLInsertBatch>();
+
+    private final BatchStatements batchStatements = new BatchStatements();
 
     private final List<Path<?>> columns = new ArrayList<Path<?>>();
 
@@ -133,6 +137,10 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
     /**
      * Add the current state of bindings as a batch item
      *
+     * <p>Batch rows are executed in the order they were added. Consecutive rows which serialize
+     * to the same statement are executed as one JDBC batch, a change of the statement starts a
+     * new batch.</p>
+     *
      * @return
      */
     public SQLInsertClause addBatch() {
@@ -144,6 +152,9 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         columns.clear();
         values.clear();
         subQuery = null;
+        if (getBatchSize() > 0 && batches.size() >= getBatchSize()) {
+            flush();
+        }
         return this;
     }
 
@@ -236,37 +247,124 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
             subQuery = subQueryBuilder.list(values.toArray(new Expression[values.size()]));
             values.clear();
         }
-        PreparedStatement stmt = null;
-        if (batches.isEmpty()) {
-            serializer.serializeForInsert(metadata, entity, columns, values, subQuery);
-            stmt = prepareStatementAndSetParameters(serializer, withKeys);
-        } else {
-            serializer.serializeForInsert(metadata, entity, batches.get(0).getColumns(), batches
-                    .get(0).getValues(), batches.get(0).getSubQuery());
-            stmt = prepareStatementAndSetParameters(serializer, withKeys);
-
-            // add first batch
-            stmt.addBatch();
+        serializer.serializeForInsert(metadata, entity, columns, values, subQuery);
+        return prepareStatementAndSetParameters(serializer, withKeys);
+    }
 
-            // add other batches
-            for (int i = 1; i < batches.size(); i++) {
-                SQLInsertBatch batch = batches.get(i);
-                serializer = new SQLSerializer(configuration, true);
+    private void addBatches(boolean withKeys) throws SQLException {
+        SlotVisitor slotVisitor = new SlotVisitor(configuration.getTemplates());
+        // generated keys are taken from the JDBC batch, since multi row inserts don't return
+        // the keys of all rows for all drivers
+        boolean multiRow = !withKeys && configuration.isUseMultiRowInserts();
+        int i = 0;
+        while (i < batches.size()) {
+            SQLInsertBatch batch = batches.get(i);
+            // rows of the same shape share the serialized statement
+            SlotVisitor.Context context = new SlotVisitor.Context();
+            List<Expression<?>> values = slotVisitor.replace(batch.getValues(), context);
+            List<?> shape = null;
+            BatchTemplate template = null;
+            if (context.isReplaced() && batch.getSubQuery() == null) {
+                shape = Arrays.asList(batch.getColumns(), values, context.getTemplateArgs());
+                template = batchStatements.getTemplate(shape);
+            }
+            if (template == null) {
+                SQLSerializer serializer = new SQLSerializer(configuration, true);
                 serializer.serializeForInsert(metadata, entity, batch.getColumns(),
-                        batch.getValues(), batch.getSubQuery());
-                setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(),
-                        metadata.getParams());
-                stmt.addBatch();
+                        shape != null ? values : batch.getValues(), batch.getSubQuery());
+                template = new BatchTemplate(serializer);
+                if (shape != null) {
+                    batchStatements.addTemplate(shape, template);
+                }
+            }
+
+            // following rows of the same shape are combined into a multi row insert
+            int rows = 1;
+            if (multiRow && shape != null) {
+                int maxRows = configuration.getTemplates().getMaxParameters()
+                        / Math.max(template.getBindingCount(), 1);
+                while (rows < maxRows && i + rows < batches.size()
+                        && hasShape(slotVisitor, batches.get(i + rows), shape)) {
+                    rows++;
+                }
+                if (rows > 1) {
+                    context = new SlotVisitor.Context();
+                    List<List<Expression<?>>> rowValues = new ArrayList<List<Expression<?>>>(rows);
+                    for (int j = i; j < i + rows; j++) {
+                        rowValues.add(slotVisitor.replace(batches.get(j).getValues(), context));
+                    }
+                    List<?> rowsShape = Arrays.asList(batch.getColumns(), rowValues, context.getTemplateArgs());
+                    template = batchStatements.getTemplate(rowsShape);
+                    if (template == null) {
+                        SQLSerializer serializer = new SQLSerializer(configuration, true);
+                        serializer.serializeForInsert(metadata, entity, batch.getColumns(), rowValues);
+                        template = new BatchTemplate(serializer);
+                        batchStatements.addTemplate(rowsShape, template);
+                    }
+                }
+            }
+
+            // rows which serialize to a different statement are batched separately, pending
+            // rows are executed before a statement is continued to keep the order of the rows
+            if (!withKeys && batchStatements.isInterleaved(template.getSQL())) {
+                batchStatements.addUpdateCount(
+                        executeBatch(batchStatements, connection, metadata, entity));
+            }
+            PreparedStatement stmt = batchStatements.getStatement(template.getSQL());
+            if (stmt == null) {
+                stmt = prepareStatement(template.getSQL(), withKeys);
+                batchStatements.addStatement(template.getSQL(), stmt);
+            }
+            setParameters(stmt, template.getConstants(context.getSlots()),
+                    template.getConstantPaths(), metadata.getParams());
+            batchStatements.addBatch(template.getSQL(), rows);
+            i += rows;
+        }
+    }
+
+    private boolean hasShape(SlotVisitor slotVisitor, SQLInsertBatch batch, List<?> shape) {
+        if (batch.getSubQuery() != null) {
+            return false;
+        }
+        SlotVisitor.Context context = new SlotVisitor.Context();
+        List<Expression<?>> values = slotVisitor.replace(batch.getValues(), context);
+        return context.isReplaced()
+            && shape.equals(Arrays.asList(batch.getColumns(), values, context.getTemplateArgs()));
+    }
+
+    /**
+     * Execute the buffered batch rows and release them
+     */
+    private void flush() {
+        boolean success = false;
+        try {
+            addBatches(false);
+            listeners.notifyInserts(entity, metadata, batches);
+            batchStatements.addUpdateCount(
+                    executeBatch(batchStatements, connection, metadata, entity));
+            batches = new ArrayList<SQLInsertBatch>();
+            success = true;
+        } catch (SQLException e) {
+            throw new QueryException("Caught " + e.getClass().getSimpleName() + " for "
+                    + queryString, e);
+        } finally {
+            if (!success) {
+                close(batchStatements);
             }
         }
-        return stmt;
     }
 
     private PreparedStatement prepareStatementAndSetParameters(SQLSerializer serializer,
             boolean withKeys) throws SQLException {
-        queryString = serializer.toString();
+        PreparedStatement stmt = prepareStatement(serializer.toString(), withKeys);
+        setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(),
+                metadata.getParams());
+        return stmt;
+    }
+
+    private PreparedStatement prepareStatement(String sql, boolean withKeys) throws SQLException {
+        queryString = sql;
         logger.debug(queryString);
-        PreparedStatement stmt;
         if (withKeys) {
             if (entity.getPrimaryKey() != null) {
                 String[] target = new String[entity.getPrimaryKey().getLocalColumns().size()];
@@ -275,33 +373,52 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
                     String column = ColumnMetadata.getName(path);
                     target[i] = column;
                 }
-                stmt = connection.prepareStatement(queryString, target);
+                return connection.prepareStatement(queryString, target);
             } else {
-                stmt = connection.prepareStatement(queryString, Statement.RETURN_GENERATED_KEYS);
+                return connection.prepareStatement(queryString, Statement.RETURN_GENERATED_KEYS);
             }
         } else {
-            stmt = connection.prepareStatement(queryString);
+            return connection.prepareStatement(queryString);
         }
-        setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(),
-                metadata.getParams());
-        return stmt;
     }
 
     /**
      * Execute the clause and return the generated keys as a ResultSet
      *
+     * <p>Generated keys of batch rows are only available, if all rows serialize to the same
+     * statement, otherwise an IllegalStateException is thrown.</p>
+     *
      * @return
      */
     public ResultSet executeWithKeys() {
+        SQLListenerContextImpl context = null;
         try {
-            final PreparedStatement stmt = createStatement(true);
-            if (batches.isEmpty()) {
+            final PreparedStatement stmt;
+            if (batches.isEmpty() && batchStatements.isEmpty()) {
+                stmt = createStatement(true);
                 listeners.notifyInsert(entity, metadata, columns, values, subQuery);
-                stmt.executeUpdate();
+                context = startContext(connection, metadata, entity, queryString, 0);
+                context.setRowCount(stmt.executeUpdate());
             } else {
+                if (!batchStatements.isEmpty()) {
+                    close(batchStatements);
+                    throw new IllegalStateException("Generated keys are not available for " +
+                            "batch rows which have already been executed");
+                }
+                addBatches(true);
+                if (batchStatements.getStatements().size() > 1) {
+                    close(batchStatements);
+                    throw new IllegalStateException("Generated keys are only supported for batches " +
+                            "which use a single statement");
+                }
+                stmt = batchStatements.getStatements().iterator().next();
+                batchStatements.clear();
                 listeners.notifyInserts(entity, metadata, batches);
-                stmt.executeBatch();
+                context = startContext(connection, metadata, entity, queryString, batches.size());
+                batches = new ArrayList<SQLInsertBatch>();
+                context.setRowCount(executeBatch(stmt));
             }
+            endContext(context);
             ResultSet rs = stmt.getGeneratedKeys();
             return new ResultSetAdapter(rs) {
                 @Override
@@ -314,33 +431,57 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
                 }
             };
         } catch (SQLException e) {
+            onException(context, e);
+            endContext(context);
+            close(batchStatements);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for "
                     + queryString, e);
         }
     }
 
+    @Override
+    public void close() {
+        close(batchStatements);
+        batches = new ArrayList<SQLInsertBatch>();
+    }
+
     @Override
     public long execute() {
+        if (!batches.isEmpty() || !batchStatements.isEmpty()) {
+            return executeBatches();
+        }
         PreparedStatement stmt = null;
+        SQLListenerContextImpl context = null;
         try {
             stmt = createStatement(false);
-            if (batches.isEmpty()) {
-                listeners.notifyInsert(entity, metadata, columns, values, subQuery);
-                return stmt.executeUpdate();
-            } else {
-                listeners.notifyInserts(entity, metadata, batches);
-                return executeBatch(stmt);
-            }
+            listeners.notifyInsert(entity, metadata, columns, values, subQuery);
+            context = startContext(connection, metadata, entity, queryString, 0);
+            long rv = stmt.executeUpdate();
+            context.setRowCount(rv);
+            return rv;
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for "
                     + queryString, e);
         } finally {
+            endContext(context);
             if (stmt != null) {
                 close(stmt);
             }
         }
     }
 
+    private long executeBatches() {
+        try {
+            if (!batches.isEmpty()) {
+                flush();
+            }
+            return batchStatements.getUpdateCount();
+        } finally {
+            close(batchStatements);
+        }
+    }
+
     @Override
     public List<SQLBindings> getSQL() {
         if (batches.isEmpty()) {
@@ -445,7 +586,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
 
     @Override
     public boolean isEmpty() {
-        return values.isEmpty() && batches.isEmpty();
+        return values.isEmpty() && batches.isEmpty() && batchStatements.isEmpty();
     }
 
 }
@@ -13,13 +13,18 @@
  */
 package com.mysema.query.sql.dml;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -27,26 +32,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.mysema.query.DefaultQueryMetadata;
 import com.mysema.query.JoinType;
 import com.mysema.query.QueryException;
 import com.mysema.query.QueryFlag;
 import com.mysema.query.QueryFlag.Position;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.Tuple;
 import com.mysema.query.dml.StoreClause;
 import com.mysema.query.sql.ColumnMetadata;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.RelationalPath;
 import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.sql.SQLListenerContextImpl;
 import com.mysema.query.sql.SQLQuery;
 import com.mysema.query.sql.SQLSerializer;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.SlotVisitor;
 import com.mysema.query.sql.types.Null;
+import com.mysema.query.types.Constant;
 import com.mysema.query.types.ConstantImpl;
 import com.mysema.query.types.Expression;
 import com.mysema.query.types.ExpressionUtils;
 import com.mysema.query.types.NullExpression;
 import com.mysema.query.types.Path;
+import com.mysema.query.types.Predicate;
 import com.mysema.query.types.SubQueryExpression;
 import com.mysema.util.ResultSetAdapter;
 
@@ -60,6 +73,8 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
 
     private static final Logger logger = LoggerFactory.getLogger(SQLMergeClause.class);
 
+    private static final int MAX_LOOKUP_SIZE = 1000;
+
     private final List<Path<?>> columns = new ArrayList<Path<?>>();
 
     private final Connection connection;
@@ -73,7 +88,12 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
     @Nullable
     private SubQueryExpression<?> subQuery;
 
-    private final List<SQLMergeBatch> batches = new ArrayList<SQLMergeBatch>();
+    private List<SQLMergeBatch> batches = new ArrayList<SQLMergeBatch>();
+
+    private final BatchStatements batchStatements = new BatchStatements();
+
+    // whether batch rows have been executed via a composite merge
+    private boolean compositeFlushed;
 
     private final List<Expression<?>> values = new ArrayList<Expression<?>>();
 
@@ -117,11 +137,19 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
     /**
      * Add the current state of bindings as a batch item
      *
+     * <p>For databases without native merge support the existing keys of the batch rows are
+     * looked up in chunks and the rows are executed as batched updates and inserts, which
+     * requires constant values for the key columns.</p>
+     *
+     * <p>Batch rows are executed in the order they were added. Consecutive rows which serialize
+     * to the same statement are executed as one JDBC batch, a change of the statement starts a
+     * new batch.</p>
+     *
      * @return
      */
     public SQLMergeClause addBatch() {
-        if (!configuration.getTemplates().isNativeMerge()) {
-            throw new IllegalStateException("batch only supported for databases that support native merge");
+        if (!configuration.getTemplates().isNativeMerge() && subQuery != null) {
+            throw new IllegalStateException("batch with subquery only supported for databases that support native merge");
         }
 
         batches.add(new SQLMergeBatch(keys, columns, values, subQuery));
@@ -129,6 +157,9 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
         values.clear();
         keys.clear();
         subQuery = null;
+        if (getBatchSize() > 0 && batches.size() >= getBatchSize()) {
+            flush();
+        }
         return this;
     }
 
@@ -214,19 +245,41 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
     /**
      * Execute the clause and return the generated keys as a ResultSet
      *
+     * <p>Generated keys of batch rows are only available, if all rows serialize to the same
+     * statement, otherwise an IllegalStateException is thrown.</p>
+     *
      * @return
      */
     public ResultSet executeWithKeys() {
+        SQLListenerContextImpl context = null;
         try {
             if (configuration.getTemplates().isNativeMerge()) {
-                final PreparedStatement stmt = createStatement(true);
-                if (batches.isEmpty()) {
+                final PreparedStatement stmt;
+                if (batches.isEmpty() && batchStatements.isEmpty()) {
+                    stmt = createStatement(true);
                     listeners.notifyMerge(entity, metadata, keys, columns, values, subQuery);
-                    stmt.executeUpdate();
+                    context = startContext(connection, metadata, entity, queryString, 0);
+                    context.setRowCount(stmt.executeUpdate());
                 } else {
+                    if (!batchStatements.isEmpty()) {
+                        close(batchStatements);
+                        throw new IllegalStateException("Generated keys are not available for " +
+                                "batch rows which have already been executed");
+                    }
+                    addBatches(true);
+                    if (batchStatements.getStatements().size() > 1) {
+                        close(batchStatements);
+                        throw new IllegalStateException("Generated keys are only supported for batches " +
+                                "which use a single statement");
+                    }
+                    stmt = batchStatements.getStatements().iterator().next();
+                    batchStatements.clear();
                     listeners.notifyMerges(entity, metadata, batches);
-                    stmt.executeBatch();
+                    context = startContext(connection, metadata, entity, queryString, batches.size());
+                    batches = new ArrayList<SQLMergeBatch>();
+                    context.setRowCount(executeBatch(stmt));
                 }
+                endContext(context);
                 ResultSet rs = stmt.getGeneratedKeys();
                 return new ResultSetAdapter(rs) {
                     @Override
@@ -239,6 +292,10 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
                     }
                 };
             } else {
+                if (!batches.isEmpty() || compositeFlushed) {
+                    throw new IllegalStateException("Generated keys are not available for batches " +
+                            "of databases without native merge support");
+                }
                 List<?> ids = getIds();
                 if (!ids.isEmpty()) {
                     // update
@@ -254,10 +311,20 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
                 }
             }
         } catch (SQLException e) {
+            onException(context, e);
+            endContext(context);
+            close(batchStatements);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
         }
     }
 
+    @Override
+    public void close() {
+        close(batchStatements);
+        batches = new ArrayList<SQLMergeBatch>();
+        compositeFlushed = false;
+    }
+
     @Override
     public long execute() {
         if (configuration.getTemplates().isNativeMerge()) {
@@ -300,6 +367,9 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
 
     @SuppressWarnings("unchecked")
     private long executeCompositeMerge() {
+        if (!batches.isEmpty() || compositeFlushed) {
+            return executeCompositeMergeBatches();
+        }
         List<?> ids = getIds();
         if (!ids.isEmpty()) {
             // update
@@ -316,8 +386,177 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
         }
     }
 
+    private long executeCompositeMergeBatches() {
+        try {
+            if (!batches.isEmpty()) {
+                flush();
+            }
+            return batchStatements.getUpdateCount();
+        } finally {
+            close(batchStatements);
+            compositeFlushed = false;
+        }
+    }
+
+    /**
+     * Execute the buffered batch rows via batched updates and inserts. The existing keys of the
+     * rows are looked up in chunks, rows with an existing key are updated and the other rows
+     * are inserted.
+     */
+    @SuppressWarnings("unchecked")
+    private void flushCompositeMerge() {
+        listeners.notifyMerges(entity, metadata, batches);
+        // key values per row and distinct key values per key columns
+        List<List<Object>> rowKeys = new ArrayList<List<Object>>(batches.size());
+        Map<List<Path<?>>, Set<List<Object>>> lookups = Maps.newLinkedHashMap();
+        for (SQLMergeBatch batch : batches) {
+            List<Object> key = getKeyValues(batch);
+            rowKeys.add(key);
+            Set<List<Object>> lookup = lookups.get(batch.getKeys());
+            if (lookup == null) {
+                lookup = Sets.newLinkedHashSet();
+                lookups.put(batch.getKeys(), lookup);
+            }
+            if (!key.contains(Null.DEFAULT)) {
+                lookup.add(key);
+            }
+        }
+        Map<List<Path<?>>, Set<List<Object>>> existing = Maps.newHashMap();
+        for (Map.Entry<List<Path<?>>, Set<List<Object>>> entry : lookups.entrySet()) {
+            existing.put(entry.getKey(), getExistingKeys(entry.getKey(), entry.getValue()));
+        }
+
+        SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
+        SQLUpdateClause update = new SQLUpdateClause(connection, configuration, entity);
+        for (int i = 0; i < batches.size(); i++) {
+            SQLMergeBatch batch = batches.get(i);
+            List<Object> key = rowKeys.get(i);
+            List<Object> normalized = normalize(key);
+            Set<List<Object>> keys = existing.get(batch.getKeys());
+            if (keys.contains(normalized)) {
+                populate(update, batch.getColumns(), batch.getValues());
+                for (int j = 0; j < key.size(); j++) {
+                    update.where(ExpressionUtils.eqConst((Expression)batch.getKeys().get(j), key.get(j)));
+                }
+                update.addBatch();
+            } else {
+                populate(insert, batch.getColumns(), batch.getValues());
+                insert.addBatch();
+                // following rows with the same key update the inserted row
+                if (!key.contains(Null.DEFAULT)) {
+                    keys.add(normalized);
+                }
+            }
+        }
+        // inserts first, since updates may refer to rows inserted by this batch
+        long count = 0;
+        if (!insert.isEmpty()) {
+            count += insert.execute();
+        }
+        if (!update.isEmpty()) {
+            count += update.execute();
+        }
+        batchStatements.addUpdateCount(count);
+        batches = new ArrayList<SQLMergeBatch>();
+        compositeFlushed = true;
+    }
+
+    private static List<Object> getKeyValues(SQLMergeBatch batch) {
+        if (batch.getKeys().isEmpty()) {
+            throw new IllegalStateException("No keys given for batch merge");
+        }
+        List<Object> rv = new ArrayList<Object>(batch.getKeys().size());
+        for (Path<?> key : batch.getKeys()) {
+            int index = batch.getColumns().indexOf(key);
+            Expression<?> value = index > -1 ? batch.getValues().get(index) : null;
+            if (value instanceof NullExpression) {
+                rv.add(Null.DEFAULT);
+            } else if (value instanceof Constant<?>) {
+                rv.add(((Constant<?>)value).getConstant());
+            } else {
+                throw new IllegalStateException("Batch merge needs a constant value for the key " + key);
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Normalize the given key values for the comparison with key values read from the
+     * database, which may be of a different numeric or temporal type
+     *
+     * @param key
+     * @return
+     */
+    private static List<Object> normalize(List<?> key) {
+        List<Object> rv = new ArrayList<Object>(key.size());
+        for (Object value : key) {
+            if (value instanceof Number) {
+                try {
+                    BigDecimal number = value instanceof BigDecimal ? (BigDecimal)value
+                            : new BigDecimal(value.toString());
+                    rv.add(number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros());
+                } catch (NumberFormatException e) {
+                    // NaN and infinite values
+                    rv.add(value);
+                }
+            } else if (value instanceof java.util.Date) {
+                rv.add(((java.util.Date)value).getTime());
+            } else {
+                rv.add(value);
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Get the given key values which exist in the table
+     *
+     * @param keys key columns
+     * @param values key values
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Set<List<Object>> getExistingKeys(List<Path<?>> keys, Collection<List<Object>> values) {
+        SQLTemplates templates = configuration.getTemplates();
+        int chunkSize = Math.min(MAX_LOOKUP_SIZE, Math.min(templates.getMaxInListSize(),
+                templates.getMaxParameters() / keys.size()));
+        Set<List<Object>> rv = Sets.newHashSet();
+        for (List<List<Object>> chunk : Iterables.partition(values, Math.max(chunkSize, 1))) {
+            SQLQuery query = new SQLQuery(connection, configuration).from(entity);
+            if (keys.size() == 1) {
+                List<Object> ids = new ArrayList<Object>(chunk.size());
+                for (List<Object> key : chunk) {
+                    ids.add(key.get(0));
+                }
+                query.where(ExpressionUtils.in((Expression)keys.get(0), ids));
+                for (Object id : query.list(keys.get(0))) {
+                    rv.add(normalize(Collections.singletonList(id)));
+                }
+            } else {
+                List<Predicate> conditions = new ArrayList<Predicate>(chunk.size());
+                for (List<Object> key : chunk) {
+                    List<Predicate> condition = new ArrayList<Predicate>(keys.size());
+                    for (int i = 0; i < keys.size(); i++) {
+                        condition.add(ExpressionUtils.eqConst((Expression)keys.get(i), key.get(i)));
+                    }
+                    conditions.add(ExpressionUtils.allOf(condition));
+                }
+                query.where(ExpressionUtils.anyOf(conditions));
+                for (Tuple row : query.list(keys.toArray(new Expression<?>[keys.size()]))) {
+                    rv.add(normalize(Arrays.asList(row.toArray())));
+                }
+            }
+        }
+        return rv;
+    }
+
     @SuppressWarnings("unchecked")
     private void populate(StoreClause<?> clause) {
+        populate(clause, columns, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void populate(StoreClause<?> clause, List<Path<?>> columns, List<Expression<?>> values) {
         for (int i = 0; i < columns.size(); i++) {
             clause.set((Path)columns.get(i), (Object)values.get(i));
         }
@@ -325,69 +564,125 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
 
     private PreparedStatement createStatement(boolean withKeys) throws SQLException{
         SQLSerializer serializer = new SQLSerializer(configuration, true);
-        PreparedStatement stmt = null;
-        if (batches.isEmpty()) {
-            serializer.serializeForMerge(metadata, entity, keys, columns, values, subQuery);
-            stmt = prepareStatementAndSetParameters(serializer, withKeys);
-        } else {
-            serializer.serializeForMerge(metadata, entity,
-                    batches.get(0).getKeys(), batches.get(0).getColumns(),
-                    batches.get(0).getValues(), batches.get(0).getSubQuery());
-            stmt = prepareStatementAndSetParameters(serializer, withKeys);
-
-            // add first batch
-            stmt.addBatch();
-
-            // add other batches
-            for (int i = 1; i < batches.size(); i++) {
-                SQLMergeBatch batch = batches.get(i);
-                serializer = new SQLSerializer(configuration, true);
-                serializer.serializeForMerge(metadata, entity, batch.getKeys(), batch.getColumns(), batch.getValues(), batch.getSubQuery());
-                setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
-                stmt.addBatch();
+        serializer.serializeForMerge(metadata, entity, keys, columns, values, subQuery);
+        PreparedStatement stmt = prepareStatement(serializer.toString(), withKeys);
+        setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
+        return stmt;
+    }
+
+    private void addBatches(boolean withKeys) throws SQLException{
+        SlotVisitor slotVisitor = new SlotVisitor(configuration.getTemplates());
+        for (SQLMergeBatch batch : batches) {
+            // rows of the same shape share the serialized statement
+            SlotVisitor.Context context = new SlotVisitor.Context();
+            List<Expression<?>> values = slotVisitor.replace(batch.getValues(), context);
+            List<?> shape = null;
+            BatchTemplate template = null;
+            if (context.isReplaced() && batch.getSubQuery() == null) {
+                shape = Arrays.asList(batch.getKeys(), batch.getColumns(), values, context.getTemplateArgs());
+                template = batchStatements.getTemplate(shape);
+            }
+            if (template == null) {
+                SQLSerializer serializer = new SQLSerializer(configuration, true);
+                serializer.serializeForMerge(metadata, entity, batch.getKeys(), batch.getColumns(),
+                        shape != null ? values : batch.getValues(), batch.getSubQuery());
+                template = new BatchTemplate(serializer);
+                if (shape != null) {
+                    batchStatements.addTemplate(shape, template);
+                }
+            }
+
+            // rows which serialize to a different statement are batched separately, pending
+            // rows are executed before a statement is continued to keep the order of the rows
+            if (!withKeys && batchStatements.isInterleaved(template.getSQL())) {
+                batchStatements.addUpdateCount(
+                        executeBatch(batchStatements, connection, metadata, entity));
+            }
+            PreparedStatement stmt = batchStatements.getStatement(template.getSQL());
+            if (stmt == null) {
+                stmt = prepareStatement(template.getSQL(), withKeys);
+                batchStatements.addStatement(template.getSQL(), stmt);
+            }
+            setParameters(stmt, template.getConstants(context.getSlots()),
+                    template.getConstantPaths(), metadata.getParams());
+            batchStatements.addBatch(template.getSQL());
+        }
+    }
+
+    /**
+     * Execute the buffered batch rows and release them
+     */
+    private void flush() {
+        if (!configuration.getTemplates().isNativeMerge()) {
+            flushCompositeMerge();
+            return;
+        }
+        boolean success = false;
+        try {
+            addBatches(false);
+            listeners.notifyMerges(entity, metadata, batches);
+            batchStatements.addUpdateCount(
+                    executeBatch(batchStatements, connection, metadata, entity));
+            batches = new ArrayList<SQLMergeBatch>();
+            success = true;
+        } catch (SQLException e) {
+            throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
+        } finally {
+            if (!success) {
+                close(batchStatements);
             }
         }
-        return stmt;
     }
 
-    private PreparedStatement prepareStatementAndSetParameters(SQLSerializer serializer,
-            boolean withKeys) throws SQLException {
-        queryString = serializer.toString();
+    private PreparedStatement prepareStatement(String sql, boolean withKeys) throws SQLException {
+        queryString = sql;
         logger.debug(queryString);
-        PreparedStatement stmt;
         if (withKeys) {
             String[] target = new String[keys.size()];
             for (int i = 0; i < target.length; i++) {
                 target[i] = ColumnMetadata.getName(keys.get(i));
             }
-            stmt = connection.prepareStatement(queryString, target);
+            return connection.prepareStatement(queryString, target);
         } else {
-            stmt = connection.prepareStatement(queryString);
+            return connection.prepareStatement(queryString);
         }
-        setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
-        return stmt;
     }
 
     private long executeNativeMerge() {
+        if (!batches.isEmpty() || !batchStatements.isEmpty()) {
+            return executeNativeMergeBatches();
+        }
         PreparedStatement stmt = null;
+        SQLListenerContextImpl context = null;
         try {
             stmt = createStatement(false);
-            if (batches.isEmpty()) {
-                listeners.notifyMerge(entity, metadata, keys, columns, values, subQuery);
-                return stmt.executeUpdate();
-            } else {
-                listeners.notifyMerges(entity, metadata, batches);
-                return executeBatch(stmt);
-            }
+            listeners.notifyMerge(entity, metadata, keys, columns, values, subQuery);
+            context = startContext(connection, metadata, entity, queryString, 0);
+            long rv = stmt.executeUpdate();
+            context.setRowCount(rv);
+            return rv;
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
         } finally {
+            endContext(context);
             if (stmt != null) {
                 close(stmt);
             }
         }
     }
 
+    private long executeNativeMergeBatches() {
+        try {
+            if (!batches.isEmpty()) {
+                flush();
+            }
+            return batchStatements.getUpdateCount();
+        } finally {
+            close(batchStatements);
+        }
+    }
+
     /**
      * Set the keys to be used in the MERGE clause
      *
@@ -453,7 +748,7 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
 
     @Override
     public boolean isEmpty() {
-        return values.isEmpty();
+        return values.isEmpty() && batches.isEmpty() && batchStatements.isEmpty() && !compositeFlushed;
     }
 
 }
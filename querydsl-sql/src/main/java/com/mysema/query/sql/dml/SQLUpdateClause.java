@@ -17,11 +17,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,12 +36,15 @@ import com.mysema.query.QueryException;
 import com.mysema.query.QueryFlag;
 import com.mysema.query.QueryFlag.Position;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.dml.KeyedUpdates;
 import com.mysema.query.dml.UpdateClause;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.RelationalPath;
 import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.sql.SQLListenerContextImpl;
 import com.mysema.query.sql.SQLSerializer;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.SlotVisitor;
 import com.mysema.query.sql.types.Null;
 import com.mysema.query.types.ConstantImpl;
 import com.mysema.query.types.Expression;
@@ -59,12 +65,17 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
 
     private final RelationalPath<?> entity;
 
-    private final List<SQLUpdateBatch> batches = new ArrayList<SQLUpdateBatch>();
+    private List<SQLUpdateBatch> batches = new ArrayList<SQLUpdateBatch>();
+
+    private final BatchStatements batchStatements = new BatchStatements();
 
     private List<Pair<Path<?>,Expression<?>>> updates = new ArrayList<Pair<Path<?>,Expression<?>>>();
 
     private QueryMetadata metadata = new DefaultQueryMetadata();
 
+    @Nullable
+    private KeyedUpdates keyedUpdates;
+
     private transient String queryString;
 
     public SQLUpdateClause(Connection connection, SQLTemplates templates, RelationalPath<?> entity) {
@@ -105,71 +116,179 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
     /**
      * Add the current state of bindings as a batch item
      *
+     * <p>Batch rows are executed in the order they were added. Consecutive rows which serialize
+     * to the same statement are executed as one JDBC batch, a change of the statement starts a
+     * new batch.</p>
+     *
      * @return
      */
     public SQLUpdateClause addBatch() {
+        if (keyedUpdates != null) {
+            throw new IllegalStateException("Keyed updates can't be combined with batches");
+        }
         batches.add(new SQLUpdateBatch(metadata, updates));
         updates = new ArrayList<Pair<Path<?>,Expression<?>>>();
         metadata = new DefaultQueryMetadata();
         metadata.addJoin(JoinType.DEFAULT, entity);
+        if (getBatchSize() > 0 && batches.size() >= getBatchSize()) {
+            flush();
+        }
         return this;
     }
 
-    private PreparedStatement createStatement() throws SQLException{
-        PreparedStatement stmt;
-        if (batches.isEmpty()) {
-            SQLSerializer serializer = new SQLSerializer(configuration, true);
-            serializer.serializeForUpdate(metadata, entity, updates);
-            queryString = serializer.toString();
-            logger.debug(queryString);
-            stmt = connection.prepareStatement(queryString);
-            setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
-        } else {
-            SQLSerializer serializer = new SQLSerializer(configuration, true);
-            serializer.serializeForUpdate(batches.get(0).getMetadata(), entity, batches.get(0).getUpdates());
-            queryString = serializer.toString();
-            logger.debug(queryString);
-
-            // add first batch
-            stmt = connection.prepareStatement(queryString);
-            setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
-            stmt.addBatch();
-
-            // add other batches
-            for (int i = 1; i < batches.size(); i++) {
-                serializer = new SQLSerializer(configuration, true);
-                serializer.serializeForUpdate(batches.get(i).getMetadata(), entity, batches.get(i).getUpdates());
-                setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
-                stmt.addBatch();
+    private PreparedStatement createStatement(QueryMetadata metadata,
+            List<Pair<Path<?>,Expression<?>>> updates) throws SQLException{
+        SQLSerializer serializer = new SQLSerializer(configuration, true);
+        serializer.serializeForUpdate(metadata, entity, updates);
+        queryString = serializer.toString();
+        logger.debug(queryString);
+        PreparedStatement stmt = connection.prepareStatement(queryString);
+        setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
+        return stmt;
+    }
+
+    private void addBatches() throws SQLException{
+        SlotVisitor slotVisitor = new SlotVisitor(configuration.getTemplates());
+        for (SQLUpdateBatch batch : batches) {
+            // rows of the same shape share the serialized statement
+            SlotVisitor.Context context = new SlotVisitor.Context();
+            List<Pair<Path<?>,Expression<?>>> updates = new ArrayList<Pair<Path<?>,Expression<?>>>();
+            for (Pair<Path<?>,Expression<?>> update : batch.getUpdates()) {
+                updates.add(Pair.<Path<?>,Expression<?>>of(update.getFirst(),
+                        slotVisitor.replace(update.getSecond(), context)));
+            }
+            QueryMetadata md = new DefaultQueryMetadata();
+            md.addJoin(JoinType.DEFAULT, entity);
+            for (QueryFlag flag : batch.getMetadata().getFlags()) {
+                md.addFlag(flag);
+            }
+            if (batch.getMetadata().getWhere() != null) {
+                md.addWhere((Predicate) slotVisitor.replace(batch.getMetadata().getWhere(), context));
+            }
+            List<?> shape = null;
+            BatchTemplate template = null;
+            if (context.isReplaced()) {
+                shape = Arrays.asList(updates, md.getWhere(), md.getFlags(), context.getTemplateArgs());
+                template = batchStatements.getTemplate(shape);
+            }
+            if (template == null) {
+                SQLSerializer serializer = new SQLSerializer(configuration, true);
+                if (shape != null) {
+                    serializer.serializeForUpdate(md, entity, updates);
+                } else {
+                    serializer.serializeForUpdate(batch.getMetadata(), entity, batch.getUpdates());
+                }
+                template = new BatchTemplate(serializer);
+                if (shape != null) {
+                    batchStatements.addTemplate(shape, template);
+                }
+            }
+
+            // rows which serialize to a different statement are batched separately, pending
+            // rows are executed before a statement is continued to keep the order of the rows
+            if (batchStatements.isInterleaved(template.getSQL())) {
+                batchStatements.addUpdateCount(
+                        executeBatch(batchStatements, connection, metadata, entity));
+            }
+            PreparedStatement stmt = batchStatements.getStatement(template.getSQL());
+            if (stmt == null) {
+                queryString = template.getSQL();
+                logger.debug(queryString);
+                stmt = connection.prepareStatement(queryString);
+                batchStatements.addStatement(queryString, stmt);
+            }
+            setParameters(stmt, template.getConstants(context.getSlots()),
+                    template.getConstantPaths(), metadata.getParams());
+            batchStatements.addBatch(template.getSQL());
+        }
+    }
+
+    /**
+     * Execute the buffered batch rows and release them
+     */
+    private void flush() {
+        boolean success = false;
+        try {
+            addBatches();
+            listeners.notifyUpdates(entity, batches);
+            batchStatements.addUpdateCount(
+                    executeBatch(batchStatements, connection, metadata, entity));
+            batches = new ArrayList<SQLUpdateBatch>();
+            success = true;
+        } catch (SQLException e) {
+            throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
+        } finally {
+            if (!success) {
+                close(batchStatements);
             }
         }
-        return stmt;
+    }
+
+    @Override
+    public void close() {
+        close(batchStatements);
+        batches = new ArrayList<SQLUpdateBatch>();
     }
 
     @Override
     public long execute() {
+        if (!batches.isEmpty() || !batchStatements.isEmpty()) {
+            return executeBatches();
+        } else if (keyedUpdates != null) {
+            long rv = 0;
+            for (List<Object> chunk : getChunks()) {
+                rv += execute(getMetadata(chunk), getUpdates(chunk));
+            }
+            return rv;
+        } else {
+            return execute(metadata, updates);
+        }
+    }
+
+    private long execute(QueryMetadata metadata, List<Pair<Path<?>,Expression<?>>> updates) {
         PreparedStatement stmt = null;
+        SQLListenerContextImpl context = null;
         try {
-            stmt = createStatement();
-            if (batches.isEmpty()) {
-                listeners.notifyUpdate(entity, metadata, updates);
-                return stmt.executeUpdate();
-            } else {
-                listeners.notifyUpdates(entity, batches);
-                return executeBatch(stmt);
-            }
+            stmt = createStatement(metadata, updates);
+            listeners.notifyUpdate(entity, metadata, updates);
+            context = startContext(connection, metadata, entity, queryString, 0);
+            long rv = stmt.executeUpdate();
+            context.setRowCount(rv);
+            return rv;
         } catch (SQLException e) {
+            onException(context, e);
             throw new QueryException("Caught " + e.getClass().getSimpleName() + " for " + queryString, e);
         } finally {
+            endContext(context);
             if (stmt != null) {
                 close(stmt);
             }
         }
     }
 
+    private long executeBatches() {
+        try {
+            if (!batches.isEmpty()) {
+                flush();
+            }
+            return batchStatements.getUpdateCount();
+        } finally {
+            close(batchStatements);
+        }
+    }
+
     @Override
     public List<SQLBindings> getSQL() {
-        if (batches.isEmpty()) {
+        if (batches.isEmpty() && keyedUpdates != null) {
+            ImmutableList.Builder<SQLBindings> builder = ImmutableList.builder();
+            for (List<Object> chunk : getChunks()) {
+                QueryMetadata md = getMetadata(chunk);
+                SQLSerializer serializer = new SQLSerializer(configuration, true);
+                serializer.serializeForUpdate(md, entity, getUpdates(chunk));
+                builder.add(createBindings(md, serializer));
+            }
+            return builder.build();
+        } else if (batches.isEmpty()) {
             SQLSerializer serializer = new SQLSerializer(configuration, true);
             serializer.serializeForUpdate(metadata, entity, updates);
             return ImmutableList.of(createBindings(metadata, serializer));
@@ -226,6 +345,56 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
         return this;
     }
 
+    /**
+     * Set the values of the given path per value of the key path. The values are applied via a
+     * case expression on the key path in a single statement per chunk of key values. The chunks
+     * are sized to the parameter and in list limits of the templates. Rows whose key has no
+     * value for the path keep their current value.
+     *
+     * <p>Keyed updates can't be combined with batches.</p>
+     *
+     * @param key key path
+     * @param path path to be updated
+     * @param values values per key value
+     * @return
+     */
+    public <K, V> SQLUpdateClause setByKey(Path<K> key, Path<V> path, Map<K, ? extends V> values) {
+        if (!batches.isEmpty() || !batchStatements.isEmpty()) {
+            throw new IllegalStateException("Keyed updates can't be combined with batches");
+        }
+        if (keyedUpdates == null) {
+            keyedUpdates = new KeyedUpdates(key);
+        }
+        keyedUpdates.add(key, path, values);
+        return this;
+    }
+
+    private Iterable<List<Object>> getChunks() {
+        SQLTemplates templates = configuration.getTemplates();
+        SQLSerializer serializer = new SQLSerializer(configuration, true);
+        serializer.serializeForUpdate(metadata, entity, updates);
+        int maxParameters = templates.getMaxParameters() - serializer.getConstants().size();
+        if (configuration.isInListPadding()) {
+            // padded in lists use up to twice the amount of key parameters
+            maxParameters = maxParameters / 2;
+        }
+        return keyedUpdates.getChunks(maxParameters, templates.getMaxInListSize());
+    }
+
+    private QueryMetadata getMetadata(List<Object> chunk) {
+        QueryMetadata md = metadata.clone();
+        md.addWhere(keyedUpdates.getCondition(chunk));
+        return md;
+    }
+
+    private List<Pair<Path<?>,Expression<?>>> getUpdates(List<Object> chunk) {
+        List<Pair<Path<?>,Expression<?>>> rv = new ArrayList<Pair<Path<?>,Expression<?>>>(updates);
+        for (Map.Entry<Path<?>, Expression<?>> entry : keyedUpdates.getUpdates(chunk).entrySet()) {
+            rv.add(Pair.<Path<?>,Expression<?>>of(entry.getKey(), entry.getValue()));
+        }
+        return rv;
+    }
+
     public SQLUpdateClause where(Predicate p) {
         metadata.addWhere(p);
         return this;
@@ -242,7 +411,13 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
     @Override
     public String toString() {
         SQLSerializer serializer = new SQLSerializer(configuration, true);
-        serializer.serializeForUpdate(metadata, entity, updates);
+        if (keyedUpdates != null && !keyedUpdates.isEmpty()) {
+            // show the statement of the first chunk
+            List<Object> chunk = getChunks().iterator().next();
+            serializer.serializeForUpdate(getMetadata(chunk), entity, getUpdates(chunk));
+        } else {
+            serializer.serializeForUpdate(metadata, entity, updates);
+        }
         return serializer.toString();
     }
 
@@ -282,6 +457,7 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
 
     @Override
     public boolean isEmpty() {
-        return updates.isEmpty() && batches.isEmpty();
+        return updates.isEmpty() && batches.isEmpty() && batchStatements.isEmpty()
+                && (keyedUpdates == null || keyedUpdates.isEmpty());
     }
 }
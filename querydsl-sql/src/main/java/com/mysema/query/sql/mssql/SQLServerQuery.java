@@ -64,4 +64,12 @@ public class SQLServerQuery extends AbstractSQLQuery<SQLServerQuery> implements
         return this;
     }
 
+    @Override
+    public SQLServerQuery clone(Connection conn) {
+        SQLServerQuery q = new SQLServerQuery(conn, getConfiguration(), getMetadata().clone());
+        q.union = union;
+        q.unionAll = unionAll;
+        return q;
+    }
+
 }
\ No newline at end of file
@@ -43,7 +43,7 @@ public class SQLServerQueryFactory extends AbstractSQLQueryFactory<SQLServerQuer
     }
 
     public SQLServerQuery query() {
-        return new SQLServerQuery(connection.get(), configuration);
+        return async(new SQLServerQuery(connection.get(), configuration));
     }
 
 
@@ -195,4 +195,12 @@ public class MySQLQuery extends AbstractSQLQuery<MySQLQuery> implements SQLCommo
         return addFlag(Position.AFTER_GROUP_BY, WITH_ROLLUP);
     }
 
+    @Override
+    public MySQLQuery clone(Connection conn) {
+        MySQLQuery q = new MySQLQuery(conn, getConfiguration(), getMetadata().clone());
+        q.union = union;
+        q.unionAll = unionAll;
+        return q;
+    }
+
 }
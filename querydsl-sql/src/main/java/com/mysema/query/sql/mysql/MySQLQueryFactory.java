@@ -66,7 +66,7 @@ public class MySQLQueryFactory extends AbstractSQLQueryFactory<MySQLQuery> {
     }
     
     public MySQLQuery query() {
-        return new MySQLQuery(connection.get(), configuration);
+        return async(new MySQLQuery(connection.get(), configuration));
     }
 
     public MySQLReplaceClause replace(RelationalPath<?> entity) {
@@ -110,4 +110,13 @@ public class OracleQuery extends AbstractSQLQuery<OracleQuery> implements SQLCom
     // TODO : connect by isleaf (pseudocolumn)
 
     // TODO : sys connect path
+
+    @Override
+    public OracleQuery clone(Connection conn) {
+        OracleQuery q = new OracleQuery(conn, getConfiguration(), getMetadata().clone());
+        q.union = union;
+        q.unionAll = unionAll;
+        return q;
+    }
+
 }
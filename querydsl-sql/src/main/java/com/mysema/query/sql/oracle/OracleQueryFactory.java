@@ -43,7 +43,7 @@ public class OracleQueryFactory extends AbstractSQLQueryFactory<OracleQuery> {
     }
 
     public OracleQuery query() {
-        return new OracleQuery(connection.get(), configuration);
+        return async(new OracleQuery(connection.get(), configuration));
     }
 
 }
@@ -81,4 +81,12 @@ public class PostgresQuery extends AbstractSQLQuery<PostgresQuery> implements SQ
         return addFlag(Position.END, builder.toString());
     }
 
+    @Override
+    public PostgresQuery clone(Connection conn) {
+        PostgresQuery q = new PostgresQuery(conn, getConfiguration(), getMetadata().clone());
+        q.union = union;
+        q.unionAll = unionAll;
+        return q;
+    }
+
 }
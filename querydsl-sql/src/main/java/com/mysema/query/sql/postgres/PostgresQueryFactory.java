@@ -43,7 +43,7 @@ public class PostgresQueryFactory extends AbstractSQLQueryFactory<PostgresQuery>
     }
 
     public PostgresQuery query() {
-        return new PostgresQuery(connection.get(), configuration);
+        return async(new PostgresQuery(connection.get(), configuration));
     }
 
 
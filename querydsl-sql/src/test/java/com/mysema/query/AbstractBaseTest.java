@@ -74,7 +74,7 @@ public abstract class AbstractBaseTest {
     
     private SQLTemplates templates = Connections.getTemplates();
     
-    private Configuration configuration = new Configuration(templates);
+    protected final Configuration configuration = new Configuration(templates);
 
     @Nullable
     protected String expectedQuery;
@@ -58,6 +58,22 @@ public class DeleteBase extends AbstractBaseTest{
         assertEquals(2, delete.execute());
     }
 
+    @Test
+    public void Batch_With_Batch_Size() throws SQLException{
+        insert(survey).values(2, "A","B").execute();
+        insert(survey).values(3, "B","C").execute();
+        insert(survey).values(4, "C","D").execute();
+
+        SQLDeleteClause delete = delete(survey);
+        delete.setBatchSize(2);
+        delete.where(survey.name.eq("A")).addBatch();
+        delete.where(survey.name.eq("B")).addBatch();
+        assertEquals(0l, query().from(survey).where(survey.name.in("A", "B")).count());
+        delete.where(survey.name.eq("C")).addBatch();
+        assertEquals(3, delete.execute());
+        assertEquals(0l, query().from(survey).where(survey.name.eq("C")).count());
+    }
+
     @Test
     @ExcludeIn(MYSQL)
     public void Delete() throws SQLException{
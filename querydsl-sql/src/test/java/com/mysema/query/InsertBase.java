@@ -17,15 +17,21 @@ import static com.mysema.query.Constants.survey;
 import static com.mysema.query.Constants.survey2;
 import static com.mysema.query.Target.CUBRID;
 import static com.mysema.query.Target.DERBY;
+import static com.mysema.query.Target.H2;
 import static com.mysema.query.Target.HSQLDB;
 import static com.mysema.query.Target.MYSQL;
 import static com.mysema.query.Target.ORACLE;
+import static com.mysema.query.Target.POSTGRES;
+import static com.mysema.query.Target.SQLITE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -33,6 +39,8 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import com.mysema.query.QueryFlag.Position;
+import com.mysema.query.sql.SQLBaseListener;
+import com.mysema.query.sql.SQLListenerContext;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.sql.dml.DefaultMapper;
 import com.mysema.query.sql.dml.Mapper;
@@ -108,6 +116,88 @@ public class InsertBase extends AbstractBaseTest {
         assertEquals(1l, query().from(survey).where(survey.name.eq("66")).count());
     }
 
+    @Test
+    public void Insert_Batch_Different_Columns() {
+        SQLInsertClause insert = insert(survey)
+            .set(survey.id, 5)
+            .set(survey.name, "55")
+            .addBatch();
+
+        insert.set(survey.id, 6)
+            .addBatch();
+
+        insert.set(survey.id, 7)
+            .set(survey.name, "77")
+            .addBatch();
+
+        assertEquals(3, insert.execute());
+
+        assertEquals(1l, query().from(survey).where(survey.name.eq("55")).count());
+        assertEquals(1l, query().from(survey).where(survey.name.eq("77")).count());
+        assertEquals(1l, query().from(survey).where(survey.id.eq(6), survey.name.isNull()).count());
+    }
+
+    @Test
+    public void Insert_Batch_Keeps_Order() {
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        configuration.addListener(new SQLBaseListener() {
+            @Override
+            public void start(SQLListenerContext context) {
+                batchSizes.add(context.getBatchSize());
+            }
+        });
+        SQLInsertClause insert = insert(survey)
+            .set(survey.id, 5)
+            .set(survey.name, "55")
+            .addBatch();
+
+        insert.set(survey.id, 6)
+            .addBatch();
+
+        insert.set(survey.id, 7)
+            .set(survey.name, "77")
+            .addBatch();
+
+        insert.set(survey.id, 8)
+            .set(survey.name, "88")
+            .addBatch();
+
+        assertEquals(4, insert.execute());
+        assertEquals(Arrays.asList(1, 1, 2), batchSizes);
+    }
+
+    @Test
+    public void Insert_Batch_With_Batch_Size() {
+        SQLInsertClause insert = insert(survey);
+        insert.setBatchSize(2);
+        for (int i = 5; i < 10; i++) {
+            insert.set(survey.id, i).set(survey.name, "batch").addBatch();
+        }
+        assertEquals(5, insert.execute());
+        assertEquals(5l, query().from(survey).where(survey.name.eq("batch")).count());
+    }
+
+    @Test
+    @IncludeIn({H2, HSQLDB, MYSQL, POSTGRES, SQLITE})
+    public void Insert_Batch_Multi_Row() {
+        configuration.setUseMultiRowInserts(true);
+        // two bindings per row, the rows don't fit into a single statement
+        int rows = configuration.getTemplates().getMaxParameters() / 2 + 10;
+        SQLInsertClause insert = insert(survey);
+        for (int i = 0; i < rows; i++) {
+            insert.set(survey.id, 100 + i).set(survey.name, "multi" + i).addBatch();
+        }
+        assertEquals(rows, insert.execute());
+
+        assertEquals(rows, query().from(survey).where(survey.name.startsWith("multi")).count());
+        assertEquals("multi0", query().from(survey)
+                .where(survey.id.eq(100)).uniqueResult(survey.name));
+        assertEquals("multi" + (rows - 1), query().from(survey)
+                .where(survey.id.eq(100 + rows - 1)).uniqueResult(survey.name));
+        assertEquals(Integer.valueOf(100 + rows - 1), query().from(survey)
+                .where(survey.name.startsWith("multi")).uniqueResult(survey.id.max()));
+    }
+
     @Test
     public void Insert_Null_With_Columns() {
         assertEquals(1, insert(survey)
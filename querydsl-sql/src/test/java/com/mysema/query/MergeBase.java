@@ -25,11 +25,16 @@ import static org.junit.Assert.assertTrue;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.mysema.query.sql.SQLBaseListener;
+import com.mysema.query.sql.SQLListenerContext;
 import com.mysema.query.sql.dml.SQLMergeClause;
 import com.mysema.query.sql.domain.QSurvey;
 import com.mysema.query.types.Path;
@@ -131,7 +136,6 @@ public class MergeBase extends AbstractBaseTest{
     }
 
     @Test
-    @IncludeIn(H2)
     public void MergeBatch() {
         SQLMergeClause merge = merge(survey)
             .keys(survey.id)
@@ -151,6 +155,60 @@ public class MergeBase extends AbstractBaseTest{
         assertEquals(1l, query().from(survey).where(survey.name.eq("6")).count());
     }
 
+    @Test
+    public void MergeBatch_Existing_Rows() {
+        SQLMergeClause merge = merge(survey)
+            .keys(survey.id)
+            .set(survey.id, 1)
+            .set(survey.name, "updated")
+            .addBatch();
+
+        merge
+            .keys(survey.id)
+            .set(survey.id, 5)
+            .set(survey.name, "5")
+            .addBatch();
+
+        assertEquals(2, merge.execute());
+
+        assertEquals(2l, query().from(survey).count());
+        assertEquals(1l, query().from(survey).where(survey.name.eq("updated")).count());
+    }
+
+    @Test
+    @IncludeIn(H2)
+    public void MergeBatch_Keeps_Order() {
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        configuration.addListener(new SQLBaseListener() {
+            @Override
+            public void start(SQLListenerContext context) {
+                batchSizes.add(context.getBatchSize());
+            }
+        });
+        SQLMergeClause merge = merge(survey)
+            .keys(survey.id)
+            .set(survey.id, 5)
+            .set(survey.name, "first")
+            .addBatch();
+
+        merge
+            .keys(survey.id)
+            .set(survey.id, 5)
+            .set(survey.name, "second")
+            .set(survey.name2, "second")
+            .addBatch();
+
+        merge
+            .keys(survey.id)
+            .set(survey.id, 5)
+            .set(survey.name, "third")
+            .addBatch();
+
+        assertEquals(3, merge.execute());
+        assertEquals(Arrays.asList(1, 1, 1), batchSizes);
+        assertEquals("third", query().from(survey).where(survey.id.eq(5)).uniqueResult(survey.name));
+    }
+
     @Test
     @IncludeIn(H2)
     public void MergeBatch_with_subquery() {
@@ -57,6 +57,8 @@ import com.mysema.query.group.Group;
 import com.mysema.query.group.GroupBy;
 import com.mysema.query.sql.Beans;
 import com.mysema.query.sql.DatePart;
+import com.mysema.query.sql.Keyset;
+import com.mysema.query.sql.KeysetPage;
 import com.mysema.query.sql.QBeans;
 import com.mysema.query.sql.RelationalPathBase;
 import com.mysema.query.sql.SQLExpressions;
@@ -76,6 +78,7 @@ import com.mysema.query.types.MappingProjection;
 import com.mysema.query.types.ParamNotSetException;
 import com.mysema.query.types.Path;
 import com.mysema.query.types.PathImpl;
+import com.mysema.query.types.Projections;
 import com.mysema.query.types.Predicate;
 import com.mysema.query.types.QBean;
 import com.mysema.query.types.QTuple;
@@ -785,6 +788,93 @@ public class SelectBase extends AbstractBaseTest{
         assertEquals(10, results.getTotal());
     }
 
+    @Test
+    @IncludeIn({ORACLE, POSTGRES, SQLSERVER})
+    public void ListResults_Windowed() {
+        configuration.setUseWindowedCount(true);
+        SearchResults<Integer> results = query().from(employee)
+                .limit(4).offset(1).orderBy(employee.id.asc())
+                .listResults(employee.id);
+        assertEquals(10, results.getTotal());
+        assertEquals(query().from(employee).limit(4).offset(1).orderBy(employee.id.asc())
+                .list(employee.id), results.getResults());
+
+        SearchResults<Tuple> tuples = query().from(employee)
+                .where(employee.firstname.isNotNull())
+                .limit(4).orderBy(employee.id.asc())
+                .listResults(employee.id, employee.firstname);
+        assertEquals(10, tuples.getTotal());
+        assertEquals(4, tuples.getResults().size());
+        assertNotNull(tuples.getResults().get(0).get(employee.firstname));
+
+        // offset beyond the last row
+        results = query().from(employee)
+                .limit(4).offset(20).orderBy(employee.id.asc())
+                .listResults(employee.id);
+        assertEquals(10, results.getTotal());
+        assertTrue(results.getResults().isEmpty());
+    }
+
+    @Test
+    @IncludeIn({ORACLE, POSTGRES, SQLSERVER})
+    public void ListResults_Windowed_Projections() {
+        configuration.setUseWindowedCount(true);
+        List<Integer> ids = query().from(employee).limit(4).orderBy(employee.id.asc())
+                .list(employee.id);
+
+        SearchResults<Employee> employees = query().from(employee)
+                .limit(4).orderBy(employee.id.asc())
+                .listResults(employee);
+        assertEquals(10, employees.getTotal());
+        assertEquals(4, employees.getResults().size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(ids.get(i), employees.getResults().get(i).getId());
+        }
+
+        QBean<Employee> bean = Projections.bean(Employee.class, employee.id, employee.firstname);
+        SearchResults<Tuple> tuples = query().from(employee)
+                .limit(4).orderBy(employee.id.asc())
+                .listResults(employee.lastname, bean);
+        assertEquals(10, tuples.getTotal());
+        assertEquals(4, tuples.getResults().size());
+        for (int i = 0; i < ids.size(); i++) {
+            Tuple row = tuples.getResults().get(i);
+            assertNotNull(row.get(employee.lastname));
+            assertEquals(ids.get(i), row.get(bean).getId());
+            assertNotNull(row.get(bean).getFirstname());
+        }
+    }
+
+    @Test
+    public void ListPage() {
+        Keyset keyset = Keyset.of(employee.id.asc());
+        List<Integer> ids = query().from(employee).orderBy(employee.id.asc()).list(employee.id);
+
+        List<Integer> paged = new ArrayList<Integer>();
+        KeysetPage<Employee> page = query().from(employee).listPage(keyset, 3, employee);
+        while (true) {
+            for (Employee e : page.getResults()) {
+                paged.add(e.getId());
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = query().from(employee).listPage(page.getNext(), 3, employee);
+        }
+        assertEquals(ids, paged);
+
+        QBean<Employee> bean = Projections.bean(Employee.class, employee.id, employee.firstname);
+        KeysetPage<Tuple> tuples = query().from(employee)
+                .listPage(keyset, 3, employee.lastname, bean);
+        assertEquals(3, tuples.getResults().size());
+        for (int i = 0; i < 3; i++) {
+            Tuple row = tuples.getResults().get(i);
+            assertNotNull(row.get(employee.lastname));
+            assertEquals(ids.get(i), row.get(bean).getId());
+        }
+        assertEquals(Arrays.<Object>asList(ids.get(2)), tuples.getNext().getValues());
+    }
+
     private double log(double x, int y) {
         return Math.log(x) / Math.log(y);
     }
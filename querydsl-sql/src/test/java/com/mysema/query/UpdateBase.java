@@ -18,7 +18,9 @@ import static org.junit.Assert.assertEquals;
 
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -89,6 +91,15 @@ public class UpdateBase extends AbstractBaseTest {
         update(survey).set(survey.name, survey.name.append("X")).execute();
     }
 
+    @Test
+    public void SetByKey() {
+        Map<Integer, String> names = new HashMap<Integer, String>();
+        names.put(1, "S");
+        names.put(2, "T");
+        assertEquals(1, update(survey).setByKey(survey.id, survey.name, names).execute());
+        assertEquals("S", query().from(survey).where(survey.id.eq(1)).uniqueResult(survey.name));
+    }
+
     @Test
     public void SetNull() {
         List<Path<?>> paths = Collections.<Path<?>>singletonList(survey.name);
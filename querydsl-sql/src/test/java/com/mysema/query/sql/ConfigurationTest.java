@@ -14,6 +14,7 @@
 package com.mysema.query.sql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
 import java.sql.PreparedStatement;
@@ -73,4 +74,28 @@ public class ConfigurationTest {
         assertEquals("employees", configuration.getTable("public", "employee"));
     }
 
+    @Test
+    public void Windowed_Count() {
+        Configuration configuration = new Configuration(new PostgresTemplates());
+        configuration.setUseWindowedCount(true);
+        assertTrue(configuration.isUseWindowedCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Windowed_Count_Not_Supported() {
+        new Configuration(new H2Templates()).setUseWindowedCount(true);
+    }
+
+    @Test
+    public void Multi_Row_Inserts() {
+        Configuration configuration = new Configuration(new MySQLTemplates());
+        configuration.setUseMultiRowInserts(true);
+        assertTrue(configuration.isUseMultiRowInserts());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Multi_Row_Inserts_Not_Supported() {
+        new Configuration(new OracleTemplates()).setUseMultiRowInserts(true);
+    }
+
 }
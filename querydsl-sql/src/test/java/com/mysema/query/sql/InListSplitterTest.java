@@ -0,0 +1,133 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.JoinType;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.QueryModifiers;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.QTuple;
+
+public class InListSplitterTest {
+
+    private final QSurvey survey = new QSurvey("survey");
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> rv = new ArrayList<Integer>();
+        for (int i = from; i < to; i++) {
+            rv.add(i);
+        }
+        return rv;
+    }
+
+    @Test
+    public void Split_Not_Needed() {
+        assertNull(InListSplitter.split(survey.id.in(range(0, 10)), 10));
+        assertNull(InListSplitter.split(survey.id.in(range(0, 20)), Integer.MAX_VALUE));
+        assertNull(InListSplitter.split(survey.id.notIn(range(0, 20)), 10));
+        assertNull(InListSplitter.split(survey.id.in(range(0, 20)).or(survey.name.isNull()), 10));
+    }
+
+    @Test
+    public void Split() {
+        List<Predicate> conditions = InListSplitter.split(
+                survey.name.isNotNull().and(survey.id.in(range(0, 25))), 10);
+        assertEquals(3, conditions.size());
+        assertEquals(survey.name.isNotNull().and(survey.id.in(range(0, 10))), conditions.get(0));
+        assertEquals(survey.name.isNotNull().and(survey.id.in(range(10, 20))), conditions.get(1));
+        assertEquals(survey.name.isNotNull().and(survey.id.in(range(20, 25))), conditions.get(2));
+    }
+
+    @Test
+    public void Split_Duplicates() {
+        List<Integer> values = range(0, 10);
+        values.addAll(range(0, 10));
+        assertEquals(1, InListSplitter.split(survey.id.in(values), 10).size());
+    }
+
+    @Test
+    public void Split_Multiple() {
+        List<Predicate> conditions = InListSplitter.split(
+                survey.id.in(range(0, 15)).and(survey.name.in("a", "b", "c")), 2);
+        assertEquals(16, conditions.size());
+    }
+
+    @Test
+    public void IsMergeable() {
+        assertTrue(InListSplitter.isMergeable(Arrays.asList(survey.id, survey.name.lower())));
+        assertTrue(InListSplitter.isMergeable(Arrays.asList(new QTuple(survey.id, survey.name))));
+        assertFalse(InListSplitter.isMergeable(Arrays.asList(survey.id.max())));
+        assertFalse(InListSplitter.isMergeable(Arrays.asList(survey.id.count().add(1))));
+        assertFalse(InListSplitter.isMergeable(Arrays.asList(new QTuple(survey.id, survey.id.count()))));
+        assertFalse(InListSplitter.isMergeable(Arrays.asList(SQLExpressions.rowNumber().over())));
+    }
+
+    @Test
+    public void IsOrderable() {
+        assertTrue(InListSplitter.isOrderable(Arrays.<OrderSpecifier<?>>asList(survey.id.asc())));
+        assertTrue(InListSplitter.isOrderable(Collections.<OrderSpecifier<?>>emptyList()));
+        assertFalse(InListSplitter.isOrderable(Arrays.<OrderSpecifier<?>>asList(
+                survey.id.asc(), survey.name.asc())));
+    }
+
+    @Test
+    public void Merge_Ordered() {
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.addJoin(JoinType.DEFAULT, survey);
+        metadata.addOrderBy(survey.id.desc());
+        metadata.setModifiers(new QueryModifiers(2l, 1l));
+        InListSplitter<String> splitter = new InListSplitter<String>(metadata, survey.name, false);
+        QTuple projection = (QTuple) splitter.getProjection();
+        assertEquals(Arrays.asList(survey.name, survey.id), projection.getArgs());
+
+        QueryMetadata chunk = splitter.createChunk(metadata, survey.id.in(1, 2));
+        assertEquals(survey.id.in(1, 2), chunk.getWhere());
+        assertEquals(QueryModifiers.limit(3), chunk.getModifiers());
+
+        List<String> rv = splitter.merge(Arrays.asList(
+                Arrays.asList(projection.newInstance("a", 1), projection.newInstance("b", 4)),
+                Arrays.asList(projection.newInstance("c", 3), projection.newInstance("d", null))));
+        assertEquals(Arrays.asList("b", "c"), rv);
+    }
+
+    @Test
+    public void Merge_Ordered_Nulls_Sorted_Low() {
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.addJoin(JoinType.DEFAULT, survey);
+        metadata.addOrderBy(survey.id.desc());
+        metadata.setModifiers(new QueryModifiers(2l, 1l));
+        InListSplitter<String> splitter = new InListSplitter<String>(metadata, survey.name, true);
+        QTuple projection = (QTuple) splitter.getProjection();
+
+        List<String> rv = splitter.merge(Arrays.asList(
+                Arrays.asList(projection.newInstance("a", 1), projection.newInstance("b", 4)),
+                Arrays.asList(projection.newInstance("c", 3), projection.newInstance("d", null))));
+        assertEquals(Arrays.asList("c", "a"), rv);
+    }
+
+    @Test
+    public void Merge_Distinct() {
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.setDistinct(true);
+        metadata.setLimit(3l);
+        InListSplitter<String> splitter = new InListSplitter<String>(metadata, survey.name, false);
+        assertEquals(survey.name, splitter.getProjection());
+        List<String> rv = splitter.merge(Arrays.asList(
+                Arrays.asList("a", "b"), Arrays.asList("b", "c", "d")));
+        assertEquals(Arrays.asList("a", "b", "c"), rv);
+    }
+
+}
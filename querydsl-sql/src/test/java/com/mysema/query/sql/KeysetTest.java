@@ -0,0 +1,79 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.mysema.query.sql.domain.QSurvey;
+
+public class KeysetTest {
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private String serialize(SQLTemplates templates, Keyset keyset) {
+        SQLSerializer serializer = new SQLSerializer(new Configuration(templates));
+        serializer.handle(keyset.getPredicate());
+        return serializer.toString();
+    }
+
+    @Test
+    public void First_Page() {
+        Keyset keyset = Keyset.of(survey.name.asc(), survey.id.asc());
+        assertNull(keyset.getValues());
+        assertNull(keyset.getPredicate());
+        SQLQuery query = new SQLQuery(new H2Templates()).from(survey).seek(keyset);
+        assertEquals("from SURVEY SURVEY\norder by SURVEY.NAME asc, SURVEY.ID asc", query.toString());
+    }
+
+    @Test
+    public void Single_Column() {
+        Keyset keyset = Keyset.of(survey.id.desc()).after(5);
+        assertEquals(Arrays.<Object>asList(5), keyset.getValues());
+        assertEquals("SURVEY.ID < ?", serialize(new H2Templates(), keyset));
+    }
+
+    @Test
+    public void Row_Value() {
+        Keyset keyset = Keyset.of(survey.name.asc(), survey.id.asc()).after("abc", 5);
+        assertEquals("(SURVEY.NAME, SURVEY.ID) > (?, ?)", serialize(new H2Templates(), keyset));
+        assertEquals("(SURVEY.NAME, SURVEY.ID) > (?, ?)", serialize(new PostgresTemplates(), keyset));
+        keyset = Keyset.of(survey.name.desc(), survey.id.desc()).after("abc", 5);
+        assertEquals("(SURVEY.NAME, SURVEY.ID) < (?, ?)", serialize(new H2Templates(), keyset));
+    }
+
+    @Test
+    public void Expanded() {
+        Keyset keyset = Keyset.of(survey.name.asc(), survey.id.asc()).after("abc", 5);
+        assertEquals("(SURVEY.NAME >= ? and (SURVEY.NAME > ? or SURVEY.NAME = ? and SURVEY.ID > ?))",
+                serialize(new OracleTemplates(), keyset));
+        assertEquals("(SURVEY.NAME >= ? and (SURVEY.NAME > ? or SURVEY.NAME = ? and SURVEY.ID > ?))",
+                serialize(new SQLServer2012Templates(), keyset));
+    }
+
+    @Test
+    public void Mixed_Directions() {
+        Keyset keyset = Keyset.of(survey.name.desc(), survey.id.asc()).after("abc", 5);
+        assertEquals("SURVEY.NAME <= ? and (SURVEY.NAME < ? or SURVEY.NAME = ? and SURVEY.ID > ?)",
+                serialize(new H2Templates(), keyset));
+    }
+
+    @Test
+    public void Seek() {
+        Keyset keyset = Keyset.of(survey.name.asc(), survey.id.asc()).after("abc", 5);
+        SQLQuery query = new SQLQuery(new H2Templates()).from(survey)
+                .where(survey.name.isNotNull()).seek(keyset).limit(10);
+        assertEquals("from SURVEY SURVEY\n" +
+                "where SURVEY.NAME is not null and (SURVEY.NAME, SURVEY.ID) > (?, ?)\n" +
+                "order by SURVEY.NAME asc, SURVEY.ID asc\n" +
+                "limit ?", query.toString());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Invalid_Values() {
+        Keyset.of(survey.name.asc(), survey.id.asc()).after("abc");
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.Predicate;
+
+public class PartitionedScanTest {
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private String serialize(Predicate predicate, Object... constants) {
+        SQLSerializer serializer = new SQLSerializer(new Configuration(new H2Templates()));
+        serializer.handle(predicate);
+        assertEquals(Arrays.asList(constants), serializer.getConstants());
+        return serializer.toString();
+    }
+
+    @Test
+    public void Split_Long() {
+        assertEquals(Arrays.<Object>asList(25l, 50l, 75l), PartitionedScan.split(0l, 100l, 4));
+    }
+
+    @Test
+    public void Split_Integer_Narrow_Range() {
+        assertEquals(Arrays.<Object>asList(1, 2), PartitionedScan.split(0, 3, 8));
+    }
+
+    @Test
+    public void Split_Negative() {
+        assertEquals(Arrays.<Object>asList(-5), PartitionedScan.split(-10, 1, 2));
+    }
+
+    @Test
+    public void Split_Single_Value() {
+        assertEquals(Collections.emptyList(), PartitionedScan.split(5l, 5l, 4));
+    }
+
+    @Test
+    public void Split_BigDecimal() {
+        assertEquals(Arrays.<Object>asList(new BigDecimal("0.5000000000")),
+                PartitionedScan.split(BigDecimal.ZERO, BigDecimal.ONE, 2));
+    }
+
+    @Test
+    public void Split_Timestamp() {
+        assertEquals(Arrays.<Object>asList(new Timestamp(1000l)),
+                PartitionedScan.split(new Timestamp(0l), new Timestamp(2000l), 2));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Split_Unsupported() {
+        PartitionedScan.split("a", "b", 2);
+    }
+
+    @Test
+    public void Conditions() {
+        List<Predicate> conditions = PartitionedScan.getConditions(survey.id, Arrays.asList(10, 20), false);
+        assertEquals(3, conditions.size());
+        assertEquals("SURVEY.ID < ?", serialize(conditions.get(0), 10));
+        assertEquals("SURVEY.ID >= ? and SURVEY.ID < ?", serialize(conditions.get(1), 10, 20));
+        assertEquals("SURVEY.ID >= ?", serialize(conditions.get(2), 20));
+    }
+
+    @Test
+    public void Conditions_Nullable() {
+        List<Predicate> conditions = PartitionedScan.getConditions(survey.id, Arrays.asList(10), true);
+        assertEquals("SURVEY.ID < ? or SURVEY.ID is null", serialize(conditions.get(0), 10));
+        assertEquals("SURVEY.ID >= ?", serialize(conditions.get(1), 10));
+    }
+
+    @Test
+    public void Conditions_Single_Partition() {
+        List<Predicate> conditions = PartitionedScan.getConditions(survey.id,
+                Collections.emptyList(), true);
+        assertEquals(1, conditions.size());
+        assertNull(conditions.get(0));
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import javax.inject.Provider;
+
+import org.junit.Test;
+
+import com.mysema.query.QueryException;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class QueryTaskTest {
+
+    private static Provider<Connection> provider(final Connection connection) {
+        return new Provider<Connection>() {
+            @Override
+            public Connection get() {
+                return connection;
+            }
+        };
+    }
+
+    @Test
+    public void Execute() throws Exception {
+        Connection connection = createMock(Connection.class);
+        connection.close();
+        replay(connection);
+
+        QueryTask<String> task = new QueryTask<String>(provider(connection)) {
+            @Override
+            protected String execute(Connection connection) {
+                return "result";
+            }
+        };
+        task.run();
+        assertEquals("result", task.get());
+        verify(connection);
+    }
+
+    @Test(expected=ExecutionException.class)
+    public void Execute_Failure() throws Exception {
+        Connection connection = createMock(Connection.class);
+        connection.close();
+        replay(connection);
+
+        QueryTask<String> task = new QueryTask<String>(provider(connection)) {
+            @Override
+            protected String execute(Connection connection) throws SQLException {
+                throw new SQLException();
+            }
+        };
+        task.run();
+        verify(connection);
+        task.get();
+    }
+
+    @Test
+    public void Cancel_Before_Execution() {
+        QueryTask<String> task = new QueryTask<String>(provider(null)) {
+            @Override
+            protected String execute(Connection connection) {
+                throw new AssertionError();
+            }
+        };
+        assertTrue(task.cancel(false));
+        task.run();
+        assertTrue(task.isCancelled());
+    }
+
+    @Test
+    public void Cancel_Statements() throws SQLException {
+        Statement stmt = createMock(Statement.class);
+        stmt.cancel();
+        replay(stmt);
+
+        QueryTask<String> task = new QueryTask<String>(provider(null)) {
+            @Override
+            protected String execute(Connection connection) {
+                return null;
+            }
+        };
+        task.register(stmt);
+        assertTrue(task.cancel(true));
+        verify(stmt);
+    }
+
+    @Test
+    public void Execute_Clone() throws Exception {
+        Connection connection = createMock(Connection.class);
+        expect(connection.prepareStatement(isA(String.class))).andThrow(new SQLException());
+        connection.close();
+        replay(connection);
+
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        QSurvey survey = new QSurvey("survey");
+        SQLQuery query = new SQLQuery(new H2Templates());
+        query.from(survey).async(executor, provider(connection));
+        try {
+            query.listAsync(survey.id).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(QueryException.class, e.getCause().getClass());
+        }
+        assertTrue(query.getMetadata().getProjection().isEmpty());
+        verify(connection);
+    }
+
+    @Test(expected=CancellationException.class)
+    public void Register_After_Cancel() {
+        QueryTask<String> task = new QueryTask<String>(provider(null)) {
+            @Override
+            protected String execute(Connection connection) {
+                return null;
+            }
+        };
+        task.cancel(true);
+        task.register(createMock(Statement.class));
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.sql.types.IntegerType;
+import com.mysema.query.sql.types.StringType;
+import com.mysema.query.types.QTuple;
+
+public class RowReaderTest {
+
+    private QSurvey survey = QSurvey.survey;
+
+    private Configuration configuration = new Configuration(new H2Templates());
+
+    @Test
+    public void Column_Types() {
+        assertTrue(RowReader.getColumn(new IntegerType()) != RowReader.getColumn(new StringType()));
+        assertTrue(RowReader.getColumn(new IntegerType()) == RowReader.getColumn(new IntegerType()));
+    }
+
+    @Test
+    public void Tuple() throws SQLException {
+        ResultSet rs = EasyMock.createMock(ResultSet.class);
+        EasyMock.expect(rs.getInt(1)).andReturn(1);
+        EasyMock.expect(rs.wasNull()).andReturn(false);
+        EasyMock.expect(rs.getString(2)).andReturn("Bob");
+        EasyMock.expect(rs.getInt(1)).andReturn(0);
+        EasyMock.expect(rs.wasNull()).andReturn(true);
+        EasyMock.expect(rs.getString(2)).andReturn(null);
+        EasyMock.replay(rs);
+
+        RowReader<Tuple> reader = new RowReader<Tuple>(configuration, new QTuple(survey.id, survey.name));
+        Tuple first = reader.read(rs);
+        assertEquals(Integer.valueOf(1), first.get(survey.id));
+        assertEquals("Bob", first.get(survey.name));
+        Tuple second = reader.read(rs);
+        assertNull(second.get(survey.id));
+        assertNull(second.get(survey.name));
+        EasyMock.verify(rs);
+    }
+
+    @Test
+    public void Single() throws SQLException {
+        ResultSet rs = EasyMock.createMock(ResultSet.class);
+        EasyMock.expect(rs.getString(1)).andReturn("Bob");
+        EasyMock.replay(rs);
+
+        RowReader<String> reader = new RowReader<String>(configuration, survey.name);
+        assertEquals("Bob", reader.read(rs));
+        EasyMock.verify(rs);
+    }
+
+}
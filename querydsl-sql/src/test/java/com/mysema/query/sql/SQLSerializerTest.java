@@ -22,13 +22,16 @@ import java.util.List;
 import org.junit.Test;
 
 import com.mysema.query.BooleanBuilder;
+import com.mysema.query.DefaultQueryMetadata;
 import com.mysema.query.QueryMetadata;
 import com.mysema.query.Survey;
 import com.mysema.query.Tuple;
 import com.mysema.query.sql.domain.QEmployee;
 import com.mysema.query.sql.domain.QSurvey;
 import com.mysema.query.support.Expressions;
+import com.mysema.query.types.ConstantImpl;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
 import com.mysema.query.types.SubQueryExpression;
 import com.mysema.query.types.expr.Wildcard;
 import com.mysema.query.types.path.PathBuilder;
@@ -63,6 +66,57 @@ public class SQLSerializerTest {
         assertEquals(Arrays.asList("X%"), serializer.getConstants());
     }
 
+    @Test
+    public void In_List_Padding() {
+        Configuration conf = new Configuration(new H2Templates());
+        conf.setInListPadding(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2, 3, 4, 5));
+        assertEquals("SURVEY.ID in (?, ?, ?, ?, ?, ?, ?, ?)", serializer.toString());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 5, 5, 5), serializer.getConstants());
+        assertEquals(8, serializer.getConstantPaths().size());
+
+        serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2));
+        assertEquals("SURVEY.ID in (?, ?)", serializer.toString());
+    }
+
+    @Test
+    public void In_List_Padding_Over_Max_Size() {
+        Configuration conf = new Configuration(new OracleTemplates());
+        conf.setInListPadding(true);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < 1100; i++) {
+            ids.add(i);
+        }
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(ids));
+        assertEquals(1100, serializer.getConstants().size());
+        assertEquals(1100, serializer.getConstantPaths().size());
+
+        ids = ids.subList(0, 1000);
+        serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(ids));
+        assertEquals(1000, serializer.getConstants().size());
+        assertEquals(1000, serializer.getConstantPaths().size());
+    }
+
+    @Test
+    public void In_Array_Parameter() {
+        Configuration conf = new Configuration(new PostgresTemplates());
+        conf.setUseArrayParameters(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2, 3).and(survey.name.notIn("a", "b")));
+        assertEquals("SURVEY.ID = any(?) and SURVEY.NAME <> all(?)", serializer.toString());
+        assertEquals(2, serializer.getConstants().size());
+        assertEquals(Arrays.asList(survey.id, survey.name), serializer.getConstantPaths());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void In_Array_Parameter_Not_Supported() {
+        new Configuration(new MySQLTemplates()).setUseArrayParameters(true);
+    }
+
     @Test
     public void From_Function() {
         SQLQuery query = query();
@@ -221,4 +275,18 @@ public class SQLSerializerTest {
 
     }
 
+    @Test
+    public void Multi_Row_Insert() {
+        List<List<Expression<?>>> rows = new ArrayList<List<Expression<?>>>();
+        rows.add(Arrays.<Expression<?>>asList(ConstantImpl.create(1), ConstantImpl.create("a")));
+        rows.add(Arrays.<Expression<?>>asList(ConstantImpl.create(2), ConstantImpl.create("b")));
+        SQLSerializer serializer = new SQLSerializer(Configuration.DEFAULT, true);
+        serializer.serializeForInsert(new DefaultQueryMetadata(), survey,
+                Arrays.<Path<?>>asList(survey.id, survey.name), rows);
+        assertEquals("insert into SURVEY (ID, NAME)\nvalues (?, ?), (?, ?)", serializer.toString());
+        assertEquals(Arrays.<Object>asList(1, "a", 2, "b"), serializer.getConstants());
+        assertEquals(Arrays.<Path<?>>asList(survey.id, survey.name, survey.id, survey.name),
+                serializer.getConstantPaths());
+    }
+
 }
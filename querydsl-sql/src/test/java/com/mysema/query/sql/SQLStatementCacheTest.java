@@ -0,0 +1,141 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.expr.Param;
+
+public class SQLStatementCacheTest {
+
+    private QSurvey survey = QSurvey.survey;
+
+    private Configuration configuration;
+
+    private SQLStatementCache cache;
+
+    @Before
+    public void setUp() {
+        configuration = new Configuration(new H2Templates());
+        cache = new SQLStatementCache();
+        configuration.setStatementCache(cache);
+    }
+
+    private SQLQuery query() {
+        return new SQLQuery(configuration);
+    }
+
+    @Test
+    public void Same_Shape() {
+        SQLBindings first = query().from(survey)
+                .where(survey.name.eq("Bob"), survey.id.gt(1)).getSQL(survey.id);
+        SQLBindings second = query().from(survey)
+                .where(survey.name.eq("Ann"), survey.id.gt(2)).getSQL(survey.id);
+        assertEquals(first.getSql(), second.getSql());
+        assertEquals(Arrays.asList("Ann", 2), second.getBindings());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void Modifiers() {
+        query().from(survey).limit(10).offset(20).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).limit(5).offset(15).getSQL(survey.id);
+        assertEquals(Arrays.asList(5l, 15l), bindings.getBindings());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Modifiers_SQLServer() {
+        configuration = new Configuration(new SQLServer2005Templates());
+        configuration.setStatementCache(cache);
+        SQLBindings first = query().from(survey).limit(10).offset(0).getSQL(survey.id);
+        assertEquals(Arrays.asList(0l, 10l), first.getBindings());
+        SQLBindings second = query().from(survey).limit(10).offset(20).getSQL(survey.id);
+        assertEquals(first.getSql(), second.getSql());
+        assertEquals(Arrays.asList(20l, 30l), second.getBindings());
+        // the sum of limit and offset is not a constant of the query
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void Modifiers_SQLServer2012() {
+        configuration = new Configuration(new SQLServer2012Templates());
+        configuration.setStatementCache(cache);
+        query().from(survey).where(survey.id.eq(0)).limit(10).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.id.eq(5)).limit(10).getSQL(survey.id);
+        assertEquals(Arrays.asList(5, 0, 10l), bindings.getBindings());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void Different_Collection_Sizes() {
+        query().from(survey).where(survey.id.in(1, 2)).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.id.in(3, 4, 5)).getSQL(survey.id);
+        assertEquals(Arrays.asList(3, 4, 5), bindings.getBindings());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void Transformed_Constants() {
+        query().from(survey).where(survey.name.startsWith("A")).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.name.startsWith("B")).getSQL(survey.id);
+        assertEquals(Arrays.asList("B%"), bindings.getBindings());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void Equal_Constants() {
+        query().from(survey).where(survey.id.eq(1), survey.id.ne(1)).limit(1).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.id.eq(2), survey.id.ne(3))
+                .limit(4).getSQL(survey.id);
+        assertEquals(Arrays.asList(2, 3, 4l), bindings.getBindings());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Padded_In_List() {
+        configuration.setInListPadding(true);
+        query().from(survey).where(survey.id.in(1, 2, 3)).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.id.in(4, 5, 6)).getSQL(survey.id);
+        assertEquals(Arrays.asList(4, 5, 6, 6), bindings.getBindings());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Params() {
+        Param<Integer> param = new Param<Integer>(Integer.class, "id");
+        query().from(survey).where(survey.id.eq(param), survey.name.eq("a"))
+            .set(param, 1).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.id.eq(param), survey.name.eq("b"))
+            .set(param, 2).getSQL(survey.id);
+        assertEquals(Arrays.asList(2, "b"), bindings.getBindings());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void SubQuery() {
+        QSurvey s2 = new QSurvey("s2");
+        query().from(survey).where(survey.id.in(
+                new SQLSubQuery().from(s2).where(s2.name.eq("a")).limit(1).list(s2.id))).getSQL(survey.id);
+        SQLBindings bindings = query().from(survey).where(survey.id.in(
+                new SQLSubQuery().from(s2).where(s2.name.eq("b")).limit(2).list(s2.id))).getSQL(survey.id);
+        assertEquals(Arrays.asList("b", 2l), bindings.getBindings());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Table_Override_Clears_Cache() {
+        query().from(survey).getSQL(survey.id);
+        configuration.registerTableOverride("SURVEY", "SURVEY2");
+        SQLBindings bindings = query().from(survey).getSQL(survey.id);
+        assertEquals("select SURVEY.ID\nfrom SURVEY2 SURVEY", bindings.getSql());
+        assertEquals(0, cache.getHitCount());
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.mysema.query.DefaultQueryMetadata;
+
+public class SQLStatsListenerTest {
+
+    private SQLListenerContextImpl execute(SQLDetailedListener listener, String sql, long rows,
+            SQLException exception) {
+        SQLListenerContextImpl context = new SQLListenerContextImpl(new DefaultQueryMetadata(), null, sql);
+        listener.start(context);
+        if (exception != null) {
+            context.setException(exception);
+            listener.exception(context);
+        } else {
+            context.setRowCount(rows);
+        }
+        context.end();
+        listener.end(context);
+        return context;
+    }
+
+    @Test
+    public void Statistics() {
+        SQLStatsListener listener = new SQLStatsListener();
+        execute(listener, "select a from b", 5, null);
+        execute(listener, "select a from b", 15, null);
+        execute(listener, "select a from b", 0, new SQLException());
+        execute(listener, "select c from d", 1, null);
+
+        SQLStatsListener.StatementStats stats = listener.getStatistics("select a from b");
+        assertEquals(3, stats.getExecutionCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(20, stats.getTotalRows());
+        assertEquals(15, stats.getMaxRows());
+        assertTrue(stats.getMaxTime(TimeUnit.NANOSECONDS) <= stats.getTotalTime(TimeUnit.NANOSECONDS));
+        long total = 0;
+        for (long count : stats.getHistogram()) {
+            total += count;
+        }
+        assertEquals(3, total);
+        assertTrue(stats.getPercentile(1.0, TimeUnit.MICROSECONDS) >= stats.getMaxTime(TimeUnit.MICROSECONDS));
+
+        assertEquals(2, listener.getStatistics().size());
+        assertEquals(1, listener.getSlowest(1).size());
+        assertNull(listener.getStatistics("select e from f"));
+
+        listener.reset();
+        assertTrue(listener.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void Max_Statements() {
+        SQLStatsListener listener = new SQLStatsListener(1);
+        execute(listener, "select a from b", 1, null);
+        execute(listener, "select c from d", 1, null);
+        assertEquals(1, listener.getStatistics().size());
+        assertEquals(1, listener.getUntrackedCount());
+    }
+
+    @Test
+    public void Listeners() {
+        SQLListeners parent = new SQLListeners();
+        SQLStatsListener stats = new SQLStatsListener();
+        parent.add(stats);
+        SQLListeners listeners = new SQLListeners(parent);
+        listeners.add(new SQLBaseListener());
+        execute(listeners, "select a from b", 3, null);
+        assertEquals(3, stats.getStatistics("select a from b").getTotalRows());
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.mysema.query.sql.SlotVisitor.Context;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+
+public class SlotVisitorTest {
+
+    private QSurvey survey = QSurvey.survey;
+
+    private SlotVisitor visitor = new SlotVisitor(new H2Templates());
+
+    @Test
+    public void Constant() {
+        Context context = new Context();
+        Expression<?> expr = visitor.replace(ConstantImpl.create("Bob"), context);
+        assertEquals(new ConstantImpl<Object>(new SlotVisitor.Slot(0)), expr);
+        assertEquals(Arrays.asList("Bob"), context.getSlots());
+    }
+
+    @Test
+    public void Same_Shape() {
+        Context context1 = new Context();
+        Context context2 = new Context();
+        Expression<?> expr1 = visitor.replace(survey.name.eq("Bob").and(survey.id.in(1, 2)), context1);
+        Expression<?> expr2 = visitor.replace(survey.name.eq("Ann").and(survey.id.in(3, 4)), context2);
+        assertEquals(expr1, expr2);
+        assertEquals(Arrays.asList("Ann", 3, 4), context2.getSlots());
+        assertTrue(context2.isReplaced());
+    }
+
+    @Test
+    public void Transformed_Constants() {
+        Context context1 = new Context();
+        Context context2 = new Context();
+        Expression<?> expr1 = visitor.replace(survey.name.startsWith("A"), context1);
+        Expression<?> expr2 = visitor.replace(survey.name.startsWith("B"), context2);
+        assertFalse(expr1.equals(expr2));
+        assertEquals(0, context2.getSlots().size());
+    }
+
+    @Test
+    public void Serialization() {
+        Context context = new Context();
+        Expression<?> expr = visitor.replace(survey.name.eq("Bob"), context);
+        SQLSerializer serializer = new SQLSerializer(new Configuration(new H2Templates()));
+        serializer.handle(expr);
+        assertEquals("SURVEY.NAME = ?", serializer.toString());
+        assertEquals(Arrays.<Object>asList(new SlotVisitor.Slot(0)), serializer.getConstants());
+    }
+
+    @Test
+    public void SubQuery() {
+        Context context = new Context();
+        visitor.replace(survey.id.in(new SQLSubQuery().from(survey).list(survey.id)), context);
+        assertFalse(context.isReplaced());
+    }
+
+}
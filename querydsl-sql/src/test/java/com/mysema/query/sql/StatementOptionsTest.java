@@ -0,0 +1,69 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class StatementOptionsTest {
+
+    @Test
+    public void Default() throws SQLException {
+        Connection conn = EasyMock.createMock(Connection.class);
+        PreparedStatement stmt = EasyMock.createMock(PreparedStatement.class);
+        EasyMock.expect(conn.prepareStatement("select 1")).andReturn(stmt);
+        EasyMock.replay(conn, stmt);
+
+        assertFalse(StatementOptions.DEFAULT.isStreaming());
+        StatementOptions.DEFAULT.prepareStatement(conn, new H2Templates(), "select 1");
+        EasyMock.verify(conn, stmt);
+    }
+
+    @Test
+    public void Streaming() throws SQLException {
+        Connection conn = EasyMock.createMock(Connection.class);
+        PreparedStatement stmt = EasyMock.createMock(PreparedStatement.class);
+        EasyMock.expect(conn.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)).andReturn(stmt);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        stmt.setQueryTimeout(30);
+        EasyMock.replay(conn, stmt);
+
+        StatementOptions options = StatementOptions.builder()
+                .setStreaming(true).setQueryTimeout(30).build();
+        assertTrue(options.isStreaming());
+        options.prepareStatement(conn, new MySQLTemplates(), "select 1");
+        EasyMock.verify(conn, stmt);
+    }
+
+    @Test
+    public void Explicit_Fetch_Size() throws SQLException {
+        Connection conn = EasyMock.createMock(Connection.class);
+        PreparedStatement stmt = EasyMock.createMock(PreparedStatement.class);
+        EasyMock.expect(conn.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)).andReturn(stmt);
+        stmt.setFetchSize(50);
+        stmt.setMaxRows(100);
+        EasyMock.replay(conn, stmt);
+
+        StatementOptions.builder().setStreaming(true).setFetchSize(50).setMaxRows(100).build()
+            .prepareStatement(conn, new PostgresTemplates(), "select 1");
+        EasyMock.verify(conn, stmt);
+    }
+
+    @Test
+    public void Configuration_Default() {
+        Configuration configuration = new Configuration(new H2Templates());
+        assertEquals(StatementOptions.DEFAULT, configuration.getStatementOptions());
+        assertEquals(1000, configuration.getTemplates().getStreamingFetchSize());
+        assertEquals(Integer.MIN_VALUE, new MySQLTemplates().getStreamingFetchSize());
+    }
+
+}
@@ -35,6 +35,7 @@ public class WindowFunctionTest {
         assertEquals("rank()", toString(SQLExpressions.rank()));
         assertEquals("dense_rank()", toString(SQLExpressions.denseRank()));
         assertEquals("row_number()", toString(SQLExpressions.rowNumber()));
+        assertEquals("ntile(?)", toString(SQLExpressions.ntile(4)));
         assertEquals("first_value(path)", toString(SQLExpressions.firstValue(path)));
         assertEquals("last_value(path)", toString(SQLExpressions.lastValue(path)));
         
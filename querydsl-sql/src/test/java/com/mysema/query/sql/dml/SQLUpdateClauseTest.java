@@ -2,12 +2,19 @@ package com.mysema.query.sql.dml;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
 import com.mysema.query.sql.KeyAccessorsTest.QEmployee;
 import com.mysema.query.sql.SQLBindings;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.SQLiteTemplates;
+import com.mysema.query.sql.domain.QSurvey;
 
 public class SQLUpdateClauseTest {
 
@@ -22,4 +29,42 @@ public class SQLUpdateClauseTest {
         assertEquals(ImmutableList.of(1), sql.getBindings());
     }
 
+    @Test
+    public void SetByKey() {
+        QSurvey survey = QSurvey.survey;
+        Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+        names.put(1, "A");
+        names.put(2, "B");
+        Map<Integer, String> names2 = new LinkedHashMap<Integer, String>();
+        names2.put(2, "C");
+        SQLUpdateClause update = new SQLUpdateClause(null, SQLTemplates.DEFAULT, survey)
+            .setByKey(survey.id, survey.name, names)
+            .setByKey(survey.id, survey.name2, names2);
+
+        List<SQLBindings> sql = update.getSQL();
+        assertEquals(1, sql.size());
+        assertEquals("update SURVEY\n" +
+                "set NAME = case ID when ? then ? when ? then ? else NAME end, " +
+                "NAME2 = case ID when ? then ? else NAME2 end\n" +
+                "where SURVEY.ID in (?, ?)", sql.get(0).getSql());
+        assertEquals(Arrays.<Object>asList(1, "A", 2, "B", 2, "C", 1, 2), sql.get(0).getBindings());
+    }
+
+    @Test
+    public void SetByKey_Chunks() {
+        QSurvey survey = QSurvey.survey;
+        Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+        for (int i = 0; i < 700; i++) {
+            names.put(i, "name" + i);
+        }
+        SQLUpdateClause update = new SQLUpdateClause(null, new SQLiteTemplates(), survey)
+            .setByKey(survey.id, survey.name, names);
+
+        // 999 parameters with three parameters per key
+        List<SQLBindings> sql = update.getSQL();
+        assertEquals(3, sql.size());
+        assertEquals(999, sql.get(0).getBindings().size());
+        assertEquals(102, sql.get(2).getBindings().size());
+    }
+
 }